@@ -0,0 +1,126 @@
+package de.hochschuletrier.de.webcrawlerservice.benchmark;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.UrlFrontier;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.DomainRules;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.Page;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageValidation;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.WebPageEntity;
+import de.hochschuletrier.de.webcrawlerservice.utils.HTMLExtractionUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the per page and per link helpers of the crawler on the checked in fixtures. Run with the gc profiler
+ * (./gradlew jmh adds it) to get the allocation rate and the allocated bytes per operation next to the throughput.
+ * <p>
+ * urlAllowed runs against an in memory frontier in which every second link of the page is visited already. The
+ * validation no longer requests the url, so no network stub is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CrawlerUtilsBenchmark
+{
+    private static final List<String> FILE_EXTENSIONS = Arrays.asList("pdf", "doc", "docx", "ppt", "zip");
+    private static final String[] TIMESTAMPS = {"Wed, 21 Oct 2015 07:28:00 GMT", "Fri, 14 Sep 2018 09:12:44 GMT",
+            "Mon, 3 Sep 2018 16:01:09 +0200", "Tue, 1 Jan 2019 00:00:00 GMT"};
+
+    @Param({"news-article", "person-directory", "legacy-department"})
+    public String fixture;
+
+    private Page page;
+    private Document document;
+    private String[] links; // absolute links of the page
+    private DomainRules domainRules;
+    private UrlFrontier frontier;
+    private int index;
+
+    @Setup
+    public void setUp()
+    {
+        String url = HtmlFixtures.resourceUrl(this.fixture);
+        this.document = Jsoup.parse(HtmlFixtures.resource(this.fixture), url);
+        this.page = new Page(url);
+        this.page.setHtmlBody(this.document);
+        this.page.setTitle(this.document.title());
+        this.page.setStatusCode(200);
+        this.page.setEtag("\"5b9b7a2c-4a1b\"");
+        this.page.setLastModified(new Date());
+        this.page.setCrawlingDateTime(new Date());
+        this.links = HTMLExtractionUtils.getLinksFromDocument(this.page).toArray(new String[0]);
+        this.domainRules = DomainRules.compile(Collections.singletonList("hochschule-trier"),
+                Collections.singletonList("hochschule-trier.de/datenschutz"));
+        this.frontier = new UrlFrontier(0, 1);
+        for (int i = 0; i < this.links.length; i += 2)
+        {
+            this.frontier.markVisited(this.links[i]);
+        }
+        System.out.printf("%n%s: %d links%n", this.fixture, this.links.length);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.frontier.close();
+    }
+
+    private String nextLink()
+    {
+        this.index = (this.index + 1) % this.links.length;
+        return this.links[this.index];
+    }
+
+    @Benchmark
+    public boolean isUrlValidURI()
+    {
+        return PageValidation.isUrlValidURI(nextLink());
+    }
+
+    @Benchmark
+    public boolean urlAllowed()
+    {
+        return PageValidation.urlAllowed(this.domainRules, this.frontier, nextLink());
+    }
+
+    @Benchmark
+    public List<String> getLinksFromDocument()
+    {
+        return HTMLExtractionUtils.getLinksFromDocument(this.page);
+    }
+
+    @Benchmark
+    public List<String> getFileLinksFromDocument()
+    {
+        return HTMLExtractionUtils.getFileLinksFromDocument(this.document, FILE_EXTENSIONS);
+    }
+
+    @Benchmark
+    public Date parseDateFromTimeStamp()
+    {
+        this.index = (this.index + 1) % TIMESTAMPS.length;
+        return HTMLExtractionUtils.parseDateFromTimeStamp(TIMESTAMPS[this.index], "EEE, d MMM yyyy HH:mm:ss Z",
+                Locale.ENGLISH, this.page);
+    }
+
+    @Benchmark
+    public WebPageEntity webPageEntity()
+    {
+        return new WebPageEntity(this.page);
+    }
+}
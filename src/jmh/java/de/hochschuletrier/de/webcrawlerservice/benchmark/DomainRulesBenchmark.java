@@ -0,0 +1,78 @@
+package de.hochschuletrier.de.webcrawlerservice.benchmark;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.DomainRules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Cost per url of the compiled domain rules compared to compiling a regular expression per allowed domain
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DomainRulesBenchmark
+{
+    private static final List<String> ALLOWED = Arrays.asList("hochschule-trier", "uni-trier", "news.google",
+            "spring", "wikipedia", "github", "stackoverflow", "mozilla");
+
+    private static final String[] URLS = {
+            "https://www.hochschule-trier.de/informatik/studium",
+            "https://de.wikipedia.org/wiki/Webcrawler",
+            "https://news.google.com/topstories?hl=de",
+            "https://www.example.org/some/deep/path/index.html?page=2",
+            "https://docs.spring.io/spring-boot/docs/current/reference/html/",
+            "https://cdn.jsdelivr.net/npm/bootstrap@4.1.3/dist/css/bootstrap.min.css",
+            "https://developer.mozilla.org/en-US/docs/Web/HTTP/Headers/If-Modified-Since",
+            "http://localhost:8080/status",
+    };
+
+    private DomainRules domainRules;
+    private int index;
+
+    @Setup
+    public void setUp()
+    {
+        this.domainRules = DomainRules.compile(ALLOWED, Collections.singletonList("github.com/login"));
+    }
+
+    private String nextUrl()
+    {
+        this.index = (this.index + 1) % URLS.length;
+        return URLS[this.index];
+    }
+
+    @Benchmark
+    public boolean compiledRules()
+    {
+        return this.domainRules.accepts(nextUrl());
+    }
+
+    @Benchmark
+    public boolean regexPerDomain()
+    {
+        String url = nextUrl();
+        for (String domain : ALLOWED)
+        {
+            Pattern p = Pattern.compile("^(?:https?:)?(?://)?(?:[^@\\n" +
+                    "]+@)?(?:www\\.)?([a-z.])*(?:"
+                    + domain
+                    + "){1}(.[a-z]{2,64}/)?([-A-Za-z0-9+&@#/%=~_|$?!:,.])*");
+            if (p.matcher(url).matches())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
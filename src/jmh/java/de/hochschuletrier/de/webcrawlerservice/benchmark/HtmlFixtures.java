@@ -0,0 +1,182 @@
+package de.hochschuletrier.de.webcrawlerservice.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Html pages for the benchmarks. The pages look like a typical news or university page: a head with scripts and
+ * styles, a navigation with many links, an article and a footer. They are generated with a fixed seed, so every run
+ * measures the same bytes.
+ * <p>
+ * The pages in src/jmh/resources/fixtures are checked in: a news article of a current CMS, a person directory with
+ * hundreds of links and a hand written legacy page with upper case tags, relative paths and broken links.
+ */
+final class HtmlFixtures
+{
+    private static final String[] WORDS = ("the of and to in is for on that with as by at from this are be was "
+            + "an or it have not which their has more will new can all about also been one were after other "
+            + "students university research study course semester faculty campus library exam lecture professor "
+            + "department application deadline information contact office hours building room event news science "
+            + "computer engineering informatics business economics design media technology project team results "
+            + "international exchange program master bachelor degree thesis seminar workshop conference city "
+            + "der die und in den von zu das mit sich des auf f\u00fcr ist im dem nicht ein eine als auch es an werden "
+            + "aus er hat dass sie nach wird bei einer um am sind noch wie einem \u00fcber einen so zum war haben nur "
+            + "Hochschule Studium Studierende Fachbereich Pr\u00fcfung Vorlesung Bewerbung Semester Informatik Trier")
+            .split(" ");
+
+    /**
+     * Checked in fixtures and the url they are served from
+     */
+    static final String[][] RESOURCES = {
+            {"news-article", "https://www.hochschule-trier.de/informatik/news/detail/hackathon-2018"},
+            {"person-directory", "https://www.hochschule-trier.de/informatik/personen/"},
+            {"legacy-department", "http://www.informatik.hochschule-trier.de/rn/vorlesungen.html"},
+    };
+
+    private HtmlFixtures()
+    {
+    }
+
+    /**
+     * @param name name of a fixture in {@link #RESOURCES}
+     * @return html of the fixture
+     */
+    static String resource(String name)
+    {
+        try (InputStream in = HtmlFixtures.class.getResourceAsStream("/fixtures/" + name + ".html"))
+        {
+            if (in == null)
+            {
+                throw new IllegalArgumentException("Unknown fixture " + name);
+            }
+            ByteArrayOutputStream html = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                html.write(buffer, 0, read);
+            }
+            // the legacy page is latin-1, but only uses entities
+            return new String(html.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param name name of a fixture in {@link #RESOURCES}
+     * @return url of the fixture
+     */
+    static String resourceUrl(String name)
+    {
+        for (String[] resource : RESOURCES)
+        {
+            if (resource[0].equals(name))
+            {
+                return resource[1];
+            }
+        }
+        throw new IllegalArgumentException("Unknown fixture " + name);
+    }
+
+    /**
+     * @param seed       seed of the generated text and links
+     * @param paragraphs number of article paragraphs, 40 give a page of about 32 KB
+     * @return html of a page
+     */
+    static String page(long seed, int paragraphs)
+    {
+        Random random = new Random(seed);
+        StringBuilder html = new StringBuilder(paragraphs * 1200 + 16000);
+        html.append("<!DOCTYPE html>\n<html lang=\"de\">\n<head>\n<meta charset=\"utf-8\">\n")
+                .append("<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">\n")
+                .append("<title>").append(sentence(random, 6)).append("</title>\n");
+        for (int i = 0; i < 6; i++)
+        {
+            html.append("<link rel=\"stylesheet\" href=\"/typo3temp/assets/css/style-").append(random.nextInt(100000))
+                    .append(".css?").append(random.nextInt(Integer.MAX_VALUE)).append("\" media=\"all\">\n");
+        }
+        html.append("<script>window.dataLayer=window.dataLayer||[];function gtag(){dataLayer.push(arguments);}")
+                .append("gtag('js',new Date());gtag('config','UA-").append(random.nextInt(99999999))
+                .append("-1',{'anonymize_ip':true});</script>\n</head>\n<body class=\"page-")
+                .append(random.nextInt(1000)).append("\">\n<header id=\"header\"><nav class=\"main-nav\"><ul>\n");
+        for (int i = 0; i < 60; i++)
+        {
+            html.append("<li class=\"nav-item level-").append(i % 3).append("\"><a class=\"nav-link\" href=\"/")
+                    .append(word(random)).append('/').append(word(random)).append('/').append(random.nextInt(1000))
+                    .append("/\" title=\"").append(sentence(random, 2)).append("\">").append(sentence(random, 2))
+                    .append("</a></li>\n");
+        }
+        html.append("</ul></nav></header>\n<main id=\"content\"><article class=\"news-single\">\n<h1>")
+                .append(sentence(random, 8)).append("</h1>\n<div class=\"news-meta\"><time datetime=\"2018-0")
+                .append(1 + random.nextInt(9)).append("-1").append(random.nextInt(10)).append("\">")
+                .append(random.nextInt(28) + 1).append(". September 2018</time></div>\n");
+        for (int i = 0; i < paragraphs; i++)
+        {
+            if (i % 8 == 0)
+            {
+                html.append("<h2>").append(sentence(random, 5)).append("</h2>\n");
+            }
+            html.append("<p>");
+            for (int sentence = 0; sentence < 6; sentence++)
+            {
+                html.append(sentence(random, 8 + random.nextInt(12))).append(". ");
+                if (random.nextInt(4) == 0)
+                {
+                    html.append("<a href=\"https://www.hochschule-trier.de/").append(word(random)).append('/')
+                            .append(word(random)).append("\">").append(sentence(random, 3)).append("</a> ");
+                }
+            }
+            html.append("</p>\n");
+            if (i % 10 == 5)
+            {
+                html.append("<figure><img src=\"/fileadmin/images/").append(random.nextInt(100000))
+                        .append(".jpg\" alt=\"").append(sentence(random, 4)).append("\" width=\"800\" height=\"450\">")
+                        .append("<figcaption>").append(sentence(random, 7)).append("</figcaption></figure>\n");
+            }
+        }
+        html.append("<ul class=\"downloads\">\n");
+        for (int i = 0; i < 5; i++)
+        {
+            html.append("<li><a href=\"/fileadmin/documents/").append(word(random)).append('-')
+                    .append(random.nextInt(1000)).append(i % 2 == 0 ? ".pdf" : ".docx").append("\">")
+                    .append(sentence(random, 4)).append("</a></li>\n");
+        }
+        html.append("</ul>\n</article></main>\n<footer id=\"footer\"><div class=\"footer-links\">\n");
+        for (int i = 0; i < 25; i++)
+        {
+            html.append("<a href=\"/").append(word(random)).append("/\">").append(sentence(random, 2))
+                    .append("</a>\n");
+        }
+        html.append("</div><p>&copy; 2018 Hochschule Trier</p></footer>\n")
+                .append("<script src=\"/typo3temp/assets/js/main-").append(random.nextInt(100000))
+                .append(".js\"></script>\n</body>\n</html>\n");
+        return html.toString();
+    }
+
+    private static String sentence(Random random, int words)
+    {
+        StringBuilder sentence = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++)
+        {
+            if (i > 0)
+            {
+                sentence.append(' ');
+            }
+            sentence.append(word(random));
+        }
+        return sentence.toString();
+    }
+
+    private static String word(Random random)
+    {
+        // frequent words first, like in real text
+        int index = (int) (Math.pow(random.nextDouble(), 2) * WORDS.length);
+        return WORDS[index];
+    }
+}
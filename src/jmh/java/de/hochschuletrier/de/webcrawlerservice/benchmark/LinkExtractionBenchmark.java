@@ -0,0 +1,66 @@
+package de.hochschuletrier.de.webcrawlerservice.benchmark;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.Page;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.StreamingLinkExtractor;
+import de.hochschuletrier.de.webcrawlerservice.utils.HTMLExtractionUtils;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per page of extracting the links, file links and text with a jsoup document compared to the streaming
+ * extractor. 40 paragraphs are a typical page, 400 paragraphs a large one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LinkExtractionBenchmark
+{
+    private static final String URL = "https://www.hochschule-trier.de/informatik/news/article.html";
+    private static final List<String> FILE_EXTENSIONS = Arrays.asList("pdf", "doc", "docx", "zip");
+
+    @Param({"40", "400"})
+    public int paragraphs;
+
+    private byte[] body;
+
+    @Setup
+    public void setUp()
+    {
+        this.body = HtmlFixtures.page(2, this.paragraphs).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void dom(Blackhole blackhole) throws IOException
+    {
+        Page page = new Page(URL);
+        page.setHtmlBody(Jsoup.parse(new ByteArrayInputStream(this.body), "UTF-8", URL));
+        blackhole.consume(HTMLExtractionUtils.getLinksFromDocument(page));
+        blackhole.consume(page.getFileUrls(FILE_EXTENSIONS));
+        blackhole.consume(page.getText());
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole)
+    {
+        Page page = new Page(URL);
+        StreamingLinkExtractor.extract(page, this.body, Integer.MAX_VALUE, "UTF-8", URL);
+        blackhole.consume(HTMLExtractionUtils.getLinksFromDocument(page));
+        blackhole.consume(page.getFileUrls(FILE_EXTENSIONS));
+        blackhole.consume(page.getText());
+    }
+}
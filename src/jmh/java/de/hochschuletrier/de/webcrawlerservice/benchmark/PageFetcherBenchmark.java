@@ -0,0 +1,120 @@
+package de.hochschuletrier.de.webcrawlerservice.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.AsyncPageFetcher;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.FetchResponse;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.JsoupPageFetcher;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageFetcher;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.UserAgent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to fetch a batch of pages from a local server with a simulated latency, with the async fetcher and the jsoup
+ * fallback. Both may have the same number of requests in flight.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true") // no nagle delay on the small responses of the server
+public class PageFetcherBenchmark
+{
+    private static final int BATCH = 64; // pages per benchmark invocation
+    private static final int IN_FLIGHT = 16; // connections of the async fetcher and threads of the jsoup fetcher
+
+    @Param({"async", "jsoup"})
+    public String fetcher;
+
+    @Param({"0", "10"})
+    public int latency; // milliseconds the server waits before it answers
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private PageFetcher pageFetcher;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        StringBuilder html = new StringBuilder("<html><head><title>Benchmark</title></head><body>");
+        for (int i = 0; i < 200; i++)
+        {
+            html.append("<p>Paragraph ").append(i).append(" <a href=\"/page/").append(i).append("\">link</a></p>");
+        }
+        byte[] body = html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+
+        this.serverExecutor = Executors.newFixedThreadPool(BATCH);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), BATCH);
+        this.server.createContext("/", exchange ->
+        {
+            try
+            {
+                Thread.sleep(this.latency);
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write(body);
+            }
+        });
+        this.server.setExecutor(this.serverExecutor);
+        this.server.start();
+        this.baseUrl = "http://localhost:" + this.server.getAddress().getPort() + "/page/";
+
+        if (this.fetcher.equals("async"))
+        {
+            this.pageFetcher = new AsyncPageFetcher(UserAgent.Default, 30000, true, IN_FLIGHT);
+        } else
+        {
+            this.pageFetcher = new JsoupPageFetcher(UserAgent.Default, 30000, true, IN_FLIGHT);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.pageFetcher.close();
+        this.server.stop(0);
+        this.serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int fetchBatch()
+    {
+        List<CompletableFuture<FetchResponse>> responses = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++)
+        {
+            responses.add(this.pageFetcher.fetch(this.baseUrl + i, Collections.emptyMap()));
+        }
+        int bytes = 0;
+        for (CompletableFuture<FetchResponse> response : responses)
+        {
+            bytes += response.join().getBody().length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,57 @@
+package de.hochschuletrier.de.webcrawlerservice.benchmark;
+
+import de.hochschuletrier.de.webcrawlerservice.persistence.storage.PageCodec;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of compressing and decompressing a stored page body with every codec. The stored size of every codec and
+ * of the serialized jsoup document, which was stored before, is printed by the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PageStorageBenchmark
+{
+    @Param({"NONE", "DEFLATE", "ZSTD"})
+    public String codec;
+
+    private PageCodec pageCodec;
+    private byte[] body;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp()
+    {
+        String html = HtmlFixtures.page(1, 40);
+        this.pageCodec = PageCodec.forName(this.codec);
+        this.body = html.getBytes(StandardCharsets.UTF_8);
+        this.encoded = this.pageCodec.encode(this.body);
+        int serialized = Jsoup.parse(html).toString().getBytes(StandardCharsets.UTF_8).length;
+        System.out.printf("%nresponse %d bytes, serialized document %d bytes, %s %d bytes (%.1f %%)%n",
+                this.body.length, serialized, this.codec, this.encoded.length,
+                100.0 * this.encoded.length / this.body.length);
+    }
+
+    @Benchmark
+    public byte[] encode()
+    {
+        return this.pageCodec.encode(this.body);
+    }
+
+    @Benchmark
+    public byte[] decode()
+    {
+        return this.pageCodec.decode(this.encoded, this.body.length);
+    }
+}
@@ -0,0 +1,161 @@
+package de.hochschuletrier.de.webcrawlerservice.benchmark;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import com.mongodb.client.MongoCollection;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.WebPageEntity;
+import de.hochschuletrier.de.webcrawlerservice.persistence.storage.CrawlResultStore;
+import de.hochschuletrier.de.webcrawlerservice.persistence.storage.PageBodyStore;
+import de.hochschuletrier.de.webcrawlerservice.persistence.storage.PageCodec;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lookup and write throughput of the page collection with the given number of documents. Needs a running Mongo,
+ * set with -Dbenchmark.mongo.uri (default mongodb://localhost:27017/crawler-benchmark). The setup fills the page
+ * collection up to the document count once, later runs reuse it.
+ * <p>
+ * upsertBatch writes a batch of 100 pages through the {@link CrawlResultStore}, half of them revisits of stored urls.
+ * insertBatch is the previous saveAll of new documents for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PersistenceBenchmark
+{
+    private static final int BATCH_SIZE = 100;
+    private static final int FILL_BATCH_SIZE = 10000;
+    private static final int HOSTS = 1000;
+
+    @Param({"10000000"})
+    public long documents;
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private CrawlResultStore crawlResultStore;
+    private byte[] body; // compressed body of every written page
+    private final AtomicLong nextUrl = new AtomicLong(); // number of the next new url
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        MongoClientURI uri = new MongoClientURI(System.getProperty("benchmark.mongo.uri",
+                "mongodb://localhost:27017/crawler-benchmark"));
+        this.mongoClient = new MongoClient(uri);
+        this.mongoTemplate = new MongoTemplate(this.mongoClient, uri.getDatabase());
+        this.crawlResultStore = new CrawlResultStore(this.mongoTemplate, new PageBodyStore(PageCodec.ZSTD),
+                CrawlResultStore.DEFAULT_MAX_VERSIONS);
+        this.crawlResultStore.ensureIndexes();
+        this.body = PageCodec.ZSTD.encode(HtmlFixtures.page(1, 10).getBytes(StandardCharsets.UTF_8));
+        fill();
+        this.nextUrl.set(this.mongoTemplate.count(new Query(), WebPageEntity.class));
+    }
+
+    /**
+     * Insert minimal page documents until the collection holds the document count
+     */
+    private void fill()
+    {
+        MongoCollection<Document> pages = this.mongoTemplate.getCollection(
+                this.mongoTemplate.getCollectionName(WebPageEntity.class));
+        long stored = pages.count();
+        long start = System.nanoTime();
+        while (stored < this.documents)
+        {
+            List<Document> batch = new ArrayList<>(FILL_BATCH_SIZE);
+            for (int i = 0; i < FILL_BATCH_SIZE && stored + i < this.documents; i++)
+            {
+                long n = stored + i;
+                batch.add(new Document("url", url(n)).append("domain", host(n))
+                        .append("crawlingDateTime", new Date()).append("title", "page " + n)
+                        .append("statusCode", 200));
+            }
+            pages.insertMany(batch);
+            stored += batch.size();
+            if (stored % 1_000_000 == 0)
+            {
+                System.out.printf("%d pages stored after %d s%n", stored,
+                        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.mongoClient.close();
+    }
+
+    @Benchmark
+    public boolean lookupByUrl()
+    {
+        long n = ThreadLocalRandom.current().nextLong(this.documents);
+        return this.mongoTemplate.exists(Query.query(Criteria.where("url").is(url(n))), WebPageEntity.class);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void upsertBatch()
+    {
+        List<WebPageEntity> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++)
+        {
+            long n = i % 2 == 0 ? ThreadLocalRandom.current().nextLong(this.documents)
+                    : this.nextUrl.getAndIncrement();
+            batch.add(page(n));
+        }
+        this.crawlResultStore.upsertPages(batch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insertBatch()
+    {
+        List<WebPageEntity> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++)
+        {
+            batch.add(page(this.nextUrl.getAndIncrement()));
+        }
+        this.mongoTemplate.insertAll(batch);
+    }
+
+    private WebPageEntity page(long n)
+    {
+        WebPageEntity page = new WebPageEntity(url(n), null, new Date(), "page " + n, null, 200, host(n));
+        page.setBody(this.body);
+        page.setCodec(PageCodec.ZSTD.name());
+        page.setBodySize(this.body.length);
+        return page;
+    }
+
+    private static String host(long n)
+    {
+        return "host" + (n % HOSTS) + ".example.com";
+    }
+
+    private static String url(long n)
+    {
+        return "http://" + host(n) + "/page/" + n;
+    }
+}
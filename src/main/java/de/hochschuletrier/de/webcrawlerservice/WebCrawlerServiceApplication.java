@@ -1,33 +1,69 @@
 package de.hochschuletrier.de.webcrawlerservice;
 
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.ClusterMembership;
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.ClusterNode;
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.CrawlShard;
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.HttpLinkTransport;
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.LinkBatch;
 import de.hochschuletrier.de.webcrawlerservice.crawler.controller.GenericCrawlerController;
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.PersistentFrontier;
+import de.hochschuletrier.de.webcrawlerservice.crawler.jobs.CrawlJob;
+import de.hochschuletrier.de.webcrawlerservice.crawler.jobs.CrawlJobScheduler;
 import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageValidation;
+import de.hochschuletrier.de.webcrawlerservice.persistence.buffer.WriteBehindBuffer;
 import de.hochschuletrier.de.webcrawlerservice.persistence.entity.CrawlerEntity;
 import de.hochschuletrier.de.webcrawlerservice.persistence.entity.DeadLinkEntity;
 import de.hochschuletrier.de.webcrawlerservice.persistence.entity.FileLinkEntity;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.WebPageEntity;
+import de.hochschuletrier.de.webcrawlerservice.persistence.query.CursorPage;
+import de.hochschuletrier.de.webcrawlerservice.persistence.query.CursorQueries;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.CrawlerEntityRepository;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.DeadLinkRepository;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.FileLinkRepository;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.WebPageEntityRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.storage.CrawlResultStore;
+import de.hochschuletrier.de.webcrawlerservice.persistence.storage.PageBodyStore;
 import de.hochschuletrier.de.webcrawlerservice.utils.GenericCrawlerData;
 import de.hochschuletrier.de.webcrawlerservice.utils.ServiceErrors;
 import de.hochschuletrier.de.webcrawlerservice.utils.ServiceMessages;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.cloud.netflix.eureka.EnableEurekaClient;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.task.TaskExecutor;
-import org.springframework.data.domain.Sort;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
 /**
  * Main Spring application class which starts the service
@@ -46,6 +82,9 @@ public class WebCrawlerServiceApplication
     @Autowired
     private ApplicationContext applicationContext;
 
+    @Autowired
+    private CrawlJobScheduler crawlJobScheduler;
+
     @Autowired
     private CrawlerEntityRepository crawlerEntityRepository;
 
@@ -58,6 +97,23 @@ public class WebCrawlerServiceApplication
     @Autowired
     private WebPageEntityRepository webPageEntityRepository;
 
+    @Autowired
+    private PageBodyStore pageBodyStore;
+
+    @Autowired
+    private CursorQueries cursorQueries;
+
+    @Autowired
+    private CrawlResultStore crawlResultStore;
+
+    @Autowired(required = false)
+    private ClusterMembership clusterMembership;
+
+    @Value("${crawler.frontier.directory:frontier}")
+    private String frontierDirectory;
+
+    private static final String NEXT_CURSOR = "X-Next-Cursor";
+
     private static final Logger logger = LoggerFactory.getLogger(WebCrawlerServiceApplication.class);
 
     @RequestMapping("/status")
@@ -68,28 +124,124 @@ public class WebCrawlerServiceApplication
 
 
     @RequestMapping("/status/crawlers")
-    public List<CrawlerEntity> crawlerStatus()
+    public ResponseEntity<StreamingResponseBody> crawlerStatus(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) Integer statusId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date since,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date until)
     {
-        Sort sort = new Sort(Sort.Direction.ASC,"uniqueName");
-        return crawlerEntityRepository.findAll(sort);
+        Query query = CursorQueries.equal(new Query(), "statusId", statusId);
+        CursorQueries.timeRange(query, "startedAt", since, until);
+        return results("/status/crawlers", accept, query, CrawlerEntity.class, CrawlerEntity::getId, cursor, limit);
+    }
+
+    /**
+     * @return queue depth, flush latency and written entities of the write behind buffers of the running crawlers
+     */
+    @RequestMapping("/status/write-behind")
+    public List<WriteBehindBuffer.Stats> writeBehindStatus()
+    {
+        return WriteBehindBuffer.openBufferStats();
+    }
+
+    /**
+     * @return the live instances which sharded crawls are partitioned across, empty if the cluster is not enabled
+     */
+    @RequestMapping("/status/cluster")
+    public List<ClusterNode> clusterStatus()
+    {
+        return clusterMembership != null ? clusterMembership.getLiveNodes() : Collections.emptyList();
     }
 
     @RequestMapping(value = "/dead-links", method = RequestMethod.GET)
-    public List<DeadLinkEntity> getDeadLinks()
+    public ResponseEntity<StreamingResponseBody> getDeadLinks(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date since,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date until)
     {
-        Sort sort = new Sort(Sort.Direction.ASC,"url");
-        return deadLinkRepository.findAll(sort);
+        Query query = CursorQueries.timeRange(new Query(), "lastCrawledAt", since, until);
+        return results("/dead-links", accept, query, DeadLinkEntity.class, DeadLinkEntity::getId, cursor, limit);
     }
 
+    /**
+     * @param extension file extension like pdf, with or without dot
+     */
     @RequestMapping(value = "/file-links", method = RequestMethod.GET)
-    public List<FileLinkEntity> getFileLinks()
+    public ResponseEntity<StreamingResponseBody> getFileLinks(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String extension)
+    {
+        String storedExtension = null;
+        if (extension != null && !extension.isEmpty())
+        {
+            // extensions are stored like HTMLExtractionUtils.getFileExtensionFromFileLink returns them
+            storedExtension = (extension.startsWith(".") ? extension : "." + extension).toUpperCase();
+        }
+        Query query = CursorQueries.equal(new Query(), "extension", storedExtension);
+        return results("/file-links", accept, query, FileLinkEntity.class, FileLinkEntity::getId, cursor, limit);
+    }
+
+    /**
+     * Metadata of the stored pages, without their bodies
+     */
+    @RequestMapping(value = "/pages", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> getPages(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String domain,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date since,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date until)
     {
-        Sort sort = new Sort(Sort.Direction.ASC,"fileURL");
-        return fileLinkRepository.findAll(sort);
+        Query query = CursorQueries.equal(new Query(), "domain", domain);
+        CursorQueries.timeRange(query, "crawlingDateTime", since, until);
+        query.fields().exclude("body").exclude("htmlDoc");
+        return results("/pages", accept, query, WebPageEntity.class, WebPageEntity::getId, cursor, limit);
     }
 
+    /**
+     * Answer a result request with one page of the result or, if the client accepts newline delimited JSON, with the
+     * whole result streamed from a Mongo cursor. The cursor of the next page is sent in a Link and an X-Next-Cursor
+     * header.
+     */
+    private <T> ResponseEntity<StreamingResponseBody> results(String path, String accept, Query query, Class<T> type,
+                                                              Function<T, String> idOf, String cursor, int limit)
+    {
+        if (!CursorQueries.isValidCursor(cursor))
+        {
+            byte[] error = ServiceErrors.invalidCursor(path, cursor).getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON_UTF8)
+                    .body(output -> output.write(error));
+        }
+        if (accept != null && accept.contains(CursorQueries.NDJSON))
+        {
+            return ResponseEntity.ok().contentType(MediaType.parseMediaType(CursorQueries.NDJSON))
+                    .body(output -> cursorQueries.stream(query, type, cursor, output));
+        }
+        CursorPage<T> page = cursorQueries.page(query, type, idOf, cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8);
+        if (page.getNextCursor() != null)
+        {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.getNextCursor()).toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+            response.header(NEXT_CURSOR, page.getNextCursor());
+        }
+        return response.body(output -> cursorQueries.write(page.getItems(), output));
+    }
+
+    /**
+     * @param priority crawls with a higher priority leave the job queue first
+     */
     @RequestMapping(value = "/start/generic-crawler", method = RequestMethod.POST, consumes = {"application/json"})
-    public String startGenericCrawler(@RequestBody GenericCrawlerData crawlerData)
+    public String startGenericCrawler(@RequestBody GenericCrawlerData crawlerData,
+                                      @RequestParam(defaultValue = "0") int priority)
     {
         String path = "/start/generic-crawler";
         if (crawlerData.getName().isEmpty() || crawlerData.getAllowedDomains().isEmpty() || crawlerData.getSeedURLs().isEmpty())
@@ -104,11 +256,271 @@ public class WebCrawlerServiceApplication
                     return ServiceErrors.urlNotValid(path, url, crawlerData);
                 }
             }
-            GenericCrawlerController gcc = applicationContext.getBean(GenericCrawlerController.class);
-            gcc.init(crawlerData, crawlerEntityRepository, deadLinkRepository, webPageEntityRepository, fileLinkRepository);
-            taskExecutor.execute(gcc);
-            return ServiceMessages.requestSuccessful(path, "CrawlerEntity started: " + crawlerData.getName());
+            if (crawlerData.isDistributed() && clusterMembership != null
+                    && CrawlShard.isOpen(clusterMembership.getLocalNode(), crawlerData.getName()))
+            {
+                return ServiceErrors.crawlerAlreadyRunning(path, crawlerData.getName());
+            }
+            CrawlJob job;
+            try
+            {
+                job = crawlJobScheduler.submit(crawlerData.getName(), priority, () ->
+                {
+                    GenericCrawlerController gcc = applicationContext.getBean(GenericCrawlerController.class);
+                    gcc.init(crawlerData, crawlerEntityRepository, deadLinkRepository, webPageEntityRepository,
+                            fileLinkRepository);
+                    return gcc;
+                });
+            } catch (RejectedExecutionException e)
+            {
+                return ServiceErrors.jobQueueFull(path, crawlerData.getName());
+            }
+            return ServiceMessages.requestSuccessful(path, "CrawlerEntity started as job " + job.getId() + ": "
+                    + crawlerData.getName());
+        }
+    }
+
+    /**
+     * Receive urls of a sharded crawl from another instance. If the crawl does not run on this instance yet, it is
+     * started with the urls as seeds, so instances which joined the cluster take over their hosts.
+     */
+    @RequestMapping(value = HttpLinkTransport.LINKS_PATH, method = RequestMethod.POST, consumes = {"application/json"})
+    public ResponseEntity<String> receiveLinks(@RequestBody LinkBatch batch)
+    {
+        String path = HttpLinkTransport.LINKS_PATH;
+        String received = ServiceMessages.requestSuccessful(path, "Received " + batch.getUrls().size() + " urls");
+        GenericCrawlerData crawlerData = batch.getCrawlerData();
+        if (clusterMembership == null)
+        {
+            // not accepted, so the sender keeps the urls and routes them again
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ServiceErrors.crawlNotRunning(path, batch.getCrawl()));
+        }
+        synchronized (this)
+        {
+            // the first batch of a crawl starts it, batches arriving in the meantime wait and are delivered then
+            if (CrawlShard.deliver(clusterMembership.getLocalNode(), batch))
+            {
+                return ResponseEntity.ok(received);
+            }
+            if (crawlerData == null)
+            {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(ServiceErrors.crawlNotRunning(path, batch.getCrawl()));
+            }
+            crawlerData.setSeedURLs(batch.getUrls());
+            try
+            {
+                crawlJobScheduler.submit(crawlerData.getName(), 0, () ->
+                {
+                    GenericCrawlerController gcc = applicationContext.getBean(GenericCrawlerController.class);
+                    gcc.init(crawlerData, crawlerEntityRepository, deadLinkRepository, webPageEntityRepository,
+                            fileLinkRepository);
+                    return gcc;
+                });
+            } catch (RejectedExecutionException e)
+            {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(ServiceErrors.jobQueueFull(path, crawlerData.getName()));
+            }
+        }
+        logger.info("Sharded crawl started by " + batch.getSender() + ": " + crawlerData.getName());
+        return ResponseEntity.ok(ServiceMessages.requestSuccessful(path,
+                "CrawlerEntity started: " + crawlerData.getName()));
+    }
+
+    /**
+     * Resume an interrupted crawl from its persistent frontier. Paused jobs are resumed with /jobs/{id}/resume. The
+     * status of the crawler only changes once its job runs, so a second request is rejected by the scheduler while
+     * the crawler has a job.
+     */
+    @RequestMapping(value = "/resume/generic-crawler", method = RequestMethod.POST)
+    public String resumeGenericCrawler(@RequestParam String uniqueName, @RequestParam(defaultValue = "0") int priority)
+    {
+        String path = "/resume/generic-crawler";
+        CrawlerEntity crawlerEntity = crawlerEntityRepository.findByUniqueName(uniqueName);
+        if (crawlerEntity == null || crawlerEntity.getStatusId() != 3)
+        {
+            return ServiceErrors.crawlerNotResumable(path, uniqueName);
         }
+        CrawlJob job;
+        try
+        {
+            job = crawlJobScheduler.submit(crawlerEntity.getName(), uniqueName, priority, () ->
+            {
+                GenericCrawlerController gcc = applicationContext.getBean(GenericCrawlerController.class);
+                return gcc.initResume(crawlerEntity, crawlerEntityRepository, deadLinkRepository,
+                        webPageEntityRepository, fileLinkRepository) ? gcc : null;
+            });
+        } catch (RejectedExecutionException e)
+        {
+            return ServiceErrors.jobQueueFull(path, crawlerEntity.getName());
+        } catch (IllegalStateException e)
+        {
+            return ServiceErrors.crawlerAlreadyResumed(path, uniqueName);
+        }
+        if (job == null)
+        {
+            return ServiceErrors.crawlerNotResumable(path, uniqueName);
+        }
+        return ServiceMessages.requestSuccessful(path, "CrawlerEntity resumed as job " + job.getId() + ": "
+                + uniqueName);
+    }
+
+    /**
+     * @return the queued, running, paused and last stopped crawl jobs, oldest first
+     */
+    @RequestMapping(value = "/jobs", method = RequestMethod.GET)
+    public List<CrawlJob> getJobs()
+    {
+        return crawlJobScheduler.getJobs();
+    }
+
+    /**
+     * Pause a crawl job. A running crawler stops after its requests in flight and keeps its frontier.
+     */
+    @RequestMapping(value = "/jobs/{id}/pause", method = RequestMethod.POST)
+    public String pauseJob(@PathVariable long id)
+    {
+        String path = "/jobs/" + id + "/pause";
+        if (!crawlJobScheduler.pause(id))
+        {
+            return ServiceErrors.jobNotChangeable(path, id, "paused");
+        }
+        return ServiceMessages.requestSuccessful(path, "Job paused: " + id);
+    }
+
+    /**
+     * Queue a paused crawl job again, it continues where it stopped
+     */
+    @RequestMapping(value = "/jobs/{id}/resume", method = RequestMethod.POST)
+    public String resumeJob(@PathVariable long id)
+    {
+        String path = "/jobs/" + id + "/resume";
+        try
+        {
+            if (!crawlJobScheduler.resume(id))
+            {
+                return ServiceErrors.jobNotChangeable(path, id, "resumed");
+            }
+        } catch (RejectedExecutionException e)
+        {
+            return ServiceErrors.jobQueueFull(path, crawlJobScheduler.getJob(id).getName());
+        }
+        return ServiceMessages.requestSuccessful(path, "Job resumed: " + id);
+    }
+
+    /**
+     * Cancel a crawl job. A running crawler stops after its requests in flight, its frontier is closed.
+     */
+    @RequestMapping(value = "/jobs/{id}/cancel", method = RequestMethod.POST)
+    public String cancelJob(@PathVariable long id)
+    {
+        String path = "/jobs/" + id + "/cancel";
+        if (!crawlJobScheduler.cancel(id))
+        {
+            return ServiceErrors.jobNotChangeable(path, id, "cancelled");
+        }
+        return ServiceMessages.requestSuccessful(path, "Job cancelled: " + id);
+    }
+
+    /**
+     * Compress the html of pages stored before compression was introduced. Runs in the background, the progress is
+     * logged.
+     */
+    @RequestMapping(value = "/migrate/page-bodies", method = RequestMethod.POST)
+    public String migratePageBodies(@RequestParam(defaultValue = "100") int batchSize)
+    {
+        String path = "/migrate/page-bodies";
+        taskExecutor.execute(() ->
+        {
+            int converted = pageBodyStore.migrate(webPageEntityRepository, batchSize);
+            logger.info("Page body migration finished, " + converted + " pages compressed");
+        });
+        return ServiceMessages.requestSuccessful(path, "Page body migration started with codec "
+                + pageBodyStore.getCodec());
+    }
+
+    /**
+     * Remove the duplicate pages, file links and dead links stored before results were upserted, so the unique url
+     * indexes can be built. Runs in the background, the progress is logged.
+     */
+    @RequestMapping(value = "/migrate/deduplicate", method = RequestMethod.POST)
+    public String deduplicateResults()
+    {
+        String path = "/migrate/deduplicate";
+        taskExecutor.execute(() ->
+        {
+            long removed = crawlResultStore.deduplicate();
+            logger.info("Deduplication finished, " + removed + " documents removed");
+        });
+        return ServiceMessages.requestSuccessful(path, "Deduplication started");
+    }
+
+    /**
+     * Crawlers which were still running or paused when the service stopped are marked as interrupted, if their
+     * persistent frontier is available, so they can be resumed. Crawlers without a frontier lost their state with the
+     * service, they are marked as failed and can not be resumed. The service also starts if the database is not
+     * reachable, the crawlers are not marked then.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void markInterruptedCrawlers()
+    {
+        File baseDirectory = new File(frontierDirectory);
+        try
+        {
+            List<CrawlerEntity> stopped = new ArrayList<>(crawlerEntityRepository.findByStatusId(2));
+            stopped.addAll(crawlerEntityRepository.findByStatusId(5));
+            for (CrawlerEntity crawlerEntity : stopped)
+            {
+                if (PersistentFrontier.exists(baseDirectory, crawlerEntity.getUniqueName()))
+                {
+                    crawlerEntity.setStatus("interrupted");
+                    crawlerEntity.setStatusId(3);
+                    logger.info("CrawlerEntity interrupted: " + crawlerEntity.getUniqueName());
+                } else
+                {
+                    crawlerEntity.setStatus("failed");
+                    crawlerEntity.setStatusId(7);
+                    logger.warn("CrawlerEntity failed, it has no frontier to resume from: "
+                            + crawlerEntity.getUniqueName());
+                }
+                crawlerEntityRepository.save(crawlerEntity);
+            }
+        } catch (DataAccessException e)
+        {
+            logger.warn("Could not mark the interrupted crawlers - " + e.toString());
+        }
+    }
+
+    /**
+     * Create the indexes behind the filters of the result endpoints and the url indexes of the upserts. The entities
+     * are no @Document classes, so Spring Data does not create indexes from annotations.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureResultIndexes()
+    {
+        try
+        {
+            cursorQueries.ensureIndex(DeadLinkEntity.class, "lastCrawledAt");
+            cursorQueries.ensureIndex(FileLinkEntity.class, "extension", "_id");
+            cursorQueries.ensureIndex(WebPageEntity.class, "domain", "_id");
+            cursorQueries.ensureIndex(WebPageEntity.class, "crawlingDateTime");
+            cursorQueries.ensureIndex(CrawlerEntity.class, "statusId", "_id");
+            crawlResultStore.ensureIndexes();
+        } catch (DataAccessException e)
+        {
+            logger.warn("Could not create the result indexes - " + e.toString());
+        }
+    }
+
+    /**
+     * Write the entities which are still buffered by running crawlers before the service stops
+     */
+    @PreDestroy
+    public void flushWriteBehindBuffers()
+    {
+        WriteBehindBuffer.closeAll();
     }
 
     public static void main(String[] args)
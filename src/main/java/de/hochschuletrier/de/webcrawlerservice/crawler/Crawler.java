@@ -1,28 +1,107 @@
 package de.hochschuletrier.de.webcrawlerservice.crawler;
 
 
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.CrawlShard;
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.PersistentFrontier;
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.RevisitScheduler;
+import de.hochschuletrier.de.webcrawlerservice.crawler.metrics.CrawlerMetrics;
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.SeenUrlStore;
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.UrlFrontier;
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.HostScheduler;
+import de.hochschuletrier.de.webcrawlerservice.crawler.journal.CrawlEvent;
+import de.hochschuletrier.de.webcrawlerservice.crawler.journal.CrawlJournal;
+import de.hochschuletrier.de.webcrawlerservice.crawler.robots.RobotsCache;
+import de.hochschuletrier.de.webcrawlerservice.crawler.robots.RobotsRules;
+import de.hochschuletrier.de.webcrawlerservice.crawler.sitemap.SitemapReader;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.AsyncPageFetcher;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.DomainRules;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.FetchResponse;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.JsoupPageFetcher;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.UrlCanonicalizer;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.WorkerExecutors;
+import de.hochschuletrier.de.webcrawlerservice.crawler.warc.WarcWriter;
 import de.hochschuletrier.de.webcrawlerservice.crawler.utils.Page;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageFetcher;
 import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageValidation;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.SimHash;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.SimHashIndex;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.StreamingLinkExtractor;
 import de.hochschuletrier.de.webcrawlerservice.persistence.entity.CrawlerEntity;
+import de.hochschuletrier.de.webcrawlerservice.persistence.buffer.BatchWriter;
+import de.hochschuletrier.de.webcrawlerservice.persistence.buffer.WriteBehindBuffer;
 import de.hochschuletrier.de.webcrawlerservice.persistence.entity.DeadLinkEntity;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.CrawlerEntityRepository;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.DeadLinkRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.storage.CrawlResultStore;
 import de.hochschuletrier.de.webcrawlerservice.utils.HTMLExtractionUtils;
-import org.jsoup.Connection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.jsoup.Jsoup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Basic CrawlerEntity class
  * Contains all options for crawling to the web in specified borders.
  *
- * Don't set the crawlingDelay to low, or your crawler might get blocked
+ * Don't set the crawlingDelay to low, or your crawler might get blocked. The delay is applied per host, so pages of
+ * different hosts are crawled in parallel. Up to maxWorkers requests are in flight at the same time; they are sent by
+ * a non blocking {@link PageFetcher}, so only the processing of fetched pages occupies a worker thread.
+ *
+ * Revisits are conditional requests with the stored Last-Modified and ETag of the page. Pages which were not modified
+ * are answered with 304 Not Modified and neither downloaded nor parsed again. Pages whose text nearly equals an already
+ * processed page are found by their SimHash and handed to the pipeline as reference to that page.
+ *
+ * The next revisit of a page is planned by the {@link RevisitScheduler} of the frontier from the observed change rate
+ * of the page. When no url is left to crawl, the crawler idles until the next revisit is due or, without revisitIdle,
+ * finishes and leaves the schedule to the next run.
+ *
+ * With robotsEnabled the robots.txt of every host is obeyed. Its rules are kept per host by a {@link RobotsCache} and
+ * checked before a link enters the frontier, once they are loaded, and again before the url is requested. The
+ * Crawl-delay of a host raises its delay in the scheduler, but never above MAX_ROBOTS_CRAWL_DELAY.
+ *
+ * With sitemapsEnabled the sitemaps of the seed hosts, declared in their robots.txt or at /sitemap.xml, are streamed
+ * by a {@link SitemapReader} on their own thread while the crawl runs, and their urls enter the frontier like links.
+ * A visited page whose sitemap lastmod is newer than its last visit is due for a revisit at once.
+ *
+ * With a {@link CrawlShard} the crawl is sharded across several instances of the service. The crawler only fetches
+ * urls of the hosts its instance owns, links of other hosts are forwarded to their owner, and urls it receives from
+ * other instances enter the frontier like links. Once the frontier is empty, the crawler lingers for further urls of
+ * the other instances before it finishes.
+ *
+ * Pages are parsed into a jsoup document by default. With streamingExtraction the links, title and text are taken
+ * from the response in one pass by the {@link StreamingLinkExtractor}, and the pipeline gets pages without document.
+ *
+ * A running crawler is stopped cooperatively with {@link #requestPause()} or {@link #requestCancel()}, or by
+ * interrupting its thread. It stops handing out urls, waits for the requests in flight and releases its threads. A
+ * paused crawler keeps its frontier and continues with the next {@link #run(String)}, a cancelled or interrupted one
+ * closes it. The frontier is never closed while the thread is interrupted, an interrupt would invalidate the
+ * environment of a persistent frontier.
+ *
+ * Fetches, skipped urls, dead links, stored pages and their timings are recorded as events in a binary
+ * {@link CrawlJournal} instead of log lines per url. Without journalDirectory the events are only counted, the counts
+ * are logged as summary when the run ends.
+ *
+ * With a warcDirectory every response is archived with its request by a {@link WarcWriter}, which compresses and
+ * writes the records on its own thread.
+ *
+ * Dead links are written in batches by a {@link WriteBehindBuffer}, subclasses can create further buffers for their
+ * pipeline with {@link #createWriteBehindBuffer(String, CrudRepository)} in {@link #openPipeline()}.
  *
  * @author: Oliver Fries
  */
@@ -30,27 +109,79 @@ import java.util.*;
 public abstract class Crawler
 {
     // Crawler parameters
-    //TODO: MaxDepth, page similarity
+    //TODO: MaxDepth
     private String crawlerName;
-    private List<String> allowedDomains; // Domains that are initially allowed to crawl
-    private List<String> deniedDomains; // Domains that are initially denied
+    private DomainRules domainRules; // compiled allowed and denied domains
     private List<String> seedUrls; // URLs where the crawler start it job
-    private HashMap<String, Date> foundAndVisitedUrlsWithTimestamp; // visited URLs with timestamp
-    private List<String> foundAndVisitedUrls; // list of all visited urls
-    private List<String> foundLinks; // all found links, that are still open to crawl
-    private List<String> deadLinks; // found links that are not valid
-    private Integer crawlingDelay; // delay between single requests
+    private UrlFrontier frontier; // open links queued per host and the state of all visited and dead links
+    private PersistentFrontier persistentFrontier; // disk store of the frontier, null if the frontier is in memory
+    private UrlCanonicalizer urlCanonicalizer; // brings urls into canonical form before they reach the frontier
+    private AtomicInteger avoidedFetches; // links which were only a variant of an already known url
+    private AtomicInteger notModifiedPages; // revisits which were answered with 304 Not Modified
+    private AtomicLong bytesSaved; // body bytes of not modified pages, which were not downloaded again
+    private SimHashIndex similarityIndex; // fingerprints of the processed pages, null if near duplicates are kept
+    private AtomicInteger nearDuplicates; // pages which nearly equal an already processed page
+    private AtomicInteger robotsDenied; // urls which were skipped, because the robots.txt of their host disallows them
+    private AtomicInteger robotsErrors; // urls which were skipped, because the robots.txt rules could not be loaded
+    private boolean robotsEnabled; // set true to obey the robots.txt of the crawled hosts
+    private long robotsTtl; // milliseconds the robots.txt rules of a host are cached
+    private RobotsCache robotsCache; // robots.txt rules of the current run, null if robots.txt is ignored
+    private boolean sitemapsEnabled; // set true to add the urls of the sitemaps of the seed hosts to the frontier
+    private int maxSitemapUrls; // maximum number of urls which are added from sitemaps per run
+    private AtomicInteger sitemapUrls; // urls which were added to the frontier from sitemaps
+    private SitemapReader sitemapReader; // reads the sitemaps of the current run, null if sitemaps are not read
+    private Thread sitemapThread; // runs the sitemapReader
+    private CrawlShard shard; // forwards links of hosts owned by other instances, null if the crawl is not sharded
+    private Integer crawlingDelay; // minimum delay between single requests to the same host
+    private Integer maxWorkers; // maximum number of hosts that are crawled in parallel
+    private Integer memoryBudget; // megabytes the seen url store may use before it spills to disk
+    private AtomicInteger pageCounter; // pages crawled in the current run
     private Integer timeout; // maximum timeout for crawler requests to a single page
     private Integer maxPages; // max pages to crawl
     private boolean revisiting; // Set true if pages should be revisited, and checked for changes
+    private boolean revisitIdle; // set true to wait for the next due revisit instead of finishing the crawl
+    private long revisitMinInterval; // minimum milliseconds between two visits of a page
+    private long revisitMaxInterval; // maximum milliseconds between two visits of a page
     private String userAgent; // the user agent, which the crawler starts it requests with
     private boolean followRedirects; // set true for following http redirects
+    private boolean resumed; // set true if the crawler continues a stopped crawl
+    private boolean jsoupFetcher; // set true to fetch pages with the blocking jsoup fallback
+    private boolean streamingExtraction; // set true to extract the links without building a jsoup document
+    private int maxBodySize; // bytes of a response which are downloaded and parsed at most
+    private PageFetcher pageFetcher; // downloads the pages, created per run if none is set
+    private ExecutorService workers; // processes fetched pages of the current run
+    private String executionMode; // run the workers on platform or virtual threads, see WorkerExecutors
+    private int writeBehindBatchSize; // maximum number of entities written with one bulk operation
+    private long writeBehindFlushInterval; // milliseconds a queued entity waits at most for its batch
+    private int writeBehindCapacity; // maximum number of queued entities per buffer before the crawl waits
+    private MeterRegistry meterRegistry = Metrics.globalRegistry; // registry of the crawl metrics
+    private CrawlerMetrics metrics; // metrics of the current run
+    private File journalDirectory; // directory of the crawl journals, null to only count the events
+    private int journalBufferSize; // bytes of events collected before they are written to the journal
+    private CrawlJournal journal = CrawlJournal.counting(); // events of the current run
+    private File warcDirectory; // directory of the WARC files, null if the responses are not archived
+    private long warcSegmentSize; // bytes after which the next WARC file is started
+    private int warcBufferSize; // bytes of records collected before they are written to the WARC file
+    private int warcCapacity; // maximum number of responses waiting to be archived before the crawl waits
+    private WarcWriter warcWriter; // archives the responses of the current run, null if they are not archived
+    private volatile StopRequest stopRequest; // why the current run should stop, null while it crawls
+    private StopRequest stoppedBy; // why the last run stopped, null if it finished
+    private final Object stopSignal = new Object(); // wakes a crawler which waits for the next revisit
+
+    // Format of the If-Modified-Since header, see RFC 7231 section 7.1.1.1
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter
+            .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH).withZone(ZoneOffset.UTC);
 
     // Logger parameter
     private static final Logger logger = LoggerFactory.getLogger(Crawler.class);
+    private static final long MAX_ROBOTS_CRAWL_DELAY = TimeUnit.MINUTES.toMillis(1); // higher Crawl-delays are capped
+    private static final int DEFAULT_MAX_SITEMAP_URLS = 1000000;
+    private static final long STOP_CHECK_INTERVAL = 500; // milliseconds between two stop checks while sitemaps are read
 
     // Repositories
     private DeadLinkRepository deadLinkRepository;
+    private WriteBehindBuffer<DeadLinkEntity> deadLinkWriter; // dead links of the current run
+    private CrawlResultStore crawlResultStore; // upserts the results, null to insert them with the repositories
     private CrawlerEntity crawlerEntity;
 
     @Autowired(required = true)
@@ -62,20 +193,20 @@ public abstract class Crawler
      *                           Do NOT user literals like 'www.news.google.de' use 'news.google' instead
      * @param seedUrls           URLS to start with
      * @param revisiting         revisit all URLs and crawl again, if changes appear
-     * @param deniedDomains      List of all denied Domains
+     * @param deniedDomains      List of all denied Domains and urls, see {@link DomainRules}
      * @param deadLinkRepository
      */
     public Crawler(String crawlerName, List<String> allowedDomains, List<String> seedUrls,
                    boolean revisiting, List<String> deniedDomains, CrawlerEntityRepository crawlerEntityRepository, DeadLinkRepository deadLinkRepository)
     {
         this.crawlerName = crawlerName;
-        this.allowedDomains = allowedDomains;
-        this.deniedDomains = deniedDomains;
+        this.domainRules = DomainRules.compile(allowedDomains, deniedDomains);
         this.seedUrls = seedUrls;
         this.revisiting = revisiting;
 
         this.crawlingDelay = 3000;
         this.timeout = 30000;
+        this.maxWorkers = 4;
         this.followRedirects = true;
         this.crawlerEntityRepository = crawlerEntityRepository;
         this.deadLinkRepository = deadLinkRepository;
@@ -89,7 +220,7 @@ public abstract class Crawler
      *                       Do NOT user literals like 'www.news.google.de' use 'news.google' instead
      * @param seedUrls       URLS to start with
      * @param revisiting     revisit all URLs and crawl again, if changes appear
-     * @param deniedDomains  List of all denied Domains
+     * @param deniedDomains  List of all denied Domains and urls, see {@link DomainRules}
      * @param crawlingDelay  Set custom delay between a URl Request Minimum should be 2000 Milliseconds
      * @param timeout        Set the timeout after a request for a single page should be aborted
      */
@@ -97,27 +228,82 @@ public abstract class Crawler
                    Integer timeout, boolean revisiting, List<String> deniedDomains, boolean followRedirects)
     {
         this.crawlerName = crawlerName;
-        this.allowedDomains = allowedDomains;
-        this.deniedDomains = deniedDomains;
+        this.domainRules = DomainRules.compile(allowedDomains, deniedDomains);
         this.seedUrls = seedUrls;
         this.crawlingDelay = crawlingDelay;
         this.timeout = timeout;
+        this.maxWorkers = 4;
         this.revisiting = revisiting;
         this.followRedirects = followRedirects;
         initObjects();
         saveCrawler();
     }
 
+    /**
+     * Resume a crawler, which stopped before it was finished. The stored CrawlerEntity is reused instead of creating a
+     * new cycle.
+     *
+     * @param crawlerEntity  the stored CrawlerEntity of the stopped crawler
+     * @param allowedDomains contains all allowed domains for this crawler
+     * @param seedUrls       URLS the crawler started with
+     * @param revisiting     revisit all URLs and crawl again, if changes appear
+     * @param deniedDomains  List of all denied Domains and urls, see {@link DomainRules}
+     */
+    public Crawler(CrawlerEntity crawlerEntity, List<String> allowedDomains, List<String> seedUrls,
+                   boolean revisiting, List<String> deniedDomains, CrawlerEntityRepository crawlerEntityRepository, DeadLinkRepository deadLinkRepository)
+    {
+        this.crawlerName = crawlerEntity.getName();
+        this.domainRules = DomainRules.compile(allowedDomains, deniedDomains);
+        this.seedUrls = seedUrls;
+        this.revisiting = revisiting;
+
+        this.crawlingDelay = 3000;
+        this.timeout = 30000;
+        this.maxWorkers = 4;
+        this.followRedirects = true;
+        this.crawlerEntityRepository = crawlerEntityRepository;
+        this.deadLinkRepository = deadLinkRepository;
+        this.crawlerEntity = crawlerEntity;
+        this.resumed = true;
+        initObjects();
+        if (crawlerEntity.getCrawledPages() != null)
+        {
+            this.pageCounter.set(crawlerEntity.getCrawledPages());
+        }
+    }
+
     /**
      * Initialise Objects which are not part of constructor Parameters
      */
     private void initObjects()
     {
-        this.foundAndVisitedUrlsWithTimestamp = new HashMap<>();
-        this.foundLinks = new ArrayList<>();
-        this.deadLinks = new ArrayList<>();
         this.maxPages = 0;
-        this.foundAndVisitedUrls = new ArrayList<>();
+        this.pageCounter = new AtomicInteger();
+        this.executionMode = WorkerExecutors.PLATFORM;
+        this.urlCanonicalizer = new UrlCanonicalizer();
+        this.avoidedFetches = new AtomicInteger();
+        this.notModifiedPages = new AtomicInteger();
+        this.bytesSaved = new AtomicLong();
+        this.similarityIndex = new SimHashIndex();
+        this.nearDuplicates = new AtomicInteger();
+        this.robotsDenied = new AtomicInteger();
+        this.robotsErrors = new AtomicInteger();
+        this.robotsEnabled = true;
+        this.robotsTtl = RobotsCache.DEFAULT_TTL;
+        this.sitemapsEnabled = true;
+        this.maxSitemapUrls = DEFAULT_MAX_SITEMAP_URLS;
+        this.sitemapUrls = new AtomicInteger();
+        this.maxBodySize = PageFetcher.DEFAULT_MAX_BODY_SIZE;
+        this.revisitIdle = true;
+        this.revisitMinInterval = RevisitScheduler.DEFAULT_MIN_INTERVAL;
+        this.revisitMaxInterval = RevisitScheduler.DEFAULT_MAX_INTERVAL;
+        this.writeBehindBatchSize = WriteBehindBuffer.DEFAULT_BATCH_SIZE;
+        this.writeBehindFlushInterval = WriteBehindBuffer.DEFAULT_FLUSH_INTERVAL;
+        this.writeBehindCapacity = WriteBehindBuffer.DEFAULT_CAPACITY;
+        this.journalBufferSize = CrawlJournal.DEFAULT_BUFFER_SIZE;
+        this.warcSegmentSize = WarcWriter.DEFAULT_SEGMENT_SIZE;
+        this.warcBufferSize = WarcWriter.DEFAULT_BUFFER_SIZE;
+        this.warcCapacity = WarcWriter.DEFAULT_CAPACITY;
     }
 
     /**
@@ -155,318 +341,1613 @@ public abstract class Crawler
 
     /**
      * Run the crawler
+     * <p>
+     * The next ready host is taken from the scheduler and its url is crawled on the worker pool. The call returns
+     * after all urls are crawled or maxPages is reached. Revisiting crawlers return when no revisit is scheduled or,
+     * without revisitIdle, when no revisit is due. A stop request or an interrupt ends the run early, a paused
+     * crawler continues when it is run again.
      *
      * @param userAgent will be used for Crawling requests use the UserAgent.class static Strings
      */
     public void run(String userAgent)
     {
-        int pageCounter = 0;
         logger.info("Start CrawlerEntity: " + this.crawlerName);
         this.userAgent = userAgent;
-        this.foundLinks = this.seedUrls;
+        this.stoppedBy = null;
+        getFrontier();
+        for (String seedUrl : this.seedUrls)
+        {
+            String url = this.urlCanonicalizer.canonicalize(seedUrl);
+            if (url != null)
+            {
+                if (!forwardToOwner(url))
+                {
+                    this.frontier.offer(url);
+                }
+            } else
+            {
+                logger.warn(this.crawlerName + ": Skipping seed url " + seedUrl);
+            }
+        }
+        this.frontier.getRevisits().setIntervals(this.revisitMinInterval, this.revisitMaxInterval);
         saveCrawlerStarted();
-        while (!foundLinks.isEmpty())
+        this.journal = this.journalDirectory != null
+                ? CrawlJournal.open(this.journalDirectory, getUniqueName(), this.journalBufferSize)
+                : CrawlJournal.counting();
+        this.warcWriter = this.warcDirectory != null ? WarcWriter.open(this.warcDirectory, getUniqueName(),
+                this.warcSegmentSize, this.warcBufferSize, this.warcCapacity) : null;
+        this.metrics = new CrawlerMetrics(this.meterRegistry, this.crawlerName);
+        this.metrics.bindFrontier(this.frontier::size);
+        boolean ownFetcher = this.pageFetcher == null;
+        if (ownFetcher)
+        {
+            this.pageFetcher = createPageFetcher();
+        }
+        this.robotsCache = this.robotsEnabled ? new RobotsCache(this.pageFetcher, userAgent, this.robotsTtl) : null;
+        this.deadLinkWriter = this.crawlResultStore != null
+                ? createWriteBehindBuffer("dead-links", this.crawlResultStore::upsertDeadLinks)
+                : createWriteBehindBuffer("dead-links", this.deadLinkRepository);
+        openPipeline();
+        this.workers = WorkerExecutors.newExecutor(this.executionMode, this.crawlerName + "-worker-",
+                getWorkerThreads());
+        this.metrics.bindWorkers(this.workers);
+        if (this.shard != null)
+        {
+            this.shard.attach(this::receiveForwarded);
+        }
+        startSitemapIngestion();
+        while (!maxPagesReached() && this.stopRequest == null)
         {
             try
             {
-                String pageToCrawl = foundLinks.get(0);
-                foundLinks.remove(0);
-                logger.info("Crawling: " + this.crawlerName + " - " + pageToCrawl);
-                if (crawlPage(pageToCrawl))
+                if (this.revisiting)
                 {
-                    pageCounter++;
+                    this.frontier.requeueDueRevisits(System.currentTimeMillis());
                 }
-                // If maxPages is 0 then no maximum is set
-                if (this.maxPages != 0)
+                String pageToCrawl = frontier.take();
+                if (pageToCrawl == null)
                 {
-                    // Stop loop when maxPages is reached
-                    if (pageCounter >= maxPages)
+                    if (this.stopRequest == null
+                            && (awaitSitemapIngestion() || awaitForwardedLinks() || awaitNextRevisit()))
                     {
-                        break;
-                    } else
-                    {
-                        logger.info(this.crawlerName + " reached " + pageCounter + " of " + this.maxPages + " to crawl.");
+                        continue;
                     }
+                    break;
                 }
-                logger.info(this.crawlerName + " found " + pageCounter + " Pages.");
-                logger.info("URLs to crawl: " + this.foundLinks.size());
-                Thread.sleep(this.crawlingDelay);
+                this.workers.execute(() -> crawlAndRelease(pageToCrawl));
             } catch (InterruptedException e)
             {
                 logger.warn(this.crawlerName + ": Crawling Interrupted - " + e.toString());
-                e.printStackTrace();
+                requestStop(StopRequest.INTERRUPT);
             }
         }
-        saveCrawlerFinished(pageCounter);
-        logOutputCrawlerResult(pageCounter);
-    }
-
-    private void logOutputCrawlerResult(int pageCounter)
-    {
-        logger.info("Stopping crawler " + this.crawlerName + "\nCrawled " + pageCounter + " urls\nFound " + this.foundLinks.size() + " links");
-        logger.info("#################################################");
-        logger.info("Crawled pages: " + this.foundAndVisitedUrls.size());
-        for (String s : this.foundAndVisitedUrls)
+        // the cleanup closes the frontier, so it runs without the interrupt flag, which is restored afterwards
+        StopRequest stop = Thread.interrupted() ? StopRequest.INTERRUPT : this.stopRequest;
+        stopSitemapIngestion();
+        shutdownWorkers();
+        if (ownFetcher)
+        {
+            this.pageFetcher.close();
+            this.pageFetcher = null;
+        }
+        this.robotsCache = null;
+        closePipeline();
+        this.deadLinkWriter.close();
+        logger.info(this.deadLinkWriter.toString());
+        this.journal.close();
+        logger.info(this.journal.toString());
+        if (this.warcWriter != null)
         {
-            logger.info(s);
+            this.warcWriter.close();
+            logger.info(this.warcWriter.toString());
         }
-        logger.info("#################################################");
-        logger.info("Found Links");
-        for (String s : this.foundLinks)
+        this.metrics.close();
+        if (stop == StopRequest.PAUSE)
+        {
+            pause();
+        } else
         {
-            logger.info(s);
+            if (this.shard != null)
+            {
+                this.shard.close();
+            }
+            this.frontier.close();
+            this.stoppedBy = stop;
+            if (stop == StopRequest.CANCEL)
+            {
+                saveCrawlerStopped("cancelled", 6, pageCounter.get());
+            } else if (stop == StopRequest.INTERRUPT)
+            {
+                saveCrawlerStopped("interrupted", 3, pageCounter.get());
+            } else
+            {
+                saveCrawlerStopped("finished", 4, pageCounter.get());
+            }
+            logOutputCrawlerResult(pageCounter.get());
         }
-        logger.info("#################################################");
-        logger.info("Found and Visited Links with Timestamp");
-        for (String s : foundAndVisitedUrlsWithTimestamp.keySet())
+        if (stop == StopRequest.INTERRUPT)
         {
-            logger.info(s);
+            Thread.currentThread().interrupt();
         }
-        logger.info("#################################################");
-        logger.info("Dead Links: " + this.deadLinks.size());
     }
 
     /**
-     * Save the start time of the crawler into the database
+     * Ask the running crawler to pause. It stops handing out urls, waits for the requests in flight and releases its
+     * threads, but keeps its frontier. The next {@link #run(String)} continues the crawl.
      */
-    private void saveCrawlerStarted()
+    public void requestPause()
     {
-        Date dateTime = HTMLExtractionUtils.getCurrentDate();
-        this.crawlerEntity.setStartedAt(dateTime);
-        this.crawlerEntity.setStatus("running");
-        this.crawlerEntity.setStatusId(2);
-        crawlerEntityRepository.save(this.crawlerEntity);
+        requestStop(StopRequest.PAUSE);
     }
 
-
-    private void saveCrawlerFinished(int pageCounter)
+    /**
+     * Ask the running crawler to stop for good. It waits for the requests in flight and closes its frontier.
+     */
+    public void requestCancel()
     {
-        Date dateTime = HTMLExtractionUtils.getCurrentDate();
-        this.crawlerEntity.setFinishedAt(dateTime);
-        this.crawlerEntity.setStatus("finished");
-        this.crawlerEntity.setStatusId(4);
-        this.crawlerEntity.setCrawledPages(pageCounter);
-        crawlerEntityRepository.save(this.crawlerEntity);
+        requestStop(StopRequest.CANCEL);
     }
 
     /**
-     * Crawl page and extract all basic information
-     *
-     * @param url which will be crawled
+     * Cancel a crawler which does not run, because it was not started yet or is paused, and close its frontier
      */
-    private boolean crawlPage(String url)
+    public void cancel()
     {
-        if (PageValidation.urlAllowed(this.allowedDomains, this.foundAndVisitedUrlsWithTimestamp, this.deadLinks,
-                this.deniedDomains, url))
+        if (this.shard != null)
         {
-            Page page = getPage(url);
-            if (foundAndVisitedUrlsWithTimestamp.containsKey(url) && revisiting)
-            {
-                // Extract the links if page is modified check by compare timestamps and Hash
-                // TODO: valiadate page similarity
-                // Delete changed Content detection, because it detects also little changes like changed ads on a new
-                // page load
-                // if (pageHasModifiedDate(page.getLastModified(), foundAndVisitedUrlsWithTimestamp.get(url)) && pageHasChangedContent(page))
-                if (pageHasModifiedDate(page.getLastModified(), foundAndVisitedUrlsWithTimestamp.get(url)))
-                {
-                    extractLinks(page);
-                    pagePipeline(page);
-                }
-            } else
-            {
-                logger.info(page.toString());
-                if (page.getLastModified() != null)
-                {
-                    this.foundAndVisitedUrlsWithTimestamp.put(url, page.getLastModified());
-                }
-                extractLinks(page);
-                pagePipeline(page);
-                // TODO: only check files which are younger than 1/2 year & don't add after 4 times checking
-                // if revisiting is true, add page to found Links again, to crawl the page again
-                if (revisiting && !this.foundLinks.contains(url))
-                {
-                    this.foundLinks.add(url);
-                }
-            }
-            return true;
-        } else
+            this.shard.close();
+        }
+        if (this.frontier != null)
         {
-            logger.warn("Adding URL: " + url + " to list of denied links");
-            validateAndSaveDeadLink(url);
-            foundLinks.remove(url);
-            return false;
+            this.frontier.close();
+        } else if (this.persistentFrontier != null)
+        {
+            this.persistentFrontier.close();
         }
+        this.stoppedBy = StopRequest.CANCEL;
+        saveCrawlerStopped("cancelled", 6, pageCounter.get());
+        logger.info("Cancelled crawler " + this.crawlerName);
     }
 
     /**
-     * Returns the html document from the url
-     *
-     * @param url this url will be downloaded
-     * @return Page Object
+     * @return boolean: True if the last run stopped because of {@link #requestPause()}
      */
-    private Page getPage(String url)
+    public boolean isPaused()
     {
-        Page page = new Page(url);
-        try
+        return this.stoppedBy == StopRequest.PAUSE;
+    }
+
+    /**
+     * @return boolean: True if the crawler was cancelled
+     */
+    public boolean isCancelled()
+    {
+        return this.stoppedBy == StopRequest.CANCEL;
+    }
+
+    /**
+     * @return boolean: True if the last run stopped because its thread was interrupted
+     */
+    public boolean isInterrupted()
+    {
+        return this.stoppedBy == StopRequest.INTERRUPT;
+    }
+
+    /**
+     * Let the run stop and wake it, wherever it waits. A cancel or interrupt is not turned into a pause.
+     */
+    private void requestStop(StopRequest request)
+    {
+        synchronized (this.stopSignal)
         {
-            Connection.Response response = Jsoup.connect(url).ignoreContentType(true)
-                    .userAgent(this.userAgent)
-                    .referrer("http://www.google.com")
-                    .timeout(this.timeout)
-                    .followRedirects(true)
-                    .followRedirects(this.followRedirects)
-                    .execute();
-            page.setHeaderMap(response.headers());
-            page.setHtmlBody(response.parse());
-            page.setLastModified(parseDateTime(response.header("last-modified"), page));
-            page.setStatusCode(response.statusCode());
-            page.setCrawlingDateTime(HTMLExtractionUtils.getCurrentDate());
-            this.foundAndVisitedUrls.add(url);
-            return page;
-        } catch (IOException e)
+            if (this.stopRequest == null || request != StopRequest.PAUSE)
+            {
+                this.stopRequest = request;
+            }
+            this.stopSignal.notifyAll();
+        }
+        getFrontier().getScheduler().setSuspended(true);
+        if (this.shard != null)
         {
-            this.foundAndVisitedUrls.add(url);
-            validateAndSaveDeadLink(url);
-            return page;
+            this.shard.setSuspended(true);
         }
     }
 
     /**
-     * Validate if url really is a dead link and save to DB if true
-     *
-     * @param url
+     * Keep the frontier and the shard of a paused run, so the next run continues the crawl
      */
-    private void validateAndSaveDeadLink(String url)
+    private void pause()
     {
-        if (!PageValidation.isUrlValidURI(url) || !PageValidation.isUrlValidURI(url))
+        synchronized (this.stopSignal)
+        {
+            this.stopRequest = null;
+        }
+        this.stoppedBy = StopRequest.PAUSE;
+        this.frontier.getScheduler().setSuspended(false);
+        if (this.shard != null)
         {
-            logger.warn("Adding URL: " + url + " to list of dead links");
-            deadLinks.add(url);
-            this.deadLinkRepository.save(new DeadLinkEntity(url, HTMLExtractionUtils.getCurrentDate()));
+            this.shard.setSuspended(false);
         }
+        saveCrawlerStopped("paused", 5, pageCounter.get());
+        logger.info("Paused crawler " + this.crawlerName + " after " + pageCounter.get() + " urls, "
+                + this.frontier.size() + " urls queued");
     }
 
     /**
-     * Parse the crawling timestamp to java.util.Date
+     * Start the download of a single url on a worker thread. The url is processed and its host released once the
+     * response arrived, so the next url of the host can be scheduled after the crawlingDelay. No thread waits for the
+     * response in the meantime.
      *
-     * @param timeStampString TimeStamp String which will be parsed into Date Object. Must have the following pattern:
-     *                        EEE, d MMM yyyy HH:mm:ss Z for example: "Wed, 21 Oct 2015 07:28:00 GMT"
-     * @return Date Object
+     * @param pageToCrawl the url taken from the scheduler
      */
-    private Date parseDateTime(String timeStampString, Page page)
+    private void crawlAndRelease(String pageToCrawl)
     {
+        if (this.shard != null && !this.shard.isLocal(pageToCrawl))
+        {
+            // the host moved to another instance since the url was queued
+            this.shard.forward(pageToCrawl);
+            this.frontier.handOff(pageToCrawl);
+            return;
+        }
+        boolean fetching = false;
         try
         {
-            return HTMLExtractionUtils.parseDateFromTimeStamp(timeStampString,
-                    "EEE, d MMM yyyy HH:mm:ss Z", Locale.ENGLISH, page);
-        } catch (Exception e)
+            if (readyToCrawl(pageToCrawl))
+            {
+                RobotsCache robots = this.robotsCache;
+                if (robots == null)
+                {
+                    fetch(pageToCrawl);
+                } else
+                {
+                    robots.rulesFor(pageToCrawl)
+                            .whenComplete((rules, failure) -> fetchIfAllowed(pageToCrawl, rules, failure));
+                }
+                fetching = true;
+            }
+        } catch (RuntimeException e)
         {
-            e.printStackTrace();
-            logger.error("Error while parsing timestamp: " + timeStampString + ", for page " + page.getUrl());
-            logger.error(e.toString());
+            logger.error(this.crawlerName + ": Error while crawling " + pageToCrawl + " - " + e.toString());
+        } finally
+        {
+            if (!fetching)
+            {
+                frontier.release(pageToCrawl);
+            }
         }
-        return null;
     }
 
-
     /**
-     * Compare both date and validate if the new date is younger/newer then the old one.
+     * Request an url once the robots.txt of its host is loaded, or release it if the robots.txt disallows it. If the
+     * rules could not be loaded at all, the url is released as skipped with the reason robots-error and counted.
      *
-     * @param newDate Date Object
-     * @param oldDate Date Object
-     * @return boolean: True if new Date is younger
+     * @param pageToCrawl the url taken from the scheduler
+     * @param rules       robots.txt rules of the host, null if loading them failed
+     * @param failure     the error of the robots.txt download or null
      */
-    private boolean pageHasModifiedDate(Date newDate, Date oldDate)
+    private void fetchIfAllowed(String pageToCrawl, RobotsRules rules, Throwable failure)
     {
-        if (newDate != null && oldDate != null)
+        boolean fetching = false;
+        try
         {
-            if (newDate.after(oldDate))
+            if (failure != null)
             {
-                return true;
+                logger.error(this.crawlerName + ": Could not load robots.txt for " + pageToCrawl + " - "
+                        + failure.toString());
+                this.journal.record(CrawlEvent.Type.SKIPPED, pageToCrawl, 0, 0, 0, "robots-error");
+                this.robotsErrors.incrementAndGet();
+                return;
+            }
+            applyCrawlDelay(pageToCrawl, rules);
+            if (rules.isAllowed(pageToCrawl))
+            {
+                fetch(pageToCrawl);
+                fetching = true;
             } else
             {
-                logger.info("Not Modified: " + newDate.toString() + "|Old Date: " + oldDate.toString());
-                return false;
+                robotsDenied(pageToCrawl);
             }
-        } else
+        } catch (RuntimeException e)
         {
-            return false;
+            logger.error(this.crawlerName + ": Error while crawling " + pageToCrawl + " - " + e.toString());
+        } finally
+        {
+            if (!fetching)
+            {
+                frontier.release(pageToCrawl);
+            }
         }
     }
 
     /**
-     * Extract all links from a page and add them to the local foundLinks param
+     * Send the request of an url, the response is processed on a worker
      *
-     * @param page Page object to search for links
+     * @param pageToCrawl the url taken from the scheduler
      */
-    private void extractLinks(Page page)
+    private void fetch(String pageToCrawl)
     {
+        long start = System.nanoTime();
+        Map<String, String> headers = conditionalHeaders(pageToCrawl);
+        this.pageFetcher.fetch(pageToCrawl, headers)
+                .whenComplete((response, failure) -> recordFetch(pageToCrawl, start, response))
+                .whenCompleteAsync((response, failure) -> processAndRelease(pageToCrawl, headers, response, failure),
+                        this.workers);
+    }
 
-        for (String l : HTMLExtractionUtils.getLinksFromDocument(page))
+    /**
+     * Use the Crawl-delay of a host as its delay in the scheduler, if it is longer than the crawlingDelay
+     *
+     * @param url   an url of the host
+     * @param rules robots.txt rules of the host
+     */
+    private void applyCrawlDelay(String url, RobotsRules rules)
+    {
+        long crawlDelay = Math.min(rules.getCrawlDelay(), MAX_ROBOTS_CRAWL_DELAY);
+        if (crawlDelay > this.crawlingDelay)
         {
-            if (PageValidation.urlAllowed(this.allowedDomains, this.foundAndVisitedUrlsWithTimestamp, this.deadLinks,
-                    this.deniedDomains, l))
-            {
-                //add link to list if it doesn't already exist in list and is not already declared as dead Link
-                if (!foundLinks.contains(l) && !this.deadLinks.contains(l) && !this.foundAndVisitedUrls.contains(l))
-                {
-                    foundLinks.add(l);
-                }
-            } else
-            {
-                this.deadLinks.add(l);
-            }
+            this.frontier.getScheduler().setHostDelay(HostScheduler.hostOf(url), crawlDelay);
         }
     }
 
-
-    public void setCrawlingDelay(Integer crawlingDelay)
+    /**
+     * @param url a link which passed the domain rules
+     * @return boolean: True if the robots.txt of the host is loaded and disallows the url
+     */
+    private boolean isDeniedByRobots(String url)
     {
-        this.crawlingDelay = crawlingDelay;
+        RobotsCache robots = this.robotsCache;
+        if (robots == null)
+        {
+            return false;
+        }
+        // starts the download of the robots.txt of unknown hosts, their links are checked again before the request
+        RobotsRules rules = robots.rulesFor(url).getNow(null);
+        return rules != null && !rules.isAllowed(url);
     }
 
-
-    public Integer getCrawlingDelay()
+    private void robotsDenied(String url)
     {
-        return crawlingDelay;
+        this.journal.record(CrawlEvent.Type.SKIPPED, url, 0, 0, 0, "robots");
+        this.robotsDenied.incrementAndGet();
+        this.frontier.markDead(url);
     }
 
+    /**
+     * Record the latency and size of a response, before it waits for a worker
+     *
+     * @param url      the requested url
+     * @param start    nano time of the request
+     * @param response the response or null if the request failed
+     */
+    private void recordFetch(String url, long start, FetchResponse response)
+    {
+        long nanos = System.nanoTime() - start;
+        int status = response == null ? 0 : response.getStatusCode();
+        int bytes = response == null || response.getBody() == null ? 0 : response.getBody().length;
+        this.metrics.recordFetch(url, nanos, status, bytes);
+        this.journal.record(CrawlEvent.Type.FETCH, url, status, bytes, nanos, null);
+    }
 
-    public Integer getMaxPages()
+    /**
+     * Queue a response for the WARC files, before it is processed
+     *
+     * @param url      the requested url
+     * @param headers  the conditional headers of the request
+     * @param response the response
+     */
+    private void archive(String url, Map<String, String> headers, FetchResponse response)
     {
-        return maxPages;
+        Map<String, String> requestHeaders = new LinkedHashMap<>(headers.size() + 2);
+        requestHeaders.put("User-Agent", this.userAgent);
+        requestHeaders.putAll(headers);
+        this.warcWriter.archive(url, requestHeaders, response);
     }
 
-    public void setMaxPages(Integer maxPages)
+    /**
+     * Build the validators of a revisited url, so the server can answer with 304 Not Modified if the page did not
+     * change since the last visit
+     *
+     * @param url the url to request
+     * @return If-Modified-Since and If-None-Match headers or an empty map if the url was not visited before
+     */
+    private Map<String, String> conditionalHeaders(String url)
     {
-        this.maxPages = maxPages;
+        if (!this.revisiting)
+        {
+            return Collections.emptyMap();
+        }
+        Map<String, String> headers = new HashMap<>(4);
+        Date lastModified = this.frontier.getLastModified(url);
+        if (lastModified != null)
+        {
+            headers.put("If-Modified-Since", HTTP_DATE.format(lastModified.toInstant()));
+        }
+        String etag = this.frontier.getETag(url);
+        if (etag != null)
+        {
+            headers.put("If-None-Match", etag);
+        }
+        return headers;
     }
 
-    public boolean isFollowRedirects()
+    /**
+     * Process the response of an url on a worker thread and release its host afterwards
+     *
+     * @param pageToCrawl the requested url
+     * @param headers     the conditional headers of the request
+     * @param response    the response or null if the request failed
+     * @param failure     the error of a failed request
+     */
+    private void processAndRelease(String pageToCrawl, Map<String, String> headers, FetchResponse response,
+                                   Throwable failure)
     {
-        return followRedirects;
+        long start = System.nanoTime();
+        try
+        {
+            if (this.warcWriter != null && response != null)
+            {
+                archive(pageToCrawl, headers, response);
+            }
+            if (crawlPage(toPage(pageToCrawl, response, failure)))
+            {
+                pageCounter.incrementAndGet();
+                this.metrics.pageCrawled();
+            }
+            this.journal.record(CrawlEvent.Type.PROCESSED, pageToCrawl, 0, 0, System.nanoTime() - start, null);
+        } catch (RuntimeException e)
+        {
+            logger.error(this.crawlerName + ": Error while crawling " + pageToCrawl + " - " + e.toString());
+        } finally
+        {
+            frontier.release(pageToCrawl);
+        }
     }
 
-    public void setFollowRedirects(boolean followRedirects)
+    /**
+     * Read the sitemaps of the seed hosts on their own thread
+     */
+    private void startSitemapIngestion()
     {
-        this.followRedirects = followRedirects;
+        if (!this.sitemapsEnabled)
+        {
+            return;
+        }
+        SitemapReader reader = new SitemapReader(this.pageFetcher, SitemapReader.DEFAULT_MAX_SITEMAPS);
+        this.sitemapReader = reader;
+        this.sitemapThread = new Thread(() ->
+        {
+            long urls = reader.read(sitemapLocations(), this::addSitemapUrl);
+            logger.info(this.crawlerName + ": Read " + urls + " sitemap urls, " + this.sitemapUrls.get()
+                    + " added to the frontier");
+        }, this.crawlerName + "-sitemaps");
+        this.sitemapThread.setDaemon(true);
+        this.sitemapThread.start();
     }
 
-    public void setTimeout(Integer timeout)
+    /**
+     * @return the sitemaps declared in the robots.txt of the seed hosts or their /sitemap.xml
+     */
+    private List<String> sitemapLocations()
     {
-        this.timeout = timeout;
+        Set<String> sitemaps = new LinkedHashSet<>();
+        RobotsCache robots = this.robotsCache;
+        for (String seedUrl : this.seedUrls)
+        {
+            String url = this.urlCanonicalizer.canonicalize(seedUrl);
+            if (url == null || this.shard != null && !this.shard.isLocal(url))
+            {
+                // the sitemaps of a host are read by the instance which owns it
+                continue;
+            }
+            List<String> declared = robots != null ? robots.rulesFor(url).join().getSitemaps()
+                    : Collections.emptyList();
+            if (declared.isEmpty())
+            {
+                sitemaps.add(URI.create(url).resolve("/sitemap.xml").toString());
+            } else
+            {
+                sitemaps.addAll(declared);
+            }
+        }
+        return new ArrayList<>(sitemaps);
     }
 
     /**
-     * Use this method to process Pages in own pipeline
-     * Add links to super.foundLinks if you want to change the abstact class link management
+     * Add an url of a sitemap to the frontier or make a visited page due, which was modified after its last visit
      *
-     * @param page Page Object
+     * @param loc          the url of the sitemap entry
+     * @param lastModified lastmod of the entry in milliseconds, -1 if unknown
+     * @return boolean: True to continue reading the sitemaps
      */
-    protected abstract void pagePipeline(Page page);
-
-    public void setCrawlerEntityrepository(CrawlerEntityRepository crawlerEntityRepository)
+    private boolean addSitemapUrl(String loc, long lastModified)
     {
-        this.crawlerEntityRepository = crawlerEntityRepository;
+        String url = this.urlCanonicalizer.canonicalize(loc);
+        if (url == null)
+        {
+            return true;
+        }
+        if (this.frontier.isKnown(url))
+        {
+            if (this.revisiting && lastModified >= 0 && this.frontier.isVisited(url))
+            {
+                this.frontier.getRevisits().lastModified(url, lastModified, System.currentTimeMillis());
+            }
+            return true;
+        }
+        if (PageValidation.urlAllowed(this.domainRules, this.frontier, url) && !forwardToOwner(url)
+                && !isDeniedByRobots(url) && this.frontier.offer(url))
+        {
+            return this.sitemapUrls.incrementAndGet() < this.maxSitemapUrls && !maxPagesReached();
+        }
+        return !maxPagesReached();
+    }
+
+    /**
+     * Wait for the next url of the sitemap ingestion, once all queued urls are crawled. The crawl continues as soon
+     * as a sitemap url is queued, not only after all sitemaps were read.
+     *
+     * @return boolean: True if the sitemaps were still read, false if they are finished
+     * @throws InterruptedException if the crawler gets interrupted while it waits
+     */
+    private boolean awaitSitemapIngestion() throws InterruptedException
+    {
+        Thread thread = this.sitemapThread;
+        if (thread == null || !thread.isAlive())
+        {
+            return false;
+        }
+        while (thread.isAlive() && this.stopRequest == null)
+        {
+            if (this.frontier.getScheduler().awaitQueued(STOP_CHECK_INTERVAL))
+            {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stop the sitemap ingestion of the current run
+     */
+    private void stopSitemapIngestion()
+    {
+        if (this.sitemapThread == null)
+        {
+            return;
+        }
+        // not interrupted, an interrupt would invalidate the environment of a persistent frontier
+        this.sitemapReader.stop();
+        try
+        {
+            this.sitemapThread.join(this.timeout);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        this.sitemapThread = null;
+        this.sitemapReader = null;
+    }
+
+    /**
+     * Wait for urls from the other instances of a sharded crawl, once all queued urls are crawled
+     *
+     * @return boolean: True if urls were received, false if the crawl is not sharded or none arrived in time
+     * @throws InterruptedException if the crawler gets interrupted while it waits
+     */
+    private boolean awaitForwardedLinks() throws InterruptedException
+    {
+        return this.shard != null && this.shard.awaitLinks();
+    }
+
+    /**
+     * Forward an url to the instance which owns its host, if the crawl is sharded
+     *
+     * @param url a canonical url
+     * @return boolean: True if the url was forwarded and is not crawled by this crawler
+     */
+    private boolean forwardToOwner(String url)
+    {
+        if (this.shard == null || this.shard.isLocal(url))
+        {
+            return false;
+        }
+        this.shard.forward(url);
+        return true;
+    }
+
+    /**
+     * Add the urls which other instances of a sharded crawl forwarded to this crawler. The urls are checked like
+     * links, urls of hosts this instance does not own anymore are forwarded again.
+     *
+     * @param urls canonical urls
+     */
+    private void receiveForwarded(List<String> urls)
+    {
+        for (String url : urls)
+        {
+            if (this.frontier.isKnown(url) || forwardToOwner(url))
+            {
+                continue;
+            }
+            if (!PageValidation.urlAllowed(this.domainRules, this.frontier, url))
+            {
+                this.frontier.markDead(url);
+            } else if (isDeniedByRobots(url))
+            {
+                robotsDenied(url);
+            } else
+            {
+                this.frontier.offer(url);
+            }
+        }
+    }
+
+    /**
+     * Wait until the next revisit is due, once all queued urls are crawled
+     *
+     * @return boolean: True if a revisit is due now, false if the crawl is finished
+     * @throws InterruptedException if the crawler gets interrupted while it waits
+     */
+    private boolean awaitNextRevisit() throws InterruptedException
+    {
+        long nextVisit = this.frontier.getRevisits().nextVisit();
+        if (!this.revisiting || !this.revisitIdle || nextVisit == RevisitScheduler.NONE)
+        {
+            return false;
+        }
+        long waitTime = nextVisit - System.currentTimeMillis();
+        if (waitTime > 0)
+        {
+            logger.info(this.crawlerName + ": Waiting " + waitTime + " ms for the next revisit");
+            synchronized (this.stopSignal)
+            {
+                if (this.stopRequest == null)
+                {
+                    this.stopSignal.wait(waitTime);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return boolean: True if maxPages is set and the crawler crawled at least maxPages pages
+     */
+    private boolean maxPagesReached()
+    {
+        return this.maxPages != 0 && pageCounter.get() >= this.maxPages;
+    }
+
+    /**
+     * Wait for the requests in flight and the running workers to finish their current page and stop the worker pool
+     */
+    private void shutdownWorkers()
+    {
+        try
+        {
+            if (!this.frontier.getScheduler().awaitIdle(this.timeout * 2L))
+            {
+                logger.warn(this.crawlerName + ": Requests did not finish in time");
+            }
+            this.workers.shutdown();
+            if (!this.workers.awaitTermination(this.timeout * 2L, TimeUnit.MILLISECONDS))
+            {
+                logger.warn(this.crawlerName + ": Workers did not finish in time");
+                this.workers.shutdownNow();
+            }
+        } catch (InterruptedException e)
+        {
+            this.workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the async fetcher or the jsoup fallback, if the crawler is configured to use it
+     */
+    private PageFetcher createPageFetcher()
+    {
+        if (this.jsoupFetcher)
+        {
+            return new JsoupPageFetcher(this.userAgent, this.timeout, this.followRedirects, this.maxWorkers,
+                    this.executionMode, this.maxBodySize);
+        }
+        return new AsyncPageFetcher(this.userAgent, this.timeout, this.followRedirects, this.maxWorkers,
+                this.maxBodySize);
+    }
+
+    /**
+     * Fetched pages are parsed and stored on a few platform threads, the requests themselves do not occupy a worker.
+     * Virtual threads are cheap while they wait for the database, so up to maxWorkers pages are processed at once.
+     *
+     * @return maximum number of pages processed at the same time in the current run
+     */
+    private int getWorkerThreads()
+    {
+        if (WorkerExecutors.usesVirtualThreads(this.executionMode))
+        {
+            return this.maxWorkers;
+        }
+        return Math.max(1, Math.min(this.maxWorkers, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Log the summary counters of a finished run, the single urls are in the journal
+     */
+    private void logOutputCrawlerResult(int pageCounter)
+    {
+        StringBuilder summary = new StringBuilder("Stopping crawler ").append(this.crawlerName)
+                .append("\nCrawled urls: ").append(pageCounter)
+                .append("\nQueued urls left: ").append(this.frontier.size())
+                .append("\nVisited urls: ").append(this.frontier.count(UrlFrontier.UrlState.VISITED))
+                .append("\nVisited urls with timestamp: ").append(this.frontier.countWithLastModified())
+                .append("\nDead links: ").append(this.frontier.count(UrlFrontier.UrlState.DEAD))
+                .append("\nAvoided fetches of url variants: ").append(this.avoidedFetches.get())
+                .append("\nNot modified pages: ").append(this.notModifiedPages.get())
+                .append("; bytes saved: ").append(this.bytesSaved.get())
+                .append("\nNear duplicate pages: ").append(this.nearDuplicates.get())
+                .append("\nDisallowed by robots.txt: ").append(this.robotsDenied.get())
+                .append("; skipped after robots.txt errors: ").append(this.robotsErrors.get())
+                .append("\nAdded from sitemaps: ").append(this.sitemapUrls.get());
+        if (this.shard != null)
+        {
+            summary.append("\nForwarded to other instances: ").append(this.shard.getForwarded())
+                    .append("; received: ").append(this.shard.getReceived());
+        }
+        if (this.revisiting)
+        {
+            summary.append("\nScheduled revisits: ").append(this.frontier.getRevisits().size());
+        }
+        summary.append("\n").append(this.frontier.getStates());
+        logger.info(summary.toString());
+    }
+
+    /**
+     * Save the start time of the crawler into the database
+     */
+    private void saveCrawlerStarted()
+    {
+        Date dateTime = HTMLExtractionUtils.getCurrentDate();
+        // kept when a resumed or paused crawl continues
+        if (this.crawlerEntity.getStartedAt() == null)
+        {
+            this.crawlerEntity.setStartedAt(dateTime);
+        }
+        this.crawlerEntity.setStatus("running");
+        this.crawlerEntity.setStatusId(2);
+        crawlerEntityRepository.save(this.crawlerEntity);
+    }
+
+
+    /**
+     * Save the end of a run into the database
+     *
+     * @param status   finished, paused, cancelled or interrupted
+     * @param statusId 4, 5, 6 or 3
+     */
+    private void saveCrawlerStopped(String status, int statusId, int pageCounter)
+    {
+        Date dateTime = HTMLExtractionUtils.getCurrentDate();
+        this.crawlerEntity.setFinishedAt(dateTime);
+        this.crawlerEntity.setStatus(status);
+        this.crawlerEntity.setStatusId(statusId);
+        this.crawlerEntity.setCrawledPages(pageCounter);
+        this.crawlerEntity.setAvoidedFetches(this.avoidedFetches.get());
+        this.crawlerEntity.setNotModifiedPages(this.notModifiedPages.get());
+        this.crawlerEntity.setBytesSaved(this.bytesSaved.get());
+        this.crawlerEntity.setNearDuplicates(this.nearDuplicates.get());
+        crawlerEntityRepository.save(this.crawlerEntity);
+    }
+
+    /**
+     * Check if an url taken from the frontier should be requested
+     *
+     * @param url the url to check
+     * @return boolean: True if the url is allowed and was not stored before
+     */
+    private boolean readyToCrawl(String url)
+    {
+        if (PageValidation.urlAllowed(this.domainRules, this.frontier, url))
+        {
+            if (this.resumed && !this.revisiting && isAlreadyStored(url))
+            {
+                // stored before the crawler stopped, but the frontier was not written anymore
+                this.journal.record(CrawlEvent.Type.SKIPPED, url, 0, 0, 0, "stored");
+                return false;
+            }
+            return true;
+        } else
+        {
+            this.journal.record(CrawlEvent.Type.SKIPPED, url, 0, 0, 0, "denied");
+            validateAndSaveDeadLink(url);
+            return false;
+        }
+    }
+
+    /**
+     * Crawl page and extract all basic information
+     *
+     * @param page the fetched page
+     * @return boolean: True if the page was processed
+     */
+    private boolean crawlPage(Page page)
+    {
+        String url = page.getUrl();
+        if (page.isNotModified())
+        {
+            scheduleRevisit(page, false);
+            return true;
+        }
+        if (!page.isHtml())
+        {
+            // dead links and non html responses have no document to process
+            return false;
+        }
+        if (frontier.hasValidators(url) && revisiting)
+        {
+            // Extract the links if page is modified check by compare timestamps and Hash
+            // Delete changed Content detection, because it detects also little changes like changed ads on a new
+            // page load
+            // if (pageHasModifiedDate(page.getLastModified(), frontier.getLastModified(url)) && pageHasChangedContent(page))
+            // Servers which ignore the conditional request send the full page again, so the validators are compared
+            boolean modified = pageHasModifiedDate(page.getLastModified(), frontier.getLastModified(url))
+                    || pageHasChangedETag(page.getEtag(), frontier.getETag(url));
+            if (modified)
+            {
+                storeValidators(page);
+                extractLinks(page);
+                detectNearDuplicate(page);
+                pagePipeline(page);
+            }
+            scheduleRevisit(page, modified);
+        } else
+        {
+            storeValidators(page);
+            extractLinks(page);
+            detectNearDuplicate(page);
+            pagePipeline(page);
+            // pages without validators are compared by their text
+            scheduleRevisit(page, null);
+        }
+        return true;
+    }
+
+    /**
+     * Plan the next visit of a page from its changes, if the crawler is revisiting
+     *
+     * @param page     the checked page
+     * @param modified True if the validators changed, null if the fingerprint of the text decides
+     */
+    private void scheduleRevisit(Page page, Boolean modified)
+    {
+        if (!this.revisiting)
+        {
+            return;
+        }
+        long fingerprint = page.getSimHash();
+        if (fingerprint == 0 && !page.isNotModified() && modified == null)
+        {
+            fingerprint = SimHash.fingerprint(page.getText());
+        }
+        this.frontier.getRevisits().visited(page.getUrl(), modified, fingerprint, System.currentTimeMillis());
+    }
+
+    /**
+     * Fingerprint the text of a page and look up an already processed page with nearly the same text, like a print
+     * view, a session id variant or a mirror. A found page is set as duplicateOf, otherwise the page is indexed.
+     *
+     * @param page the fetched page
+     */
+    private void detectNearDuplicate(Page page)
+    {
+        if (this.similarityIndex == null)
+        {
+            return;
+        }
+        String text = page.getText();
+        if (text.isEmpty())
+        {
+            return;
+        }
+        page.setSimHash(SimHash.fingerprint(text));
+        String original = this.similarityIndex.addIfAbsent(page.getSimHash(), page.getUrl());
+        if (original != null && !original.equals(page.getUrl()))
+        {
+            this.journal.record(CrawlEvent.Type.DUPLICATE, page.getUrl(), 0, 0, 0, original);
+            page.setDuplicateOf(original);
+            this.nearDuplicates.incrementAndGet();
+            this.metrics.nearDuplicateFound();
+        }
+    }
+
+    /**
+     * Store the validators of a fetched page in the frontier. The entity tag and body length are only needed for
+     * conditional revisits.
+     *
+     * @param page the fetched page
+     */
+    private void storeValidators(Page page)
+    {
+        if (page.getLastModified() != null)
+        {
+            this.frontier.setLastModified(page.getUrl(), page.getLastModified());
+        }
+        if (revisiting)
+        {
+            this.frontier.setValidators(page.getUrl(), page.getEtag(), page.getContentLength());
+        }
+    }
+
+    /**
+     * Create the page of a fetched url. Failed requests and error responses are handled as dead links.
+     *
+     * @param url      the requested url
+     * @param response the response or null if the request failed
+     * @param failure  the error of a failed request
+     * @return Page Object, without html document if the url could not be fetched or is no html page
+     */
+    private Page toPage(String url, FetchResponse response, Throwable failure)
+    {
+        Page page = new Page(url);
+        if (failure != null || response.getStatusCode() >= 400)
+        {
+            logger.debug("Request failed {} - {}", url, failure != null ? failure : response);
+            this.frontier.markVisited(url);
+            validateAndSaveDeadLink(url);
+            return page;
+        }
+        page.setHeaderMap(response.getHeaders());
+        if (response.getStatusCode() == 304)
+        {
+            // the page did not change since the last visit, the response has no body
+            page.setNotModified(true);
+            page.setStatusCode(response.getStatusCode());
+            page.setLastModified(this.frontier.getLastModified(url));
+            page.setEtag(this.frontier.getETag(url));
+            page.setCrawlingDateTime(HTMLExtractionUtils.getCurrentDate());
+            this.notModifiedPages.incrementAndGet();
+            this.metrics.pageNotModified();
+            long saved = this.frontier.getContentLength(url);
+            this.bytesSaved.addAndGet(saved);
+            this.journal.record(CrawlEvent.Type.NOT_MODIFIED, url, 304, saved, 0, null);
+            this.frontier.markVisited(url);
+            return page;
+        }
+        // only parse html responses, other bodies are skipped
+        long parseStart = System.nanoTime();
+        if (PageValidation.isHtmlContentType(response.getContentType()) && this.streamingExtraction)
+        {
+            StreamingLinkExtractor.extract(page, response.getBody(), this.maxBodySize, response.getCharset(),
+                    response.getUrl());
+            this.metrics.recordParse("streaming", System.nanoTime() - parseStart);
+        } else if (PageValidation.isHtmlContentType(response.getContentType()))
+        {
+            try
+            {
+                page.setHtmlBody(Jsoup.parse(new ByteArrayInputStream(response.getBody()), response.getCharset(),
+                        response.getUrl()));
+                this.metrics.recordParse("jsoup", System.nanoTime() - parseStart);
+                page.setBody(response.getBody());
+                // jsoup falls back to the meta tag or UTF-8 if the content type has no charset
+                page.setCharset(page.getHtmlBody().charset().name());
+            } catch (IOException e)
+            {
+                logger.warn("Could not parse " + url + " - " + e.toString());
+            }
+        } else
+        {
+            this.journal.record(CrawlEvent.Type.SKIPPED, url, response.getStatusCode(), 0, 0,
+                    "content type " + response.getContentType());
+        }
+        page.setLastModified(parseDateTime(response.getHeader("last-modified"), page));
+        page.setEtag(response.getHeader("etag"));
+        page.setContentLength(response.getBody() == null ? 0 : response.getBody().length);
+        page.setStatusCode(response.getStatusCode());
+        page.setCrawlingDateTime(HTMLExtractionUtils.getCurrentDate());
+        this.frontier.markVisited(url);
+        return page;
+    }
+
+    /**
+     * Validate if url really is a dead link and save to DB if true
+     *
+     * @param url
+     */
+    private void validateAndSaveDeadLink(String url)
+    {
+        if (!PageValidation.isUrlValidURI(url) || !PageValidation.isUrlValidURI(url))
+        {
+            this.journal.record(CrawlEvent.Type.DEAD, url, 0, 0, 0, null);
+            frontier.markDead(url);
+            this.deadLinkWriter.add(new DeadLinkEntity(url, HTMLExtractionUtils.getCurrentDate()));
+        }
+    }
+
+    /**
+     * Parse the crawling timestamp to java.util.Date
+     *
+     * @param timeStampString TimeStamp String which will be parsed into Date Object. Must have the following pattern:
+     *                        EEE, d MMM yyyy HH:mm:ss Z for example: "Wed, 21 Oct 2015 07:28:00 GMT"
+     * @return Date Object
+     */
+    private Date parseDateTime(String timeStampString, Page page)
+    {
+        try
+        {
+            return HTMLExtractionUtils.parseDateFromTimeStamp(timeStampString,
+                    "EEE, d MMM yyyy HH:mm:ss Z", Locale.ENGLISH, page);
+        } catch (Exception e)
+        {
+            e.printStackTrace();
+            logger.error("Error while parsing timestamp: " + timeStampString + ", for page " + page.getUrl());
+            logger.error(e.toString());
+        }
+        return null;
+    }
+
+
+    /**
+     * Compare both date and validate if the new date is younger/newer then the old one.
+     *
+     * @param newDate Date Object
+     * @param oldDate Date Object
+     * @return boolean: True if new Date is younger
+     */
+    private boolean pageHasModifiedDate(Date newDate, Date oldDate)
+    {
+        if (newDate != null && oldDate != null)
+        {
+            if (newDate.after(oldDate))
+            {
+                return true;
+            } else
+            {
+                return false;
+            }
+        } else
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @param newETag entity tag of the fetched page
+     * @param oldETag stored entity tag of the last visit
+     * @return boolean: True if both entity tags are known and differ
+     */
+    private boolean pageHasChangedETag(String newETag, String oldETag)
+    {
+        return newETag != null && oldETag != null && !newETag.equals(oldETag);
+    }
+
+    /**
+     * Extract all links from a page and add the unknown ones to the frontier
+     *
+     * @param page Page object to search for links
+     */
+    private void extractLinks(Page page)
+    {
+
+        for (String l : HTMLExtractionUtils.getLinksFromDocument(page))
+        {
+            String link = this.urlCanonicalizer.canonicalize(l);
+            if (link == null)
+            {
+                // no http or https link
+                continue;
+            }
+            // skip links which are already queued, visited or declared as dead Link
+            if (this.frontier.isKnown(link))
+            {
+                boolean variant = !link.equals(l);
+                if (variant)
+                {
+                    // the link only differs from a known url by its notation
+                    this.avoidedFetches.incrementAndGet();
+                }
+                this.metrics.linkFound(true, variant);
+                continue;
+            }
+            this.metrics.linkFound(false, false);
+            if (!PageValidation.urlAllowed(this.domainRules, this.frontier, link))
+            {
+                this.frontier.markDead(link);
+            } else if (forwardToOwner(link))
+            {
+                logger.debug("Forwarded to the owner of its host: {}", link);
+            } else if (isDeniedByRobots(link))
+            {
+                robotsDenied(link);
+            } else
+            {
+                this.frontier.offer(link);
+            }
+        }
+    }
+
+
+    /**
+     * @return the canonicalizer, which is applied to all seed urls and links before they reach the frontier
+     */
+    public UrlCanonicalizer getUrlCanonicalizer()
+    {
+        return urlCanonicalizer;
+    }
+
+    /**
+     * @return number of links which were not crawled, because they were only a variant of an already known url
+     */
+    public int getAvoidedFetches()
+    {
+        return this.avoidedFetches.get();
+    }
+
+    /**
+     * @return number of revisited pages which were answered with 304 Not Modified
+     */
+    public int getNotModifiedPages()
+    {
+        return this.notModifiedPages.get();
+    }
+
+    /**
+     * @return body bytes which were not downloaded again, because revisited pages were not modified
+     */
+    public long getBytesSaved()
+    {
+        return this.bytesSaved.get();
+    }
+
+    /**
+     * @return number of pages which nearly equal an already processed page
+     */
+    public int getNearDuplicates()
+    {
+        return this.nearDuplicates.get();
+    }
+
+    /**
+     * @param nearDuplicateDistance maximum number of differing SimHash bits of a near duplicate, larger values than 7
+     *                              are limited to 7. A negative value turns the detection off. Must be called before
+     *                              the crawler runs.
+     */
+    public void setNearDuplicateDistance(Integer nearDuplicateDistance)
+    {
+        this.similarityIndex = nearDuplicateDistance < 0 ? null
+                : new SimHashIndex(Math.min(nearDuplicateDistance, SimHashIndex.MAX_SUPPORTED_DISTANCE));
+    }
+
+    /**
+     * @param pageFetcher fetcher for the next runs, it is not closed by the crawler
+     */
+    public void setPageFetcher(PageFetcher pageFetcher)
+    {
+        this.pageFetcher = pageFetcher;
+    }
+
+    public boolean isJsoupFetcher()
+    {
+        return jsoupFetcher;
+    }
+
+    /**
+     * @param jsoupFetcher set true to fetch pages with the blocking jsoup fallback instead of the async fetcher
+     */
+    public void setJsoupFetcher(boolean jsoupFetcher)
+    {
+        this.jsoupFetcher = jsoupFetcher;
+    }
+
+    public boolean isStreamingExtraction()
+    {
+        return streamingExtraction;
+    }
+
+    /**
+     * @param streamingExtraction set true to extract links, title and text in one pass over the response instead of
+     *                            parsing a jsoup document. The pipeline gets pages without htmlBody then.
+     */
+    public void setStreamingExtraction(boolean streamingExtraction)
+    {
+        this.streamingExtraction = streamingExtraction;
+    }
+
+    public int getMaxBodySize()
+    {
+        return maxBodySize;
+    }
+
+    /**
+     * @param maxBodySize bytes of a response which are downloaded and parsed at most, longer pages are truncated.
+     *                    Applies to the fetchers the crawler creates itself.
+     */
+    public void setMaxBodySize(int maxBodySize)
+    {
+        this.maxBodySize = maxBodySize;
+    }
+
+    public String getExecutionMode()
+    {
+        return executionMode;
+    }
+
+    /**
+     * @param executionMode WorkerExecutors.PLATFORM or WorkerExecutors.VIRTUAL
+     */
+    public void setExecutionMode(String executionMode)
+    {
+        this.executionMode = executionMode;
+    }
+
+    public void setCrawlingDelay(Integer crawlingDelay)
+    {
+        this.crawlingDelay = crawlingDelay;
+        if (this.frontier != null)
+        {
+            this.frontier.getScheduler().setDefaultDelay(crawlingDelay);
+        }
+    }
+
+
+    public Integer getCrawlingDelay()
+    {
+        return crawlingDelay;
+    }
+
+
+    public Integer getMaxWorkers()
+    {
+        return maxWorkers;
+    }
+
+    /**
+     * @param maxWorkers maximum number of hosts which are crawled in parallel
+     */
+    public void setMaxWorkers(Integer maxWorkers)
+    {
+        this.maxWorkers = maxWorkers;
+        if (this.frontier != null)
+        {
+            this.frontier.getScheduler().setMaxInFlight(maxWorkers);
+        }
+    }
+
+    public Integer getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    /**
+     * Set the memory budget of the seen url store of an in memory frontier. Must be called before the crawler runs, a
+     * persistent frontier uses the cache size it was opened with instead.
+     *
+     * @param memoryBudget megabytes the seen url store may use before it spills to disk
+     */
+    public void setMemoryBudget(Integer memoryBudget)
+    {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Store the frontier on disk instead of memory, so the crawl can be resumed after a restart. Must be called
+     * before the crawler runs.
+     *
+     * @param persistentFrontier the opened persistent frontier of this crawler
+     */
+    public void usePersistentFrontier(PersistentFrontier persistentFrontier)
+    {
+        this.persistentFrontier = persistentFrontier;
+    }
+
+    /**
+     * @return the unique name of the CrawlerEntity of this crawler
+     */
+    public String getUniqueName()
+    {
+        return this.crawlerEntity.getUniqueName();
+    }
+
+    public boolean isResumed()
+    {
+        return resumed;
+    }
+
+    public Integer getMaxPages()
+    {
+        return maxPages;
+    }
+
+    public void setMaxPages(Integer maxPages)
+    {
+        this.maxPages = maxPages;
+    }
+
+    /**
+     * @param minInterval minimum milliseconds between two visits of a page
+     * @param maxInterval maximum milliseconds between two visits of a page, a page which never changes is checked
+     *                    at this interval
+     */
+    public void setRevisitIntervals(long minInterval, long maxInterval)
+    {
+        this.revisitMinInterval = minInterval;
+        this.revisitMaxInterval = maxInterval;
+    }
+
+    public boolean isRevisitIdle()
+    {
+        return revisitIdle;
+    }
+
+    /**
+     * @param revisitIdle set true to wait for the next due revisit, false to finish the crawl when no revisit is due
+     */
+    public void setRevisitIdle(boolean revisitIdle)
+    {
+        this.revisitIdle = revisitIdle;
+    }
+
+    public int getRobotsDenied()
+    {
+        return robotsDenied.get();
+    }
+
+    public int getRobotsErrors()
+    {
+        return robotsErrors.get();
+    }
+
+    public boolean isRobotsEnabled()
+    {
+        return robotsEnabled;
+    }
+
+    /**
+     * @param robotsEnabled set true to obey the robots.txt and the Crawl-delay of the crawled hosts
+     */
+    public void setRobotsEnabled(boolean robotsEnabled)
+    {
+        this.robotsEnabled = robotsEnabled;
+    }
+
+    /**
+     * @param robotsTtl milliseconds the robots.txt rules of a host are cached, before they are downloaded again
+     */
+    public void setRobotsTtl(long robotsTtl)
+    {
+        this.robotsTtl = robotsTtl;
+    }
+
+    public int getSitemapUrls()
+    {
+        return sitemapUrls.get();
+    }
+
+    public boolean isSitemapsEnabled()
+    {
+        return sitemapsEnabled;
+    }
+
+    /**
+     * @param sitemapsEnabled set true to add the urls of the sitemaps of the seed hosts to the frontier
+     * @param maxSitemapUrls  maximum number of urls which are added from sitemaps per run
+     */
+    public void setSitemaps(boolean sitemapsEnabled, int maxSitemapUrls)
+    {
+        this.sitemapsEnabled = sitemapsEnabled;
+        this.maxSitemapUrls = maxSitemapUrls;
+    }
+
+    public CrawlShard getShard()
+    {
+        return shard;
+    }
+
+    /**
+     * Shard the crawl across the instances of the service. Must be called before the crawler runs, the shard is
+     * closed at the end of the run.
+     *
+     * @param shard the opened shard of this crawl, null to crawl all hosts on this instance
+     */
+    public void setShard(CrawlShard shard)
+    {
+        this.shard = shard;
+    }
+
+    public boolean isFollowRedirects()
+    {
+        return followRedirects;
+    }
+
+    public void setFollowRedirects(boolean followRedirects)
+    {
+        this.followRedirects = followRedirects;
+    }
+
+    public void setTimeout(Integer timeout)
+    {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Configure the write behind buffers of the next runs
+     *
+     * @param batchSize     maximum number of entities written with one bulk operation
+     * @param flushInterval milliseconds a queued entity waits at most for its batch
+     * @param capacity      maximum number of queued entities per buffer before the crawl waits for the database
+     */
+    public void setWriteBehind(int batchSize, long flushInterval, int capacity)
+    {
+        this.writeBehindBatchSize = batchSize;
+        this.writeBehindFlushInterval = flushInterval;
+        this.writeBehindCapacity = capacity;
+    }
+
+    /**
+     * Create a write behind buffer with the configured batch size, flush interval and capacity
+     *
+     * @param name       name of the buffer, prefixed with the crawler name
+     * @param repository repository the entities are written to
+     * @return the buffer, which must be closed by the caller
+     */
+    protected <T> WriteBehindBuffer<T> createWriteBehindBuffer(String name, CrudRepository<T, ?> repository)
+    {
+        return createWriteBehindBuffer(name, (BatchWriter<T>) repository::saveAll);
+    }
+
+    /**
+     * Create a write behind buffer with the configured batch size, flush interval and capacity
+     *
+     * @param name        name of the buffer, prefixed with the crawler name
+     * @param batchWriter writes the batches, for example as upsert of the {@link CrawlResultStore}
+     * @return the buffer, which must be closed by the caller
+     */
+    protected <T> WriteBehindBuffer<T> createWriteBehindBuffer(String name, BatchWriter<T> batchWriter)
+    {
+        if (this.metrics == null)
+        {
+            return new WriteBehindBuffer<>(this.crawlerName + "-" + name, batchWriter, this.writeBehindBatchSize,
+                    this.writeBehindFlushInterval, this.writeBehindCapacity);
+        }
+        WriteBehindBuffer<T> buffer = new WriteBehindBuffer<>(this.crawlerName + "-" + name,
+                this.metrics.timed(name, batchWriter), this.writeBehindBatchSize, this.writeBehindFlushInterval,
+                this.writeBehindCapacity);
+        this.metrics.bindWriteBehindQueue(name, buffer::getQueueDepth);
+        return buffer;
+    }
+
+    /**
+     * Write the events of the runs into a journal file per crawler
+     *
+     * @param directory  directory of the journals, null to only count the events
+     * @param bufferSize bytes of events collected before they are written
+     */
+    public void setJournal(File directory, int bufferSize)
+    {
+        this.journalDirectory = directory;
+        this.journalBufferSize = bufferSize;
+    }
+
+    /**
+     * Archive the responses of the runs as WARC files with a CDX index per file
+     *
+     * @param directory   directory of the WARC files, null to not archive the responses
+     * @param segmentSize bytes after which the next WARC file is started
+     * @param bufferSize  bytes of records collected before they are written
+     * @param capacity    maximum number of responses waiting to be archived before the crawl waits
+     */
+    public void setWarc(File directory, long segmentSize, int bufferSize, int capacity)
+    {
+        this.warcDirectory = directory;
+        this.warcSegmentSize = segmentSize;
+        this.warcBufferSize = bufferSize;
+        this.warcCapacity = capacity;
+    }
+
+    /**
+     * @return the WARC writer of the current or last run, null if the responses are not archived
+     */
+    public WarcWriter getWarcWriter()
+    {
+        return warcWriter;
+    }
+
+    /**
+     * @return events of the current or last run
+     */
+    public CrawlJournal getJournal()
+    {
+        return journal;
+    }
+
+    /**
+     * @param meterRegistry registry of the crawl metrics, the global Micrometer registry by default
+     */
+    public void setMeterRegistry(MeterRegistry meterRegistry)
+    {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param crawlResultStore store which writes the results as upserts keyed on the url, null to insert every result
+     *                         with the repositories
+     */
+    public void setCrawlResultStore(CrawlResultStore crawlResultStore)
+    {
+        this.crawlResultStore = crawlResultStore;
+    }
+
+    public CrawlResultStore getCrawlResultStore()
+    {
+        return crawlResultStore;
+    }
+
+    /**
+     * Called before the first page of a run is handed to the pagePipeline
+     */
+    protected void openPipeline()
+    {
+    }
+
+    /**
+     * Called after the last page of a run was processed by the pagePipeline. Write all buffered data here.
+     */
+    protected void closePipeline()
+    {
+    }
+
+    /**
+     * Use this method to process Pages in own pipeline
+     * Offer links to getFrontier() if you want to change the abstact class link management
+     * Called from the worker threads, so implementations must be thread safe
+     *
+     * @param page Page Object
+     */
+    protected abstract void pagePipeline(Page page);
+
+    /**
+     * Check if a page was already stored by the pipeline. Only used for resumed crawlers, to not fetch pages again
+     * which were stored after the last frontier checkpoint.
+     *
+     * @param url the url of the page
+     * @return boolean: True if the page is already stored
+     */
+    protected boolean isAlreadyStored(String url)
+    {
+        return false;
+    }
+
+    /**
+     * @return the frontier, which is created with the first call, once the settings of the crawler are known
+     */
+    protected synchronized UrlFrontier getFrontier()
+    {
+        if (this.frontier == null)
+        {
+            if (this.persistentFrontier != null)
+            {
+                this.frontier = new UrlFrontier(this.crawlingDelay, this.maxWorkers, this.persistentFrontier);
+            } else if (this.memoryBudget != null)
+            {
+                this.frontier = new UrlFrontier(this.crawlingDelay, this.maxWorkers, new SeenUrlStore(
+                        this.memoryBudget * 1024L * 1024L, new File(System.getProperty("java.io.tmpdir"))));
+            } else
+            {
+                this.frontier = new UrlFrontier(this.crawlingDelay, this.maxWorkers);
+            }
+        }
+        return frontier;
+    }
+
+    public void setCrawlerEntityrepository(CrawlerEntityRepository crawlerEntityRepository)
+    {
+        this.crawlerEntityRepository = crawlerEntityRepository;
+    }
+
+    /**
+     * Reasons to stop a run before all urls are crawled
+     */
+    private enum StopRequest
+    {
+        PAUSE, CANCEL, INTERRUPT
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,19 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.cluster;
+
+import java.util.List;
+
+/**
+ * Registry of the live instances of the service, the hash ring of a sharded crawl is built from it
+ */
+public interface ClusterMembership
+{
+    /**
+     * @return this instance
+     */
+    ClusterNode getLocalNode();
+
+    /**
+     * @return all live instances, including this instance
+     */
+    List<ClusterNode> getLiveNodes();
+}
@@ -0,0 +1,53 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.cluster;
+
+import java.util.Objects;
+
+/**
+ * A running instance of the service, which takes part in sharded crawls
+ */
+public final class ClusterNode
+{
+    private final String id; // stable id of the instance, its position on the hash ring depends on it
+    private final String baseUrl; // url the instance is reachable at, without trailing slash
+
+    /**
+     * @param id      stable id of the instance like host:port
+     * @param baseUrl url the instance is reachable at, like http://10.0.0.5:8080
+     */
+    public ClusterNode(String id, String baseUrl)
+    {
+        this.id = Objects.requireNonNull(id);
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public String getBaseUrl()
+    {
+        return baseUrl;
+    }
+
+    /**
+     * Nodes are equal if their ids are equal
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        return this == o || o instanceof ClusterNode && this.id.equals(((ClusterNode) o).id);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.id.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.id;
+    }
+}
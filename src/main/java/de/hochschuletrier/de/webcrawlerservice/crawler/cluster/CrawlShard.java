@@ -0,0 +1,455 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.cluster;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.HostScheduler;
+import de.hochschuletrier.de.webcrawlerservice.utils.GenericCrawlerData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The part of a sharded crawl which runs on this instance.
+ * <p>
+ * The hosts of a sharded crawl are partitioned across the live instances by a consistent {@link HashRing}. Every
+ * instance only crawls the hosts it owns, so the crawlingDelay and Crawl-delay of a host hold cluster wide without any
+ * coordination. Links of other hosts are collected and sent in batches to their owner by a {@link LinkTransport},
+ * once batchSize urls are pending or every flushInterval. Batches which could not be sent are routed again with the
+ * next flush, after the ring was refreshed. A link is forwarded only once per instance, as long as it is one of the
+ * last forwarded urls.
+ * <p>
+ * The ring is rebuilt from the {@link ClusterMembership} every refreshInterval. When an instance joins or leaves,
+ * about 1/n of the hosts move to another owner. Urls of moved hosts which are still queued are handed over when the
+ * crawler takes them, so a moved host may get one request from its old and its new owner within one crawlingDelay.
+ * <p>
+ * Received batches are handed to the attached crawler. There is no global termination detection: an instance finishes
+ * its part of the crawl once its frontier is empty and no batch arrived for the linger time.
+ */
+public class CrawlShard
+{
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+    public static final long DEFAULT_REFRESH_INTERVAL = 30000;
+    public static final long DEFAULT_LINGER = 30000;
+
+    private static final int MAX_RECENT_FORWARDS = 100000; // urls remembered to not forward a link twice
+    private static final Map<String, CrawlShard> OPEN_SHARDS = new ConcurrentHashMap<>(); // by node and crawl
+    private static final Logger logger = LoggerFactory.getLogger(CrawlShard.class);
+
+    private final String crawl; // name of the crawl, the same on all instances
+    private final GenericCrawlerData crawlerData; // sent with every batch, so the receiver can start the crawl
+    private final ClusterMembership membership;
+    private final LinkTransport transport;
+    private final ClusterNode localNode;
+    private final int batchSize; // maximum number of urls per batch
+    private final long refreshInterval; // milliseconds between two refreshes of the ring
+    private final long linger; // milliseconds an idle crawler waits for further batches
+    private final ScheduledExecutorService flusher; // flushes the pending urls and refreshes the ring
+    private final Object lock = new Object(); // guards the fields below and signals received batches
+    private final Map<String, Boolean> recentForwards; // last forwarded urls, least recently forwarded first
+    private List<String> pending; // urls of other instances waiting for the next flush
+    private List<String> inbox; // received urls, until a crawler is attached
+    private Consumer<List<String>> receiver; // the attached crawler
+    private long receivedBatches; // batches handed to the receiver
+    private long lastActivity; // time of the last sent or received batch
+    private boolean closed;
+    private boolean suspended; // set while the crawler stops, it does not wait for further batches then
+    private volatile HashRing ring;
+    private volatile long ringRefreshedAt;
+    private final AtomicLong forwarded = new AtomicLong(); // urls sent to other instances
+    private final AtomicLong received = new AtomicLong(); // urls received from other instances
+
+    /**
+     * Open the shard with the default batch size, intervals and linger time
+     *
+     * @see #CrawlShard(String, GenericCrawlerData, ClusterMembership, LinkTransport, int, long, long, long)
+     */
+    public CrawlShard(String crawl, GenericCrawlerData crawlerData, ClusterMembership membership,
+                      LinkTransport transport)
+    {
+        this(crawl, crawlerData, membership, transport, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL,
+                DEFAULT_REFRESH_INTERVAL, DEFAULT_LINGER);
+    }
+
+    /**
+     * Open the shard of a crawl on this instance, batches for the crawl are accepted from now on. Must be closed
+     * after the crawl.
+     *
+     * @param crawl           name of the crawl, the same on all instances
+     * @param crawlerData     settings of the crawl, to start it on instances where it does not run yet
+     * @param membership      the live instances
+     * @param transport       sends the batches
+     * @param batchSize       maximum number of urls per batch
+     * @param flushInterval   milliseconds a forwarded url waits at most for its batch
+     * @param refreshInterval milliseconds between two refreshes of the ring
+     * @param linger          milliseconds an idle crawler waits for further batches before it finishes
+     * @throws IllegalStateException if a crawl with this name already runs on this instance
+     */
+    public CrawlShard(String crawl, GenericCrawlerData crawlerData, ClusterMembership membership,
+                      LinkTransport transport, int batchSize, long flushInterval, long refreshInterval, long linger)
+    {
+        this.crawl = crawl;
+        this.crawlerData = crawlerData;
+        this.membership = membership;
+        this.transport = transport;
+        this.localNode = membership.getLocalNode();
+        this.batchSize = Math.max(1, batchSize);
+        this.refreshInterval = refreshInterval;
+        this.linger = linger;
+        this.recentForwards = new LinkedHashMap<String, Boolean>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest)
+            {
+                return size() > MAX_RECENT_FORWARDS;
+            }
+        };
+        this.pending = new ArrayList<>();
+        this.inbox = new ArrayList<>();
+        this.lastActivity = System.currentTimeMillis();
+        this.ring = new HashRing(membership.getLiveNodes(), HashRing.DEFAULT_VIRTUAL_NODES);
+        this.ringRefreshedAt = System.currentTimeMillis();
+        if (OPEN_SHARDS.putIfAbsent(key(this.localNode, crawl), this) != null)
+        {
+            throw new IllegalStateException("Crawl already runs on this instance: " + crawl);
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, crawl + "-shard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::tick, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        logger.info(crawl + ": Sharded across " + this.ring.getNodes());
+    }
+
+    /**
+     * Shards are registered per node, so several nodes can run in one JVM
+     */
+    private static String key(ClusterNode node, String crawl)
+    {
+        return node.getId() + " " + crawl;
+    }
+
+    /**
+     * Hand a received batch to the shard of its crawl
+     *
+     * @param node  the receiving node
+     * @param batch the received batch
+     * @return boolean: True if the crawl runs on the node and took the urls
+     */
+    public static boolean deliver(ClusterNode node, LinkBatch batch)
+    {
+        CrawlShard shard = OPEN_SHARDS.get(key(node, batch.getCrawl()));
+        if (shard == null)
+        {
+            return false;
+        }
+        shard.receive(batch.getUrls());
+        return true;
+    }
+
+    /**
+     * @param node  a node of this JVM
+     * @param crawl name of a crawl
+     * @return boolean: True if the crawl runs sharded on the node
+     */
+    public static boolean isOpen(ClusterNode node, String crawl)
+    {
+        return OPEN_SHARDS.containsKey(key(node, crawl));
+    }
+
+    /**
+     * @param url a canonical url
+     * @return boolean: True if this instance owns the host of the url
+     */
+    public boolean isLocal(String url)
+    {
+        ClusterNode owner = this.ring.ownerOf(HostScheduler.hostOf(url));
+        return owner == null || owner.equals(this.localNode);
+    }
+
+    /**
+     * Queue an url for the instance which owns its host, unless it was forwarded shortly before
+     *
+     * @param url a canonical url of a host owned by another instance
+     */
+    public void forward(String url)
+    {
+        boolean full;
+        synchronized (this.lock)
+        {
+            if (this.closed || this.recentForwards.put(url, Boolean.TRUE) != null)
+            {
+                return;
+            }
+            this.pending.add(url);
+            full = this.pending.size() >= this.batchSize;
+        }
+        if (full)
+        {
+            try
+            {
+                this.flusher.execute(this::flush);
+            } catch (RejectedExecutionException e)
+            {
+                // closing, the pending urls are flushed by close
+            }
+        }
+    }
+
+    /**
+     * Attach the crawler, which gets the received urls. Urls received before are handed over at once.
+     *
+     * @param receiver offers the received urls to the frontier, called from the threads that received them
+     */
+    public void attach(Consumer<List<String>> receiver)
+    {
+        List<String> received;
+        synchronized (this.lock)
+        {
+            this.receiver = receiver;
+            received = this.inbox;
+            this.inbox = new ArrayList<>();
+        }
+        if (!received.isEmpty())
+        {
+            receiver.accept(received);
+        }
+    }
+
+    private void receive(List<String> urls)
+    {
+        Consumer<List<String>> target;
+        synchronized (this.lock)
+        {
+            this.received.addAndGet(urls.size());
+            this.lastActivity = System.currentTimeMillis();
+            target = this.receiver;
+            if (target == null)
+            {
+                this.inbox.addAll(urls);
+                return;
+            }
+        }
+        target.accept(urls);
+        synchronized (this.lock)
+        {
+            // signalled after the urls reached the frontier, so a woken crawler finds them
+            this.receivedBatches++;
+            this.lock.notifyAll();
+        }
+    }
+
+    /**
+     * Send the pending urls, once the frontier of the crawler is empty, and wait for urls from other instances
+     *
+     * @return boolean: True if urls were received, false if none arrived within the linger time or the shard is
+     * suspended
+     * @throws InterruptedException if the crawler gets interrupted while it waits
+     */
+    public boolean awaitLinks() throws InterruptedException
+    {
+        flush();
+        synchronized (this.lock)
+        {
+            long seen = this.receivedBatches;
+            while (this.receivedBatches == seen)
+            {
+                long wait = this.lastActivity + this.linger - System.currentTimeMillis();
+                if (wait <= 0 || this.closed || this.suspended)
+                {
+                    return false;
+                }
+                this.lock.wait(wait);
+            }
+            return true;
+        }
+    }
+
+    private void tick()
+    {
+        try
+        {
+            if (System.currentTimeMillis() - this.ringRefreshedAt >= this.refreshInterval)
+            {
+                refreshRing();
+            }
+            flush();
+        } catch (RuntimeException e)
+        {
+            // a failed run must not cancel the periodic flush
+            logger.error(this.crawl + ": Flush failed - " + e.toString());
+        }
+    }
+
+    /**
+     * Rebuild the ring from the live instances
+     */
+    public void refreshRing()
+    {
+        this.ringRefreshedAt = System.currentTimeMillis();
+        List<ClusterNode> liveNodes;
+        try
+        {
+            liveNodes = this.membership.getLiveNodes();
+        } catch (RuntimeException e)
+        {
+            logger.warn(this.crawl + ": Could not refresh the cluster, keeping " + this.ring.getNodes() + " - "
+                    + e.toString());
+            return;
+        }
+        HashRing next = new HashRing(liveNodes, HashRing.DEFAULT_VIRTUAL_NODES);
+        if (!next.hasSameNodes(this.ring))
+        {
+            logger.info(this.crawl + ": Cluster changed from " + this.ring.getNodes() + " to " + next.getNodes());
+            this.ring = next;
+        }
+    }
+
+    /**
+     * Send the pending urls in batches to their owners. Urls whose host moved to this instance are received locally,
+     * urls which could not be sent stay pending and the ring is refreshed before the next flush.
+     */
+    public synchronized void flush()
+    {
+        List<String> urls;
+        synchronized (this.lock)
+        {
+            if (this.pending.isEmpty())
+            {
+                return;
+            }
+            urls = this.pending;
+            this.pending = new ArrayList<>();
+        }
+        HashRing current = this.ring;
+        Map<ClusterNode, List<String>> byOwner = new LinkedHashMap<>();
+        List<String> local = new ArrayList<>();
+        for (String url : urls)
+        {
+            ClusterNode owner = current.ownerOf(HostScheduler.hostOf(url));
+            if (owner == null || owner.equals(this.localNode))
+            {
+                local.add(url);
+            } else
+            {
+                byOwner.computeIfAbsent(owner, node -> new ArrayList<>()).add(url);
+            }
+        }
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<ClusterNode, List<String>> entry : byOwner.entrySet())
+        {
+            List<String> ownerUrls = entry.getValue();
+            for (int start = 0; start < ownerUrls.size(); start += this.batchSize)
+            {
+                List<String> batch = new ArrayList<>(ownerUrls.subList(start,
+                        Math.min(start + this.batchSize, ownerUrls.size())));
+                try
+                {
+                    this.transport.send(entry.getKey(), new LinkBatch(this.crawl, this.localNode.getId(),
+                            this.crawlerData, batch));
+                    this.forwarded.addAndGet(batch.size());
+                } catch (IOException | RuntimeException e)
+                {
+                    logger.warn(this.crawl + ": Could not forward " + batch.size() + " urls to " + entry.getKey()
+                            + " - " + e.toString());
+                    failed.addAll(batch);
+                }
+            }
+        }
+        if (!local.isEmpty())
+        {
+            receive(local);
+        }
+        synchronized (this.lock)
+        {
+            this.lastActivity = System.currentTimeMillis();
+            if (!failed.isEmpty())
+            {
+                this.pending.addAll(failed);
+                this.ringRefreshedAt = 0;
+            }
+        }
+    }
+
+    /**
+     * Suspend the shard while its crawler stops, a crawler waiting in {@link #awaitLinks()} returns at once. Batches
+     * are still accepted and forwarded.
+     *
+     * @param suspended true to stop waiting for batches, false to continue
+     */
+    public void setSuspended(boolean suspended)
+    {
+        synchronized (this.lock)
+        {
+            this.suspended = suspended;
+            this.lock.notifyAll();
+        }
+    }
+
+    /**
+     * Send the last pending urls and stop accepting batches for the crawl
+     */
+    public void close()
+    {
+        OPEN_SHARDS.remove(key(this.localNode, this.crawl), this);
+        this.flusher.shutdown();
+        try
+        {
+            this.flusher.awaitTermination(DEFAULT_FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        synchronized (this.lock)
+        {
+            this.closed = true;
+            this.receiver = null;
+            this.lock.notifyAll();
+            if (!this.pending.isEmpty() || !this.inbox.isEmpty())
+            {
+                logger.warn(this.crawl + ": Dropped " + this.pending.size() + " unsent and " + this.inbox.size()
+                        + " unprocessed urls");
+            }
+        }
+        logger.info(this.crawl + ": Forwarded " + this.forwarded.get() + " urls, received " + this.received.get());
+    }
+
+    public String getCrawl()
+    {
+        return crawl;
+    }
+
+    public HashRing getRing()
+    {
+        return ring;
+    }
+
+    /**
+     * @return number of urls which were sent to other instances
+     */
+    public long getForwarded()
+    {
+        return forwarded.get();
+    }
+
+    /**
+     * @return number of urls which were received from other instances
+     */
+    public long getReceived()
+    {
+        return received.get();
+    }
+}
@@ -0,0 +1,55 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.cluster;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Live instances of the service as registered with Eureka. Eureka only lists instances with status UP, instances
+ * which stopped or missed their heartbeats drop out after the eviction of the server and the cache refresh of the
+ * client. This instance is always part of the list, even before its registration is visible.
+ */
+public class EurekaClusterMembership implements ClusterMembership
+{
+    private final DiscoveryClient discoveryClient;
+    private final Registration registration; // the registration of this instance
+
+    public EurekaClusterMembership(DiscoveryClient discoveryClient, Registration registration)
+    {
+        this.discoveryClient = discoveryClient;
+        this.registration = registration;
+    }
+
+    @Override
+    public ClusterNode getLocalNode()
+    {
+        return toNode(this.registration);
+    }
+
+    @Override
+    public List<ClusterNode> getLiveNodes()
+    {
+        List<ClusterNode> nodes = new ArrayList<>();
+        for (ServiceInstance instance : this.discoveryClient.getInstances(this.registration.getServiceId()))
+        {
+            nodes.add(toNode(instance));
+        }
+        ClusterNode localNode = getLocalNode();
+        if (!nodes.contains(localNode))
+        {
+            nodes.add(localNode);
+        }
+        return nodes;
+    }
+
+    /**
+     * The id is built from host and port, which the instance registers under and which stays the same while it runs
+     */
+    private static ClusterNode toNode(ServiceInstance instance)
+    {
+        return new ClusterNode(instance.getHost() + ":" + instance.getPort(), instance.getUri().toString());
+    }
+}
@@ -0,0 +1,83 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.cluster;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.Murmur3;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent hash ring, which assigns every host to exactly one node of the cluster.
+ * <p>
+ * Every node is placed virtualNodes times on the ring by the Murmur3 hash of its id, a host belongs to the first node
+ * at or after the hash of the host name. All instances with the same nodes build the same ring, without talking to
+ * each other. When a node joins or leaves only the hosts of its ring segments move, about 1/n of all hosts.
+ */
+public final class HashRing
+{
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final NavigableMap<Long, ClusterNode> ring; // ring positions of the virtual nodes
+    private final List<ClusterNode> nodes; // distinct nodes of the ring
+
+    /**
+     * @param nodes        the live nodes of the cluster
+     * @param virtualNodes positions per node on the ring, more positions spread the hosts more evenly
+     */
+    public HashRing(Collection<ClusterNode> nodes, int virtualNodes)
+    {
+        this.ring = new TreeMap<>();
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(nodes)));
+        for (ClusterNode node : this.nodes)
+        {
+            for (int i = 0; i < virtualNodes; i++)
+            {
+                // a collision is resolved by id, so every instance builds the same ring
+                this.ring.merge(hash(node.getId() + "#" + i), node,
+                        (previous, next) -> previous.getId().compareTo(next.getId()) <= 0 ? previous : next);
+            }
+        }
+    }
+
+    private static long hash(String value)
+    {
+        return Murmur3.hash128(value)[0];
+    }
+
+    /**
+     * @param host lower case host name
+     * @return the node which crawls the host or null if the ring is empty
+     */
+    public ClusterNode ownerOf(String host)
+    {
+        if (this.ring.isEmpty())
+        {
+            return null;
+        }
+        Map.Entry<Long, ClusterNode> owner = this.ring.ceilingEntry(hash(host));
+        return owner != null ? owner.getValue() : this.ring.firstEntry().getValue();
+    }
+
+    /**
+     * @return the distinct nodes of the ring
+     */
+    public List<ClusterNode> getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * @param other another ring
+     * @return boolean: True if both rings consist of the same nodes and assign every host to the same node
+     */
+    public boolean hasSameNodes(HashRing other)
+    {
+        return other != null && other.ring.size() == this.ring.size()
+                && new LinkedHashSet<>(other.nodes).equals(new LinkedHashSet<>(this.nodes));
+    }
+}
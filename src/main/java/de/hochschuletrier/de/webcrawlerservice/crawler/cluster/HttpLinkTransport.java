@@ -0,0 +1,36 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.cluster;
+
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+
+/**
+ * Posts link batches as JSON to the /cluster/links endpoint of the receiving instance
+ */
+public class HttpLinkTransport implements LinkTransport
+{
+    public static final String LINKS_PATH = "/cluster/links";
+
+    private final RestTemplate restTemplate;
+
+    /**
+     * @param restTemplate template with timeouts, it must not be load balanced, the batch goes to one instance
+     */
+    public HttpLinkTransport(RestTemplate restTemplate)
+    {
+        this.restTemplate = restTemplate;
+    }
+
+    @Override
+    public void send(ClusterNode node, LinkBatch batch) throws IOException
+    {
+        try
+        {
+            this.restTemplate.postForEntity(node.getBaseUrl() + LINKS_PATH, batch, String.class);
+        } catch (RestClientException e)
+        {
+            throw new IOException("Could not send links to " + node + " - " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.cluster;
+
+import de.hochschuletrier.de.webcrawlerservice.utils.GenericCrawlerData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Urls of a sharded crawl, which one instance sends to the instance that owns their hosts. Represents the JSON body
+ * of POST /cluster/links.
+ */
+public class LinkBatch
+{
+    private String crawl; // name of the sharded crawl, the same on all instances
+    private String sender; // id of the sending node
+    private GenericCrawlerData crawlerData; // settings of the crawl, to start it on instances where it does not run
+    private List<String> urls; // canonical urls of hosts the receiving node owns
+
+    public LinkBatch()
+    {
+        this.urls = new ArrayList<>();
+    }
+
+    public LinkBatch(String crawl, String sender, GenericCrawlerData crawlerData, List<String> urls)
+    {
+        this.crawl = crawl;
+        this.sender = sender;
+        this.crawlerData = crawlerData;
+        this.urls = urls;
+    }
+
+    public String getCrawl()
+    {
+        return crawl;
+    }
+
+    public void setCrawl(String crawl)
+    {
+        this.crawl = crawl;
+    }
+
+    public String getSender()
+    {
+        return sender;
+    }
+
+    public void setSender(String sender)
+    {
+        this.sender = sender;
+    }
+
+    public GenericCrawlerData getCrawlerData()
+    {
+        return crawlerData;
+    }
+
+    public void setCrawlerData(GenericCrawlerData crawlerData)
+    {
+        this.crawlerData = crawlerData;
+    }
+
+    public List<String> getUrls()
+    {
+        return urls;
+    }
+
+    public void setUrls(List<String> urls)
+    {
+        this.urls = urls;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.crawl + " from " + this.sender + ": " + this.urls.size() + " urls";
+    }
+}
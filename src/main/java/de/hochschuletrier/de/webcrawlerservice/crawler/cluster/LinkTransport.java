@@ -0,0 +1,19 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.cluster;
+
+import java.io.IOException;
+
+/**
+ * Sends the link batches of a sharded crawl to other instances
+ */
+@FunctionalInterface
+public interface LinkTransport
+{
+    /**
+     * Deliver a batch, the call returns once the receiving node accepted it
+     *
+     * @param node  the receiving node
+     * @param batch the urls for the node
+     * @throws IOException if the node could not be reached or did not accept the batch
+     */
+    void send(ClusterNode node, LinkBatch batch) throws IOException;
+}
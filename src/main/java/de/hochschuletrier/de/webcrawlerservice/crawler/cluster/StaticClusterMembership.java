@@ -0,0 +1,52 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fixed list of instances instead of a service registry, for several instances on localhost or in one JVM. The
+ * instances can be changed at runtime with {@link #setLiveNodes(Collection)} to simulate joining and leaving nodes.
+ */
+public class StaticClusterMembership implements ClusterMembership
+{
+    private final ClusterNode localNode;
+    private volatile List<ClusterNode> liveNodes;
+
+    /**
+     * @param localNode this instance
+     * @param liveNodes all instances, this instance is added if it is missing
+     */
+    public StaticClusterMembership(ClusterNode localNode, ClusterNode... liveNodes)
+    {
+        this.localNode = localNode;
+        setLiveNodes(Arrays.asList(liveNodes));
+    }
+
+    @Override
+    public ClusterNode getLocalNode()
+    {
+        return localNode;
+    }
+
+    @Override
+    public List<ClusterNode> getLiveNodes()
+    {
+        return liveNodes;
+    }
+
+    /**
+     * @param liveNodes all instances, this instance is added if it is missing
+     */
+    public void setLiveNodes(Collection<ClusterNode> liveNodes)
+    {
+        List<ClusterNode> nodes = new ArrayList<>(liveNodes);
+        if (!nodes.contains(this.localNode))
+        {
+            nodes.add(this.localNode);
+        }
+        this.liveNodes = Collections.unmodifiableList(nodes);
+    }
+}
@@ -1,37 +1,233 @@
 package de.hochschuletrier.de.webcrawlerservice.crawler.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import de.hochschuletrier.de.webcrawlerservice.crawler.Crawler;
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.ClusterMembership;
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.CrawlShard;
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.LinkTransport;
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.PersistentFrontier;
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.SeenUrlStore;
+import de.hochschuletrier.de.webcrawlerservice.crawler.jobs.CrawlJob;
+import de.hochschuletrier.de.webcrawlerservice.crawler.jobs.CrawlTask;
 import de.hochschuletrier.de.webcrawlerservice.crawler.spiders.GenericSpider;
 import de.hochschuletrier.de.webcrawlerservice.crawler.utils.UserAgent;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.CrawlerEntity;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.CrawlerEntityRepository;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.DeadLinkRepository;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.FileLinkRepository;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.WebPageEntityRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.storage.CrawlResultStore;
+import de.hochschuletrier.de.webcrawlerservice.persistence.storage.PageBodyStore;
 import de.hochschuletrier.de.webcrawlerservice.utils.GenericCrawlerData;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import java.io.File;
+import java.io.IOException;
+
 /**
- * Thread Controller for the Generic Spider
+ * Thread Controller for the Generic Spider, run as job by the
+ * {@link de.hochschuletrier.de.webcrawlerservice.crawler.jobs.CrawlJobScheduler}
  *
  * @author: Oliver Fries
  */
 @Component
 @Scope("prototype")
-public class GenericCrawlerController implements Runnable
+public class GenericCrawlerController implements CrawlTask
 {
+    private static final String CRAWLER_DATA = "crawlerData";
+
     private Crawler crawler;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PageBodyStore pageBodyStore;
+
+    @Autowired
+    private CrawlResultStore crawlResultStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private ClusterMembership clusterMembership;
+
+    @Autowired(required = false)
+    private LinkTransport linkTransport;
+
+    @Value("${crawler.frontier.directory:frontier}")
+    private String frontierDirectory;
+
+    @Value("${crawler.execution.mode:platform}")
+    private String executionMode;
+
+    @Value("${crawler.write-behind.batch-size:100}")
+    private int writeBehindBatchSize;
+
+    @Value("${crawler.write-behind.flush-interval:1000}")
+    private long writeBehindFlushInterval;
+
+    @Value("${crawler.write-behind.capacity:1000}")
+    private int writeBehindCapacity;
+
+    @Value("${crawler.revisit.min-interval:600000}")
+    private long revisitMinInterval;
+
+    @Value("${crawler.revisit.max-interval:2592000000}")
+    private long revisitMaxInterval;
+
+    @Value("${crawler.revisit.idle:true}")
+    private boolean revisitIdle;
+
+    @Value("${crawler.robots.enabled:true}")
+    private boolean robotsEnabled;
+
+    @Value("${crawler.robots.ttl:86400000}")
+    private long robotsTtl;
+
+    @Value("${crawler.sitemaps.enabled:true}")
+    private boolean sitemapsEnabled;
+
+    @Value("${crawler.sitemaps.max-urls:1000000}")
+    private int maxSitemapUrls;
+
+    @Value("${crawler.journal.enabled:true}")
+    private boolean journalEnabled;
+
+    @Value("${crawler.journal.directory:journal}")
+    private String journalDirectory;
+
+    @Value("${crawler.journal.buffer-size:262144}")
+    private int journalBufferSize;
+
+    @Value("${crawler.warc.enabled:false}")
+    private boolean warcEnabled;
+
+    @Value("${crawler.warc.directory:warc}")
+    private String warcDirectory;
+
+    @Value("${crawler.warc.segment-size:1073741824}")
+    private long warcSegmentSize;
+
+    @Value("${crawler.warc.buffer-size:1048576}")
+    private int warcBufferSize;
+
+    @Value("${crawler.warc.capacity:256}")
+    private int warcCapacity;
+
+    @Value("${crawler.cluster.batch-size:500}")
+    private int clusterBatchSize;
+
+    @Value("${crawler.cluster.flush-interval:1000}")
+    private long clusterFlushInterval;
+
+    @Value("${crawler.cluster.refresh-interval:30000}")
+    private long clusterRefreshInterval;
+
+    @Value("${crawler.cluster.linger:30000}")
+    private long clusterLinger;
+
     private static final Logger logger = LoggerFactory.getLogger(GenericCrawlerController.class);
 
     public void init(GenericCrawlerData genericCrawlerData, CrawlerEntityRepository crawlerEntityRepository, DeadLinkRepository deadLinkRepository, WebPageEntityRepository webPageEntityRepository, FileLinkRepository fileLinkRepository)
     {
         logger.info("Initialise CrawlerEntity");
-        this.crawler = new GenericSpider(genericCrawlerData.getName(), genericCrawlerData.getAllowedDomains(),
+        GenericSpider spider = new GenericSpider(genericCrawlerData.getName(), genericCrawlerData.getAllowedDomains(),
                 genericCrawlerData.getSeedURLs(), genericCrawlerData.isRevisiting(),
                 genericCrawlerData.getDeniedDomains(),crawlerEntityRepository,deadLinkRepository,fileLinkRepository, webPageEntityRepository);
+        spider.setPageBodyStore(this.pageBodyStore);
+        this.crawler = spider;
+        configure(genericCrawlerData);
+        if (genericCrawlerData.isPersistentFrontier())
+        {
+            PersistentFrontier persistentFrontier = PersistentFrontier.open(new File(this.frontierDirectory),
+                    this.crawler.getUniqueName(), getCacheSize(genericCrawlerData));
+            try
+            {
+                persistentFrontier.putMetadata(CRAWLER_DATA, this.objectMapper.writeValueAsString(genericCrawlerData));
+            } catch (IOException e)
+            {
+                logger.error("Could not store crawler data for " + this.crawler.getUniqueName() + " - " + e.toString());
+            }
+            this.crawler.usePersistentFrontier(persistentFrontier);
+        }
+        if (genericCrawlerData.isDistributed())
+        {
+            shard(genericCrawlerData);
+        }
+    }
+
+    /**
+     * Initialise a crawler, which continues a stopped crawl from its persistent frontier
+     *
+     * @param crawlerEntity the stored CrawlerEntity of the stopped crawler
+     * @return boolean: True if the crawler can be resumed
+     */
+    public boolean initResume(CrawlerEntity crawlerEntity, CrawlerEntityRepository crawlerEntityRepository, DeadLinkRepository deadLinkRepository, WebPageEntityRepository webPageEntityRepository, FileLinkRepository fileLinkRepository)
+    {
+        File baseDirectory = new File(this.frontierDirectory);
+        if (!PersistentFrontier.exists(baseDirectory, crawlerEntity.getUniqueName()))
+        {
+            logger.warn("No persistent frontier for " + crawlerEntity.getUniqueName());
+            return false;
+        }
+        logger.info("Resume CrawlerEntity " + crawlerEntity.getUniqueName());
+        PersistentFrontier persistentFrontier = PersistentFrontier.open(baseDirectory, crawlerEntity.getUniqueName(),
+                SeenUrlStore.DEFAULT_MEMORY_BUDGET);
+        GenericCrawlerData genericCrawlerData;
+        try
+        {
+            genericCrawlerData = this.objectMapper.readValue(persistentFrontier.getMetadata(CRAWLER_DATA),
+                    GenericCrawlerData.class);
+        } catch (IOException | IllegalArgumentException e)
+        {
+            logger.error("Could not read crawler data of " + crawlerEntity.getUniqueName() + " - " + e.toString());
+            persistentFrontier.close();
+            return false;
+        }
+        // the frontier is opened with the default cache to read the settings, which contain the memory budget
+        persistentFrontier.setCacheSize(getCacheSize(genericCrawlerData));
+        GenericSpider spider = new GenericSpider(crawlerEntity, genericCrawlerData.getAllowedDomains(),
+                genericCrawlerData.getSeedURLs(), genericCrawlerData.isRevisiting(),
+                genericCrawlerData.getDeniedDomains(), crawlerEntityRepository, deadLinkRepository, fileLinkRepository, webPageEntityRepository);
+        spider.setPageBodyStore(this.pageBodyStore);
+        this.crawler = spider;
+        configure(genericCrawlerData);
+        this.crawler.usePersistentFrontier(persistentFrontier);
+        if (genericCrawlerData.isDistributed())
+        {
+            shard(genericCrawlerData);
+        }
+        return true;
+    }
+
+    private void configure(GenericCrawlerData genericCrawlerData)
+    {
+        this.crawler.setExecutionMode(this.executionMode);
+        this.crawler.setWriteBehind(this.writeBehindBatchSize, this.writeBehindFlushInterval, this.writeBehindCapacity);
+        this.crawler.setCrawlResultStore(this.crawlResultStore);
+        this.crawler.setMeterRegistry(this.meterRegistry);
+        this.crawler.setRevisitIntervals(this.revisitMinInterval, this.revisitMaxInterval);
+        this.crawler.setRevisitIdle(this.revisitIdle);
+        this.crawler.setRobotsEnabled(this.robotsEnabled);
+        this.crawler.setRobotsTtl(this.robotsTtl);
+        this.crawler.setSitemaps(this.sitemapsEnabled, this.maxSitemapUrls);
+        if (this.journalEnabled)
+        {
+            this.crawler.setJournal(new File(this.journalDirectory), this.journalBufferSize);
+        }
+        if (this.warcEnabled)
+        {
+            this.crawler.setWarc(new File(this.warcDirectory), this.warcSegmentSize, this.warcBufferSize,
+                    this.warcCapacity);
+        }
         if (genericCrawlerData.getMaxPages() != null && genericCrawlerData.getMaxPages() != 0)
         {
             this.crawler.setMaxPages(genericCrawlerData.getMaxPages());
@@ -44,17 +240,100 @@ public class GenericCrawlerController implements Runnable
         {
             this.crawler.setFollowRedirects(false);
         }
+        if (genericCrawlerData.isJsoupFetcher())
+        {
+            this.crawler.setJsoupFetcher(true);
+        }
         if (genericCrawlerData.getCrawlingDelay() != null)
         {
             this.crawler.setCrawlingDelay(genericCrawlerData.getCrawlingDelay());
         }
+        if (genericCrawlerData.getMemoryBudget() != null && genericCrawlerData.getMemoryBudget() != 0)
+        {
+            this.crawler.setMemoryBudget(genericCrawlerData.getMemoryBudget());
+        }
+        if (genericCrawlerData.getMaxWorkers() != null && genericCrawlerData.getMaxWorkers() != 0)
+        {
+            this.crawler.setMaxWorkers(genericCrawlerData.getMaxWorkers());
+        }
+        if (genericCrawlerData.isStreamingExtraction())
+        {
+            this.crawler.setStreamingExtraction(true);
+        }
+        if (genericCrawlerData.getMaxBodySize() != null && genericCrawlerData.getMaxBodySize() != 0)
+        {
+            this.crawler.setMaxBodySize(genericCrawlerData.getMaxBodySize());
+        }
+        if (genericCrawlerData.getNearDuplicateDistance() != null)
+        {
+            this.crawler.setNearDuplicateDistance(genericCrawlerData.getNearDuplicateDistance());
+        }
+    }
+
+    /**
+     * Shard the crawl across the live instances, if crawler.cluster.enabled is set
+     */
+    private void shard(GenericCrawlerData genericCrawlerData)
+    {
+        if (this.clusterMembership == null || this.linkTransport == null)
+        {
+            logger.warn("Cluster is not enabled, " + genericCrawlerData.getName() + " runs on this instance only");
+            return;
+        }
+        this.crawler.setShard(new CrawlShard(genericCrawlerData.getName(), genericCrawlerData,
+                this.clusterMembership, this.linkTransport, this.clusterBatchSize, this.clusterFlushInterval,
+                this.clusterRefreshInterval, this.clusterLinger));
+    }
+
+    private long getCacheSize(GenericCrawlerData genericCrawlerData)
+    {
+        if (genericCrawlerData.getMemoryBudget() != null && genericCrawlerData.getMemoryBudget() != 0)
+        {
+            return genericCrawlerData.getMemoryBudget() * 1024L * 1024L;
+        }
+        return SeenUrlStore.DEFAULT_MEMORY_BUDGET;
+    }
+
+    @Override
+    public String getUniqueName()
+    {
+        return this.crawler.getUniqueName();
     }
 
     @Override
-    public void run()
+    public CrawlJob.State run()
     {
         logger.info("Called from thread");
         this.crawler.run(UserAgent.Default);
+        if (this.crawler.isPaused())
+        {
+            return CrawlJob.State.PAUSED;
+        } else if (this.crawler.isCancelled())
+        {
+            return CrawlJob.State.CANCELLED;
+        } else if (this.crawler.isInterrupted())
+        {
+            return CrawlJob.State.INTERRUPTED;
+        }
+        return CrawlJob.State.FINISHED;
+    }
+
+    @Override
+    public void requestPause()
+    {
+        this.crawler.requestPause();
+    }
+
+    @Override
+    public void requestCancel()
+    {
+        this.crawler.requestCancel();
+    }
+
+    @Override
+    public void cancel()
+    {
+        this.crawler.cancel();
     }
 
 }
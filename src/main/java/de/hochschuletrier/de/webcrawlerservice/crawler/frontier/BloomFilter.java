@@ -0,0 +1,70 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.frontier;
+
+/**
+ * Fixed size bloom filter over 128 bit fingerprints. The bit indexes are derived by double hashing from the two
+ * halves of the fingerprint, so no further hashing is needed. Not thread safe.
+ */
+public class BloomFilter
+{
+    private final long[] bits;
+    private final long numBits;
+    private final int numHashes;
+    private long insertions;
+
+    /**
+     * @param sizeInBytes memory used by the bit array
+     * @param numHashes   number of bits set per entry
+     */
+    public BloomFilter(long sizeInBytes, int numHashes)
+    {
+        int words = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, sizeInBytes / 8));
+        this.bits = new long[words];
+        this.numBits = (long) words * 64;
+        this.numHashes = numHashes;
+    }
+
+    public void put(long hash1, long hash2)
+    {
+        long combined = hash1;
+        for (int i = 0; i < this.numHashes; i++)
+        {
+            long index = (combined & Long.MAX_VALUE) % this.numBits;
+            this.bits[(int) (index >>> 6)] |= 1L << index;
+            combined += hash2;
+        }
+        this.insertions++;
+    }
+
+    public boolean mightContain(long hash1, long hash2)
+    {
+        long combined = hash1;
+        for (int i = 0; i < this.numHashes; i++)
+        {
+            long index = (combined & Long.MAX_VALUE) % this.numBits;
+            if ((this.bits[(int) (index >>> 6)] & (1L << index)) == 0)
+            {
+                return false;
+            }
+            combined += hash2;
+        }
+        return true;
+    }
+
+    /**
+     * @return theoretical false positive probability for the current number of insertions
+     */
+    public double expectedFalsePositiveRate()
+    {
+        return Math.pow(1 - Math.exp(-(double) this.numHashes * this.insertions / this.numBits), this.numHashes);
+    }
+
+    public long getInsertions()
+    {
+        return insertions;
+    }
+
+    public long byteSize()
+    {
+        return (long) this.bits.length * 8;
+    }
+}
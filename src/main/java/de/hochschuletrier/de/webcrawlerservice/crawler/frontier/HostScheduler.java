@@ -0,0 +1,290 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.frontier;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Politeness aware scheduler for the URLs of a single crawler.
+ * <p>
+ * Every host owns its own queue, a ready time and a delay. A host is handed out to at most one worker at a time and
+ * becomes ready again {@code delay} milliseconds after its last request has finished. Different hosts are handed out
+ * in parallel, so the crawlingDelay of a crawler is a minimum interval per host and not a global sleep anymore.
+ */
+public class HostScheduler
+{
+    private final Map<String, HostQueue> hosts; // all hosts seen by this scheduler
+    private final PriorityQueue<HostQueue> readyHosts; // idle hosts with open urls, ordered by their ready time
+    private long defaultDelay; // delay for hosts without a custom delay
+    private int maxInFlight; // maximum number of urls that are handed out at the same time
+    private int inFlight; // urls that are handed out and not released yet
+    private int size; // urls that are waiting in any host queue
+    private boolean suspended; // set while the crawler stops, take returns null then
+
+    /**
+     * @param defaultDelay minimum interval in milliseconds between two requests to the same host
+     * @param maxInFlight  maximum number of urls that are crawled at the same time
+     */
+    public HostScheduler(long defaultDelay, int maxInFlight)
+    {
+        this.hosts = new HashMap<>();
+        this.readyHosts = new PriorityQueue<>(Comparator.comparingLong(HostQueue::getReadyAt));
+        this.defaultDelay = defaultDelay;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Add an url to the queue of its host
+     *
+     * @param url the url to schedule
+     */
+    public synchronized void add(String url)
+    {
+        HostQueue hostQueue = getHostQueue(hostOf(url));
+        boolean wasEmpty = hostQueue.urls.isEmpty();
+        hostQueue.urls.add(url);
+        this.size++;
+        if (wasEmpty && !hostQueue.busy)
+        {
+            this.readyHosts.add(hostQueue);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Wait until the next host is ready and return its next url. The host is blocked until {@link #release(String)}
+     * is called for the returned url.
+     *
+     * @return the next url to crawl or null if all queues are empty and no url is in flight anymore, or the scheduler
+     * is suspended
+     * @throws InterruptedException if the waiting thread gets interrupted
+     */
+    public synchronized String take() throws InterruptedException
+    {
+        while (true)
+        {
+            if (this.suspended || this.size == 0 && this.inFlight == 0)
+            {
+                return null;
+            }
+            HostQueue next = this.readyHosts.peek();
+            if (next != null && this.inFlight < this.maxInFlight)
+            {
+                long waitTime = next.readyAt - System.currentTimeMillis();
+                if (waitTime <= 0)
+                {
+                    this.readyHosts.poll();
+                    next.busy = true;
+                    this.size--;
+                    this.inFlight++;
+                    return next.urls.poll();
+                }
+                wait(waitTime);
+            } else
+            {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * Release the host of an url, which was returned by {@link #take()}. The host will be ready again after its delay.
+     *
+     * @param url the crawled url
+     */
+    public void release(String url)
+    {
+        release(url, true);
+    }
+
+    /**
+     * Release the host of an url, which was returned by {@link #take()}
+     *
+     * @param url       the url
+     * @param requested false if the url was not requested, the host is ready again at once then
+     */
+    public synchronized void release(String url, boolean requested)
+    {
+        HostQueue hostQueue = this.hosts.get(hostOf(url));
+        if (hostQueue == null || !hostQueue.busy)
+        {
+            return;
+        }
+        hostQueue.busy = false;
+        if (requested)
+        {
+            hostQueue.readyAt = System.currentTimeMillis() + hostQueue.getDelay(this.defaultDelay);
+        }
+        if (!hostQueue.urls.isEmpty())
+        {
+            this.readyHosts.add(hostQueue);
+        }
+        this.inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Set a custom delay for a single host, for example to respect a slower rate the host asked for
+     *
+     * @param host  the host name
+     * @param delay minimum interval in milliseconds between two requests to the host
+     */
+    public synchronized void setHostDelay(String host, long delay)
+    {
+        getHostQueue(host.toLowerCase(Locale.ROOT)).delay = delay;
+    }
+
+    public synchronized void setDefaultDelay(long defaultDelay)
+    {
+        this.defaultDelay = defaultDelay;
+    }
+
+    /**
+     * Suspend the scheduler, so a crawler which waits in {@link #take()} returns at once to stop. The queued urls are
+     * kept.
+     *
+     * @param suspended true to stop handing out urls, false to continue
+     */
+    public synchronized void setSuspended(boolean suspended)
+    {
+        this.suspended = suspended;
+        notifyAll();
+    }
+
+    public synchronized void setMaxInFlight(int maxInFlight)
+    {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        notifyAll();
+    }
+
+    /**
+     * @return number of urls which are waiting to be crawled
+     */
+    public synchronized int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return number of urls which are currently crawled
+     */
+    public synchronized int inFlight()
+    {
+        return this.inFlight;
+    }
+
+    /**
+     * Wait until all handed out urls are released
+     *
+     * @param timeout maximum time to wait in milliseconds
+     * @return boolean: True if no url is in flight anymore
+     * @throws InterruptedException if the waiting thread gets interrupted
+     */
+    public synchronized boolean awaitIdle(long timeout) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (this.inFlight > 0)
+        {
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0)
+            {
+                return false;
+            }
+            wait(wait);
+        }
+        return true;
+    }
+
+    /**
+     * Wait until an url is queued, used while urls may still arrive from outside of the crawl
+     *
+     * @param timeout maximum time to wait in milliseconds
+     * @return boolean: True if an url is waiting to be crawled
+     * @throws InterruptedException if the waiting thread gets interrupted
+     */
+    public synchronized boolean awaitQueued(long timeout) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (this.size == 0 && !this.suspended)
+        {
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0)
+            {
+                return false;
+            }
+            wait(wait);
+        }
+        return this.size > 0;
+    }
+
+    /**
+     * @return all urls which are still waiting to be crawled
+     */
+    public synchronized List<String> remaining()
+    {
+        List<String> remaining = new ArrayList<>(this.size);
+        for (HostQueue hostQueue : this.hosts.values())
+        {
+            remaining.addAll(hostQueue.urls);
+        }
+        return remaining;
+    }
+
+    /**
+     * Extract the lower case host of an url. Urls without a valid host are grouped under an empty host.
+     *
+     * @param url the url
+     * @return String host name
+     */
+    public static String hostOf(String url)
+    {
+        try
+        {
+            String host = new URI(url).getHost();
+            return host == null ? "" : host.toLowerCase(Locale.ROOT);
+        } catch (Exception e)
+        {
+            return "";
+        }
+    }
+
+    private HostQueue getHostQueue(String host)
+    {
+        return this.hosts.computeIfAbsent(host, HostQueue::new);
+    }
+
+    /**
+     * Open urls and politeness state of a single host
+     */
+    private static class HostQueue
+    {
+        private final String host;
+        private final ArrayDeque<String> urls;
+        private long readyAt;
+        private long delay;
+        private boolean busy;
+
+        private HostQueue(String host)
+        {
+            this.host = host;
+            this.urls = new ArrayDeque<>();
+            this.delay = -1;
+        }
+
+        private long getReadyAt()
+        {
+            return readyAt;
+        }
+
+        private long getDelay(long defaultDelay)
+        {
+            return this.delay < 0 ? defaultDelay : this.delay;
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.frontier;
+
+import com.sleepycat.bind.tuple.LongBinding;
+import com.sleepycat.bind.tuple.StringBinding;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.je.Cursor;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.je.EnvironmentMutableConfig;
+import com.sleepycat.je.LockMode;
+import com.sleepycat.je.OperationStatus;
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.UrlFrontier.UrlState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Disk backed frontier of a single crawler, stored in a Berkeley DB JE environment.
+ * <p>
+ * The environment consists of five databases:
+ * <ul>
+ * <li>seen: state, last modified timestamp and validators of every known url</li>
+ * <li>queue: open urls in insertion order, which are not loaded into memory yet</li>
+ * <li>head: urls which are loaded into memory or in flight, so they can be recovered after a restart</li>
+ * <li>meta: crawler settings, needed to resume the crawl</li>
+ * <li>revisits: revisit history and next visit of every visited url, see {@link RevisitScheduler}</li>
+ * </ul>
+ * The log is flushed after every crawled page and synced to disk every checkpointInterval pages, so a restarted
+ * crawler continues where the last one stopped.
+ */
+public class PersistentFrontier implements UrlStateStore, Closeable
+{
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistentFrontier.class);
+
+    private final File home;
+    private final Environment environment;
+    private final Database seen;
+    private final Database queue;
+    private final Database head;
+    private final Database meta;
+    private final Database revisits;
+    private final long[] stateCounts;
+    private long timestampCount;
+    private long nextSequence; // key of the next appended queue entry
+    private long queuedOnDisk;
+    private int checkpointInterval;
+    private int pagesSinceCheckpoint;
+
+    private PersistentFrontier(File home, long cacheSize)
+    {
+        this.home = home;
+        EnvironmentConfig environmentConfig = new EnvironmentConfig();
+        environmentConfig.setAllowCreate(true);
+        environmentConfig.setTransactional(false);
+        environmentConfig.setCacheSize(cacheSize);
+        this.environment = new Environment(home, environmentConfig);
+
+        DatabaseConfig databaseConfig = new DatabaseConfig();
+        databaseConfig.setAllowCreate(true);
+        databaseConfig.setTransactional(false);
+        this.seen = this.environment.openDatabase(null, "seen", databaseConfig);
+        this.queue = this.environment.openDatabase(null, "queue", databaseConfig);
+        this.head = this.environment.openDatabase(null, "head", databaseConfig);
+        this.meta = this.environment.openDatabase(null, "meta", databaseConfig);
+        this.revisits = this.environment.openDatabase(null, "revisits", databaseConfig);
+
+        this.stateCounts = new long[UrlState.values().length];
+        this.checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        loadCounters();
+    }
+
+    /**
+     * Open the frontier of a crawler, existing state is loaded
+     *
+     * @param baseDirectory directory which contains the environments of all persistent crawlers
+     * @param uniqueName    unique name of the crawler
+     * @param cacheSize     bytes of memory the JE cache may use
+     * @return PersistentFrontier
+     */
+    public static PersistentFrontier open(File baseDirectory, String uniqueName, long cacheSize)
+    {
+        File home = environmentHome(baseDirectory, uniqueName);
+        if (!home.isDirectory() && !home.mkdirs())
+        {
+            throw new IllegalStateException("Could not create frontier directory " + home);
+        }
+        return new PersistentFrontier(home, cacheSize);
+    }
+
+    /**
+     * Change the cache size of the open environment, used once the settings of a resumed crawler are read
+     *
+     * @param cacheSize bytes of memory the JE cache may use
+     */
+    public synchronized void setCacheSize(long cacheSize)
+    {
+        EnvironmentMutableConfig config = this.environment.getMutableConfig();
+        config.setCacheSize(cacheSize);
+        this.environment.setMutableConfig(config);
+    }
+
+    /**
+     * @return bytes of memory the JE cache may use
+     */
+    public long getCacheSize()
+    {
+        return this.environment.getMutableConfig().getCacheSize();
+    }
+
+    /**
+     * @param baseDirectory directory which contains the environments of all persistent crawlers
+     * @param uniqueName    unique name of the crawler
+     * @return boolean: True if a frontier was stored for the crawler
+     */
+    public static boolean exists(File baseDirectory, String uniqueName)
+    {
+        File home = environmentHome(baseDirectory, uniqueName);
+        String[] files = home.list();
+        return files != null && files.length > 0;
+    }
+
+    private static File environmentHome(File baseDirectory, String uniqueName)
+    {
+        return new File(baseDirectory, uniqueName.replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    /**
+     * Count the stored states and find the end of the queue
+     */
+    private void loadCounters()
+    {
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        Cursor cursor = this.seen.openCursor(null, null);
+        try
+        {
+            while (cursor.getNext(key, data, LockMode.READ_UNCOMMITTED) == OperationStatus.SUCCESS)
+            {
+                SeenRecord record = SeenRecord.read(data);
+                this.stateCounts[record.state.ordinal()]++;
+                if (record.lastModified != NO_TIMESTAMP)
+                {
+                    this.timestampCount++;
+                }
+            }
+        } finally
+        {
+            cursor.close();
+        }
+        Cursor queueCursor = this.queue.openCursor(null, null);
+        try
+        {
+            if (queueCursor.getLast(key, data, LockMode.READ_UNCOMMITTED) == OperationStatus.SUCCESS)
+            {
+                this.nextSequence = LongBinding.entryToLong(key) + 1;
+            }
+        } finally
+        {
+            queueCursor.close();
+        }
+        this.queuedOnDisk = this.queue.count();
+    }
+
+    @Override
+    public synchronized UrlState get(String url)
+    {
+        SeenRecord record = readRecord(urlEntry(url));
+        return record == null ? null : record.state;
+    }
+
+    @Override
+    public synchronized boolean putIfAbsent(String url, UrlState state)
+    {
+        if (this.seen.putNoOverwrite(null, urlEntry(url), new SeenRecord(state).toEntry()) != OperationStatus.SUCCESS)
+        {
+            return false;
+        }
+        this.stateCounts[state.ordinal()]++;
+        return true;
+    }
+
+    @Override
+    public synchronized UrlState put(String url, UrlState state)
+    {
+        DatabaseEntry key = urlEntry(url);
+        SeenRecord record = readRecord(key);
+        UrlState previous = null;
+        if (record == null)
+        {
+            record = new SeenRecord(state);
+        } else
+        {
+            previous = record.state;
+            this.stateCounts[previous.ordinal()]--;
+            record.state = state;
+        }
+        this.seen.put(null, key, record.toEntry());
+        this.stateCounts[state.ordinal()]++;
+        return previous;
+    }
+
+    @Override
+    public synchronized boolean replace(String url, UrlState expected, UrlState state)
+    {
+        if (get(url) != expected)
+        {
+            return false;
+        }
+        put(url, state);
+        return true;
+    }
+
+    @Override
+    public synchronized void setLastModified(String url, Date date)
+    {
+        DatabaseEntry key = urlEntry(url);
+        SeenRecord record = readOrCreateRecord(key);
+        if (record.lastModified == NO_TIMESTAMP)
+        {
+            this.timestampCount++;
+        }
+        record.lastModified = date.getTime();
+        this.seen.put(null, key, record.toEntry());
+    }
+
+    @Override
+    public synchronized Date getLastModified(String url)
+    {
+        SeenRecord record = readRecord(urlEntry(url));
+        return record == null || record.lastModified == NO_TIMESTAMP ? null : new Date(record.lastModified);
+    }
+
+    @Override
+    public synchronized void setValidators(String url, String etag, int contentLength)
+    {
+        DatabaseEntry key = urlEntry(url);
+        SeenRecord record = readOrCreateRecord(key);
+        record.etag = etag;
+        record.contentLength = contentLength;
+        this.seen.put(null, key, record.toEntry());
+    }
+
+    @Override
+    public synchronized String getETag(String url)
+    {
+        SeenRecord record = readRecord(urlEntry(url));
+        return record == null ? null : record.etag;
+    }
+
+    @Override
+    public synchronized int getContentLength(String url)
+    {
+        SeenRecord record = readRecord(urlEntry(url));
+        return record == null ? 0 : record.contentLength;
+    }
+
+    /**
+     * @return the seen record of the url or null if the url is unknown
+     */
+    private SeenRecord readRecord(DatabaseEntry key)
+    {
+        DatabaseEntry data = new DatabaseEntry();
+        if (this.seen.get(null, key, data, LockMode.DEFAULT) != OperationStatus.SUCCESS)
+        {
+            return null;
+        }
+        return SeenRecord.read(data);
+    }
+
+    /**
+     * @return the seen record of the url, unknown urls get a new visited record
+     */
+    private SeenRecord readOrCreateRecord(DatabaseEntry key)
+    {
+        SeenRecord record = readRecord(key);
+        if (record == null)
+        {
+            record = new SeenRecord(UrlState.VISITED);
+            this.stateCounts[record.state.ordinal()]++;
+        }
+        return record;
+    }
+
+    @Override
+    public synchronized long count(UrlState state)
+    {
+        return this.stateCounts[state.ordinal()];
+    }
+
+    @Override
+    public synchronized long countWithLastModified()
+    {
+        return this.timestampCount;
+    }
+
+    /**
+     * Append an url to the end of the disk queue
+     *
+     * @param url the url
+     */
+    public synchronized void enqueue(String url)
+    {
+        DatabaseEntry key = new DatabaseEntry();
+        LongBinding.longToEntry(this.nextSequence++, key);
+        this.queue.put(null, key, urlEntry(url));
+        this.queuedOnDisk++;
+    }
+
+    /**
+     * Move urls from the start of the disk queue into the head
+     *
+     * @param max maximum number of urls to load
+     * @return the loaded urls in queue order
+     */
+    public synchronized List<String> loadHead(int max)
+    {
+        List<String> urls = new ArrayList<>();
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        Cursor cursor = this.queue.openCursor(null, null);
+        try
+        {
+            while (urls.size() < max && cursor.getNext(key, data, LockMode.DEFAULT) == OperationStatus.SUCCESS)
+            {
+                String url = StringBinding.entryToString(data);
+                this.head.put(null, urlEntry(url), new DatabaseEntry(new byte[0]));
+                cursor.delete();
+                this.queuedOnDisk--;
+                urls.add(url);
+            }
+        } finally
+        {
+            cursor.close();
+        }
+        return urls;
+    }
+
+    /**
+     * @return all urls of the head, which were loaded or in flight when the crawler stopped
+     */
+    public synchronized List<String> recoverHead()
+    {
+        List<String> urls = new ArrayList<>();
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        Cursor cursor = this.head.openCursor(null, null);
+        try
+        {
+            while (cursor.getNext(key, data, LockMode.DEFAULT) == OperationStatus.SUCCESS)
+            {
+                urls.add(StringBinding.entryToString(key));
+            }
+        } finally
+        {
+            cursor.close();
+        }
+        return urls;
+    }
+
+    /**
+     * Remove a crawled url from the head and flush the log. Every checkpointInterval pages the environment is synced
+     * to disk.
+     *
+     * @param url the crawled url
+     */
+    public synchronized void done(String url)
+    {
+        this.head.delete(null, urlEntry(url));
+        if (++this.pagesSinceCheckpoint >= this.checkpointInterval)
+        {
+            checkpoint();
+        } else
+        {
+            this.environment.flushLog(false);
+        }
+    }
+
+    /**
+     * Write all changes to disk
+     */
+    public synchronized void checkpoint()
+    {
+        this.environment.sync();
+        this.pagesSinceCheckpoint = 0;
+        logger.debug("Frontier checkpoint written to " + this.home);
+    }
+
+    public synchronized long getQueuedOnDisk()
+    {
+        return queuedOnDisk;
+    }
+
+    public synchronized void setCheckpointInterval(int checkpointInterval)
+    {
+        this.checkpointInterval = Math.max(1, checkpointInterval);
+    }
+
+    public synchronized void putMetadata(String name, String value)
+    {
+        DatabaseEntry data = new DatabaseEntry();
+        StringBinding.stringToEntry(value, data);
+        this.meta.put(null, urlEntry(name), data);
+    }
+
+    /**
+     * @return the stored value or null if no value is stored for the name
+     */
+    public synchronized String getMetadata(String name)
+    {
+        DatabaseEntry data = new DatabaseEntry();
+        if (this.meta.get(null, urlEntry(name), data, LockMode.DEFAULT) != OperationStatus.SUCCESS)
+        {
+            return null;
+        }
+        return StringBinding.entryToString(data);
+    }
+
+    /**
+     * Store the revisit history of an url
+     *
+     * @param url    the url
+     * @param record the history and next visit of the url
+     */
+    synchronized void putRevisit(String url, RevisitRecord record)
+    {
+        TupleOutput output = new TupleOutput();
+        output.writeLong(record.nextVisit);
+        output.writeLong(record.lastVisit);
+        output.writeLong(record.interval);
+        output.writeInt(record.checks);
+        output.writeInt(record.changes);
+        output.writeLong(record.observed);
+        output.writeLong(record.fingerprint);
+        this.revisits.put(null, urlEntry(url),
+                new DatabaseEntry(output.getBufferBytes(), 0, output.getBufferLength()));
+    }
+
+    /**
+     * @return the revisit histories of all visited urls
+     */
+    synchronized Map<String, RevisitRecord> loadRevisits()
+    {
+        Map<String, RevisitRecord> records = new HashMap<>();
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry data = new DatabaseEntry();
+        Cursor cursor = this.revisits.openCursor(null, null);
+        try
+        {
+            while (cursor.getNext(key, data, LockMode.READ_UNCOMMITTED) == OperationStatus.SUCCESS)
+            {
+                TupleInput input = new TupleInput(data.getData(), data.getOffset(), data.getSize());
+                records.put(StringBinding.entryToString(key), new RevisitRecord(input.readLong(), input.readLong(),
+                        input.readLong(), input.readInt(), input.readInt(), input.readLong(), input.readLong()));
+            }
+        } finally
+        {
+            cursor.close();
+        }
+        return records;
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        checkpoint();
+        this.seen.close();
+        this.queue.close();
+        this.head.close();
+        this.meta.close();
+        this.revisits.close();
+        this.environment.close();
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "PersistentFrontier: " + this.home + "; " + this.queuedOnDisk + " urls queued on disk; "
+                + this.stateCounts[UrlState.VISITED.ordinal()] + " visited";
+    }
+
+    private static DatabaseEntry urlEntry(String url)
+    {
+        DatabaseEntry entry = new DatabaseEntry();
+        StringBinding.stringToEntry(url, entry);
+        return entry;
+    }
+
+    /**
+     * Value of the seen database. Records written before the validators were stored end after the timestamp.
+     */
+    private static class SeenRecord
+    {
+        private UrlState state;
+        private long lastModified;
+        private int contentLength;
+        private String etag;
+
+        private SeenRecord(UrlState state)
+        {
+            this.state = state;
+            this.lastModified = NO_TIMESTAMP;
+        }
+
+        private static SeenRecord read(DatabaseEntry data)
+        {
+            TupleInput input = new TupleInput(data.getData(), data.getOffset(), data.getSize());
+            SeenRecord record = new SeenRecord(UrlState.values()[input.readByte()]);
+            record.lastModified = input.readLong();
+            if (input.available() > 0)
+            {
+                record.contentLength = input.readInt();
+                record.etag = input.readString();
+            }
+            return record;
+        }
+
+        private DatabaseEntry toEntry()
+        {
+            TupleOutput output = new TupleOutput();
+            output.writeByte(this.state.ordinal());
+            output.writeLong(this.lastModified);
+            if (this.contentLength != 0 || this.etag != null)
+            {
+                output.writeInt(this.contentLength);
+                output.writeString(this.etag);
+            }
+            return new DatabaseEntry(output.getBufferBytes(), 0, output.getBufferLength());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.frontier;
+
+/**
+ * Revisit history of a single url, see {@link RevisitScheduler}
+ */
+class RevisitRecord
+{
+    long nextVisit; // time of the next check in milliseconds
+    long lastVisit; // time of the last check in milliseconds
+    long interval; // milliseconds between the last and the next check
+    int checks; // revisits in the recent history
+    int changes; // revisits of the recent history which found a changed page
+    long observed; // milliseconds covered by the recent history
+    long fingerprint; // SimHash of the last text, 0 if unknown
+
+    RevisitRecord()
+    {
+    }
+
+    RevisitRecord(long nextVisit, long lastVisit, long interval, int checks, int changes, long observed,
+                  long fingerprint)
+    {
+        this.nextVisit = nextVisit;
+        this.lastVisit = lastVisit;
+        this.interval = interval;
+        this.checks = checks;
+        this.changes = changes;
+        this.observed = observed;
+        this.fingerprint = fingerprint;
+    }
+}
@@ -0,0 +1,246 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.frontier;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.SimHash;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.SimHashIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time ordered revisit queue of a crawler.
+ * <p>
+ * Every visited page gets a record with its recent history: how often it was checked, how often it had changed and
+ * the time the checks covered. The change rate is estimated from this history with the estimator of Cho and
+ * Garcia-Molina, r = -ln((n - X + 0.5) / (n + 0.5)) changes per check interval for n checks with X changes, and the
+ * next check is planned after the expected time until the next change. The interval grows or shrinks at most by
+ * BACKOFF per check and stays between minInterval and maxInterval, so a page which never changes is checked
+ * rarely, but never dropped, and a page which changes on every check is checked every minInterval.
+ * <p>
+ * A revisit counts as changed if the validators of the page changed. Pages without validators are compared by the
+ * SimHash of their text, texts within the near duplicate distance count as unchanged, so a changed ad or date does
+ * not reset the interval.
+ * <p>
+ * Sitemaps can declare the last modification of a page, a page which was modified after its last visit is due at
+ * once.
+ * <p>
+ * With a {@link PersistentFrontier} the records are written through to disk and loaded again on open, so the schedule
+ * survives a restart.
+ */
+public class RevisitScheduler
+{
+    public static final long DEFAULT_MIN_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+    public static final long DEFAULT_MAX_INTERVAL = TimeUnit.DAYS.toMillis(30);
+    public static final long NONE = Long.MAX_VALUE;
+
+    private static final double BACKOFF = 2.0;
+    private static final int MAX_HISTORY = 16; // older checks are weighted down, so the estimate follows changes
+
+    private final Map<String, RevisitRecord> records = new HashMap<>();
+    private final PriorityQueue<Due> queue = new PriorityQueue<>(); // next visits, may contain outdated entries
+    private final PersistentFrontier persistent; // null for in memory frontiers
+    private long minInterval = DEFAULT_MIN_INTERVAL;
+    private long maxInterval = DEFAULT_MAX_INTERVAL;
+
+    /**
+     * @param persistent the persistent frontier which stores the schedule or null to keep it in memory
+     */
+    public RevisitScheduler(PersistentFrontier persistent)
+    {
+        this.persistent = persistent;
+        if (persistent != null)
+        {
+            this.records.putAll(persistent.loadRevisits());
+            for (Map.Entry<String, RevisitRecord> record : this.records.entrySet())
+            {
+                this.queue.add(new Due(record.getValue().nextVisit, record.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Record a check of a page and schedule its next visit
+     *
+     * @param url         the checked url
+     * @param modified    True if the validators of the page changed, null if the page has no validators and its
+     *                    fingerprint decides
+     * @param fingerprint SimHash of the text of the page, 0 if the page was not downloaded again
+     * @param now         time of the check in milliseconds
+     * @return time of the next visit
+     */
+    public synchronized long visited(String url, Boolean modified, long fingerprint, long now)
+    {
+        RevisitRecord record = this.records.get(url);
+        if (record == null)
+        {
+            record = new RevisitRecord();
+            record.interval = this.minInterval;
+            this.records.put(url, record);
+        } else
+        {
+            boolean changed = modified != null ? modified : fingerprintChanged(record.fingerprint, fingerprint);
+            record.checks++;
+            if (changed)
+            {
+                record.changes++;
+            }
+            record.observed += Math.max(0, now - record.lastVisit);
+            if (record.checks > MAX_HISTORY)
+            {
+                record.checks /= 2;
+                record.changes /= 2;
+                record.observed /= 2;
+            }
+            record.interval = nextInterval(record);
+        }
+        if (fingerprint != 0)
+        {
+            record.fingerprint = fingerprint;
+        }
+        record.lastVisit = now;
+        record.nextVisit = now + record.interval;
+        this.queue.add(new Due(record.nextVisit, url));
+        if (this.persistent != null)
+        {
+            this.persistent.putRevisit(url, record);
+        }
+        return record.nextVisit;
+    }
+
+    /**
+     * Use the last modification time a sitemap declares for a visited url. If the page was modified after its last
+     * visit, the url is due now instead of at its estimated time.
+     *
+     * @param url          the url
+     * @param lastModified declared modification time in milliseconds
+     * @param now          the current time in milliseconds
+     * @return boolean: True if the url has a record and was made due
+     */
+    public synchronized boolean lastModified(String url, long lastModified, long now)
+    {
+        RevisitRecord record = this.records.get(url);
+        if (record == null || lastModified <= record.lastVisit || record.nextVisit <= now)
+        {
+            return false;
+        }
+        record.nextVisit = now;
+        this.queue.add(new Due(now, url));
+        if (this.persistent != null)
+        {
+            this.persistent.putRevisit(url, record);
+        }
+        return true;
+    }
+
+    private static boolean fingerprintChanged(long previous, long current)
+    {
+        if (previous == 0 || current == 0)
+        {
+            return true;
+        }
+        return SimHash.distance(previous, current) > SimHashIndex.DEFAULT_MAX_DISTANCE;
+    }
+
+    /**
+     * @return the expected time until the next change, at most BACKOFF times longer or shorter than the last interval
+     */
+    private long nextInterval(RevisitRecord record)
+    {
+        double meanInterval = Math.max(1.0, (double) record.observed / record.checks);
+        double changesPerCheck = -Math.log((record.checks - record.changes + 0.5) / (record.checks + 0.5));
+        double expected = changesPerCheck > 0 ? meanInterval / changesPerCheck : Double.MAX_VALUE;
+        double bounded = Math.max(record.interval / BACKOFF, Math.min(record.interval * BACKOFF, expected));
+        return Math.max(this.minInterval, Math.min(this.maxInterval, (long) bounded));
+    }
+
+    /**
+     * Remove the urls which are due from the queue. They are scheduled again when they were visited.
+     *
+     * @param now the current time in milliseconds
+     * @return the due urls, earliest first
+     */
+    public synchronized List<String> pollDue(long now)
+    {
+        List<String> due = new ArrayList<>();
+        while (!this.queue.isEmpty() && this.queue.peek().visitAt <= now)
+        {
+            Due next = this.queue.poll();
+            RevisitRecord record = this.records.get(next.url);
+            if (record != null && record.nextVisit == next.visitAt)
+            {
+                due.add(next.url);
+            }
+        }
+        return due;
+    }
+
+    /**
+     * @return time of the earliest scheduled visit or {@link #NONE} if no visit is scheduled
+     */
+    public synchronized long nextVisit()
+    {
+        while (!this.queue.isEmpty())
+        {
+            Due next = this.queue.peek();
+            RevisitRecord record = this.records.get(next.url);
+            if (record != null && record.nextVisit == next.visitAt)
+            {
+                return next.visitAt;
+            }
+            this.queue.poll();
+        }
+        return NONE;
+    }
+
+    /**
+     * @param url the url
+     * @return milliseconds between the last and the next visit of the url, 0 if the url was not visited
+     */
+    public synchronized long getInterval(String url)
+    {
+        RevisitRecord record = this.records.get(url);
+        return record == null ? 0 : record.interval;
+    }
+
+    /**
+     * @return number of urls with a revisit schedule
+     */
+    public synchronized int size()
+    {
+        return this.records.size();
+    }
+
+    /**
+     * @param minInterval minimum milliseconds between two visits of a page
+     * @param maxInterval maximum milliseconds between two visits of a page
+     */
+    public synchronized void setIntervals(long minInterval, long maxInterval)
+    {
+        this.minInterval = Math.max(0, minInterval);
+        this.maxInterval = Math.max(this.minInterval, maxInterval);
+    }
+
+    /**
+     * Scheduled visit in the queue, outdated once the record of the url got a new visit time
+     */
+    private static class Due implements Comparable<Due>
+    {
+        private final long visitAt;
+        private final String url;
+
+        private Due(long visitAt, String url)
+        {
+            this.visitAt = visitAt;
+            this.url = url;
+        }
+
+        @Override
+        public int compareTo(Due other)
+        {
+            return Long.compare(this.visitAt, other.visitAt);
+        }
+    }
+}
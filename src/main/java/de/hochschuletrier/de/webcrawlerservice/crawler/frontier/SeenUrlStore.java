@@ -0,0 +1,485 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.frontier;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.UrlFrontier.UrlState;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.Murmur3;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory bounded store for the state of every url a crawler has seen.
+ * <p>
+ * Urls are not kept as Strings. Every url is reduced to a 128 bit fingerprint, which is stored together with its
+ * state, last modified timestamp and body length in an open addressing table outside of the java heap. A bloom filter
+ * in front of the table answers most lookups for new urls without touching the table. It is rebuilt with every grow
+ * of the table, so its false positive rate stays low however many urls are stored. The table is held in direct
+ * memory while it fits into the memory budget and spills into a memory mapped temporary file afterwards. While the
+ * table grows the old and the new table are both alive, so the table only stays in direct memory while both fit into
+ * the budget together. Once the table is spilled, only the bloom filter stays in memory, about 1.25 bytes per slot.
+ * <p>
+ * Entity tags have no fixed length, they are kept on the heap for the few urls which are revisited and sent one. They
+ * get a sixteenth of the budget, the least recently used tags are dropped beyond that. A dropped tag only costs the
+ * conditional request, the last modified date is still sent.
+ */
+public class SeenUrlStore implements UrlStateStore
+{
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    private static final int SLOT_SIZE = 32; // fingerprint 16, last modified 8, state 1, padding 3, length 4
+    private static final int OFFSET_LAST_MODIFIED = 16;
+    private static final int OFFSET_STATE = 24;
+    private static final int OFFSET_CONTENT_LENGTH = 28;
+    private static final int MAX_SEGMENT_SLOTS = 1 << 20; // 32 MB per buffer segment
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final int BLOOM_HASHES = 7;
+    private static final int BLOOM_BITS_PER_SLOT = 10; // at most 75% of the slots are used, >= 13 bits per url
+    private static final int ETAG_ENTRY_OVERHEAD = 96; // heap bytes of a map entry, key and string besides the chars
+
+    private static final Logger logger = LoggerFactory.getLogger(SeenUrlStore.class);
+
+    private final long tableBudget; // bytes of memory the table and the bloom filter may use before spilling to disk
+    private final long etagBudget; // heap bytes the entity tags may use
+    private final File spillDirectory;
+    private BloomFilter bloomFilter;
+    private ByteBuffer[] segments;
+    private int segmentShift;
+    private long capacity;
+    private long size;
+    private boolean spilled;
+    private boolean direct; // the current table is in direct memory
+    private final long[] stateCounts;
+    private final Map<Fingerprint, String> etags; // entity tags of revisited urls, in access order
+    private long etagBytes;
+    private long timestampCount;
+    private long absentLookups; // lookups for urls which are not in the store
+    private long bloomFalsePositives; // absent urls the bloom filter could not reject
+
+    public SeenUrlStore()
+    {
+        this(DEFAULT_MEMORY_BUDGET, new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param memoryBudget   bytes of memory the store may use, one sixteenth is used for entity tags
+     * @param spillDirectory directory for the table file, once the table outgrows the memory budget
+     */
+    public SeenUrlStore(long memoryBudget, File spillDirectory)
+    {
+        this.etagBudget = memoryBudget / 16;
+        this.tableBudget = memoryBudget - this.etagBudget;
+        this.spillDirectory = spillDirectory;
+        this.stateCounts = new long[UrlState.values().length];
+        this.etags = new LinkedHashMap<>(16, 0.75f, true);
+        allocate(1024, 0);
+    }
+
+    @Override
+    public synchronized UrlState get(String url)
+    {
+        long[] fingerprint = Murmur3.hash128(url);
+        long slot = find(fingerprint);
+        return slot < 0 ? null : readState(slot);
+    }
+
+    @Override
+    public synchronized boolean putIfAbsent(String url, UrlState state)
+    {
+        long[] fingerprint = Murmur3.hash128(url);
+        if (find(fingerprint) >= 0)
+        {
+            return false;
+        }
+        insert(fingerprint, state, NO_TIMESTAMP);
+        return true;
+    }
+
+    @Override
+    public synchronized UrlState put(String url, UrlState state)
+    {
+        long[] fingerprint = Murmur3.hash128(url);
+        long slot = find(fingerprint);
+        if (slot < 0)
+        {
+            insert(fingerprint, state, NO_TIMESTAMP);
+            return null;
+        }
+        UrlState previous = readState(slot);
+        writeState(slot, state);
+        return previous;
+    }
+
+    @Override
+    public synchronized boolean replace(String url, UrlState expected, UrlState state)
+    {
+        long slot = find(Murmur3.hash128(url));
+        if (slot < 0 || readState(slot) != expected)
+        {
+            return false;
+        }
+        writeState(slot, state);
+        return true;
+    }
+
+    @Override
+    public synchronized void setLastModified(String url, Date date)
+    {
+        long[] fingerprint = Murmur3.hash128(url);
+        long slot = find(fingerprint);
+        if (slot < 0)
+        {
+            insert(fingerprint, UrlState.VISITED, NO_TIMESTAMP);
+            slot = find(fingerprint);
+        }
+        ByteBuffer segment = segment(slot);
+        int offset = offset(slot) + OFFSET_LAST_MODIFIED;
+        if (segment.getLong(offset) == NO_TIMESTAMP)
+        {
+            this.timestampCount++;
+        }
+        segment.putLong(offset, date.getTime());
+    }
+
+    @Override
+    public synchronized Date getLastModified(String url)
+    {
+        long slot = find(Murmur3.hash128(url));
+        if (slot < 0)
+        {
+            return null;
+        }
+        long time = segment(slot).getLong(offset(slot) + OFFSET_LAST_MODIFIED);
+        return time == NO_TIMESTAMP ? null : new Date(time);
+    }
+
+    @Override
+    public synchronized void setValidators(String url, String etag, int contentLength)
+    {
+        long[] fingerprint = Murmur3.hash128(url);
+        long slot = find(fingerprint);
+        if (slot < 0)
+        {
+            insert(fingerprint, UrlState.VISITED, NO_TIMESTAMP);
+            slot = find(fingerprint);
+        }
+        segment(slot).putInt(offset(slot) + OFFSET_CONTENT_LENGTH, contentLength);
+        Fingerprint key = new Fingerprint(nonZero(fingerprint[0]), fingerprint[1]);
+        String previous = etag == null ? this.etags.remove(key) : this.etags.put(key, etag);
+        if (previous != null)
+        {
+            this.etagBytes -= etagSize(previous);
+        }
+        if (etag != null)
+        {
+            this.etagBytes += etagSize(etag);
+            Iterator<String> eldest = this.etags.values().iterator();
+            while (this.etagBytes > this.etagBudget && eldest.hasNext())
+            {
+                this.etagBytes -= etagSize(eldest.next());
+                eldest.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized String getETag(String url)
+    {
+        long[] fingerprint = Murmur3.hash128(url);
+        return this.etags.get(new Fingerprint(nonZero(fingerprint[0]), fingerprint[1]));
+    }
+
+    @Override
+    public synchronized int getContentLength(String url)
+    {
+        long slot = find(Murmur3.hash128(url));
+        return slot < 0 ? 0 : segment(slot).getInt(offset(slot) + OFFSET_CONTENT_LENGTH);
+    }
+
+    @Override
+    public synchronized long count(UrlState state)
+    {
+        return this.stateCounts[state.ordinal()];
+    }
+
+    @Override
+    public synchronized long countWithLastModified()
+    {
+        return this.timestampCount;
+    }
+
+    public synchronized long size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return share of lookups for unknown urls that passed the bloom filter and had to probe the table
+     */
+    public synchronized double getFalsePositiveRate()
+    {
+        return this.absentLookups == 0 ? 0 : (double) this.bloomFalsePositives / this.absentLookups;
+    }
+
+    /**
+     * @return theoretical false positive rate of the bloom filter for the current number of urls
+     */
+    public synchronized double getExpectedFalsePositiveRate()
+    {
+        return this.bloomFilter.expectedFalsePositiveRate();
+    }
+
+    /**
+     * @return bytes used by the bloom filter and the table, including the spilled part
+     */
+    public synchronized long getByteUsage()
+    {
+        return this.bloomFilter.byteSize() + this.capacity * SLOT_SIZE;
+    }
+
+    /**
+     * @return estimated heap bytes used by the entity tags
+     */
+    public synchronized long getETagByteUsage()
+    {
+        return this.etagBytes;
+    }
+
+    public synchronized boolean isSpilled()
+    {
+        return this.spilled;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("SeenUrlStore: %d urls; %d bytes (%s); false positive rate %.5f (expected %.5f)",
+                this.size, getByteUsage(), this.spilled ? "spilled to disk" : "in memory",
+                getFalsePositiveRate(), getExpectedFalsePositiveRate());
+    }
+
+    /**
+     * @return slot of the fingerprint or -1 if it is not in the table
+     */
+    private long find(long[] fingerprint)
+    {
+        long hash1 = nonZero(fingerprint[0]);
+        if (!this.bloomFilter.mightContain(hash1, fingerprint[1]))
+        {
+            this.absentLookups++;
+            return -1;
+        }
+        long mask = this.capacity - 1;
+        for (long slot = fingerprint[1] & mask; ; slot = (slot + 1) & mask)
+        {
+            ByteBuffer segment = segment(slot);
+            int offset = offset(slot);
+            long storedHash1 = segment.getLong(offset);
+            if (storedHash1 == 0)
+            {
+                this.absentLookups++;
+                this.bloomFalsePositives++;
+                return -1;
+            }
+            if (storedHash1 == hash1 && segment.getLong(offset + 8) == fingerprint[1])
+            {
+                return slot;
+            }
+        }
+    }
+
+    private void insert(long[] fingerprint, UrlState state, long lastModified)
+    {
+        if ((this.size + 1) * 4 > this.capacity * 3)
+        {
+            grow();
+        }
+        long hash1 = nonZero(fingerprint[0]);
+        this.bloomFilter.put(hash1, fingerprint[1]);
+        writeSlot(hash1, fingerprint[1], lastModified, (byte) (state.ordinal() + 1), 0);
+        this.stateCounts[state.ordinal()]++;
+        if (lastModified != NO_TIMESTAMP)
+        {
+            this.timestampCount++;
+        }
+        this.size++;
+    }
+
+    private void writeSlot(long hash1, long hash2, long lastModified, byte state, int contentLength)
+    {
+        long mask = this.capacity - 1;
+        long slot = hash2 & mask;
+        while (segment(slot).getLong(offset(slot)) != 0)
+        {
+            slot = (slot + 1) & mask;
+        }
+        ByteBuffer segment = segment(slot);
+        int offset = offset(slot);
+        segment.putLong(offset, hash1);
+        segment.putLong(offset + 8, hash2);
+        segment.putLong(offset + OFFSET_LAST_MODIFIED, lastModified);
+        segment.put(offset + OFFSET_STATE, state);
+        segment.putInt(offset + OFFSET_CONTENT_LENGTH, contentLength);
+    }
+
+    private UrlState readState(long slot)
+    {
+        return UrlState.values()[segment(slot).get(offset(slot) + OFFSET_STATE) - 1];
+    }
+
+    private void writeState(long slot, UrlState state)
+    {
+        UrlState previous = readState(slot);
+        this.stateCounts[previous.ordinal()]--;
+        this.stateCounts[state.ordinal()]++;
+        segment(slot).put(offset(slot) + OFFSET_STATE, (byte) (state.ordinal() + 1));
+    }
+
+    /**
+     * Double the table and the bloom filter and move all entries into the new table
+     */
+    private void grow()
+    {
+        ByteBuffer[] oldSegments = this.segments;
+        int oldShift = this.segmentShift;
+        long oldCapacity = this.capacity;
+        // the old table is alive until all entries are moved, so it counts against the budget of the new one
+        allocate(oldCapacity * 2, this.direct ? oldCapacity * SLOT_SIZE : 0);
+        for (long slot = 0; slot < oldCapacity; slot++)
+        {
+            ByteBuffer segment = oldSegments[(int) (slot >>> oldShift)];
+            int offset = (int) (slot & ((1L << oldShift) - 1)) * SLOT_SIZE;
+            long hash1 = segment.getLong(offset);
+            if (hash1 != 0)
+            {
+                long hash2 = segment.getLong(offset + 8);
+                this.bloomFilter.put(hash1, hash2);
+                writeSlot(hash1, hash2, segment.getLong(offset + OFFSET_LAST_MODIFIED),
+                        segment.get(offset + OFFSET_STATE), segment.getInt(offset + OFFSET_CONTENT_LENGTH));
+            }
+        }
+    }
+
+    /**
+     * Allocate an empty table and bloom filter, the table in direct memory if it fits into the budget and in a
+     * mapped file otherwise
+     *
+     * @param reservedBytes direct memory still held by the previous table
+     */
+    private void allocate(long newCapacity, long reservedBytes)
+    {
+        this.bloomFilter = new BloomFilter(Math.max(1024, newCapacity * BLOOM_BITS_PER_SLOT / 8), BLOOM_HASHES);
+        int segmentSlots = (int) Math.min(newCapacity, MAX_SEGMENT_SLOTS);
+        int segmentCount = (int) (newCapacity / segmentSlots);
+        ByteBuffer[] newSegments = new ByteBuffer[segmentCount];
+        this.direct = newCapacity * SLOT_SIZE + this.bloomFilter.byteSize() + reservedBytes <= this.tableBudget;
+        if (this.direct)
+        {
+            for (int i = 0; i < segmentCount; i++)
+            {
+                newSegments[i] = ByteBuffer.allocateDirect(segmentSlots * SLOT_SIZE);
+            }
+        } else
+        {
+            mapSegments(newSegments, segmentSlots);
+            if (!this.spilled)
+            {
+                logger.info("Seen url table exceeds memory budget, spilling to " + this.spillDirectory);
+                this.spilled = true;
+            }
+        }
+        this.segments = newSegments;
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentSlots);
+        this.capacity = newCapacity;
+    }
+
+    private void mapSegments(ByteBuffer[] newSegments, int segmentSlots)
+    {
+        long segmentBytes = (long) segmentSlots * SLOT_SIZE;
+        try
+        {
+            File file = File.createTempFile("seen-urls-", ".tbl", this.spillDirectory);
+            file.deleteOnExit();
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+            {
+                randomAccessFile.setLength(segmentBytes * newSegments.length);
+                FileChannel channel = randomAccessFile.getChannel();
+                for (int i = 0; i < newSegments.length; i++)
+                {
+                    newSegments[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * segmentBytes, segmentBytes);
+                }
+            }
+            // the mapping stays valid after the file is unlinked, the space is released with the buffers
+            if (!file.delete())
+            {
+                logger.debug("Could not delete spill file " + file + " before exit");
+            }
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException("Could not spill seen url table to " + this.spillDirectory, e);
+        }
+    }
+
+    private ByteBuffer segment(long slot)
+    {
+        return this.segments[(int) (slot >>> this.segmentShift)];
+    }
+
+    private int offset(long slot)
+    {
+        return (int) (slot & ((1L << this.segmentShift) - 1)) * SLOT_SIZE;
+    }
+
+    private static long etagSize(String etag)
+    {
+        return ETAG_ENTRY_OVERHEAD + 2L * etag.length();
+    }
+
+    /**
+     * A zero first half marks an empty slot, so it is never stored
+     */
+    private static long nonZero(long hash)
+    {
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Heap key of a fingerprint
+     */
+    private static class Fingerprint
+    {
+        private final long hash1;
+        private final long hash2;
+
+        private Fingerprint(long hash1, long hash2)
+        {
+            this.hash1 = hash1;
+            this.hash2 = hash2;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Fingerprint))
+            {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) o;
+            return this.hash1 == other.hash1 && this.hash2 == other.hash2;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (int) (this.hash2 ^ (this.hash2 >>> 32));
+        }
+    }
+}
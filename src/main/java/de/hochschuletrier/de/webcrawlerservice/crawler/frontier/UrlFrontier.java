@@ -0,0 +1,378 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.frontier;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.UrlCanonicalizer;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * URL frontier of a single crawler.
+ * <p>
+ * Keeps the state of every url the crawler has seen in one hashed, memory bounded {@link SeenUrlStore}, so all
+ * membership checks are O(1). Urls are expected in canonical form, the state is stored under their
+ * {@link UrlCanonicalizer#dedupKey(String)}, so http and https or www variants of a page are only crawled once.
+ * Open urls are queued in insertion order per host in the {@link HostScheduler}, which also takes care of the
+ * politeness delay.
+ * <p>
+ * With a {@link PersistentFrontier} the states and the open urls are stored on disk. Only a small head of the queue
+ * is held in memory and refilled from disk, so the crawl can be resumed after a restart.
+ * <p>
+ * Visited pages of revisiting crawlers are planned by the {@link RevisitScheduler} and handed back with
+ * {@link #requeueDueRevisits(long)} once they are due.
+ */
+public class UrlFrontier
+{
+    /**
+     * Lifecycle of an url inside the frontier
+     */
+    public enum UrlState
+    {
+        QUEUED, IN_FLIGHT, VISITED, DEAD
+    }
+
+    private static final int DEFAULT_HEAD_SIZE = 1000;
+
+    private final UrlStateStore states; // state, last modified timestamp and validators of every known url
+    private final HostScheduler scheduler; // open urls queued per host
+    private final PersistentFrontier persistent; // disk queue and state store, null for in memory frontiers
+    private final int headSize; // maximum number of open urls held in memory for persistent frontiers
+    private final RevisitScheduler revisits; // next visits of the visited pages, stored with the persistent frontier
+
+    /**
+     * @param crawlingDelay minimum interval in milliseconds between two requests to the same host
+     * @param maxWorkers    maximum number of urls that are crawled at the same time
+     */
+    public UrlFrontier(long crawlingDelay, int maxWorkers)
+    {
+        this(crawlingDelay, maxWorkers, new SeenUrlStore());
+    }
+
+    /**
+     * @param crawlingDelay minimum interval in milliseconds between two requests to the same host
+     * @param maxWorkers    maximum number of urls that are crawled at the same time
+     * @param states        store for the state of the seen urls
+     */
+    public UrlFrontier(long crawlingDelay, int maxWorkers, SeenUrlStore states)
+    {
+        this.states = states;
+        this.scheduler = new HostScheduler(crawlingDelay, maxWorkers);
+        this.persistent = null;
+        this.headSize = Integer.MAX_VALUE;
+        this.revisits = new RevisitScheduler(null);
+    }
+
+    /**
+     * Create a frontier on top of a persistent frontier. Urls which were queued in memory or in flight when the
+     * persistent frontier was closed are queued again.
+     *
+     * @param crawlingDelay minimum interval in milliseconds between two requests to the same host
+     * @param maxWorkers    maximum number of urls that are crawled at the same time
+     * @param persistent    the opened persistent frontier
+     */
+    public UrlFrontier(long crawlingDelay, int maxWorkers, PersistentFrontier persistent)
+    {
+        this.states = persistent;
+        this.scheduler = new HostScheduler(crawlingDelay, maxWorkers);
+        this.persistent = persistent;
+        this.headSize = DEFAULT_HEAD_SIZE;
+        this.revisits = new RevisitScheduler(persistent);
+        for (String url : persistent.recoverHead())
+        {
+            this.states.put(key(url), UrlState.QUEUED);
+            this.scheduler.add(url);
+        }
+    }
+
+    /**
+     * Queue an url if it is not known to the frontier yet
+     *
+     * @param url the url to queue
+     * @return boolean: True if the url was queued
+     */
+    public boolean offer(String url)
+    {
+        if (this.states.putIfAbsent(key(url), UrlState.QUEUED))
+        {
+            schedule(url);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Queue an already visited url again, used for revisiting pages
+     *
+     * @param url the url to queue
+     * @return boolean: True if the url was queued
+     */
+    public boolean requeue(String url)
+    {
+        UrlState previous = this.states.put(key(url), UrlState.QUEUED);
+        if (previous != UrlState.QUEUED)
+        {
+            schedule(url);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Queue the visited pages whose revisit is due
+     *
+     * @param now the current time in milliseconds
+     * @return number of queued urls
+     */
+    public int requeueDueRevisits(long now)
+    {
+        int queued = 0;
+        for (String url : this.revisits.pollDue(now))
+        {
+            if (requeue(url))
+            {
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Wait for the next url whose host is ready. The url has to be handed back with {@link #release(String)}.
+     *
+     * @return the next url or null if the frontier is exhausted
+     * @throws InterruptedException if the waiting thread gets interrupted
+     */
+    public String take() throws InterruptedException
+    {
+        refillHead();
+        String url = this.scheduler.take();
+        if (url != null)
+        {
+            this.states.replace(key(url), UrlState.QUEUED, UrlState.IN_FLIGHT);
+        }
+        return url;
+    }
+
+    /**
+     * Hand back an url returned by {@link #take()} after it was crawled
+     *
+     * @param url the crawled url
+     */
+    public void release(String url)
+    {
+        this.states.replace(key(url), UrlState.IN_FLIGHT, UrlState.VISITED);
+        if (this.persistent != null)
+        {
+            this.persistent.done(url);
+            refillHead();
+        }
+        this.scheduler.release(url);
+    }
+
+    /**
+     * Hand back an url returned by {@link #take()}, which was not requested because another instance crawls its host
+     * now. The host is ready again at once.
+     *
+     * @param url the url
+     */
+    public void handOff(String url)
+    {
+        this.states.replace(key(url), UrlState.IN_FLIGHT, UrlState.VISITED);
+        if (this.persistent != null)
+        {
+            this.persistent.done(url);
+            refillHead();
+        }
+        this.scheduler.release(url, false);
+    }
+
+    /**
+     * Queue an url in memory or append it to the disk queue of a persistent frontier
+     */
+    private void schedule(String url)
+    {
+        if (this.persistent == null)
+        {
+            this.scheduler.add(url);
+        } else
+        {
+            this.persistent.enqueue(url);
+            refillHead();
+        }
+    }
+
+    /**
+     * Load urls from the disk queue, once less than half of the head is left in memory
+     */
+    private synchronized void refillHead()
+    {
+        if (this.persistent != null && this.scheduler.size() < this.headSize / 2)
+        {
+            for (String url : this.persistent.loadHead(this.headSize - this.scheduler.size()))
+            {
+                this.scheduler.add(url);
+            }
+        }
+    }
+
+    public void markVisited(String url)
+    {
+        this.states.put(key(url), UrlState.VISITED);
+    }
+
+    public void markDead(String url)
+    {
+        this.states.put(key(url), UrlState.DEAD);
+    }
+
+    public void setLastModified(String url, Date date)
+    {
+        this.states.setLastModified(key(url), date);
+    }
+
+    /**
+     * @param url the url
+     * @return the last modified timestamp of a visited url or null if unknown
+     */
+    public Date getLastModified(String url)
+    {
+        return this.states.getLastModified(key(url));
+    }
+
+    public boolean hasLastModified(String url)
+    {
+        return this.states.getLastModified(key(url)) != null;
+    }
+
+    /**
+     * Store the entity tag and body length of the last full response of an url, they are needed for conditional
+     * revisits
+     *
+     * @param url           the url
+     * @param etag          the entity tag or null if the response had none
+     * @param contentLength length of the response body in bytes
+     */
+    public void setValidators(String url, String etag, int contentLength)
+    {
+        this.states.setValidators(key(url), etag, contentLength);
+    }
+
+    /**
+     * @param url the url
+     * @return the entity tag of a visited url or null if unknown
+     */
+    public String getETag(String url)
+    {
+        return this.states.getETag(key(url));
+    }
+
+    /**
+     * @param url the url
+     * @return body length of the last full response in bytes, 0 if unknown
+     */
+    public int getContentLength(String url)
+    {
+        return this.states.getContentLength(key(url));
+    }
+
+    /**
+     * @param url the url
+     * @return boolean: True if a last modified timestamp or an entity tag is stored for the url
+     */
+    public boolean hasValidators(String url)
+    {
+        return hasLastModified(url) || getETag(url) != null;
+    }
+
+    public boolean isKnown(String url)
+    {
+        return this.states.get(key(url)) != null;
+    }
+
+    public boolean isQueued(String url)
+    {
+        return this.states.get(key(url)) == UrlState.QUEUED;
+    }
+
+    public boolean isVisited(String url)
+    {
+        return this.states.get(key(url)) == UrlState.VISITED;
+    }
+
+    public boolean isDead(String url)
+    {
+        return this.states.get(key(url)) == UrlState.DEAD;
+    }
+
+    /**
+     * @return number of urls which are waiting to be crawled
+     */
+    public int size()
+    {
+        if (this.persistent == null)
+        {
+            return this.scheduler.size();
+        }
+        return (int) (this.scheduler.size() + this.persistent.getQueuedOnDisk());
+    }
+
+    public HostScheduler getScheduler()
+    {
+        return scheduler;
+    }
+
+    public RevisitScheduler getRevisits()
+    {
+        return revisits;
+    }
+
+    /**
+     * @return all urls which are still waiting to be crawled in memory
+     */
+    public List<String> remaining()
+    {
+        return this.scheduler.remaining();
+    }
+
+    /**
+     * @param state the state to count
+     * @return number of urls which are currently in the given state
+     */
+    public long count(UrlState state)
+    {
+        return this.states.count(state);
+    }
+
+    /**
+     * @return number of visited urls which have a last modified timestamp
+     */
+    public long countWithLastModified()
+    {
+        return this.states.countWithLastModified();
+    }
+
+    public UrlStateStore getStates()
+    {
+        return states;
+    }
+
+    private static String key(String url)
+    {
+        return UrlCanonicalizer.dedupKey(url);
+    }
+
+    public boolean isPersistent()
+    {
+        return this.persistent != null;
+    }
+
+    /**
+     * Write the state of a persistent frontier to disk and close it
+     */
+    public void close()
+    {
+        if (this.persistent != null)
+        {
+            this.persistent.close();
+        }
+    }
+}
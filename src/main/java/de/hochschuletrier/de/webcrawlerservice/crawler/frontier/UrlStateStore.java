@@ -0,0 +1,76 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.frontier;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.UrlFrontier.UrlState;
+
+import java.util.Date;
+
+/**
+ * Store for the state, last modified timestamp and validators of every url a crawler has seen
+ */
+public interface UrlStateStore
+{
+    /**
+     * @param url the url
+     * @return the state of the url or null if the url is unknown
+     */
+    UrlState get(String url);
+
+    /**
+     * Add the url with the given state if it is unknown
+     *
+     * @return boolean: True if the url was added
+     */
+    boolean putIfAbsent(String url, UrlState state);
+
+    /**
+     * Set the state of the url
+     *
+     * @return the previous state or null if the url was unknown
+     */
+    UrlState put(String url, UrlState state);
+
+    /**
+     * Set the state of the url only if it currently has the expected state
+     *
+     * @return boolean: True if the state was replaced
+     */
+    boolean replace(String url, UrlState expected, UrlState state);
+
+    /**
+     * Store the last modified timestamp of an url, unknown urls are added as visited
+     */
+    void setLastModified(String url, Date date);
+
+    /**
+     * @return the last modified timestamp or null if the url is unknown or has no timestamp
+     */
+    Date getLastModified(String url);
+
+    /**
+     * Store the validators of the last full response of an url, unknown urls are added as visited
+     *
+     * @param etag          the entity tag or null if the response had none
+     * @param contentLength length of the response body in bytes
+     */
+    void setValidators(String url, String etag, int contentLength);
+
+    /**
+     * @return the entity tag or null if the url is unknown or has no entity tag
+     */
+    String getETag(String url);
+
+    /**
+     * @return body length of the last full response in bytes, 0 if unknown
+     */
+    int getContentLength(String url);
+
+    /**
+     * @return number of urls in the given state
+     */
+    long count(UrlState state);
+
+    /**
+     * @return number of urls with a last modified timestamp
+     */
+    long countWithLastModified();
+}
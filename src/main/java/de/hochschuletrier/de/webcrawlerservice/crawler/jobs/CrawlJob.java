@@ -0,0 +1,144 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.jobs;
+
+import java.util.Date;
+
+/**
+ * A crawl submitted to the {@link CrawlJobScheduler}. The state is changed by the scheduler only, the job releases its
+ * task once it stopped for good, so the frontier of the crawler can be collected.
+ */
+public class CrawlJob
+{
+    private final long id;
+    private final String name;
+    private final int priority; // jobs with a higher priority start first
+    private final long sequence; // submission order of jobs with the same priority
+    private final Date submittedAt;
+    private final String uniqueName;
+    private volatile State state;
+    private volatile Date startedAt; // start of the last run
+    private volatile Date finishedAt; // end of the last run
+    private volatile CrawlTask task; // null once the job stopped for good
+    private volatile boolean cancelRequested;
+
+    CrawlJob(long id, String name, int priority, long sequence, CrawlTask task)
+    {
+        this.id = id;
+        this.name = name;
+        this.priority = priority;
+        this.sequence = sequence;
+        this.task = task;
+        this.uniqueName = task.getUniqueName();
+        this.submittedAt = new Date();
+        this.state = State.QUEUED;
+    }
+
+    void started()
+    {
+        this.state = State.RUNNING;
+        this.startedAt = new Date();
+        this.finishedAt = null;
+        this.cancelRequested = false;
+    }
+
+    void stopped(State state)
+    {
+        this.state = state;
+        this.finishedAt = new Date();
+        if (!state.isResumable())
+        {
+            this.task = null;
+        }
+    }
+
+    void setState(State state)
+    {
+        this.state = state;
+    }
+
+    CrawlTask getTask()
+    {
+        return task;
+    }
+
+    long getSequence()
+    {
+        return sequence;
+    }
+
+    boolean isCancelRequested()
+    {
+        return cancelRequested;
+    }
+
+    void setCancelRequested(boolean cancelRequested)
+    {
+        this.cancelRequested = cancelRequested;
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public String getUniqueName()
+    {
+        return uniqueName;
+    }
+
+    public int getPriority()
+    {
+        return priority;
+    }
+
+    public State getState()
+    {
+        return state;
+    }
+
+    public Date getSubmittedAt()
+    {
+        return submittedAt;
+    }
+
+    public Date getStartedAt()
+    {
+        return startedAt;
+    }
+
+    public Date getFinishedAt()
+    {
+        return finishedAt;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CrawlJob{id=" + id + ", name='" + name + "', priority=" + priority + ", state=" + state + '}';
+    }
+
+    public enum State
+    {
+        QUEUED, RUNNING, PAUSED, FINISHED, CANCELLED, INTERRUPTED, FAILED;
+
+        /**
+         * @return boolean: True if the job keeps its task and can be resumed
+         */
+        public boolean isResumable()
+        {
+            return this == PAUSED;
+        }
+
+        /**
+         * @return boolean: True if the job stopped for good
+         */
+        public boolean isStopped()
+        {
+            return this == FINISHED || this == CANCELLED || this == INTERRUPTED || this == FAILED;
+        }
+    }
+}
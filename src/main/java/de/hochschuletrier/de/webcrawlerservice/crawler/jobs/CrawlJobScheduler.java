@@ -0,0 +1,416 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.jobs;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.WorkerExecutors;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs the crawl jobs of the service with bounded admission.
+ * <p>
+ * At most maxRunning jobs run at the same time, further jobs wait in a queue ordered by their priority and then by
+ * their submission. The queue holds at most maxQueued jobs, a submission to a full queue is rejected, so a burst of
+ * requests can not pile up crawlers. Jobs are only handed to the executor when a slot is free, so its own queue stays
+ * empty.
+ * <p>
+ * Running jobs are paused and cancelled cooperatively, the crawler finishes its requests in flight and releases its
+ * threads. A paused job keeps its crawler and is queued again on resume. Once a job stopped for good its crawler is
+ * released, only the last maxHistory stopped jobs are remembered.
+ * <p>
+ * The queued and running jobs are published as executor metrics with the name crawl-jobs.
+ */
+@Component
+public class CrawlJobScheduler
+{
+    public static final int DEFAULT_MAX_QUEUED = 100;
+    public static final int DEFAULT_MAX_HISTORY = 1000;
+
+    private static final String EXECUTOR_NAME = "crawl-jobs";
+    private static final long SHUTDOWN_TIMEOUT = TimeUnit.MINUTES.toMillis(2); // time the crawlers get to stop
+    private static final Logger logger = LoggerFactory.getLogger(CrawlJobScheduler.class);
+
+    private final int maxRunning; // maximum number of jobs running at the same time
+    private final int maxQueued; // maximum number of jobs waiting for a slot
+    private final int maxHistory; // stopped jobs which are remembered
+    private final ExecutorService executor; // runs the jobs, never gets more than maxRunning tasks
+    private final PriorityQueue<CrawlJob> queue; // jobs waiting for a slot, highest priority first
+    private final Map<Long, CrawlJob> jobs; // all remembered jobs by id, oldest first
+    private final Set<String> reservedNames = new HashSet<>(); // crawlers of the reserved jobs
+    private long nextId = 1;
+    private int running; // jobs handed to the executor
+    private int reserved; // admitted jobs whose task is still created, they count against maxQueued
+    private int stopped; // remembered jobs which stopped for good
+
+    /**
+     * @param executionMode run the jobs on platform or virtual threads, see WorkerExecutors
+     * @param maxRunning    maximum number of jobs running at the same time
+     * @param maxQueued     maximum number of jobs waiting for a slot
+     * @param maxHistory    number of stopped jobs which are remembered
+     */
+    public CrawlJobScheduler(String executionMode, int maxRunning, int maxQueued, int maxHistory)
+    {
+        this.maxRunning = Math.max(1, maxRunning);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.maxHistory = Math.max(0, maxHistory);
+        this.executor = WorkerExecutors.newExecutor(executionMode, "crawl-job-", this.maxRunning);
+        this.queue = new PriorityQueue<>(Comparator.comparingInt(CrawlJob::getPriority).reversed()
+                .thenComparingLong(CrawlJob::getSequence));
+        this.jobs = new LinkedHashMap<>();
+    }
+
+    @Autowired
+    public CrawlJobScheduler(@Value("${crawler.execution.mode:platform}") String executionMode,
+                             @Value("${crawler.execution.max-concurrent-crawls:20}") int maxRunning,
+                             @Value("${crawler.jobs.max-queued:100}") int maxQueued,
+                             @Value("${crawler.jobs.history:1000}") int maxHistory,
+                             MeterRegistry meterRegistry)
+    {
+        this(executionMode, maxRunning, maxQueued, maxHistory);
+        Gauge.builder("executor.queued", this, CrawlJobScheduler::getQueued).tag("name", EXECUTOR_NAME)
+                .register(meterRegistry);
+        Gauge.builder("executor.active", this, CrawlJobScheduler::getRunning).tag("name", EXECUTOR_NAME)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue a new job, it starts as soon as a slot is free and no job with a higher priority waits. The slot in the
+     * queue is reserved before the task is created, the task itself is created without holding the scheduler, since
+     * it reads the database and opens the frontier of the crawler.
+     *
+     * @param name     name of the crawl
+     * @param priority jobs with a higher priority start first
+     * @param task     creates the task, only called if the job is admitted
+     * @return the job or null if the task could not be created
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public CrawlJob submit(String name, int priority, Supplier<CrawlTask> task)
+    {
+        return submit(name, null, priority, task);
+    }
+
+    /**
+     * Queue a new job of a known crawler. It is rejected while another job of the crawler is submitted, queued,
+     * running or paused, so two crawlers never share one frontier.
+     *
+     * @param name       name of the crawl
+     * @param uniqueName unique name of the crawler or null if it is not known before the task is created
+     * @param priority   jobs with a higher priority start first
+     * @param task       creates the task, only called if the job is admitted
+     * @return the job or null if the task could not be created
+     * @throws RejectedExecutionException if the queue is full
+     * @throws IllegalStateException      if the crawler already has a job which did not stop
+     */
+    public CrawlJob submit(String name, String uniqueName, int priority, Supplier<CrawlTask> task)
+    {
+        synchronized (this)
+        {
+            if (uniqueName != null && (this.reservedNames.contains(uniqueName) || hasActiveJob(uniqueName)))
+            {
+                throw new IllegalStateException("A job of " + uniqueName + " was already submitted");
+            }
+            checkCapacity(name);
+            this.reserved++;
+            if (uniqueName != null)
+            {
+                this.reservedNames.add(uniqueName);
+            }
+        }
+        CrawlTask crawlTask = null;
+        try
+        {
+            crawlTask = task.get();
+        } finally
+        {
+            if (crawlTask == null)
+            {
+                release(uniqueName);
+            }
+        }
+        if (crawlTask == null)
+        {
+            return null;
+        }
+        return enqueue(name, uniqueName, priority, crawlTask);
+    }
+
+    private boolean hasActiveJob(String uniqueName)
+    {
+        for (CrawlJob job : this.jobs.values())
+        {
+            if (!job.getState().isStopped() && uniqueName.equals(job.getUniqueName()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Give up the reservation of a submission
+     */
+    private synchronized void release(String uniqueName)
+    {
+        this.reserved--;
+        if (uniqueName != null)
+        {
+            this.reservedNames.remove(uniqueName);
+        }
+    }
+
+    /**
+     * Turn the reservation of a submission into a queued job
+     */
+    private synchronized CrawlJob enqueue(String name, String uniqueName, int priority, CrawlTask crawlTask)
+    {
+        release(uniqueName);
+        long id = this.nextId++;
+        CrawlJob job = new CrawlJob(id, name, priority, id, crawlTask);
+        this.jobs.put(id, job);
+        this.queue.add(job);
+        logger.info("Queued " + job);
+        dispatch();
+        return job;
+    }
+
+    /**
+     * Pause a job. A running job stops after its requests in flight, a queued job does not start.
+     *
+     * @param id id of the job
+     * @return boolean: True if the job is or will be paused, false if it is unknown or stopped
+     */
+    public synchronized boolean pause(long id)
+    {
+        CrawlJob job = this.jobs.get(id);
+        if (job == null)
+        {
+            return false;
+        }
+        switch (job.getState())
+        {
+            case RUNNING:
+                job.getTask().requestPause();
+                return true;
+            case QUEUED:
+                this.queue.remove(job);
+                job.setState(CrawlJob.State.PAUSED);
+                return true;
+            case PAUSED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Queue a paused job again
+     *
+     * @param id id of the job
+     * @return boolean: True if the job was paused and is queued again
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public synchronized boolean resume(long id)
+    {
+        CrawlJob job = this.jobs.get(id);
+        if (job == null || job.getState() != CrawlJob.State.PAUSED)
+        {
+            return false;
+        }
+        checkCapacity(job.getName());
+        job.setState(CrawlJob.State.QUEUED);
+        this.queue.add(job);
+        dispatch();
+        return true;
+    }
+
+    /**
+     * Cancel a job. A running job stops after its requests in flight, queued and paused jobs are cancelled at once.
+     *
+     * @param id id of the job
+     * @return boolean: True if the job is or will be cancelled, false if it is unknown or stopped
+     */
+    public synchronized boolean cancel(long id)
+    {
+        CrawlJob job = this.jobs.get(id);
+        if (job == null)
+        {
+            return false;
+        }
+        switch (job.getState())
+        {
+            case RUNNING:
+                job.setCancelRequested(true);
+                job.getTask().requestCancel();
+                return true;
+            case QUEUED:
+            case PAUSED:
+                this.queue.remove(job);
+                cancelTask(job);
+                stopped(job, CrawlJob.State.CANCELLED);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param id id of the job
+     * @return the job or null if it is unknown
+     */
+    public synchronized CrawlJob getJob(long id)
+    {
+        return this.jobs.get(id);
+    }
+
+    /**
+     * @return the remembered jobs, oldest first
+     */
+    public synchronized List<CrawlJob> getJobs()
+    {
+        return new ArrayList<>(this.jobs.values());
+    }
+
+    /**
+     * @return number of jobs waiting for a slot
+     */
+    public synchronized int getQueued()
+    {
+        return this.queue.size();
+    }
+
+    /**
+     * @return number of running jobs
+     */
+    public synchronized int getRunning()
+    {
+        return this.running;
+    }
+
+    /**
+     * Interrupt the running jobs when the service stops. Their crawlers close the frontier and are marked as
+     * interrupted, so crawls with a persistent frontier can be resumed.
+     */
+    @PreDestroy
+    public void shutdown()
+    {
+        this.executor.shutdownNow();
+        try
+        {
+            if (!this.executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS))
+            {
+                logger.warn("Crawl jobs did not stop in time");
+            }
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkCapacity(String name)
+    {
+        if (this.queue.size() + this.reserved >= this.maxQueued)
+        {
+            throw new RejectedExecutionException("Job queue is full, " + name + " was not queued");
+        }
+    }
+
+    /**
+     * Start queued jobs while slots are free
+     */
+    private void dispatch()
+    {
+        while (this.running < this.maxRunning && !this.queue.isEmpty())
+        {
+            CrawlJob job = this.queue.poll();
+            CrawlTask task = job.getTask();
+            job.started();
+            this.running++;
+            try
+            {
+                this.executor.execute(() -> runJob(job, task));
+            } catch (RejectedExecutionException e)
+            {
+                // the service stops
+                this.running--;
+                stopped(job, CrawlJob.State.FAILED);
+            }
+        }
+    }
+
+    private void runJob(CrawlJob job, CrawlTask task)
+    {
+        CrawlJob.State state;
+        try
+        {
+            state = task.run();
+        } catch (RuntimeException e)
+        {
+            logger.error("Crawl job failed: " + job + " - " + e.toString());
+            state = CrawlJob.State.FAILED;
+        }
+        synchronized (this)
+        {
+            this.running--;
+            if (state == CrawlJob.State.PAUSED && job.isCancelRequested())
+            {
+                // the cancel request came after the crawler had stopped for the pause
+                cancelTask(job);
+                state = CrawlJob.State.CANCELLED;
+            }
+            stopped(job, state);
+            dispatch();
+        }
+    }
+
+    private void cancelTask(CrawlJob job)
+    {
+        try
+        {
+            job.getTask().cancel();
+        } catch (RuntimeException e)
+        {
+            logger.error("Could not cancel " + job + " - " + e.toString());
+        }
+    }
+
+    /**
+     * Record the end of a run and forget the oldest stopped jobs beyond maxHistory
+     */
+    private void stopped(CrawlJob job, CrawlJob.State state)
+    {
+        job.stopped(state);
+        logger.info("Stopped " + job);
+        if (!state.isStopped())
+        {
+            return;
+        }
+        this.stopped++;
+        Iterator<CrawlJob> iterator = this.jobs.values().iterator();
+        while (this.stopped > this.maxHistory && iterator.hasNext())
+        {
+            if (iterator.next().getState().isStopped())
+            {
+                iterator.remove();
+                this.stopped--;
+            }
+        }
+    }
+}
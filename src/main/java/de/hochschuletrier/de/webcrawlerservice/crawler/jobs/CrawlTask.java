@@ -0,0 +1,34 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.jobs;
+
+/**
+ * A crawl which is run by the {@link CrawlJobScheduler}. A paused task is run again to continue the crawl.
+ */
+public interface CrawlTask
+{
+    /**
+     * @return unique name of the crawler
+     */
+    String getUniqueName();
+
+    /**
+     * Run or continue the crawl until it is finished or stopped
+     *
+     * @return FINISHED, PAUSED, CANCELLED or INTERRUPTED
+     */
+    CrawlJob.State run();
+
+    /**
+     * Ask the running crawl to pause, it keeps its frontier
+     */
+    void requestPause();
+
+    /**
+     * Ask the running crawl to stop for good
+     */
+    void requestCancel();
+
+    /**
+     * Cancel a crawl which does not run, it is never run again
+     */
+    void cancel();
+}
@@ -0,0 +1,113 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.journal;
+
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Single event of a {@link CrawlJournal}
+ */
+public class CrawlEvent
+{
+    private final Type type;
+    private final long time; // milliseconds since the epoch
+    private final String url;
+    private final int status; // http status of FETCH events, 0 if the request failed
+    private final long bytes; // body bytes, see the types
+    private final long nanos; // duration, see the types
+    private final String detail; // reason of SKIPPED, original page of DUPLICATE, null otherwise
+
+    public CrawlEvent(Type type, long time, String url, int status, long bytes, long nanos, String detail)
+    {
+        this.type = type;
+        this.time = time;
+        this.url = url;
+        this.status = status;
+        this.bytes = bytes;
+        this.nanos = nanos;
+        this.detail = detail;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public long getTime()
+    {
+        return time;
+    }
+
+    public String getUrl()
+    {
+        return url;
+    }
+
+    public int getStatus()
+    {
+        return status;
+    }
+
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    public long getNanos()
+    {
+        return nanos;
+    }
+
+    public String getDetail()
+    {
+        return detail;
+    }
+
+    /**
+     * @return tab separated time, type, status, bytes, milliseconds, url and detail
+     */
+    @Override
+    public String toString()
+    {
+        return Instant.ofEpochMilli(this.time) + "\t" + this.type + "\t" + this.status + "\t" + this.bytes + "\t"
+                + String.format(Locale.ROOT, "%.3f", this.nanos / 1e6) + "\t" + this.url
+                + (this.detail != null ? "\t" + this.detail : "");
+    }
+
+    /**
+     * Event types, their code is written to the journal and must not change
+     */
+    public enum Type
+    {
+        FETCH(1), // response or failure of a request, bytes of the body, nanos until the response arrived
+        NOT_MODIFIED(2), // revisit answered with 304, bytes which were not downloaded again
+        PROCESSED(3), // page processed by a worker, nanos of parsing and the pipeline
+        STORED(4), // page handed to the database, bytes of the body
+        DUPLICATE(5), // near duplicate of the page in detail
+        SKIPPED(6), // url not requested or page not stored for the reason in detail
+        DEAD(7); // url stored as dead link
+
+        private final byte code;
+
+        Type(int code)
+        {
+            this.code = (byte) code;
+        }
+
+        public byte getCode()
+        {
+            return code;
+        }
+
+        public static Type forCode(byte code)
+        {
+            for (Type type : values())
+            {
+                if (type.code == code)
+                {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown event type " + code);
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Append only journal of the events of a crawl, in place of a log line per url.
+ * <p>
+ * The journal file starts with the magic number CJNL and a version. Every event is a record of an int length followed
+ * by the type code, time, status, bytes and nanos of the {@link CrawlEvent} and the url and detail as int length
+ * prefixed UTF-8, the length of a missing detail is -1. All numbers are big endian. Records are collected in one of
+ * two direct buffers. Once it is full, the buffers are swapped and a background thread writes the full one
+ * sequentially, so recording an event costs no I/O on the crawl threads. A crawl thread only waits, if the next buffer
+ * fills up before the last one is written. A record which was torn by a crash is cut off when the journal is opened
+ * again, the next run appends to the same file.
+ * <p>
+ * The events are counted per type, also if the journal only counts and writes no file. They are read back with the
+ * {@link CrawlJournalReader}.
+ */
+public class CrawlJournal implements Closeable
+{
+    public static final int MAGIC = 0x434A4E4C; // CJNL
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 6;
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    public static final String EXTENSION = ".journal";
+
+    static final int FIXED_SIZE = 1 + 8 + 4 + 8 + 8 + 4 + 4; // record bytes after the length without url and detail
+
+    private static final Logger logger = LoggerFactory.getLogger(CrawlJournal.class);
+
+    private final File file; // null if the events are only counted
+    private final FileChannel channel;
+    private final Thread flusher; // writes the full buffers, null if the events are only counted
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>(); // full buffers in write order
+    private ByteBuffer buffer; // records which are collected now
+    private ByteBuffer spare; // empty buffer for the next records, null while the flusher writes it
+    private final long[] counts = new long[CrawlEvent.Type.values().length];
+    private final long[] bytes = new long[CrawlEvent.Type.values().length];
+    private final long[] nanos = new long[CrawlEvent.Type.values().length];
+    private boolean failed; // set after a write failed, the events are only counted then
+    private boolean closing; // set by close, the flusher stops once all buffers are written
+    private boolean stopped; // set when the flusher stopped, no buffer is written anymore
+
+    private CrawlJournal(File file, FileChannel channel, int bufferSize)
+    {
+        this.file = file;
+        this.channel = channel;
+        if (channel == null)
+        {
+            this.flusher = null;
+            return;
+        }
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, HEADER_SIZE));
+        this.spare = ByteBuffer.allocateDirect(Math.max(bufferSize, HEADER_SIZE));
+        this.flusher = new Thread(this::writeBuffers, file.getName() + "-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * @return journal which only counts the events
+     */
+    public static CrawlJournal counting()
+    {
+        return new CrawlJournal(null, null, 0);
+    }
+
+    /**
+     * Open the journal of a crawl for appending. If it can not be opened, the events are only counted.
+     *
+     * @param directory  directory of the journals
+     * @param uniqueName unique name of the crawler
+     * @param bufferSize bytes of records collected before they are written
+     * @return the journal
+     */
+    public static CrawlJournal open(File directory, String uniqueName, int bufferSize)
+    {
+        File file = fileOf(directory, uniqueName);
+        FileChannel channel = null;
+        try
+        {
+            if (!directory.isDirectory() && !directory.mkdirs())
+            {
+                throw new IOException("Could not create journal directory " + directory);
+            }
+            long validLength = file.exists() ? CrawlJournalReader.validLength(file) : 0;
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.truncate(validLength);
+            channel.position(validLength);
+            CrawlJournal journal = new CrawlJournal(file, channel, bufferSize);
+            if (validLength == 0)
+            {
+                journal.buffer.putInt(MAGIC).putShort(VERSION);
+            }
+            return journal;
+        } catch (IOException e)
+        {
+            logger.error("Could not open crawl journal " + file + ", events are only counted - " + e.toString());
+            closeQuietly(channel);
+            return counting();
+        }
+    }
+
+    /**
+     * @param directory  directory of the journals
+     * @param uniqueName unique name of the crawler
+     * @return the journal file of the crawler
+     */
+    public static File fileOf(File directory, String uniqueName)
+    {
+        return new File(directory, uniqueName.replaceAll("[^A-Za-z0-9._-]", "_") + EXTENSION);
+    }
+
+    /**
+     * Record an event of the crawl
+     *
+     * @param type   type of the event
+     * @param url    the url
+     * @param status http status, 0 if there is none
+     * @param bytes  body bytes, 0 if there are none
+     * @param nanos  duration, 0 if it is not measured
+     * @param detail detail of the type or null
+     */
+    public void record(CrawlEvent.Type type, String url, int status, long bytes, long nanos, String detail)
+    {
+        int index = type.ordinal();
+        if (this.channel == null)
+        {
+            synchronized (this)
+            {
+                count(index, bytes, nanos);
+            }
+            return;
+        }
+        // encoded before the lock is taken
+        byte[] urlBytes = url.getBytes(StandardCharsets.UTF_8);
+        byte[] detailBytes = detail != null ? detail.getBytes(StandardCharsets.UTF_8) : null;
+        int length = FIXED_SIZE + urlBytes.length + (detailBytes != null ? detailBytes.length : 0);
+        long time = System.currentTimeMillis();
+        synchronized (this)
+        {
+            count(index, bytes, nanos);
+            if (this.failed)
+            {
+                return;
+            }
+            if (this.buffer.remaining() < 4 + length)
+            {
+                swapBuffers();
+                if (this.failed)
+                {
+                    return;
+                }
+            }
+            ByteBuffer target = this.buffer;
+            if (target.capacity() < 4 + length)
+            {
+                // larger than the buffer, written on its own
+                target = ByteBuffer.allocate(4 + length);
+            }
+            target.putInt(length).put(type.getCode()).putLong(time).putInt(status).putLong(bytes).putLong(nanos)
+                    .putInt(urlBytes.length).put(urlBytes);
+            if (detailBytes != null)
+            {
+                target.putInt(detailBytes.length).put(detailBytes);
+            } else
+            {
+                target.putInt(-1);
+            }
+            if (target != this.buffer)
+            {
+                this.pending.add(target);
+                notifyAll();
+            }
+        }
+    }
+
+    private void count(int index, long bytes, long nanos)
+    {
+        this.counts[index]++;
+        this.bytes[index] += bytes;
+        this.nanos[index] += nanos;
+    }
+
+    /**
+     * Write the collected records to the file and wait until they are written
+     */
+    public synchronized void flush()
+    {
+        if (this.channel == null || this.failed)
+        {
+            return;
+        }
+        swapBuffers();
+        boolean interrupted = false;
+        while (!this.pending.isEmpty() && !this.stopped)
+        {
+            interrupted |= awaitFlusher();
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hand the collected records to the flusher and continue with the spare buffer. Waits while the flusher still
+     * writes the spare buffer.
+     */
+    private void swapBuffers()
+    {
+        if (this.buffer.position() == 0)
+        {
+            return;
+        }
+        boolean interrupted = false;
+        while (this.spare == null && !this.stopped)
+        {
+            interrupted |= awaitFlusher();
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+        if (this.stopped)
+        {
+            this.failed = true;
+            return;
+        }
+        this.pending.add(this.buffer);
+        this.buffer = this.spare;
+        this.spare = null;
+        notifyAll();
+    }
+
+    /**
+     * Wait for the flusher. The caller keeps waiting after an interrupt, the flusher does not depend on the crawl
+     * threads, so the wait ends with the next written buffer.
+     *
+     * @return boolean: True if the thread was interrupted while it waited
+     */
+    private boolean awaitFlusher()
+    {
+        try
+        {
+            wait();
+            return false;
+        } catch (InterruptedException e)
+        {
+            return true;
+        }
+    }
+
+    /**
+     * Loop of the flusher thread, which writes the full buffers in order
+     */
+    private void writeBuffers()
+    {
+        try
+        {
+            while (true)
+            {
+                ByteBuffer records;
+                boolean skip;
+                synchronized (this)
+                {
+                    while (this.pending.isEmpty() && !this.closing)
+                    {
+                        wait();
+                    }
+                    if (this.pending.isEmpty())
+                    {
+                        return;
+                    }
+                    records = this.pending.peek();
+                    skip = this.failed;
+                }
+                boolean written = !skip && write(records);
+                synchronized (this)
+                {
+                    this.pending.poll();
+                    if (!written)
+                    {
+                        this.failed = true;
+                    }
+                    if (records.isDirect())
+                    {
+                        records.clear();
+                        this.spare = records;
+                    }
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e)
+        {
+            logger.warn("Crawl journal " + this.file + " interrupted, events are only counted");
+        } finally
+        {
+            synchronized (this)
+            {
+                this.stopped = true;
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean write(ByteBuffer records)
+    {
+        records.flip();
+        try
+        {
+            while (records.hasRemaining())
+            {
+                this.channel.write(records);
+            }
+            return true;
+        } catch (IOException e)
+        {
+            logger.error("Could not write crawl journal " + this.file + ", events are only counted - " + e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * @param type type of the events
+     * @return number of recorded events of the type
+     */
+    public synchronized long count(CrawlEvent.Type type)
+    {
+        return this.counts[type.ordinal()];
+    }
+
+    /**
+     * @param type type of the events
+     * @return sum of the bytes of the recorded events of the type
+     */
+    public synchronized long bytes(CrawlEvent.Type type)
+    {
+        return this.bytes[type.ordinal()];
+    }
+
+    /**
+     * @param type type of the events
+     * @return average duration of the recorded events of the type in milliseconds
+     */
+    public synchronized double averageMillis(CrawlEvent.Type type)
+    {
+        int index = type.ordinal();
+        return this.counts[index] == 0 ? 0 : this.nanos[index] / 1e6 / this.counts[index];
+    }
+
+    /**
+     * @return the journal file or null if the events are only counted
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Write the collected records, stop the flusher and close the file
+     */
+    @Override
+    public void close()
+    {
+        if (this.channel == null)
+        {
+            return;
+        }
+        synchronized (this)
+        {
+            flush();
+            this.closing = true;
+            notifyAll();
+        }
+        try
+        {
+            this.flusher.join();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        closeQuietly(this.channel);
+    }
+
+    private static void closeQuietly(FileChannel channel)
+    {
+        if (channel == null)
+        {
+            return;
+        }
+        try
+        {
+            channel.close();
+        } catch (IOException e)
+        {
+            logger.warn("Could not close crawl journal - " + e.toString());
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(Locale.ROOT, "CrawlJournal %s: %d fetched (%.1f ms average, %d bytes); "
+                        + "%d not modified (%d bytes saved); %d processed (%.1f ms average); %d stored; "
+                        + "%d near duplicates; %d skipped; %d dead", this.file != null ? this.file : "(counting)",
+                count(CrawlEvent.Type.FETCH), averageMillis(CrawlEvent.Type.FETCH), bytes(CrawlEvent.Type.FETCH),
+                count(CrawlEvent.Type.NOT_MODIFIED), bytes(CrawlEvent.Type.NOT_MODIFIED),
+                count(CrawlEvent.Type.PROCESSED), averageMillis(CrawlEvent.Type.PROCESSED),
+                count(CrawlEvent.Type.STORED), count(CrawlEvent.Type.DUPLICATE), count(CrawlEvent.Type.SKIPPED),
+                count(CrawlEvent.Type.DEAD));
+    }
+}
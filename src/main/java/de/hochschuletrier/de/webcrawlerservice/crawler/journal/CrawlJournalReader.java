@@ -0,0 +1,241 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.journal;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sequential reader of a {@link CrawlJournal}.
+ * <p>
+ * Also a command line tool, which prints the events of a journal as tab separated lines or, with --summary, their
+ * counts per type:
+ * <pre>
+ * java -cp web-crawler-service.jar
+ *         -Dloader.main=de.hochschuletrier.de.webcrawlerservice.crawler.journal.CrawlJournalReader
+ *         org.springframework.boot.loader.PropertiesLauncher crawl.journal [--summary]
+ * </pre>
+ */
+public class CrawlJournalReader implements Closeable
+{
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024; // larger lengths are taken as a corrupt record
+
+    private final FileChannel channel;
+    private ByteBuffer buffer; // read but not parsed bytes
+    private long position; // end of the last complete record
+
+    /**
+     * @param file the journal file
+     * @throws IOException if the file can not be read or is no crawl journal
+     */
+    public CrawlJournalReader(File file) throws IOException
+    {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.buffer.flip();
+        if (!fill(CrawlJournal.HEADER_SIZE) || this.buffer.getInt() != CrawlJournal.MAGIC)
+        {
+            this.channel.close();
+            throw new IOException(file + " is no crawl journal");
+        }
+        short version = this.buffer.getShort();
+        if (version != CrawlJournal.VERSION)
+        {
+            this.channel.close();
+            throw new IOException(file + " has the unknown journal version " + version);
+        }
+        this.position = CrawlJournal.HEADER_SIZE;
+    }
+
+    /**
+     * @return the next event or null at the end of the journal or at a torn record
+     * @throws IOException if the file can not be read
+     */
+    public CrawlEvent next() throws IOException
+    {
+        if (!fill(4))
+        {
+            return null;
+        }
+        int length = this.buffer.getInt();
+        if (length < CrawlJournal.FIXED_SIZE || length > MAX_RECORD_SIZE || !fill(length))
+        {
+            return null;
+        }
+        int start = this.buffer.position();
+        CrawlEvent.Type type;
+        try
+        {
+            type = CrawlEvent.Type.forCode(this.buffer.get());
+        } catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+        long time = this.buffer.getLong();
+        int status = this.buffer.getInt();
+        long bytes = this.buffer.getLong();
+        long nanos = this.buffer.getLong();
+        int end = start + length;
+        String url = readString(end);
+        if (url == null || this.buffer.position() + 4 > end)
+        {
+            return null;
+        }
+        String detail = null;
+        if (this.buffer.getInt(this.buffer.position()) < 0)
+        {
+            this.buffer.position(this.buffer.position() + 4);
+        } else if ((detail = readString(end)) == null)
+        {
+            return null;
+        }
+        if (this.buffer.position() != end)
+        {
+            return null;
+        }
+        this.position += 4 + length;
+        return new CrawlEvent(type, time, url, status, bytes, nanos, detail);
+    }
+
+    /**
+     * @param end end of the record in the buffer
+     * @return the next length prefixed string or null if it exceeds the record
+     */
+    private String readString(int end)
+    {
+        if (this.buffer.position() + 4 > end)
+        {
+            return null;
+        }
+        int length = this.buffer.getInt();
+        if (length < 0 || this.buffer.position() + length > end)
+        {
+            return null;
+        }
+        String value = new String(this.buffer.array(), this.buffer.arrayOffset() + this.buffer.position(), length,
+                StandardCharsets.UTF_8);
+        this.buffer.position(this.buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Make sure the buffer holds the next bytes of the file
+     *
+     * @param needed number of bytes
+     * @return boolean: True if the file has the bytes
+     */
+    private boolean fill(int needed) throws IOException
+    {
+        if (this.buffer.remaining() >= needed)
+        {
+            return true;
+        }
+        if (this.buffer.capacity() < needed)
+        {
+            ByteBuffer larger = ByteBuffer.allocate(needed);
+            larger.put(this.buffer);
+            this.buffer = larger;
+        } else
+        {
+            this.buffer.compact();
+        }
+        while (this.buffer.position() < needed && this.channel.read(this.buffer) >= 0)
+        {
+            // read until the bytes are available or the file ends
+        }
+        this.buffer.flip();
+        return this.buffer.remaining() >= needed;
+    }
+
+    /**
+     * @return bytes of the header and the complete records read so far
+     */
+    public long getPosition()
+    {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.channel.close();
+    }
+
+    /**
+     * @param file a journal file
+     * @return bytes of the header and all complete records, 0 if the file is no crawl journal
+     * @throws IOException if the file can not be read
+     */
+    public static long validLength(File file) throws IOException
+    {
+        CrawlJournalReader reader;
+        try
+        {
+            reader = new CrawlJournalReader(file);
+        } catch (IOException e)
+        {
+            if (file.length() >= CrawlJournal.HEADER_SIZE)
+            {
+                throw e;
+            }
+            // torn header
+            return 0;
+        }
+        try
+        {
+            while (reader.next() != null)
+            {
+                // skip to the end
+            }
+            return reader.getPosition();
+        } finally
+        {
+            reader.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0)
+        {
+            System.err.println("Usage: CrawlJournalReader <journal file> [--summary]");
+            System.exit(2);
+        }
+        boolean summary = args.length > 1 && "--summary".equals(args[1]);
+        Map<CrawlEvent.Type, long[]> totals = new EnumMap<>(CrawlEvent.Type.class);
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, BUFFER_SIZE), false, "UTF-8");
+        try (CrawlJournalReader reader = new CrawlJournalReader(new File(args[0])))
+        {
+            CrawlEvent event;
+            while ((event = reader.next()) != null)
+            {
+                if (summary)
+                {
+                    long[] total = totals.computeIfAbsent(event.getType(), type -> new long[3]);
+                    total[0]++;
+                    total[1] += event.getBytes();
+                    total[2] += event.getNanos();
+                } else
+                {
+                    out.println(event);
+                }
+            }
+        }
+        for (Map.Entry<CrawlEvent.Type, long[]> total : totals.entrySet())
+        {
+            long[] value = total.getValue();
+            out.println(String.format(Locale.ROOT, "%s\t%d events\t%d bytes\t%.1f ms average", total.getKey(),
+                    value[0], value[1], value[2] / 1e6 / value[0]));
+        }
+        out.flush();
+    }
+}
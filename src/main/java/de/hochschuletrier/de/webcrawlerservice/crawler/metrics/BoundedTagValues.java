@@ -0,0 +1,54 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.metrics;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits the number of distinct values of a metric tag. The first maxValues values are used as they are, all later
+ * ones are reported as {@link #OTHER}, so a crawl over many hosts can not create an unbounded number of time series.
+ */
+public class BoundedTagValues
+{
+    public static final String OTHER = "other";
+
+    private final int maxValues;
+    private final Set<String> values = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param maxValues maximum number of distinct values
+     */
+    public BoundedTagValues(int maxValues)
+    {
+        this.maxValues = maxValues;
+    }
+
+    /**
+     * @param value the tag value, null is reported as {@link #OTHER}
+     * @return the value if it is known or there is room for it, otherwise {@link #OTHER}
+     */
+    public String tag(String value)
+    {
+        if (value == null)
+        {
+            return OTHER;
+        }
+        if (this.values.contains(value))
+        {
+            return value;
+        }
+        synchronized (this)
+        {
+            if (this.values.size() < this.maxValues)
+            {
+                this.values.add(value);
+                return value;
+            }
+        }
+        return this.values.contains(value) ? value : OTHER;
+    }
+
+    public int size()
+    {
+        return this.values.size();
+    }
+}
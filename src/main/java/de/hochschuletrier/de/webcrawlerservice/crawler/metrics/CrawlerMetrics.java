@@ -0,0 +1,253 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.metrics;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.ConcurrencyLimitedExecutor;
+import de.hochschuletrier.de.webcrawlerservice.persistence.buffer.BatchWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Micrometer instrumentation of the crawl hot path of one crawler run.
+ * <p>
+ * Fetch latency is a histogram per host and status class (2xx, 3xx, 4xx, 5xx, error). Parse and persistence latency
+ * are timers per parser and write behind buffer. Pages, downloaded bytes and found links are counters per crawler,
+ * pages/s and bytes/s are their rates. The dedup hit rate is the share of known and variant links among all links.
+ * Frontier size, write behind queue depth and worker queue depth are gauges per crawler.
+ * <p>
+ * Hosts and crawler names come from the crawled sites and the users, so both are limited by {@link BoundedTagValues}.
+ * Micrometer can not remove meters, so gauges are registered once per crawler name and read the newest run of it.
+ */
+public class CrawlerMetrics
+{
+    public static final int MAX_HOSTS = 200;
+    public static final int MAX_CRAWLERS = 50;
+
+    private static final String FETCH = "crawler.fetch";
+    private static final Duration[] FETCH_BUCKETS = {Duration.ofMillis(50), Duration.ofMillis(100),
+            Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofMillis(2500),
+            Duration.ofSeconds(5), Duration.ofSeconds(10)};
+
+    private static final BoundedTagValues HOSTS = new BoundedTagValues(MAX_HOSTS);
+    private static final BoundedTagValues CRAWLERS = new BoundedTagValues(MAX_CRAWLERS);
+    private static final Map<String, GaugeSource> GAUGES = new ConcurrentHashMap<>(); // by registry, name and tags
+
+    private final MeterRegistry registry;
+    private final String crawler; // bounded crawler tag
+    private final Map<String, Timer> fetchTimers = new ConcurrentHashMap<>(); // by host and status class
+    private final Counter pages;
+    private final Counter bytes;
+    private final Counter newLinks;
+    private final Counter knownLinks;
+    private final Counter variantLinks;
+    private final Counter nearDuplicates;
+    private final Counter notModified;
+
+    /**
+     * @param registry    registry of the service, Metrics.globalRegistry outside of Spring
+     * @param crawlerName name of the crawler
+     */
+    public CrawlerMetrics(MeterRegistry registry, String crawlerName)
+    {
+        this.registry = registry;
+        this.crawler = CRAWLERS.tag(crawlerName);
+        this.pages = registry.counter("crawler.pages", "crawler", this.crawler);
+        this.bytes = registry.counter("crawler.bytes", "crawler", this.crawler);
+        this.newLinks = registry.counter("crawler.links", "crawler", this.crawler, "result", "new");
+        this.knownLinks = registry.counter("crawler.links", "crawler", this.crawler, "result", "known");
+        this.variantLinks = registry.counter("crawler.links", "crawler", this.crawler, "result", "variant");
+        this.nearDuplicates = registry.counter("crawler.pages.near.duplicates", "crawler", this.crawler);
+        this.notModified = registry.counter("crawler.pages.not.modified", "crawler", this.crawler);
+    }
+
+    /**
+     * Record a finished request
+     *
+     * @param url        the requested url
+     * @param nanos      time from the request to the complete response
+     * @param statusCode status of the response, 0 if the request failed
+     * @param bodyBytes  downloaded body bytes
+     */
+    public void recordFetch(String url, long nanos, int statusCode, int bodyBytes)
+    {
+        String host = HOSTS.tag(host(url));
+        String status = statusCode <= 0 ? "error" : statusCode / 100 + "xx";
+        this.fetchTimers.computeIfAbsent(host + ' ' + status, key -> Timer.builder(FETCH)
+                .tags("host", host, "status", status)
+                .sla(FETCH_BUCKETS)
+                .register(this.registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        this.bytes.increment(bodyBytes);
+    }
+
+    /**
+     * @param parser streaming or jsoup
+     * @param nanos  time to parse a body, the streaming parser extracts the links at the same time
+     */
+    public void recordParse(String parser, long nanos)
+    {
+        this.registry.timer("crawler.parse", "parser", parser).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void pageCrawled()
+    {
+        this.pages.increment();
+    }
+
+    public void pageNotModified()
+    {
+        this.notModified.increment();
+    }
+
+    public void nearDuplicateFound()
+    {
+        this.nearDuplicates.increment();
+    }
+
+    /**
+     * Count a link found on a page
+     *
+     * @param known   True if the link was already in the frontier
+     * @param variant True if the link only differs from a known url by its notation
+     */
+    public void linkFound(boolean known, boolean variant)
+    {
+        if (!known)
+        {
+            this.newLinks.increment();
+        } else if (variant)
+        {
+            this.variantLinks.increment();
+        } else
+        {
+            this.knownLinks.increment();
+        }
+    }
+
+    /**
+     * Time every batch of a write behind buffer
+     *
+     * @param buffer      pages, file-links or dead-links
+     * @param batchWriter the writer of the buffer
+     * @return the timed writer
+     */
+    public <T> BatchWriter<T> timed(String buffer, BatchWriter<T> batchWriter)
+    {
+        Timer timer = this.registry.timer("crawler.persistence", "crawler", this.crawler, "buffer", buffer);
+        return batch -> timer.record(() -> batchWriter.write(batch));
+    }
+
+    /**
+     * @param buffer     pages, file-links or dead-links
+     * @param queueDepth entities waiting in the write behind buffer
+     */
+    public void bindWriteBehindQueue(String buffer, DoubleSupplier queueDepth)
+    {
+        gauge("crawler.write.behind.queue", Tags.of("crawler", this.crawler, "buffer", buffer), queueDepth);
+    }
+
+    /**
+     * @param frontierSize urls waiting in the frontier of the current run
+     */
+    public void bindFrontier(DoubleSupplier frontierSize)
+    {
+        gauge("crawler.frontier.size", Tags.of("crawler", this.crawler), frontierSize);
+    }
+
+    /**
+     * @param workers worker pool of the current run
+     */
+    public void bindWorkers(ExecutorService workers)
+    {
+        gauge("crawler.workers.queued", Tags.of("crawler", this.crawler), () -> queuedTasks(workers));
+    }
+
+    /**
+     * Reset the gauges of this run, called when the crawler stopped
+     */
+    public void close()
+    {
+        for (GaugeSource source : GAUGES.values())
+        {
+            source.release(this);
+        }
+    }
+
+    /**
+     * @return tasks waiting for a thread of the executor
+     */
+    public static double queuedTasks(ExecutorService executor)
+    {
+        if (executor instanceof ThreadPoolExecutor)
+        {
+            return ((ThreadPoolExecutor) executor).getQueue().size();
+        }
+        if (executor instanceof ConcurrencyLimitedExecutor)
+        {
+            return ((ConcurrencyLimitedExecutor) executor).getQueuedCount();
+        }
+        return Double.NaN;
+    }
+
+    private void gauge(String name, Tags tags, DoubleSupplier value)
+    {
+        String key = System.identityHashCode(this.registry) + name + tags;
+        GAUGES.computeIfAbsent(key, k ->
+        {
+            GaugeSource source = new GaugeSource();
+            Gauge.builder(name, source, GaugeSource::value).tags(tags).register(this.registry);
+            return source;
+        }).bind(this, value);
+    }
+
+    private static String host(String url)
+    {
+        try
+        {
+            return URI.create(url).getHost();
+        } catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Value of a registered gauge, which is read from the current run of the crawler
+     */
+    private static class GaugeSource
+    {
+        private volatile CrawlerMetrics owner;
+        private volatile DoubleSupplier value;
+
+        private synchronized void bind(CrawlerMetrics owner, DoubleSupplier value)
+        {
+            this.owner = owner;
+            this.value = value;
+        }
+
+        private synchronized void release(CrawlerMetrics owner)
+        {
+            if (this.owner == owner)
+            {
+                this.owner = null;
+                this.value = null;
+            }
+        }
+
+        private double value()
+        {
+            DoubleSupplier current = this.value;
+            return current == null ? 0 : current.getAsDouble();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.robots;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.FetchResponse;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageFetcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per host cache of the robots.txt rules of a crawler.
+ * <p>
+ * The robots.txt of a scheme, host and port is downloaded once and its rules are kept for the ttl. Concurrent
+ * requests for the same host share one download. Following RFC 9309 a missing robots.txt (4xx) allows everything,
+ * while a server error, 429 Too Many Requests or a failed request disallows everything for the shorter error ttl, or
+ * keeps the expired rules of the host if there are any. The least recently used hosts are dropped beyond maxHosts.
+ */
+public class RobotsCache
+{
+    public static final long DEFAULT_TTL = TimeUnit.HOURS.toMillis(24);
+    public static final long DEFAULT_ERROR_TTL = TimeUnit.MINUTES.toMillis(10);
+    public static final int DEFAULT_MAX_HOSTS = 10000;
+    public static final int MAX_ROBOTS_SIZE = 512 * 1024; // RFC 9309 asks to parse at least 500 KiB
+
+    private static final Logger logger = LoggerFactory.getLogger(RobotsCache.class);
+
+    private final PageFetcher pageFetcher;
+    private final String userAgent;
+    private final long ttl; // milliseconds downloaded rules are kept
+    private final long errorTtl; // milliseconds until a failed download is retried
+    private final Map<String, HostRules> entries; // by origin, least recently used first
+
+    /**
+     * @param pageFetcher downloads the robots.txt files
+     * @param userAgent   the user agent of the crawler, selects the group of the rules
+     * @param ttl         milliseconds the rules of a host are kept
+     */
+    public RobotsCache(PageFetcher pageFetcher, String userAgent, long ttl)
+    {
+        this(pageFetcher, userAgent, ttl, Math.min(ttl, DEFAULT_ERROR_TTL), DEFAULT_MAX_HOSTS);
+    }
+
+    /**
+     * @param pageFetcher downloads the robots.txt files
+     * @param userAgent   the user agent of the crawler, selects the group of the rules
+     * @param ttl         milliseconds the rules of a host are kept
+     * @param errorTtl    milliseconds until a failed download is retried
+     * @param maxHosts    maximum number of cached hosts
+     */
+    public RobotsCache(PageFetcher pageFetcher, String userAgent, long ttl, long errorTtl, int maxHosts)
+    {
+        this.pageFetcher = pageFetcher;
+        this.userAgent = userAgent;
+        this.ttl = ttl;
+        this.errorTtl = errorTtl;
+        this.entries = new LinkedHashMap<String, HostRules>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, HostRules> eldest)
+            {
+                return size() > maxHosts;
+            }
+        };
+    }
+
+    /**
+     * Get the rules of the host of an url, the robots.txt is downloaded if the host is not cached or expired
+     *
+     * @param url an url of the host
+     * @return future of the rules, it always completes normally
+     */
+    public CompletableFuture<RobotsRules> rulesFor(String url)
+    {
+        String origin = originOf(url);
+        if (origin == null)
+        {
+            return CompletableFuture.completedFuture(RobotsRules.ALLOW_ALL);
+        }
+        long now = System.currentTimeMillis();
+        HostRules entry;
+        RobotsRules stale;
+        synchronized (this.entries)
+        {
+            entry = this.entries.get(origin);
+            if (entry != null && entry.expiresAt > now)
+            {
+                return entry.rules;
+            }
+            stale = entry == null ? null : entry.rules.getNow(null);
+            entry = new HostRules();
+            this.entries.put(origin, entry);
+        }
+        load(origin, entry, stale);
+        return entry.rules;
+    }
+
+    private void load(String origin, HostRules entry, RobotsRules stale)
+    {
+        String robotsUrl = origin + "/robots.txt";
+        CompletableFuture<FetchResponse> download;
+        try
+        {
+            download = this.pageFetcher.fetchFile(robotsUrl, MAX_ROBOTS_SIZE);
+        } catch (RuntimeException e)
+        {
+            download = new CompletableFuture<>();
+            download.completeExceptionally(e);
+        }
+        download.whenComplete((response, failure) ->
+        {
+            int status = response == null ? 0 : response.getStatusCode();
+            Throwable cause = failure;
+            RobotsRules rules = null;
+            long expiresIn = this.errorTtl;
+            try
+            {
+                if (status >= 200 && status < 300)
+                {
+                    byte[] body = response.getBody();
+                    rules = RobotsRules.parse(body == null ? "" : new String(body, StandardCharsets.UTF_8),
+                            this.userAgent);
+                    expiresIn = this.ttl;
+                } else if (status >= 300 && status < 500 && status != 429)
+                {
+                    rules = RobotsRules.ALLOW_ALL;
+                    expiresIn = this.ttl;
+                }
+            } catch (RuntimeException e)
+            {
+                // a broken response is handled like an unavailable robots.txt, the future must still complete
+                cause = e;
+            }
+            if (rules == null)
+            {
+                logger.warn("Robots.txt unavailable: " + robotsUrl + " - "
+                        + (cause != null ? cause.toString() : "status " + status));
+                rules = stale != null ? stale : RobotsRules.DISALLOW_ALL;
+            }
+            entry.expiresAt = System.currentTimeMillis() + expiresIn;
+            entry.rules.complete(rules);
+        });
+    }
+
+    /**
+     * @return number of cached hosts
+     */
+    public int size()
+    {
+        synchronized (this.entries)
+        {
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * @param url the url
+     * @return lower case scheme, host and port of the url or null if the url has no host
+     */
+    private static String originOf(String url)
+    {
+        try
+        {
+            URI uri = URI.create(url);
+            if (uri.getScheme() == null || uri.getHost() == null)
+            {
+                return null;
+            }
+            String origin = uri.getScheme().toLowerCase(Locale.ROOT) + "://" + uri.getHost().toLowerCase(Locale.ROOT);
+            return uri.getPort() < 0 ? origin : origin + ":" + uri.getPort();
+        } catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Rules of one host, the expiry time is set once the download finished
+     */
+    private static class HostRules
+    {
+        private final CompletableFuture<RobotsRules> rules = new CompletableFuture<>();
+        private volatile long expiresAt = Long.MAX_VALUE;
+    }
+}
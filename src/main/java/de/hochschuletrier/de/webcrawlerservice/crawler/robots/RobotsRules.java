@@ -0,0 +1,277 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.robots;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled robots.txt rules of a single host for the user agent of a crawler.
+ * <p>
+ * The rules follow RFC 9309. The group of the most specific user agent token contained in the user agent of the
+ * crawler applies, otherwise the '*' group, groups with the same token are merged. The allow or disallow rule with the
+ * longest pattern that matches the path and query of an url wins, allow wins a tie, and urls without a matching rule
+ * are allowed. Patterns may contain '*' for any characters and end with '$' to match the end of the url.
+ * <p>
+ * Patterns without wildcard are plain prefix checks, only patterns with wildcard are compiled to a regular expression.
+ * Crawl-delay of the applied group and the Sitemap lines of the file are kept as well.
+ */
+public class RobotsRules
+{
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(Collections.emptyList(), -1,
+            Collections.emptyList());
+    public static final RobotsRules DISALLOW_ALL = new RobotsRules(
+            Collections.singletonList(new Rule("/", false)), -1, Collections.emptyList());
+
+    private static final String ROBOTS_PATH = "/robots.txt";
+
+    private final List<Rule> rules; // ordered by pattern length, longest first, allow before disallow
+    private final long crawlDelay; // milliseconds between two requests, -1 if not set
+    private final List<String> sitemaps; // sitemap urls listed in the file
+
+    private RobotsRules(List<Rule> rules, long crawlDelay, List<String> sitemaps)
+    {
+        this.rules = rules;
+        this.crawlDelay = crawlDelay;
+        this.sitemaps = sitemaps;
+    }
+
+    /**
+     * @param content   the content of a robots.txt
+     * @param userAgent the user agent of the crawler
+     * @return the rules which apply to the user agent
+     */
+    public static RobotsRules parse(String content, String userAgent)
+    {
+        String agent = userAgent == null ? "" : userAgent.toLowerCase(Locale.ROOT);
+        List<Group> groups = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+        Group group = null;
+        for (String line : content.split("\r\n|\r|\n"))
+        {
+            int comment = line.indexOf('#');
+            if (comment >= 0)
+            {
+                line = line.substring(0, comment);
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0)
+            {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            switch (key)
+            {
+                case "user-agent":
+                    if (group == null || group.hasRules)
+                    {
+                        group = new Group();
+                        groups.add(group);
+                    }
+                    group.agents.add(value.toLowerCase(Locale.ROOT));
+                    break;
+                case "allow":
+                case "disallow":
+                    if (group != null)
+                    {
+                        group.hasRules = true;
+                        if (!value.isEmpty())
+                        {
+                            group.rules.add(new Rule(value, key.equals("allow")));
+                        }
+                    }
+                    break;
+                case "crawl-delay":
+                    if (group != null)
+                    {
+                        group.hasRules = true;
+                        group.crawlDelay = parseDelay(value);
+                    }
+                    break;
+                case "sitemap":
+                    if (!value.isEmpty())
+                    {
+                        sitemaps.add(value);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return select(groups, agent, sitemaps);
+    }
+
+    /**
+     * Merge the groups of the longest agent token which is part of the user agent, or of '*' if none is
+     */
+    private static RobotsRules select(List<Group> groups, String agent, List<String> sitemaps)
+    {
+        String token = null;
+        for (Group group : groups)
+        {
+            for (String candidate : group.agents)
+            {
+                if (!candidate.equals("*") && !candidate.isEmpty() && agent.contains(candidate)
+                        && (token == null || candidate.length() > token.length()))
+                {
+                    token = candidate;
+                }
+            }
+        }
+        String selected = token == null ? "*" : token;
+        List<Rule> rules = new ArrayList<>();
+        long crawlDelay = -1;
+        for (Group group : groups)
+        {
+            if (group.agents.contains(selected))
+            {
+                rules.addAll(group.rules);
+                crawlDelay = Math.max(crawlDelay, group.crawlDelay);
+            }
+        }
+        rules.sort(Comparator.comparingInt((Rule rule) -> -rule.length).thenComparing(rule -> !rule.allow));
+        return new RobotsRules(rules, crawlDelay, sitemaps);
+    }
+
+    private static long parseDelay(String value)
+    {
+        try
+        {
+            double seconds = Double.parseDouble(value);
+            return seconds >= 0 && !Double.isInfinite(seconds) ? (long) (seconds * 1000) : -1;
+        } catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * @param url the url to check
+     * @return boolean: True if the rules allow to crawl the url
+     */
+    public boolean isAllowed(String url)
+    {
+        String path;
+        try
+        {
+            URI uri = URI.create(url);
+            path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (uri.getRawQuery() != null)
+            {
+                path += "?" + uri.getRawQuery();
+            }
+        } catch (IllegalArgumentException e)
+        {
+            return false;
+        }
+        return isPathAllowed(path);
+    }
+
+    /**
+     * @param path path and query of an url, starting with '/'
+     * @return boolean: True if the rules allow to crawl the path
+     */
+    public boolean isPathAllowed(String path)
+    {
+        if (path.equals(ROBOTS_PATH))
+        {
+            return true;
+        }
+        for (Rule rule : this.rules)
+        {
+            if (rule.matches(path))
+            {
+                return rule.allow;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return milliseconds the host asked for between two requests, -1 if it did not set a Crawl-delay
+     */
+    public long getCrawlDelay()
+    {
+        return this.crawlDelay;
+    }
+
+    /**
+     * @return sitemap urls listed in the robots.txt
+     */
+    public List<String> getSitemaps()
+    {
+        return Collections.unmodifiableList(this.sitemaps);
+    }
+
+    /**
+     * Consecutive user-agent lines and the rules which follow them
+     */
+    private static class Group
+    {
+        private final List<String> agents = new ArrayList<>(); // lower case agent tokens
+        private final List<Rule> rules = new ArrayList<>();
+        private long crawlDelay = -1;
+        private boolean hasRules; // a further user-agent line starts a new group
+    }
+
+    /**
+     * A single allow or disallow pattern
+     */
+    private static class Rule
+    {
+        private final String prefix; // pattern without wildcard, null if the pattern is compiled
+        private final Pattern pattern; // compiled pattern with wildcard, null for prefixes
+        private final int length; // length of the pattern, the longest match wins
+        private final boolean allow;
+
+        private Rule(String value, boolean allow)
+        {
+            this.length = value.length();
+            this.allow = allow;
+            if (value.indexOf('*') < 0 && !value.endsWith("$"))
+            {
+                this.prefix = value;
+                this.pattern = null;
+            } else
+            {
+                this.prefix = null;
+                this.pattern = compile(value);
+            }
+        }
+
+        private static Pattern compile(String value)
+        {
+            boolean anchored = value.endsWith("$");
+            String body = anchored ? value.substring(0, value.length() - 1) : value;
+            StringBuilder regex = new StringBuilder();
+            int start = 0;
+            for (int star = body.indexOf('*'); star >= 0; star = body.indexOf('*', start))
+            {
+                if (star > start)
+                {
+                    regex.append(Pattern.quote(body.substring(start, star)));
+                }
+                regex.append(".*");
+                start = star + 1;
+            }
+            if (start < body.length())
+            {
+                regex.append(Pattern.quote(body.substring(start)));
+            }
+            if (anchored)
+            {
+                regex.append('$');
+            }
+            return Pattern.compile(regex.toString(), Pattern.DOTALL);
+        }
+
+        private boolean matches(String path)
+        {
+            return this.prefix != null ? path.startsWith(this.prefix) : this.pattern.matcher(path).lookingAt();
+        }
+    }
+}
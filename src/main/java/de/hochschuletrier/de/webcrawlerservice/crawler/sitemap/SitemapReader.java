@@ -0,0 +1,243 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.sitemap;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageFetcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming reader of sitemaps and sitemap indexes.
+ * <p>
+ * Sitemaps are read with a StAX parser straight from the response stream, gzipped sitemaps are recognised by their
+ * magic bytes and decompressed on the fly. No document is built and every entry is handed to the listener as soon as
+ * its closing tag is read, so a sitemap with millions of urls is read with constant memory. The sitemaps listed by an
+ * index are read after the index, at most maxSitemaps per reader and every sitemap only once.
+ * <p>
+ * Only the loc and lastmod of url and sitemap entries are read, extensions like image:loc are skipped. DTDs and
+ * external entities are not supported, so a sitemap can not expand entities or load further files.
+ */
+public class SitemapReader
+{
+    public static final int DEFAULT_MAX_SITEMAPS = 1000;
+    public static final int MAX_URL_LENGTH = 2048; // longer locs are invalid by the sitemap protocol
+
+    private static final Logger logger = LoggerFactory.getLogger(SitemapReader.class);
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private final PageFetcher pageFetcher;
+    private final int maxSitemaps; // sitemaps read at most, including indexes
+    private volatile boolean stopped;
+
+    /**
+     * Receives the urls of the sitemaps
+     */
+    public interface Listener
+    {
+        /**
+         * @param loc          the url of the entry
+         * @param lastModified the lastmod of the entry in milliseconds, -1 if it is missing or invalid
+         * @return boolean: True to continue reading, false to stop
+         */
+        boolean url(String loc, long lastModified);
+    }
+
+    /**
+     * @param pageFetcher opens the sitemap streams
+     * @param maxSitemaps sitemaps read at most, including indexes
+     */
+    public SitemapReader(PageFetcher pageFetcher, int maxSitemaps)
+    {
+        this.pageFetcher = pageFetcher;
+        this.maxSitemaps = maxSitemaps;
+    }
+
+    private static XMLInputFactory createInputFactory()
+    {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Read the sitemaps and all sitemaps listed by them. Sitemaps which can not be read are logged and skipped.
+     *
+     * @param sitemapUrls urls of sitemaps or sitemap indexes
+     * @param listener    receives the urls
+     * @return number of urls handed to the listener
+     */
+    public long read(List<String> sitemapUrls, Listener listener)
+    {
+        Deque<String> queue = new ArrayDeque<>(sitemapUrls);
+        Set<String> seen = new HashSet<>(sitemapUrls);
+        int sitemaps = 0;
+        long[] urls = {0};
+        Listener counting = (loc, lastModified) ->
+        {
+            urls[0]++;
+            return listener.url(loc, lastModified);
+        };
+        while (!queue.isEmpty() && !this.stopped && sitemaps < this.maxSitemaps)
+        {
+            String sitemapUrl = queue.poll();
+            sitemaps++;
+            try (InputStream in = this.pageFetcher.openStream(sitemapUrl))
+            {
+                boolean completed = parse(in, counting, child ->
+                {
+                    if (seen.size() < this.maxSitemaps && seen.add(child))
+                    {
+                        queue.add(child);
+                    }
+                });
+                if (!completed)
+                {
+                    this.stopped = true;
+                }
+            } catch (IOException | XMLStreamException e)
+            {
+                logger.warn("Could not read sitemap " + sitemapUrl + " - " + e.toString());
+            }
+        }
+        return urls[0];
+    }
+
+    /**
+     * Stop reading, no further entry is handed to the listener
+     */
+    public void stop()
+    {
+        this.stopped = true;
+    }
+
+    /**
+     * Parse a sitemap or sitemap index
+     *
+     * @param in       the plain or gzipped sitemap
+     * @param listener receives the urls of a sitemap
+     * @param sitemaps receives the sitemaps of an index
+     * @return boolean: True if the whole sitemap was read, false if the listener stopped or the reader was stopped
+     * @throws IOException        if the stream can not be read
+     * @throws XMLStreamException if the sitemap is not well formed
+     */
+    public boolean parse(InputStream in, Listener listener, Consumer<String> sitemaps)
+            throws IOException, XMLStreamException
+    {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(decompress(in));
+        try
+        {
+            int depth = 0;
+            int entryDepth = -1; // depth of the current url or sitemap element, -1 outside of entries
+            boolean index = false; // the current entry is a sitemap of an index
+            String loc = null;
+            String lastmod = null;
+            while (reader.hasNext())
+            {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT)
+                {
+                    depth++;
+                    String name = reader.getLocalName();
+                    if (entryDepth < 0 && (name.equals("url") || name.equals("sitemap")))
+                    {
+                        entryDepth = depth;
+                        index = name.equals("sitemap");
+                        loc = null;
+                        lastmod = null;
+                    } else if (depth == entryDepth + 1 && name.equals("loc"))
+                    {
+                        loc = reader.getElementText().trim();
+                        depth--;
+                    } else if (depth == entryDepth + 1 && name.equals("lastmod"))
+                    {
+                        lastmod = reader.getElementText().trim();
+                        depth--;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT)
+                {
+                    if (depth == entryDepth)
+                    {
+                        entryDepth = -1;
+                        if (this.stopped)
+                        {
+                            return false;
+                        }
+                        if (loc != null && !loc.isEmpty() && loc.length() <= MAX_URL_LENGTH)
+                        {
+                            if (index)
+                            {
+                                sitemaps.accept(loc);
+                            } else if (!listener.url(loc, parseLastModified(lastmod)))
+                            {
+                                return false;
+                            }
+                        }
+                    }
+                    depth--;
+                }
+            }
+            return true;
+        } finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the stream, wrapped in a GZIPInputStream if it starts with the gzip magic bytes
+     */
+    private static InputStream decompress(InputStream in) throws IOException
+    {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == 0x1f && second == 0x8b)
+        {
+            return new GZIPInputStream(buffered, 8192);
+        }
+        return buffered;
+    }
+
+    /**
+     * @param lastmod W3C datetime like 2018-09-21, 2018-09-21T10:15:30+02:00 or 2018-09-21T10:15:30.5Z
+     * @return the time in milliseconds or -1 if the value is missing or invalid
+     */
+    public static long parseLastModified(String lastmod)
+    {
+        if (lastmod == null || lastmod.isEmpty())
+        {
+            return -1;
+        }
+        try
+        {
+            if (lastmod.length() == 10)
+            {
+                return LocalDate.parse(lastmod).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            }
+            return OffsetDateTime.parse(lastmod).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e)
+        {
+            return -1;
+        }
+    }
+}
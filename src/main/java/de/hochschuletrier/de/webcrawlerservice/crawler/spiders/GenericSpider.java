@@ -1,23 +1,33 @@
 package de.hochschuletrier.de.webcrawlerservice.crawler.spiders;
 
 import de.hochschuletrier.de.webcrawlerservice.crawler.Crawler;
+import de.hochschuletrier.de.webcrawlerservice.crawler.journal.CrawlEvent;
 import de.hochschuletrier.de.webcrawlerservice.crawler.utils.Page;
+import de.hochschuletrier.de.webcrawlerservice.persistence.buffer.WriteBehindBuffer;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.CrawlerEntity;
 import de.hochschuletrier.de.webcrawlerservice.persistence.entity.FileLinkEntity;
 import de.hochschuletrier.de.webcrawlerservice.persistence.entity.WebPageEntity;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.CrawlerEntityRepository;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.DeadLinkRepository;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.FileLinkRepository;
 import de.hochschuletrier.de.webcrawlerservice.persistence.repository.WebPageEntityRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.storage.CrawlResultStore;
+import de.hochschuletrier.de.webcrawlerservice.persistence.storage.PageBodyStore;
+import de.hochschuletrier.de.webcrawlerservice.persistence.storage.PageCodec;
 import de.hochschuletrier.de.webcrawlerservice.utils.HTMLExtractionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Generic Spider Class which only downloads each html file and saves it to the database
  * Additionally it saves all file Links to the database but does not download them
+ * Pages and file links are written in batches, see {@link WriteBehindBuffer}, as upserts if a
+ * {@link CrawlResultStore} is set
+ * The original response of a page is stored compressed, see {@link PageBodyStore}
  *
  * @author: Oliver Fries
  */
@@ -27,6 +37,12 @@ public class GenericSpider extends Crawler
 
     private WebPageEntityRepository webPageEntityRepository;
 
+    private PageBodyStore pageBodyStore; // compresses the bodies of the stored pages
+
+    private WriteBehindBuffer<WebPageEntity> pageWriter; // pages of the current run
+
+    private WriteBehindBuffer<FileLinkEntity> fileLinkWriter; // file links of the current run
+
     private List<String> allowedFileExtensions;
 
     private static final Logger logger = LoggerFactory.getLogger(GenericSpider.class);
@@ -43,10 +59,17 @@ public class GenericSpider extends Crawler
         initParameters(fileLinkRepository, webPageEntityRepository);
     }
 
+    public GenericSpider(CrawlerEntity crawlerEntity, List<String> allowedDomains, List<String> seedURLs, boolean revisiting, List<String> deniedDomains, CrawlerEntityRepository crawlerEntityRepository, DeadLinkRepository deadLinkRepository, FileLinkRepository fileLinkRepository, WebPageEntityRepository webPageEntityRepository)
+    {
+        super(crawlerEntity, allowedDomains, seedURLs, revisiting, deniedDomains, crawlerEntityRepository, deadLinkRepository);
+        initParameters(fileLinkRepository, webPageEntityRepository);
+    }
+
     private void initParameters(FileLinkRepository fileLinkRepository, WebPageEntityRepository webPageEntityRepository)
     {
         this.fileLinkRepository = fileLinkRepository;
         this.webPageEntityRepository = webPageEntityRepository;
+        this.pageBodyStore = new PageBodyStore(PageCodec.ZSTD);
         this.allowedFileExtensions = new ArrayList<>();
 
         this.allowedFileExtensions.add("pdf");
@@ -62,31 +85,88 @@ public class GenericSpider extends Crawler
         this.allowedFileExtensions.add("dat");
     }
 
+    @Override
+    protected void openPipeline()
+    {
+        CrawlResultStore crawlResultStore = getCrawlResultStore();
+        if (crawlResultStore != null)
+        {
+            this.pageWriter = createWriteBehindBuffer("pages", crawlResultStore::upsertPages);
+            this.fileLinkWriter = createWriteBehindBuffer("file-links", crawlResultStore::upsertFileLinks);
+        } else
+        {
+            this.pageWriter = createWriteBehindBuffer("pages", this.webPageEntityRepository);
+            this.fileLinkWriter = createWriteBehindBuffer("file-links", this.fileLinkRepository);
+        }
+    }
+
+    @Override
+    protected void closePipeline()
+    {
+        this.pageWriter.close();
+        this.fileLinkWriter.close();
+        logger.info(this.pageWriter.toString());
+        logger.info(this.fileLinkWriter.toString());
+    }
+
     @Override
     protected void pagePipeline(Page page)
     {
-        if (urlContainsValidHTML(page))
+        if (page.getDuplicateOf() != null)
+        {
+            // the file links were stored with the original page
+            this.pageWriter.add(new WebPageEntity(page));
+            getJournal().record(CrawlEvent.Type.STORED, page.getUrl(), 0, 0, 0, page.getDuplicateOf());
+        } else if (urlContainsValidHTML(page))
         {
-            logger.info("Write page into database " + page.getUrl());
-            this.webPageEntityRepository.save(new WebPageEntity(page));
+            WebPageEntity webPageEntity = new WebPageEntity(page);
+            storeBody(webPageEntity, page);
+            this.pageWriter.add(webPageEntity);
+            getJournal().record(CrawlEvent.Type.STORED, page.getUrl(), 0, page.getContentLength(), 0, null);
             for (String fileLink : page.getFileUrls(this.allowedFileExtensions))
             {
-                this.fileLinkRepository.save(new FileLinkEntity(fileLink, HTMLExtractionUtils.getFileExtensionFromFileLink(fileLink)));
+                this.fileLinkWriter.add(new FileLinkEntity(fileLink, HTMLExtractionUtils.getFileExtensionFromFileLink(fileLink)));
             }
         } else
         {
-            logger.warn("Not a valid page for Processing: " + page.getUrl());
+            getJournal().record(CrawlEvent.Type.SKIPPED, page.getUrl(), 0, 0, 0, "invalid");
         }
 
     }
 
+    private void storeBody(WebPageEntity webPageEntity, Page page)
+    {
+        if (page.getBody() != null)
+        {
+            this.pageBodyStore.store(webPageEntity, page.getBody(), page.getCharset());
+        } else
+        {
+            this.pageBodyStore.store(webPageEntity, page.getHtmlBody().outerHtml().getBytes(StandardCharsets.UTF_8),
+                    StandardCharsets.UTF_8.name());
+        }
+    }
+
+    /**
+     * @param pageBodyStore store for the page bodies, the default keeps zstd compressed bodies in the documents
+     */
+    public void setPageBodyStore(PageBodyStore pageBodyStore)
+    {
+        this.pageBodyStore = pageBodyStore;
+    }
+
+    @Override
+    protected boolean isAlreadyStored(String url)
+    {
+        return this.webPageEntityRepository.existsByUrl(url);
+    }
+
     private boolean urlContainsValidHTML(Page page)
     {
         if (page.getUrl().contains("mailto") || page.getUrl().contains("@"))
         {
             return false;
         }
-        if (!page.getHtmlBody().hasText())
+        if (page.getText() == null || page.getText().isEmpty())
         {
             return false;
         }
@@ -0,0 +1,252 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.http.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.client.util.InputStreamResponseListener;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.ProcessorUtils;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Non blocking fetcher based on the jetty http client.
+ * <p>
+ * Requests are sent and read by a few selector threads, so many requests can be in flight at the same time. The
+ * client keeps a pool of keep alive connections per host, which are reused by the following requests to the same
+ * host. Gzip encoded responses are decoded by the client. The body of responses which are not html is not downloaded.
+ * <p>
+ * The client leases one thread per selector from its pool, as many selectors as jetty would use by default, half the
+ * available processors. The pool is sized with THREADS callback threads on top of them, a fixed pool would not start
+ * on hosts with many cores.
+ */
+public class AsyncPageFetcher implements PageFetcher
+{
+    private static final int THREADS = 8; // callback threads of the http client besides the selector threads
+    private static final long IDLE_TIMEOUT = 30000; // keep idle connections open for this many milliseconds
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncPageFetcher.class);
+
+    private final HttpClient httpClient;
+    private final int timeout; // request timeout in milliseconds
+    private final int maxBodySize;
+
+    /**
+     * @param userAgent             the user agent of the requests
+     * @param timeout               request timeout in milliseconds
+     * @param followRedirects       set true for following http redirects
+     * @param maxConnectionsPerHost size of the connection pool of a single host
+     */
+    public AsyncPageFetcher(String userAgent, int timeout, boolean followRedirects, int maxConnectionsPerHost)
+    {
+        this(userAgent, timeout, followRedirects, maxConnectionsPerHost, DEFAULT_MAX_BODY_SIZE);
+    }
+
+    /**
+     * @param userAgent             the user agent of the requests
+     * @param timeout               request timeout in milliseconds
+     * @param followRedirects       set true for following http redirects
+     * @param maxConnectionsPerHost size of the connection pool of a single host
+     * @param maxBodySize           bodies are truncated after this many bytes
+     */
+    public AsyncPageFetcher(String userAgent, int timeout, boolean followRedirects, int maxConnectionsPerHost,
+                            int maxBodySize)
+    {
+        SslContextFactory sslContextFactory = new SslContextFactory();
+        sslContextFactory.setEndpointIdentificationAlgorithm("HTTPS");
+        int selectors = Math.max(1, ProcessorUtils.availableProcessors() / 2);
+        this.httpClient = new HttpClient(new HttpClientTransportOverHTTP(selectors), sslContextFactory);
+        QueuedThreadPool threadPool = new QueuedThreadPool(selectors + THREADS, 2);
+        threadPool.setName("async-fetcher");
+        threadPool.setDaemon(true);
+        this.httpClient.setExecutor(threadPool);
+        this.httpClient.setUserAgentField(new HttpField(HttpHeader.USER_AGENT, userAgent));
+        this.httpClient.setFollowRedirects(followRedirects);
+        this.httpClient.setMaxConnectionsPerDestination(Math.max(1, maxConnectionsPerHost));
+        this.httpClient.setConnectTimeout(timeout);
+        this.httpClient.setIdleTimeout(IDLE_TIMEOUT);
+        this.timeout = timeout;
+        this.maxBodySize = maxBodySize;
+        try
+        {
+            this.httpClient.start();
+        } catch (Exception e)
+        {
+            throw new IllegalStateException("Could not start http client", e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<FetchResponse> fetch(String url, Map<String, String> headers)
+    {
+        CompletableFuture<FetchResponse> future = new CompletableFuture<>();
+        Request request = newRequest(url, future);
+        if (request != null)
+        {
+            for (Map.Entry<String, String> header : headers.entrySet())
+            {
+                request.header(header.getKey(), header.getValue());
+            }
+            request.send(new BodyListener(future, false, this.maxBodySize));
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<FetchResponse> fetchFile(String url, int maxBodySize)
+    {
+        CompletableFuture<FetchResponse> future = new CompletableFuture<>();
+        Request request = newRequest(url, future);
+        if (request != null)
+        {
+            request.followRedirects(true).send(new BodyListener(future, true, maxBodySize));
+        }
+        return future;
+    }
+
+    @Override
+    public InputStream openStream(String url) throws IOException
+    {
+        InputStreamResponseListener listener = new InputStreamResponseListener();
+        try
+        {
+            // the idle timeout instead of a total timeout, reading a large body may take longer
+            this.httpClient.newRequest(url)
+                    .idleTimeout(this.timeout, TimeUnit.MILLISECONDS)
+                    .followRedirects(true)
+                    .send(listener);
+            Response response = listener.get(this.timeout, TimeUnit.MILLISECONDS);
+            if (response.getStatus() / 100 != 2)
+            {
+                response.abort(new IllegalStateException("Status " + response.getStatus()));
+                throw new IOException("Status " + response.getStatus() + " for " + url);
+            }
+            return listener.getInputStream();
+        } catch (IllegalArgumentException | TimeoutException | ExecutionException e)
+        {
+            throw new IOException("Request failed: " + url, e);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + url);
+        }
+    }
+
+    /**
+     * @return the request or null if the url is invalid, the future is completed with the error then
+     */
+    private Request newRequest(String url, CompletableFuture<FetchResponse> future)
+    {
+        try
+        {
+            return this.httpClient.newRequest(url).timeout(this.timeout, TimeUnit.MILLISECONDS);
+        } catch (IllegalArgumentException e)
+        {
+            future.completeExceptionally(e);
+            return null;
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            this.httpClient.stop();
+        } catch (Exception e)
+        {
+            logger.warn("Could not stop http client - " + e.toString());
+        }
+    }
+
+    /**
+     * Collects the body of html responses, or of any response for files, up to the maximum body size and completes
+     * the future
+     */
+    private class BodyListener extends Response.Listener.Adapter
+    {
+        private final CompletableFuture<FetchResponse> future;
+        private final boolean anyContentType; // download the body of every content type
+        private final int maxBodySize;
+        private ByteArrayOutputStream body; // null for responses which are not html
+        private boolean truncated;
+        private boolean skipped; // the response is not html and its body was not downloaded
+
+        private BodyListener(CompletableFuture<FetchResponse> future, boolean anyContentType, int maxBodySize)
+        {
+            this.future = future;
+            this.anyContentType = anyContentType;
+            this.maxBodySize = maxBodySize;
+        }
+
+        @Override
+        public void onHeaders(Response response)
+        {
+            if (this.anyContentType
+                    || PageValidation.isHtmlContentType(response.getHeaders().get(HttpHeader.CONTENT_TYPE)))
+            {
+                this.body = new ByteArrayOutputStream(8192);
+            } else if (response.getStatus() == 200)
+            {
+                // files like pdfs are not downloaded, the connection is closed instead
+                this.skipped = true;
+                response.abort(new IllegalStateException("No html content type"));
+            }
+        }
+
+        @Override
+        public void onContent(Response response, ByteBuffer content)
+        {
+            if (this.body == null || this.truncated)
+            {
+                return;
+            }
+            int length = Math.min(content.remaining(), this.maxBodySize - this.body.size());
+            byte[] bytes = new byte[length];
+            content.get(bytes);
+            this.body.write(bytes, 0, length);
+            if (this.body.size() >= this.maxBodySize)
+            {
+                this.truncated = true;
+                response.abort(new IllegalStateException("Body exceeds " + this.maxBodySize + " bytes"));
+            }
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            if (result.isFailed() && !this.truncated && !this.skipped)
+            {
+                this.future.completeExceptionally(result.getFailure());
+                return;
+            }
+            Response response = result.getResponse();
+            List<Map.Entry<String, String>> headers = new ArrayList<>(response.getHeaders().size());
+            for (HttpField field : response.getHeaders())
+            {
+                headers.add(new AbstractMap.SimpleImmutableEntry<>(field.getName(), field.getValue()));
+            }
+            this.future.complete(new FetchResponse(result.getRequest().getURI().toString(), response.getStatus(),
+                    headers, this.body == null ? null : this.body.toByteArray(), this.truncated));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor which starts a new thread for every task, but lets at most maxConcurrency tasks run at the same time.
+ * <p>
+ * Meant for virtual threads: the submitting thread never blocks, tasks above the limit wait for a permit inside their
+ * own thread, which is cheap for virtual threads.
+ */
+public class ConcurrencyLimitedExecutor extends AbstractExecutorService
+{
+    private final ThreadFactory threadFactory;
+    private final Semaphore permits; // one permit per task that may run
+    private final Set<Thread> threads; // threads of submitted tasks, which did not finish yet
+    private final Object lock = new Object();
+    private boolean shutdown;
+
+    /**
+     * @param threadFactory  factory for the task threads
+     * @param maxConcurrency maximum number of tasks that run at the same time
+     */
+    public ConcurrencyLimitedExecutor(ThreadFactory threadFactory, int maxConcurrency)
+    {
+        this.threadFactory = threadFactory;
+        this.permits = new Semaphore(Math.max(1, maxConcurrency), true);
+        this.threads = ConcurrentHashMap.newKeySet();
+    }
+
+    @Override
+    public void execute(Runnable task)
+    {
+        Thread thread = this.threadFactory.newThread(() -> runLimited(task));
+        synchronized (this.lock)
+        {
+            if (this.shutdown)
+            {
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+            this.threads.add(thread);
+        }
+        thread.start();
+    }
+
+    private void runLimited(Runnable task)
+    {
+        try
+        {
+            this.permits.acquire();
+            try
+            {
+                task.run();
+            } finally
+            {
+                this.permits.release();
+            }
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            synchronized (this.lock)
+            {
+                this.threads.remove(Thread.currentThread());
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return number of tasks which are running or waiting for a permit
+     */
+    public int getActiveCount()
+    {
+        return this.threads.size();
+    }
+
+    /**
+     * @return estimated number of tasks waiting for a permit
+     */
+    public int getQueuedCount()
+    {
+        return this.permits.getQueueLength();
+    }
+
+    @Override
+    public void shutdown()
+    {
+        synchronized (this.lock)
+        {
+            this.shutdown = true;
+            this.lock.notifyAll();
+        }
+    }
+
+    /**
+     * Interrupt all running and waiting tasks. Waiting tasks are dropped, so the returned list is always empty.
+     */
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        shutdown();
+        for (Thread thread : this.threads)
+        {
+            thread.interrupt();
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+        synchronized (this.lock)
+        {
+            return this.shutdown;
+        }
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        synchronized (this.lock)
+        {
+            return this.shutdown && this.threads.isEmpty();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this.lock)
+        {
+            while (!(this.shutdown && this.threads.isEmpty()))
+            {
+                long wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (wait <= 0)
+                {
+                    return false;
+                }
+                this.lock.wait(wait);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compiled allowed and denied domain rules of a crawler.
+ * <p>
+ * A rule is a domain like 'google', 'news.google' or 'spring.io', optionally followed by a path prefix like
+ * 'spring.io/guides'. A scheme in front of the rule is ignored. A domain matches a host if its labels appear as whole,
+ * consecutive labels of the host, so 'news.google' matches 'news.google.de' and 'www.news.google.com', but 'google'
+ * does not match 'notgoogle.com'. Rules with a path prefix only match urls whose path starts with the prefix.
+ * <p>
+ * The rules are stored in a trie of reversed host labels, which is built once per crawler. Checking an url walks the
+ * trie from every label of the host, no regular expression is involved.
+ */
+public class DomainRules
+{
+    private final Node allowed; // root of the allowed rules, null if every domain is allowed
+    private final Node denied; // root of the denied rules, null if no domain is denied
+
+    private DomainRules(Node allowed, Node denied)
+    {
+        this.allowed = allowed;
+        this.denied = denied;
+    }
+
+    /**
+     * @param allowedDomains allowed domain rules, an empty list allows every domain
+     * @param deniedDomains  denied domain rules, these win over the allowed rules
+     * @return the compiled rules
+     */
+    public static DomainRules compile(List<String> allowedDomains, List<String> deniedDomains)
+    {
+        return new DomainRules(buildTrie(allowedDomains), buildTrie(deniedDomains));
+    }
+
+    /**
+     * @param url the url to check
+     * @return boolean: True if the url is within the allowed domains and not within the denied domains
+     */
+    public boolean accepts(String url)
+    {
+        Target target = Target.parse(url);
+        if (target == null)
+        {
+            return false;
+        }
+        return (this.allowed == null || matches(this.allowed, target))
+                && (this.denied == null || !matches(this.denied, target));
+    }
+
+    /**
+     * @param url the url to check
+     * @return boolean: True if the url is within the allowed domains
+     */
+    public boolean isAllowed(String url)
+    {
+        Target target = Target.parse(url);
+        return target != null && (this.allowed == null || matches(this.allowed, target));
+    }
+
+    /**
+     * @param url the url to check
+     * @return boolean: True if the url is within the denied domains
+     */
+    public boolean isDenied(String url)
+    {
+        Target target = Target.parse(url);
+        return target != null && this.denied != null && matches(this.denied, target);
+    }
+
+    private static Node buildTrie(List<String> rules)
+    {
+        if (rules == null || rules.isEmpty())
+        {
+            return null;
+        }
+        Node root = new Node();
+        for (String rule : rules)
+        {
+            String domain = rule.trim().toLowerCase(Locale.ROOT);
+            int schemeEnd = domain.indexOf("://");
+            if (schemeEnd >= 0)
+            {
+                domain = domain.substring(schemeEnd + 3);
+            }
+            String pathPrefix = null;
+            int pathStart = domain.indexOf('/');
+            if (pathStart >= 0)
+            {
+                pathPrefix = domain.substring(pathStart);
+                domain = domain.substring(0, pathStart);
+            }
+            String[] labels = splitLabels(domain);
+            if (labels.length == 0)
+            {
+                continue;
+            }
+            Node node = root;
+            for (int i = labels.length - 1; i >= 0; i--)
+            {
+                node = node.children.computeIfAbsent(labels[i], label -> new Node());
+            }
+            node.addPathPrefix(pathPrefix);
+        }
+        return root;
+    }
+
+    /**
+     * Walk the trie from every label of the host towards the front of the host
+     */
+    private static boolean matches(Node root, Target target)
+    {
+        String[] labels = target.labels;
+        for (int start = labels.length - 1; start >= 0; start--)
+        {
+            Node node = root;
+            for (int i = start; i >= 0; i--)
+            {
+                node = node.children.get(labels[i]);
+                if (node == null)
+                {
+                    break;
+                }
+                if (node.matchesPath(target.path))
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String[] splitLabels(String host)
+    {
+        List<String> labels = new ArrayList<>(4);
+        int start = 0;
+        for (int i = 0; i <= host.length(); i++)
+        {
+            if (i == host.length() || host.charAt(i) == '.')
+            {
+                if (i > start)
+                {
+                    labels.add(host.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return labels.toArray(new String[0]);
+    }
+
+    /**
+     * Trie node for a single host label
+     */
+    private static class Node
+    {
+        private final Map<String, Node> children = new HashMap<>(4);
+        private boolean terminal; // a rule ends at this label
+        private List<String> pathPrefixes; // null if the rule matches any path
+
+        private void addPathPrefix(String pathPrefix)
+        {
+            if (pathPrefix == null || pathPrefix.equals("/"))
+            {
+                // a rule without path covers the rules with path
+                this.pathPrefixes = null;
+            } else if (!this.terminal || this.pathPrefixes != null)
+            {
+                if (this.pathPrefixes == null)
+                {
+                    this.pathPrefixes = new ArrayList<>(2);
+                }
+                this.pathPrefixes.add(pathPrefix);
+            }
+            this.terminal = true;
+        }
+
+        private boolean matchesPath(String path)
+        {
+            if (!this.terminal)
+            {
+                return false;
+            }
+            if (this.pathPrefixes == null)
+            {
+                return true;
+            }
+            for (String pathPrefix : this.pathPrefixes)
+            {
+                if (path.startsWith(pathPrefix))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Host labels and path of an url, parsed without java.net.URI
+     */
+    private static class Target
+    {
+        private final String[] labels;
+        private final String path;
+
+        private Target(String[] labels, String path)
+        {
+            this.labels = labels;
+            this.path = path;
+        }
+
+        /**
+         * @return the parsed url or null if the url has no host
+         */
+        private static Target parse(String url)
+        {
+            int authorityStart = url.indexOf("://");
+            if (authorityStart < 0)
+            {
+                return null;
+            }
+            authorityStart += 3;
+            int authorityEnd = url.length();
+            for (int i = authorityStart; i < url.length(); i++)
+            {
+                char c = url.charAt(i);
+                if (c == '/' || c == '?' || c == '#')
+                {
+                    authorityEnd = i;
+                    break;
+                }
+            }
+            int hostStart = url.lastIndexOf('@', authorityEnd - 1) + 1;
+            if (hostStart < authorityStart)
+            {
+                hostStart = authorityStart;
+            }
+            int hostEnd = authorityEnd;
+            int portStart = url.lastIndexOf(':', authorityEnd - 1);
+            if (portStart >= hostStart && url.charAt(hostStart) != '[')
+            {
+                hostEnd = portStart;
+            }
+            if (hostEnd <= hostStart)
+            {
+                return null;
+            }
+            String host = url.substring(hostStart, hostEnd).toLowerCase(Locale.ROOT);
+
+            int pathEnd = url.length();
+            for (int i = authorityEnd; i < url.length(); i++)
+            {
+                char c = url.charAt(i);
+                if (c == '?' || c == '#')
+                {
+                    pathEnd = i;
+                    break;
+                }
+            }
+            String path = pathEnd > authorityEnd ? url.substring(authorityEnd, pathEnd) : "/";
+            return new Target(splitLabels(host), path);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Response of a {@link PageFetcher}
+ */
+public class FetchResponse
+{
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private final String url; // url of the response, after all redirects were followed
+    private final int statusCode;
+    private final Map<String, String> headers; // response headers, names are case insensitive
+    private final List<Map.Entry<String, String>> headerFields; // header fields as received, repeated names included
+    private final byte[] body; // body of html responses, empty for other content types
+    private final boolean truncated; // true if the body was cut at the maximum body size
+
+    public FetchResponse(String url, int statusCode, Map<String, String> headers, byte[] body, boolean truncated)
+    {
+        this(url, statusCode, new ArrayList<>(headers.entrySet()), body, truncated);
+    }
+
+    /**
+     * @param headerFields the header fields in received order. Repeated fields like Set-Cookie are kept as they are
+     *                     and joined with a comma in {@link #getHeaders()}.
+     */
+    public FetchResponse(String url, int statusCode, List<Map.Entry<String, String>> headerFields, byte[] body,
+                         boolean truncated)
+    {
+        this.url = url;
+        this.statusCode = statusCode;
+        this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this.headerFields = new ArrayList<>(headerFields.size());
+        for (Map.Entry<String, String> field : headerFields)
+        {
+            this.headers.merge(field.getKey(), field.getValue(), (first, second) -> first + ", " + second);
+            this.headerFields.add(new AbstractMap.SimpleImmutableEntry<>(field.getKey(), field.getValue()));
+        }
+        this.body = body == null ? EMPTY_BODY : body;
+        this.truncated = truncated;
+    }
+
+    public String getUrl()
+    {
+        return url;
+    }
+
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+
+    public Map<String, String> getHeaders()
+    {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * @return the header fields in received order, a repeated header is one entry per field
+     */
+    public List<Map.Entry<String, String>> getHeaderFields()
+    {
+        return Collections.unmodifiableList(headerFields);
+    }
+
+    /**
+     * @param name case insensitive header name
+     * @return the header value or null if the header is missing
+     */
+    public String getHeader(String name)
+    {
+        return this.headers.get(name);
+    }
+
+    public String getContentType()
+    {
+        return this.headers.get("Content-Type");
+    }
+
+    /**
+     * @return the charset of the content type or null if it is missing or unknown
+     */
+    public String getCharset()
+    {
+        String contentType = getContentType();
+        if (contentType == null)
+        {
+            return null;
+        }
+        int start = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (start < 0)
+        {
+            return null;
+        }
+        String charset = contentType.substring(start + 8).split(";")[0].trim().replace("\"", "");
+        try
+        {
+            return Charset.isSupported(charset) ? charset : null;
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e)
+        {
+            return null;
+        }
+    }
+
+    public byte[] getBody()
+    {
+        return body;
+    }
+
+    public boolean isTruncated()
+    {
+        return truncated;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "FetchResponse: " + this.url + "; StatusCode: " + this.statusCode + "; Bytes: " + this.body.length;
+    }
+}
@@ -0,0 +1,146 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Blocking fallback fetcher, which runs jsoup requests on a fixed thread pool or on virtual threads. Every request
+ * opens its own connection and blocks its thread until the response is read.
+ */
+public class JsoupPageFetcher implements PageFetcher
+{
+    private final ExecutorService executor;
+    private final String userAgent;
+    private final int timeout; // request timeout in milliseconds
+    private final boolean followRedirects;
+    private final int maxBodySize;
+
+    /**
+     * @param userAgent       the user agent of the requests
+     * @param timeout         request timeout in milliseconds
+     * @param followRedirects set true for following http redirects
+     * @param threads         number of requests that can run at the same time
+     */
+    public JsoupPageFetcher(String userAgent, int timeout, boolean followRedirects, int threads)
+    {
+        this(userAgent, timeout, followRedirects, threads, WorkerExecutors.PLATFORM);
+    }
+
+    /**
+     * @param userAgent       the user agent of the requests
+     * @param timeout         request timeout in milliseconds
+     * @param followRedirects set true for following http redirects
+     * @param threads         number of requests that can run at the same time
+     * @param executionMode   run the requests on platform or virtual threads, see {@link WorkerExecutors}
+     */
+    public JsoupPageFetcher(String userAgent, int timeout, boolean followRedirects, int threads, String executionMode)
+    {
+        this(userAgent, timeout, followRedirects, threads, executionMode, DEFAULT_MAX_BODY_SIZE);
+    }
+
+    /**
+     * @param userAgent       the user agent of the requests
+     * @param timeout         request timeout in milliseconds
+     * @param followRedirects set true for following http redirects
+     * @param threads         number of requests that can run at the same time
+     * @param executionMode   run the requests on platform or virtual threads, see {@link WorkerExecutors}
+     * @param maxBodySize     bodies are truncated after this many bytes
+     */
+    public JsoupPageFetcher(String userAgent, int timeout, boolean followRedirects, int threads, String executionMode,
+                            int maxBodySize)
+    {
+        this.executor = WorkerExecutors.newExecutor(executionMode, "jsoup-fetcher-", threads);
+        this.userAgent = userAgent;
+        this.timeout = timeout;
+        this.followRedirects = followRedirects;
+        this.maxBodySize = maxBodySize;
+    }
+
+    @Override
+    public CompletableFuture<FetchResponse> fetch(String url, Map<String, String> headers)
+    {
+        return CompletableFuture.supplyAsync(() -> execute(url, headers, false, this.maxBodySize), this.executor);
+    }
+
+    @Override
+    public CompletableFuture<FetchResponse> fetchFile(String url, int maxBodySize)
+    {
+        return CompletableFuture.supplyAsync(() -> execute(url, Collections.emptyMap(), true, maxBodySize),
+                this.executor);
+    }
+
+    @Override
+    public InputStream openStream(String url) throws IOException
+    {
+        Connection.Response response = Jsoup.connect(url).ignoreContentType(true)
+                .ignoreHttpErrors(true)
+                .userAgent(this.userAgent)
+                .timeout(this.timeout)
+                .maxBodySize(0)
+                .followRedirects(true)
+                .execute();
+        InputStream body = response.bodyStream();
+        if (response.statusCode() / 100 != 2)
+        {
+            body.close();
+            throw new IOException("Status " + response.statusCode() + " for " + url);
+        }
+        return body;
+    }
+
+    /**
+     * @param file set true to download the body of every content type and to follow redirects
+     */
+    private FetchResponse execute(String url, Map<String, String> headers, boolean file, int maxBodySize)
+    {
+        try
+        {
+            Connection connection = Jsoup.connect(url).ignoreContentType(true)
+                    .ignoreHttpErrors(true)
+                    .userAgent(this.userAgent)
+                    .timeout(this.timeout)
+                    .maxBodySize(maxBodySize)
+                    .followRedirects(file || this.followRedirects);
+            for (Map.Entry<String, String> header : headers.entrySet())
+            {
+                connection.header(header.getKey(), header.getValue());
+            }
+            Connection.Response response = connection.execute();
+            byte[] body = null;
+            if (file || PageValidation.isHtmlContentType(response.contentType()))
+            {
+                body = response.bodyAsBytes();
+            }
+            List<Map.Entry<String, String>> headerFields = new ArrayList<>();
+            for (Map.Entry<String, List<String>> header : response.multiHeaders().entrySet())
+            {
+                for (String value : header.getValue())
+                {
+                    headerFields.add(new AbstractMap.SimpleImmutableEntry<>(header.getKey(), value));
+                }
+            }
+            return new FetchResponse(response.url().toString(), response.statusCode(), headerFields, body,
+                    body != null && body.length >= maxBodySize);
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        this.executor.shutdownNow();
+    }
+}
@@ -10,18 +10,30 @@ import java.util.Map;
 /**
  * The page represents the information of a single html page.
  * <p>
- * It consists of the htmlBody of a page, all headers, the lastModified Timestamp of the page, the http status code and
- * the extracted text of the page
+ * It consists of the htmlBody of a page, all headers, the lastModified Timestamp and the ETag of the page, the http
+ * status code and the extracted text of the page. A page which was not modified since the last visit has no htmlBody.
+ * Pages read by the {@link StreamingLinkExtractor} have no htmlBody either, their title, text and links were extracted
+ * while the response was scanned.
+ * Near duplicates of an already stored page reference it by its url.
  *
  * @author: Oliver Fries
  */
 public class Page
 {
     private Date lastModified;
+    private String etag; // entity tag of the response, sent as If-None-Match on revisits
+    private int contentLength; // length of the response body in bytes
+    private boolean notModified; // the server answered a conditional request with 304 Not Modified
+    private long simHash; // SimHash fingerprint of the text
+    private String duplicateOf; // url of a stored page with nearly the same text, null if the page is unique
     private Integer statusCode;
     private Document htmlBody;
+    private byte[] body; // original response bytes of html pages
+    private String charset; // charset the body was parsed with
     private Map<String, String> headerMap;
-    private String text;
+    private String text; // text of the page, taken from the htmlBody on first access
+    private String title;
+    private List<String> links; // absolute links of streamed pages, null if the page has a htmlBody
     private String url;
     private Date crawlingDateTime;
 
@@ -45,6 +57,56 @@ public class Page
         this.lastModified = lastModified;
     }
 
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    public void setEtag(String etag)
+    {
+        this.etag = etag;
+    }
+
+    public int getContentLength()
+    {
+        return contentLength;
+    }
+
+    public void setContentLength(int contentLength)
+    {
+        this.contentLength = contentLength;
+    }
+
+    public boolean isNotModified()
+    {
+        return notModified;
+    }
+
+    public void setNotModified(boolean notModified)
+    {
+        this.notModified = notModified;
+    }
+
+    public long getSimHash()
+    {
+        return simHash;
+    }
+
+    public void setSimHash(long simHash)
+    {
+        this.simHash = simHash;
+    }
+
+    public String getDuplicateOf()
+    {
+        return duplicateOf;
+    }
+
+    public void setDuplicateOf(String duplicateOf)
+    {
+        this.duplicateOf = duplicateOf;
+    }
+
     public Integer getStatusCode()
     {
         return statusCode;
@@ -65,6 +127,26 @@ public class Page
         this.htmlBody = htmlBody;
     }
 
+    public byte[] getBody()
+    {
+        return body;
+    }
+
+    public void setBody(byte[] body)
+    {
+        this.body = body;
+    }
+
+    public String getCharset()
+    {
+        return charset;
+    }
+
+    public void setCharset(String charset)
+    {
+        this.charset = charset;
+    }
+
     public Map<String, String> getHeaderMap()
     {
         return headerMap;
@@ -77,6 +159,10 @@ public class Page
 
     public String getText()
     {
+        if (this.text == null && this.htmlBody != null)
+        {
+            this.text = this.htmlBody.text();
+        }
         return text;
     }
 
@@ -85,6 +171,34 @@ public class Page
         this.text = text;
     }
 
+    public String getTitle()
+    {
+        return this.htmlBody != null ? this.htmlBody.title() : title;
+    }
+
+    public void setTitle(String title)
+    {
+        this.title = title;
+    }
+
+    public List<String> getLinks()
+    {
+        return links;
+    }
+
+    public void setLinks(List<String> links)
+    {
+        this.links = links;
+    }
+
+    /**
+     * @return true if the page was parsed into a htmlBody or read by the streaming extractor
+     */
+    public boolean isHtml()
+    {
+        return this.htmlBody != null || this.links != null;
+    }
+
     public Page()
     {
     }
@@ -111,6 +225,10 @@ public class Page
 
     public List<String> getFileUrls(List<String> allowedFileExtensions)
     {
+        if (this.htmlBody == null && this.links != null)
+        {
+            return HTMLExtractionUtils.getFileLinks(this.links, allowedFileExtensions);
+        }
         return HTMLExtractionUtils.getFileLinksFromDocument(this.getHtmlBody(), allowedFileExtensions);
     }
 
@@ -0,0 +1,51 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Downloads pages for a crawler. Implementations return immediately and complete the future once the response is
+ * read, so a crawler can keep many requests in flight without blocking a thread per request.
+ * <p>
+ * Responses with any status code complete the future normally, connection errors and timeouts complete it
+ * exceptionally. The body is only read for html responses.
+ */
+public interface PageFetcher extends Closeable
+{
+    int DEFAULT_MAX_BODY_SIZE = 1024 * 1024; // same limit jsoup applies by default
+
+    /**
+     * @param url     the url to request
+     * @param headers additional request headers, may be empty
+     * @return future of the response
+     */
+    CompletableFuture<FetchResponse> fetch(String url, Map<String, String> headers);
+
+    /**
+     * Download a file of any content type, like robots.txt. Redirects are always followed.
+     *
+     * @param url         the url to request
+     * @param maxBodySize bodies are truncated after this many bytes
+     * @return future of the response
+     */
+    CompletableFuture<FetchResponse> fetchFile(String url, int maxBodySize);
+
+    /**
+     * Open the body of a large file, like a sitemap, as stream instead of buffering it. The call blocks until the
+     * response headers arrived. Redirects are always followed.
+     *
+     * @param url the url to request
+     * @return the body, which has to be closed by the caller
+     * @throws IOException if the request failed or the response status is not 2xx
+     */
+    InputStream openStream(String url) throws IOException;
+
+    /**
+     * Release all connections and threads of the fetcher
+     */
+    @Override
+    void close();
+}
@@ -1,21 +1,15 @@
 package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
 
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.UrlFrontier;
 import org.jetbrains.annotations.NotNull;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Locale;
 
 /**
  * class contains all methods for validating a Page.class Object in a crawler
@@ -51,45 +45,18 @@ public class PageValidation
         }
     }
 
-    /**
-     * Validate an url if its in the @allowedDomains List
-     *
-     * @param allowedDomains String List with allowed domain names
-     * @param url            the url to check
-     * @return boolean
-     */
-    private static boolean isUrlWithinAllowedDomains(List<String> allowedDomains, String url)
-    {
-        if (allowedDomains.isEmpty()) return true;
-        for (String domain : allowedDomains)
-        {
-            // RegEx pattern that matches any link pattern, subdomain and Suffix of a link to the given domain
-            Pattern p = Pattern.compile("^(?:https?:)?(?://)?(?:[^@\\n" +
-                    "]+@)?(?:www\\.)?([a-z.])*(?:"
-                    + domain
-                    + "){1}(.[a-z]{2,64}/)?([-A-Za-z0-9+&@#/%=~_|$?!:,.])*");
-            Matcher matcher = p.matcher(url);
-            if (matcher.matches())
-            {
-                return true;
-            }
-        }
-        logger.debug("URL not within Domain: " + url);
-        return false;
-    }
-
     /**
      * Validate if the url is already visited
      *
-     * @param foundAndVisitedUrlsWithTimestamp HashMap with url strings as keys and a java.util.Date.class Object as key
-     * @param url                              the URL to check
+     * @param frontier the frontier of the crawler
+     * @param url      the URL to check
      * @return boolean
      */
-    private static boolean isUrlVisited(HashMap<String, Date> foundAndVisitedUrlsWithTimestamp, String url)
+    private static boolean isUrlVisited(UrlFrontier frontier, String url)
     {
-        if (foundAndVisitedUrlsWithTimestamp.containsKey(url))
+        if (frontier.isVisited(url))
         {
-            logger.debug("URL visited: " + url);
+            logger.debug("URL visited: {}", url);
             return true;
         } else
         {
@@ -101,15 +68,15 @@ public class PageValidation
     /**
      * Check if the url is already declared as a dead link
      *
-     * @param deadLinks String List of deadLinks
-     * @param url       the url
+     * @param frontier the frontier of the crawler
+     * @param url      the url
      * @return boolean
      */
-    private static boolean isUrlDeadLink(List<String> deadLinks, String url)
+    private static boolean isUrlDeadLink(UrlFrontier frontier, String url)
     {
-        if (deadLinks.contains(url))
+        if (frontier.isDead(url))
         {
-            logger.debug("URL is deadlink: " + url);
+            logger.debug("URL is deadlink: {}", url);
             return true;
         } else
         {
@@ -119,22 +86,18 @@ public class PageValidation
 
     /**
      * Validate an URL by checking if it fits in the allowedDomain scheme and if it hasn't been already visited or is
-     * a dead link.
+     * a dead link. The validation does not request the url, the content type is checked when the page is fetched.
      *
-     * @param allowedDomains                   String List of allowed Domains
-     * @param foundAndVisitedUrlsWithTimestamp hashMap woth url and Date object
-     * @param deadLinks                        string List of dead Links
-     * @param deniedDomains                    String List of denied Domains
-     * @param url                              the URL to check
+     * @param domainRules the compiled allowed and denied domains of the crawler
+     * @param frontier    the frontier with the visited and dead links of the crawler
+     * @param url         the URL to check
      * @return boolean: True if url is Allowed & False if not
      */
-    public static boolean urlAllowed(List<String> allowedDomains, HashMap<String, Date> foundAndVisitedUrlsWithTimestamp,
-                                     List<String> deadLinks, List<String> deniedDomains, String url)
+    public static boolean urlAllowed(DomainRules domainRules, UrlFrontier frontier, String url)
     {
-        if (isUrlValidURI(url) && isUrlWithinAllowedDomains(allowedDomains, url) &&
-                !isUrlVisited(foundAndVisitedUrlsWithTimestamp, url) &&
-                !isUrlDeadLink(deadLinks, url)
-                && !deniedDomains.contains(url) && urlContainsHTML(url))
+        if (isUrlValidURI(url) && domainRules.accepts(url) &&
+                !isUrlVisited(frontier, url) &&
+                !isUrlDeadLink(frontier, url))
         {
             return true;
         } else
@@ -144,24 +107,20 @@ public class PageValidation
         }
     }
 
-    private static boolean urlContainsHTML(String url)
+    /**
+     * Validate if the content type of a response is a html document
+     *
+     * @param contentType value of the Content-Type header, may be null
+     * @return boolean: True if the response contains html
+     */
+    public static boolean isHtmlContentType(String contentType)
     {
-        try
-        {
-            Document doc = Jsoup.connect(url).get();
-            if (doc != null)
-            {
-                return true;
-            } else
-            {
-                return false;
-            }
-        } catch (IOException e)
+        if (contentType == null)
         {
-            logger.warn("Non valid URL; HTML Document empty - " + url);
-            e.printStackTrace();
             return false;
         }
+        String mimeType = contentType.toLowerCase(Locale.ROOT);
+        return mimeType.startsWith("text/html") || mimeType.startsWith("application/xhtml+xml");
     }
 
     /**
@@ -173,7 +132,7 @@ public class PageValidation
      */
     public static byte[] generateBodyHash(@NotNull Page page)
     {
-        return generateSHA256HashFromString(page.getHtmlBody().text());
+        return generateSHA256HashFromString(page.getText());
     }
 
     /**
@@ -0,0 +1,95 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+/**
+ * 64 bit SimHash fingerprint of a text.
+ * <p>
+ * The text is split into lower cased words, every shingle of three consecutive words is hashed and votes for the bits
+ * of its hash. Bits with a majority of votes are set in the fingerprint. Texts which share most of their shingles
+ * get fingerprints which only differ in a few bits, so near duplicates can be found by the Hamming distance.
+ */
+public final class SimHash
+{
+    private static final int SHINGLE_SIZE = 3; // words per shingle
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN_RATIO = 0x9e3779b97f4a7c15L;
+
+    private SimHash()
+    {
+    }
+
+    /**
+     * @param text the text of a page
+     * @return the fingerprint, 0 for a text without words
+     */
+    public static long fingerprint(String text)
+    {
+        int[] votes = new int[64];
+        long[] window = new long[SHINGLE_SIZE]; // hashes of the last words
+        int words = 0;
+        long wordHash = FNV_OFFSET;
+        boolean inWord = false;
+        for (int i = 0; i <= text.length(); i++)
+        {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c))
+            {
+                wordHash = (wordHash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inWord = true;
+            } else if (inWord)
+            {
+                window[words % SHINGLE_SIZE] = Murmur3.fmix64(wordHash);
+                words++;
+                if (words >= SHINGLE_SIZE)
+                {
+                    vote(votes, shingleHash(window, words, SHINGLE_SIZE));
+                }
+                wordHash = FNV_OFFSET;
+                inWord = false;
+            }
+        }
+        if (words > 0 && words < SHINGLE_SIZE)
+        {
+            // texts shorter than a shingle are hashed as a whole
+            vote(votes, shingleHash(window, words, words));
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++)
+        {
+            if (votes[bit] > 0)
+            {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @return number of bits in which both fingerprints differ
+     */
+    public static int distance(long fingerprint1, long fingerprint2)
+    {
+        return Long.bitCount(fingerprint1 ^ fingerprint2);
+    }
+
+    /**
+     * Combine the hashes of the last words in their order
+     */
+    private static long shingleHash(long[] window, int words, int length)
+    {
+        long hash = 0;
+        for (int i = words - length; i < words; i++)
+        {
+            hash = Murmur3.fmix64(hash * GOLDEN_RATIO + window[i % SHINGLE_SIZE]);
+        }
+        return hash;
+    }
+
+    private static void vote(int[] votes, long hash)
+    {
+        for (int bit = 0; bit < 64; bit++)
+        {
+            votes[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+        }
+    }
+}
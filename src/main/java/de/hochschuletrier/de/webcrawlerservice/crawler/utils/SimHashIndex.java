@@ -0,0 +1,162 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import java.util.Arrays;
+
+/**
+ * In memory index of the SimHash fingerprints of stored pages, which finds a fingerprint within a maximum Hamming
+ * distance.
+ * <p>
+ * The 64 bits are split into maxDistance + 1 blocks. Two fingerprints which differ in at most maxDistance bits agree
+ * in at least one whole block, so every block is indexed in its own hash table and only fingerprints which share a
+ * block with the query are compared. Every bucket keeps its fingerprints in one array, so a lookup scans a few short
+ * arrays sequentially instead of chasing references.
+ */
+public class SimHashIndex
+{
+    public static final int DEFAULT_MAX_DISTANCE = 5;
+    public static final int MAX_SUPPORTED_DISTANCE = 7;
+
+    private static final int MAX_BUCKET_BITS = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_BUCKET_CAPACITY = 4;
+
+    private final int maxDistance;
+    private final int[] blockShifts;
+    private final long[] blockMasks;
+    private final int bucketMask;
+    private final long[][][] bucketFingerprints; // fingerprints of every bucket per block, null for empty buckets
+    private final int[][][] bucketEntries; // entry numbers in the same order as the bucket fingerprints
+    private final int[][] bucketSizes;
+    private String[] urls; // url of every entry
+    private int size;
+
+    public SimHashIndex()
+    {
+        this(DEFAULT_MAX_DISTANCE);
+    }
+
+    /**
+     * @param maxDistance maximum number of differing bits of a near duplicate, 0 to 7
+     */
+    public SimHashIndex(int maxDistance)
+    {
+        if (maxDistance < 0 || maxDistance > MAX_SUPPORTED_DISTANCE)
+        {
+            throw new IllegalArgumentException("Distance must be between 0 and " + MAX_SUPPORTED_DISTANCE);
+        }
+        this.maxDistance = maxDistance;
+        int blocks = maxDistance + 1;
+        this.blockShifts = new int[blocks];
+        this.blockMasks = new long[blocks];
+        int shift = 0;
+        for (int i = 0; i < blocks; i++)
+        {
+            int width = 64 / blocks + (i < 64 % blocks ? 1 : 0);
+            this.blockShifts[i] = shift;
+            this.blockMasks[i] = width == 64 ? -1L : (1L << width) - 1;
+            shift += width;
+        }
+        int bucketBits = Math.min(MAX_BUCKET_BITS, 64 / blocks);
+        this.bucketMask = (1 << bucketBits) - 1;
+        this.bucketFingerprints = new long[blocks][1 << bucketBits][];
+        this.bucketEntries = new int[blocks][1 << bucketBits][];
+        this.bucketSizes = new int[blocks][1 << bucketBits];
+        this.urls = new String[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Find a near duplicate of a page and add the page to the index if there is none
+     *
+     * @param fingerprint SimHash fingerprint of the page
+     * @param url         url of the page
+     * @return url of a near duplicate or null if the page was added
+     */
+    public synchronized String addIfAbsent(long fingerprint, String url)
+    {
+        String duplicate = findNearDuplicate(fingerprint, url);
+        if (duplicate == null)
+        {
+            add(fingerprint, url);
+        }
+        return duplicate;
+    }
+
+    /**
+     * @param fingerprint SimHash fingerprint of a page
+     * @param url         url of the page, earlier versions of the same url are not reported
+     * @return url of a page within the maximum distance or null if there is none
+     */
+    public synchronized String findNearDuplicate(long fingerprint, String url)
+    {
+        for (int block = 0; block < this.bucketSizes.length; block++)
+        {
+            int bucket = bucket(fingerprint, block);
+            long[] fingerprints = this.bucketFingerprints[block][bucket];
+            for (int i = 0; i < this.bucketSizes[block][bucket]; i++)
+            {
+                if (SimHash.distance(fingerprints[i], fingerprint) <= this.maxDistance)
+                {
+                    String candidate = this.urls[this.bucketEntries[block][bucket][i]];
+                    if (!candidate.equals(url))
+                    {
+                        return candidate;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add a page to the index
+     *
+     * @param fingerprint SimHash fingerprint of the page
+     * @param url         url of the page
+     */
+    public synchronized void add(long fingerprint, String url)
+    {
+        if (this.size == this.urls.length)
+        {
+            this.urls = Arrays.copyOf(this.urls, this.urls.length * 2);
+        }
+        int entry = this.size++;
+        this.urls[entry] = url;
+        for (int block = 0; block < this.bucketSizes.length; block++)
+        {
+            int bucket = bucket(fingerprint, block);
+            int bucketSize = this.bucketSizes[block][bucket];
+            if (bucketSize == 0 && this.bucketFingerprints[block][bucket] == null)
+            {
+                this.bucketFingerprints[block][bucket] = new long[INITIAL_BUCKET_CAPACITY];
+                this.bucketEntries[block][bucket] = new int[INITIAL_BUCKET_CAPACITY];
+            } else if (bucketSize == this.bucketFingerprints[block][bucket].length)
+            {
+                this.bucketFingerprints[block][bucket] = Arrays.copyOf(this.bucketFingerprints[block][bucket],
+                        bucketSize * 2);
+                this.bucketEntries[block][bucket] = Arrays.copyOf(this.bucketEntries[block][bucket], bucketSize * 2);
+            }
+            this.bucketFingerprints[block][bucket][bucketSize] = fingerprint;
+            this.bucketEntries[block][bucket][bucketSize] = entry;
+            this.bucketSizes[block][bucket]++;
+        }
+    }
+
+    public synchronized int size()
+    {
+        return this.size;
+    }
+
+    public int getMaxDistance()
+    {
+        return maxDistance;
+    }
+
+    /**
+     * Bucket of the block of a fingerprint, fingerprints which agree in the block share the bucket
+     */
+    private int bucket(long fingerprint, int block)
+    {
+        long blockValue = (fingerprint >>> this.blockShifts[block]) & this.blockMasks[block];
+        return (int) Murmur3.fmix64(blockValue) & this.bucketMask;
+    }
+}
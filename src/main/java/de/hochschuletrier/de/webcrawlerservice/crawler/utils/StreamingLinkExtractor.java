@@ -0,0 +1,475 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import org.jsoup.helper.StringUtil;
+import org.jsoup.parser.Parser;
+
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Extracts the links, the title and the text of a html page in a single pass over the response, without building a
+ * jsoup document.
+ * <p>
+ * The tokenizer only looks at the tags which matter for link discovery: the href of a and area elements, the base
+ * element, the title and the refresh and charset meta tags. Comments and the content of script and style elements
+ * are skipped. Every other tag only separates the words of the text. The text is used for the near duplicate
+ * detection and is close to, but not exactly, the text jsoup extracts.
+ */
+public final class StreamingLinkExtractor
+{
+    private static final int CHARSET_SNIFF_LENGTH = 1024; // bytes searched for a meta charset, as browsers do
+
+    private StreamingLinkExtractor()
+    {
+    }
+
+    /**
+     * Extract the title, text and links of a html response into the page
+     *
+     * @param page        the page of the response
+     * @param body        the response body
+     * @param maxBodySize bytes of the body which are scanned at most
+     * @param charset     charset of the content type or null to look for a meta charset
+     * @param url         url of the response, relative links are resolved against it or the base element
+     */
+    public static void extract(Page page, byte[] body, int maxBodySize, String charset, String url)
+    {
+        int length = Math.min(body.length, maxBodySize);
+        Charset bodyCharset = charset != null ? Charset.forName(charset) : sniffCharset(body, length);
+        Extraction extraction = new Extraction(new String(body, 0, length, bodyCharset));
+        extraction.run();
+        page.setBody(body);
+        page.setCharset(bodyCharset.name());
+        page.setTitle(extraction.title);
+        page.setText(extraction.text.toString());
+        page.setLinks(resolve(extraction.hrefs, extraction.baseHref, url));
+    }
+
+    /**
+     * Single pass over the characters of a page
+     */
+    private static final class Extraction
+    {
+        private final String html;
+        private final StringBuilder text; // text with collapsed whitespace
+        private boolean space; // whitespace follows the text, appended before the next word
+        private final List<String> hrefs = new ArrayList<>();
+        private String title = "";
+        private String baseHref; // href of the first base element
+        private int position;
+
+        private Extraction(String html)
+        {
+            this.html = html;
+            this.text = new StringBuilder(html.length() / 4);
+        }
+
+        private void run()
+        {
+            int length = this.html.length();
+            while (this.position < length)
+            {
+                int tagStart = this.html.indexOf('<', this.position);
+                if (tagStart < 0)
+                {
+                    appendText(this.position, length);
+                    return;
+                }
+                appendText(this.position, tagStart);
+                this.position = tagStart;
+                if (this.html.startsWith("<!--", tagStart))
+                {
+                    this.position = skipPast("-->", tagStart + 4);
+                } else if (tagStart + 1 < length && (this.html.charAt(tagStart + 1) == '!'
+                        || this.html.charAt(tagStart + 1) == '?'))
+                {
+                    // doctype, cdata or processing instruction
+                    this.position = skipPast(">", tagStart);
+                } else if (!readTag())
+                {
+                    // a single < in the text
+                    appendText(tagStart, tagStart + 1);
+                    this.position = tagStart + 1;
+                }
+            }
+        }
+
+        /**
+         * Read the tag at the current position and move behind it
+         *
+         * @return false if there is no tag name behind the <
+         */
+        private boolean readTag()
+        {
+            int nameStart = this.position + 1;
+            boolean endTag = nameStart < this.html.length() && this.html.charAt(nameStart) == '/';
+            if (endTag)
+            {
+                nameStart++;
+            }
+            if (nameStart >= this.html.length() || !isAsciiLetter(this.html.charAt(nameStart)))
+            {
+                return false;
+            }
+            int nameEnd = nameStart;
+            while (nameEnd < this.html.length() && !isTagNameEnd(this.html.charAt(nameEnd)))
+            {
+                nameEnd++;
+            }
+            String name = this.html.substring(nameStart, nameEnd).toLowerCase(Locale.ROOT);
+            // tags separate words, like the block elements jsoup renders with spaces
+            this.space = true;
+            if (endTag)
+            {
+                this.position = skipPast(">", nameEnd);
+                return true;
+            }
+            switch (name)
+            {
+                case "a":
+                case "area":
+                    String href = readAttributes(nameEnd, "href", null)[0];
+                    if (href != null)
+                    {
+                        this.hrefs.add(href);
+                    }
+                    break;
+                case "base":
+                    String baseHref = readAttributes(nameEnd, "href", null)[0];
+                    if (this.baseHref == null && baseHref != null)
+                    {
+                        this.baseHref = baseHref;
+                    }
+                    break;
+                case "meta":
+                    String[] meta = readAttributes(nameEnd, "http-equiv", "content");
+                    addRefreshLink(meta[0], meta[1]);
+                    break;
+                case "title":
+                    skipAttributes(nameEnd);
+                    int end = rawTextEnd("title");
+                    if (this.title.isEmpty())
+                    {
+                        String rawTitle = this.html.substring(this.position, end);
+                        this.title = normalizeWhitespace(Parser.unescapeEntities(rawTitle, false));
+                        appendText(this.title, 0, this.title.length());
+                    }
+                    this.position = end;
+                    break;
+                case "script":
+                case "style":
+                case "textarea":
+                case "noscript":
+                    skipAttributes(nameEnd);
+                    this.position = rawTextEnd(name);
+                    break;
+                default:
+                    skipAttributes(nameEnd);
+            }
+            return true;
+        }
+
+        /**
+         * Read two attributes of the tag and move behind it
+         *
+         * @return the unescaped values, null for missing attributes
+         */
+        private String[] readAttributes(int position, String first, String second)
+        {
+            String[] values = new String[2];
+            int length = this.html.length();
+            while (position < length)
+            {
+                char c = this.html.charAt(position);
+                if (c == '>')
+                {
+                    this.position = position + 1;
+                    return values;
+                }
+                if (Character.isWhitespace(c) || c == '/')
+                {
+                    position++;
+                    continue;
+                }
+                int nameStart = position;
+                while (position < length && !isAttributeNameEnd(this.html.charAt(position)))
+                {
+                    position++;
+                }
+                int nameEnd = position;
+                while (position < length && Character.isWhitespace(this.html.charAt(position)))
+                {
+                    position++;
+                }
+                String value = null;
+                if (position < length && this.html.charAt(position) == '=')
+                {
+                    position++;
+                    while (position < length && Character.isWhitespace(this.html.charAt(position)))
+                    {
+                        position++;
+                    }
+                    int valueStart;
+                    int valueEnd;
+                    if (position < length && (this.html.charAt(position) == '"' || this.html.charAt(position) == '\''))
+                    {
+                        valueStart = position + 1;
+                        valueEnd = this.html.indexOf(this.html.charAt(position), valueStart);
+                        valueEnd = valueEnd < 0 ? length : valueEnd;
+                        position = Math.min(length, valueEnd + 1);
+                    } else
+                    {
+                        valueStart = position;
+                        while (position < length && !Character.isWhitespace(this.html.charAt(position))
+                                && this.html.charAt(position) != '>')
+                        {
+                            position++;
+                        }
+                        valueEnd = position;
+                    }
+                    value = this.html.substring(valueStart, valueEnd);
+                }
+                if (nameEnd == nameStart)
+                {
+                    // stray character like a quote
+                    position = Math.max(position, nameStart + 1);
+                    continue;
+                }
+                if (values[0] == null && this.html.regionMatches(true, nameStart, first, 0, nameEnd - nameStart)
+                        && first.length() == nameEnd - nameStart)
+                {
+                    values[0] = value == null ? "" : unescape(value);
+                } else if (second != null && values[1] == null && second.length() == nameEnd - nameStart
+                        && this.html.regionMatches(true, nameStart, second, 0, nameEnd - nameStart))
+                {
+                    values[1] = value == null ? "" : unescape(value);
+                }
+            }
+            this.position = length;
+            return values;
+        }
+
+        private void skipAttributes(int position)
+        {
+            readAttributes(position, "", null);
+        }
+
+        /**
+         * @return start of the end tag of an element whose content is not parsed, or the end of the page
+         */
+        private int rawTextEnd(String name)
+        {
+            int index = this.position;
+            while ((index = this.html.indexOf("</", index)) >= 0)
+            {
+                if (this.html.regionMatches(true, index + 2, name, 0, name.length()))
+                {
+                    return index;
+                }
+                index += 2;
+            }
+            return this.html.length();
+        }
+
+        private void addRefreshLink(String httpEquiv, String content)
+        {
+            if (httpEquiv == null || content == null || !httpEquiv.equalsIgnoreCase("refresh"))
+            {
+                return;
+            }
+            // content="5; url=https://example.org/"
+            int url = content.toLowerCase(Locale.ROOT).indexOf("url=");
+            if (url >= 0)
+            {
+                this.hrefs.add(content.substring(url + 4).trim().replaceAll("^['\"]|['\"]$", ""));
+            }
+        }
+
+        private void appendText(int start, int end)
+        {
+            if (start >= end)
+            {
+                return;
+            }
+            for (int i = start; i < end; i++)
+            {
+                if (this.html.charAt(i) == '&')
+                {
+                    String unescaped = Parser.unescapeEntities(this.html.substring(start, end), false);
+                    appendText(unescaped, 0, unescaped.length());
+                    return;
+                }
+            }
+            appendText(this.html, start, end);
+        }
+
+        /**
+         * Append the characters and collapse whitespace into single spaces between words
+         */
+        private void appendText(String chars, int start, int end)
+        {
+            for (int i = start; i < end; i++)
+            {
+                char c = chars.charAt(i);
+                if (isWhitespace(c))
+                {
+                    this.space = true;
+                } else
+                {
+                    if (this.space && this.text.length() > 0)
+                    {
+                        this.text.append(' ');
+                    }
+                    this.space = false;
+                    this.text.append(c);
+                }
+            }
+        }
+
+        private int skipPast(String end, int from)
+        {
+            int index = this.html.indexOf(end, from);
+            return index < 0 ? this.html.length() : index + end.length();
+        }
+    }
+
+    /**
+     * Resolve the hrefs against the base element or the url of the page
+     *
+     * @return valid absolute links in document order
+     */
+    private static List<String> resolve(List<String> hrefs, String baseHref, String url)
+    {
+        List<String> links = new ArrayList<>(hrefs.size());
+        URL base;
+        try
+        {
+            base = new URL(url);
+            if (baseHref != null && !baseHref.trim().isEmpty())
+            {
+                base = StringUtil.resolve(base, baseHref.trim());
+            }
+        } catch (MalformedURLException e)
+        {
+            return links;
+        }
+        for (String href : hrefs)
+        {
+            String trimmed = href.trim();
+            if (trimmed.isEmpty())
+            {
+                continue;
+            }
+            try
+            {
+                URL link = StringUtil.resolve(base, trimmed);
+                // same check as PageValidation.isUrlValidURI, without parsing the url again
+                link.toURI();
+                links.add(link.toString());
+            } catch (MalformedURLException | URISyntaxException e)
+            {
+                // not a link which can be crawled, like javascript: or a broken url
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Find the charset of a meta tag in the first bytes of the page, like browsers do
+     *
+     * @return the charset or UTF-8 if there is none
+     */
+    static Charset sniffCharset(byte[] body, int length)
+    {
+        String head = new String(body, 0, Math.min(length, CHARSET_SNIFF_LENGTH), StandardCharsets.ISO_8859_1)
+                .toLowerCase(Locale.ROOT);
+        int meta = head.indexOf("<meta");
+        while (meta >= 0)
+        {
+            int end = head.indexOf('>', meta);
+            int charset = head.indexOf("charset=", meta);
+            if (charset >= 0 && (end < 0 || charset < end))
+            {
+                int start = charset + 8;
+                while (start < head.length() && (head.charAt(start) == '"' || head.charAt(start) == '\''))
+                {
+                    start++;
+                }
+                int stop = start;
+                while (stop < head.length() && (Character.isLetterOrDigit(head.charAt(stop))
+                        || head.charAt(stop) == '-' || head.charAt(stop) == '_'))
+                {
+                    stop++;
+                }
+                try
+                {
+                    return Charset.forName(head.substring(start, stop));
+                } catch (IllegalCharsetNameException | UnsupportedCharsetException e)
+                {
+                    return StandardCharsets.UTF_8;
+                }
+            }
+            meta = head.indexOf("<meta", meta + 5);
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static String unescape(String value)
+    {
+        return value.indexOf('&') < 0 ? value : Parser.unescapeEntities(value, true);
+    }
+
+    private static String normalizeWhitespace(CharSequence text)
+    {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (isWhitespace(c))
+            {
+                space = normalized.length() > 0;
+            } else
+            {
+                if (space)
+                {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * @return true for the characters jsoup treats as whitespace in text, including the no-break space
+     */
+    private static boolean isWhitespace(char c)
+    {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f' || c == '\u00a0';
+    }
+
+    private static boolean isAsciiLetter(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isTagNameEnd(char c)
+    {
+        return Character.isWhitespace(c) || c == '/' || c == '>';
+    }
+
+    private static boolean isAttributeNameEnd(char c)
+    {
+        return Character.isWhitespace(c) || c == '=' || c == '>' || c == '/';
+    }
+}
@@ -0,0 +1,224 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import org.jsoup.helper.StringUtil;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Brings urls into a canonical form, before they are looked up in or added to the frontier.
+ * <p>
+ * The scheme and host are lower cased, default ports, fragments and empty query parameters are removed and dot
+ * segments of the path are resolved. Optionally the query parameters are sorted and tracking parameters like
+ * 'utm_source' are stripped. The canonical url can still be requested. Variants which only differ in http and https
+ * or a leading 'www.' share the same {@link #dedupKey(String)}.
+ */
+public class UrlCanonicalizer
+{
+    private static final Set<String> TRACKING_PARAMETERS = new HashSet<>(Arrays.asList(
+            "gclid", "dclid", "fbclid", "msclkid", "yclid", "igshid", "mc_cid", "mc_eid", "_ga", "_hsenc", "_hsmi"));
+    private static final String TRACKING_PREFIX = "utm_";
+
+    private boolean sortQueryParameters; // set true to sort the query parameters by name
+    private boolean stripTrackingParameters; // set true to remove known tracking parameters
+
+    public UrlCanonicalizer()
+    {
+        this.sortQueryParameters = true;
+        this.stripTrackingParameters = true;
+    }
+
+    /**
+     * @param url an absolute url
+     * @return the canonical url or null if the url is not a valid http or https url
+     */
+    public String canonicalize(String url)
+    {
+        try
+        {
+            return canonicalize(new URL(url.trim()));
+        } catch (MalformedURLException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Resolve a link against the url of the page it was found on and canonicalize it. Links are resolved like
+     * jsoup resolves 'abs:href', which follows RFC 3986 for query only links.
+     *
+     * @param baseUrl url of the page or the href of its base element
+     * @param link    the absolute or relative link
+     * @return the canonical url or null if the link can not be resolved to a http or https url
+     */
+    public String resolve(String baseUrl, String link)
+    {
+        try
+        {
+            return canonicalize(StringUtil.resolve(new URL(baseUrl), link.trim()));
+        } catch (MalformedURLException e)
+        {
+            return null;
+        }
+    }
+
+    private String canonicalize(URL url)
+    {
+        String scheme = url.getProtocol().toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https"))
+        {
+            return null;
+        }
+        String host = url.getHost().toLowerCase(Locale.ROOT);
+        if (host.endsWith("."))
+        {
+            host = host.substring(0, host.length() - 1);
+        }
+        if (host.isEmpty())
+        {
+            return null;
+        }
+        StringBuilder canonical = new StringBuilder(url.toString().length());
+        canonical.append(scheme).append("://");
+        if (url.getUserInfo() != null)
+        {
+            canonical.append(url.getUserInfo()).append('@');
+        }
+        canonical.append(host);
+        int port = url.getPort();
+        if (port != -1 && port != url.getDefaultPort())
+        {
+            canonical.append(':').append(port);
+        }
+        canonical.append(removeDotSegments(url.getPath()));
+        String query = canonicalQuery(url.getQuery());
+        if (!query.isEmpty())
+        {
+            canonical.append('?').append(query);
+        }
+        return canonical.toString();
+    }
+
+    private String canonicalQuery(String query)
+    {
+        if (query == null || query.isEmpty())
+        {
+            return "";
+        }
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : query.split("&"))
+        {
+            if (parameter.isEmpty() || (this.stripTrackingParameters && isTrackingParameter(parameter)))
+            {
+                continue;
+            }
+            parameters.add(parameter);
+        }
+        if (this.sortQueryParameters)
+        {
+            // stable sort by name keeps the order of repeated parameters
+            parameters.sort((a, b) -> parameterName(a).compareTo(parameterName(b)));
+        }
+        return String.join("&", parameters);
+    }
+
+    private static boolean isTrackingParameter(String parameter)
+    {
+        String name = parameterName(parameter).toLowerCase(Locale.ROOT);
+        return name.startsWith(TRACKING_PREFIX) || TRACKING_PARAMETERS.contains(name);
+    }
+
+    private static String parameterName(String parameter)
+    {
+        int separator = parameter.indexOf('=');
+        return separator < 0 ? parameter : parameter.substring(0, separator);
+    }
+
+    /**
+     * Resolve '.' and '..' segments like RFC 3986 section 5.2.4, an empty path becomes '/'
+     */
+    private static String removeDotSegments(String path)
+    {
+        if (path.isEmpty())
+        {
+            return "/";
+        }
+        if (!path.contains("/.") && !path.startsWith("."))
+        {
+            return path;
+        }
+        List<String> segments = new ArrayList<>();
+        String[] input = path.split("/", -1);
+        for (int i = 0; i < input.length; i++)
+        {
+            String segment = input[i];
+            boolean last = i == input.length - 1;
+            if (segment.equals("."))
+            {
+                if (last)
+                {
+                    segments.add("");
+                }
+            } else if (segment.equals(".."))
+            {
+                if (segments.size() > 1)
+                {
+                    segments.remove(segments.size() - 1);
+                }
+                if (last)
+                {
+                    segments.add("");
+                }
+            } else
+            {
+                segments.add(segment);
+            }
+        }
+        String result = String.join("/", segments);
+        return result.startsWith("/") ? result : "/" + result;
+    }
+
+    /**
+     * Key of a canonical url for duplicate detection. Scheme and a leading 'www.' of the host are removed, so
+     * 'http://www.example.org/' and 'https://example.org/' are treated as the same page.
+     *
+     * @param canonicalUrl an url returned by {@link #canonicalize(String)}
+     * @return the key
+     */
+    public static String dedupKey(String canonicalUrl)
+    {
+        int start = canonicalUrl.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        if (canonicalUrl.startsWith("www.", start))
+        {
+            start += 4;
+        }
+        return start == 0 ? canonicalUrl : canonicalUrl.substring(start);
+    }
+
+    public boolean isSortQueryParameters()
+    {
+        return sortQueryParameters;
+    }
+
+    public void setSortQueryParameters(boolean sortQueryParameters)
+    {
+        this.sortQueryParameters = sortQueryParameters;
+    }
+
+    public boolean isStripTrackingParameters()
+    {
+        return stripTrackingParameters;
+    }
+
+    public void setStripTrackingParameters(boolean stripTrackingParameters)
+    {
+        this.stripTrackingParameters = stripTrackingParameters;
+    }
+}
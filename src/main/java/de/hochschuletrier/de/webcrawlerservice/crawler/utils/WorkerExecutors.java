@@ -0,0 +1,98 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the executors for crawl jobs and their worker tasks in one of two execution modes.
+ * <p>
+ * PLATFORM uses a fixed pool of platform threads. VIRTUAL starts a virtual thread per task and limits the number of
+ * tasks running at the same time instead of the number of threads. Virtual threads need Java 21, they are looked up
+ * by reflection, so the service still builds and runs on Java 8. On older runtimes VIRTUAL falls back to PLATFORM.
+ */
+public class WorkerExecutors
+{
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkerExecutors.class);
+
+    private static final Method OF_VIRTUAL = lookupOfVirtual();
+
+    /**
+     * @return boolean: True if the running JVM supports virtual threads
+     */
+    public static boolean isVirtualThreadSupported()
+    {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @param executionMode PLATFORM or VIRTUAL
+     * @return boolean: True if tasks of this mode run on virtual threads
+     */
+    public static boolean usesVirtualThreads(String executionMode)
+    {
+        return VIRTUAL.equalsIgnoreCase(executionMode) && isVirtualThreadSupported();
+    }
+
+    /**
+     * @param executionMode  PLATFORM or VIRTUAL
+     * @param threadPrefix   name prefix of the threads
+     * @param maxConcurrency maximum number of tasks running at the same time
+     * @return the executor
+     */
+    public static ExecutorService newExecutor(String executionMode, String threadPrefix, int maxConcurrency)
+    {
+        if (VIRTUAL.equalsIgnoreCase(executionMode))
+        {
+            ThreadFactory threadFactory = virtualThreadFactory(threadPrefix);
+            if (threadFactory != null)
+            {
+                return new ConcurrencyLimitedExecutor(threadFactory, maxConcurrency);
+            }
+            logger.warn("Virtual threads are not supported by this JVM, using platform threads");
+        }
+        return Executors.newFixedThreadPool(Math.max(1, maxConcurrency), new CustomizableThreadFactory(threadPrefix));
+    }
+
+    /**
+     * @param threadPrefix name prefix of the threads, followed by a counter
+     * @return factory for virtual threads or null if they are not supported
+     */
+    public static ThreadFactory virtualThreadFactory(String threadPrefix)
+    {
+        if (OF_VIRTUAL == null)
+        {
+            return null;
+        }
+        try
+        {
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadPrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e)
+        {
+            logger.warn("Could not create virtual thread factory - " + e.toString());
+            return null;
+        }
+    }
+
+    private static Method lookupOfVirtual()
+    {
+        try
+        {
+            return Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.warc;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One WARC file of a {@link WarcWriter} and the CDX index of its response records.
+ * <p>
+ * The gzip members of the records are collected in a direct buffer and written sequentially once it is full. The
+ * offset of a record is its position in the file, counted with the bytes which are still buffered. Only the writer
+ * thread of the {@link WarcWriter} uses a segment.
+ */
+class WarcSegment implements Closeable
+{
+    static final String CDX_HEADER = " CDX N b a m s k r M S V g"; // fields of the index lines
+
+    private final File file;
+    private final File indexFile;
+    private final FileChannel channel;
+    private final ByteBuffer buffer; // members which are not written yet
+    private final BufferedWriter index;
+    private long size; // bytes of the file including the buffered members
+
+    private WarcSegment(File file, File indexFile, FileChannel channel, int bufferSize, BufferedWriter index)
+    {
+        this.file = file;
+        this.indexFile = indexFile;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 8192));
+        this.index = index;
+    }
+
+    /**
+     * Create a new segment, an existing file with the same name is replaced
+     *
+     * @param file       the WARC file
+     * @param indexFile  the CDX file of the segment
+     * @param bufferSize bytes of members collected before they are written
+     * @return the segment
+     * @throws IOException if the files can not be created
+     */
+    static WarcSegment create(File file, File indexFile, int bufferSize) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try
+        {
+            BufferedWriter index = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(indexFile.toPath()),
+                    StandardCharsets.UTF_8), 64 * 1024);
+            index.write(CDX_HEADER);
+            index.write('\n');
+            return new WarcSegment(file, indexFile, channel, bufferSize, index);
+        } catch (IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Append a gzip member
+     *
+     * @param member array holding the member
+     * @param length bytes of the member
+     * @return offset of the member in the file
+     * @throws IOException if the buffer can not be written
+     */
+    long append(byte[] member, int length) throws IOException
+    {
+        long offset = this.size;
+        if (this.buffer.remaining() < length)
+        {
+            writeBuffer();
+        }
+        if (this.buffer.remaining() < length)
+        {
+            // larger than the buffer, written on its own
+            write(ByteBuffer.wrap(member, 0, length));
+        } else
+        {
+            this.buffer.put(member, 0, length);
+        }
+        this.size += length;
+        return offset;
+    }
+
+    /**
+     * @param line index line of a record, without line break
+     * @throws IOException if the index can not be written
+     */
+    void index(String line) throws IOException
+    {
+        this.index.write(line);
+        this.index.write('\n');
+    }
+
+    private void writeBuffer() throws IOException
+    {
+        this.buffer.flip();
+        write(this.buffer);
+        this.buffer.clear();
+    }
+
+    private void write(ByteBuffer bytes) throws IOException
+    {
+        while (bytes.hasRemaining())
+        {
+            this.channel.write(bytes);
+        }
+    }
+
+    /**
+     * @return bytes of the file including the buffered members
+     */
+    long size()
+    {
+        return size;
+    }
+
+    File getFile()
+    {
+        return file;
+    }
+
+    File getIndexFile()
+    {
+        return indexFile;
+    }
+
+    /**
+     * Write the buffered members and close the files
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            writeBuffer();
+        } finally
+        {
+            try
+            {
+                this.channel.close();
+            } finally
+            {
+                this.index.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,565 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.warc;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.FetchResponse;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageValidation;
+import org.eclipse.jetty.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archives the fetched responses of a crawl as WARC files (ISO 28500, WARC/1.0).
+ * <p>
+ * Every exchange is written as a response record with the status line, the headers and the body as received and a
+ * request record with the headers the crawler sent. Each record is a gzip member of its own, so a record can be read
+ * from its offset without the rest of the file. A segment is closed and the next one started once it reaches
+ * maxSegmentSize bytes, every segment starts with a warcinfo record. Next to each segment a CDX index lists its
+ * response records with url key, capture time, url, mime type, status, payload digest, record length, offset and file
+ * name. The lines are in capture order, sort them before a lookup by url key.
+ * <p>
+ * The body of a response was decoded by the fetcher, so Content-Encoding, Transfer-Encoding and Content-Length are
+ * kept with the prefix X-Archive-Orig- and the Content-Length of the stored body is added. Bodies which were cut at the
+ * maximum body size or not downloaded, because the response is no html page, are marked with WARC-Truncated.
+ * <p>
+ * {@link #archive(String, Map, FetchResponse)} only queues the exchange. A background thread compresses the records
+ * and writes them sequentially through a large buffer, if it falls behind and capacity exchanges are waiting, archive
+ * blocks until there is room again. {@link #close()} writes all queued exchanges. An exchange which can not be
+ * written is counted as failed and the writer continues with the next one.
+ * <p>
+ * Response headers are written field by field as the fetcher received them, so repeated fields like Set-Cookie are
+ * kept.
+ */
+public class WarcWriter implements Closeable
+{
+    public static final long DEFAULT_SEGMENT_SIZE = 1024L * 1024 * 1024;
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final String EXTENSION = ".warc.gz";
+    public static final String INDEX_EXTENSION = ".cdx";
+
+    private static final long IDLE_POLL = 100; // milliseconds an idle writer waits before it checks for close
+    private static final String SOFTWARE = "webcrawler-microservice";
+    private static final char[] BASE32 = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+    private static final byte[] RECORD_END = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    // Formats of the WARC-Date header and the capture time of the index, see ISO 28500 section 5.4
+    private static final DateTimeFormatter WARC_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'",
+            Locale.ROOT).withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter CDX_DATE = DateTimeFormatter.ofPattern("yyyyMMddHHmmss", Locale.ROOT)
+            .withZone(ZoneOffset.UTC);
+
+    private static final Logger logger = LoggerFactory.getLogger(WarcWriter.class);
+
+    private final File directory;
+    private final String uniqueName;
+    private final String prefix; // file name of the segments without number and extension
+    private final long maxSegmentSize; // bytes after which the next segment is started
+    private final int bufferSize; // bytes of members collected before they are written
+    private final BlockingQueue<Exchange> queue;
+    private final Thread thread;
+    private volatile boolean closing; // write the queued exchanges and stop
+
+    // only used by the writer thread
+    private final MemberBuffer member = new MemberBuffer();
+    private final MessageDigest sha1;
+    private WarcSegment segment; // current segment, null before the first record
+    private int segmentNumber;
+    private final List<File> segments = Collections.synchronizedList(new ArrayList<>());
+
+    // statistics
+    private final AtomicLong records = new AtomicLong(); // archived exchanges
+    private final AtomicLong failed = new AtomicLong(); // exchanges which could not be archived
+    private final AtomicLong blocked = new AtomicLong(); // archive calls which had to wait for a free slot
+    private final AtomicLong bytes = new AtomicLong(); // compressed bytes of the records
+
+    private WarcWriter(File directory, String uniqueName, long maxSegmentSize, int bufferSize, int capacity)
+    {
+        this.directory = directory;
+        this.uniqueName = uniqueName;
+        this.prefix = uniqueName.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + CDX_DATE.format(Instant.now());
+        this.maxSegmentSize = Math.max(1, maxSegmentSize);
+        this.bufferSize = bufferSize;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        try
+        {
+            this.sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e)
+        {
+            // every Java platform has to support SHA-1
+            throw new IllegalStateException(e);
+        }
+        this.thread = new Thread(this::writeExchanges, uniqueName + "-warc");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Start the archive of a crawl run. The segments of a run are named after the crawler and the start time, so
+     * every run writes new files.
+     *
+     * @param directory      directory of the WARC files
+     * @param uniqueName     unique name of the crawler
+     * @param maxSegmentSize bytes after which the next segment is started
+     * @param bufferSize     bytes of records collected before they are written
+     * @param capacity       maximum number of queued exchanges, further archive calls block
+     * @return the writer or null if the directory can not be created
+     */
+    public static WarcWriter open(File directory, String uniqueName, long maxSegmentSize, int bufferSize,
+                                  int capacity)
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            logger.error("Could not create WARC directory " + directory + ", responses are not archived");
+            return null;
+        }
+        return new WarcWriter(directory, uniqueName, maxSegmentSize, bufferSize, capacity);
+    }
+
+    /**
+     * Queue a fetched exchange for archiving. Blocks while the queue is full.
+     *
+     * @param url            the requested url
+     * @param requestHeaders headers the crawler set on the request
+     * @param response       the response
+     */
+    public void archive(String url, Map<String, String> requestHeaders, FetchResponse response)
+    {
+        Exchange exchange = new Exchange(url, requestHeaders, response, System.currentTimeMillis());
+        if (this.closing)
+        {
+            this.failed.incrementAndGet();
+            return;
+        }
+        if (this.queue.offer(exchange))
+        {
+            return;
+        }
+        this.blocked.incrementAndGet();
+        logger.debug("{}: WARC queue is full, waiting for the writer", this.uniqueName);
+        try
+        {
+            while (!this.queue.offer(exchange, IDLE_POLL, TimeUnit.MILLISECONDS))
+            {
+                if (this.closing)
+                {
+                    this.failed.incrementAndGet();
+                    return;
+                }
+            }
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            this.failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Write all queued exchanges, close the current segment and stop the background thread
+     */
+    @Override
+    public void close()
+    {
+        this.closing = true;
+        try
+        {
+            this.thread.join();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeExchanges()
+    {
+        try
+        {
+            while (!this.closing || !this.queue.isEmpty())
+            {
+                Exchange exchange = this.queue.poll(IDLE_POLL, TimeUnit.MILLISECONDS);
+                if (exchange != null)
+                {
+                    write(exchange);
+                }
+            }
+        } catch (InterruptedException e)
+        {
+            logger.warn(this.uniqueName + ": WARC writer interrupted, " + this.queue.size() + " exchanges left");
+        } finally
+        {
+            // archive must not wait for a writer which stopped early, it drops the exchanges from now on
+            this.closing = true;
+            this.failed.addAndGet(this.queue.size());
+            this.queue.clear();
+            closeSegment();
+        }
+    }
+
+    private void write(Exchange exchange)
+    {
+        try
+        {
+            if (this.segment == null || this.segment.size() >= this.maxSegmentSize)
+            {
+                nextSegment(exchange.time);
+            }
+            writeRecords(exchange);
+            this.records.incrementAndGet();
+        } catch (IOException | RuntimeException e)
+        {
+            this.failed.incrementAndGet();
+            logger.error(this.uniqueName + ": Could not archive " + exchange.url + " - " + e.toString());
+            // a partly written segment stays readable up to the last complete member, the next record starts a new one
+            closeSegment();
+        }
+    }
+
+    private void nextSegment(long time) throws IOException
+    {
+        closeSegment();
+        String name = String.format(Locale.ROOT, "%s-%05d", this.prefix, this.segmentNumber++);
+        this.segment = WarcSegment.create(new File(this.directory, name + EXTENSION),
+                new File(this.directory, name + INDEX_EXTENSION), this.bufferSize);
+        this.segments.add(this.segment.getFile());
+        String fields = "software: " + SOFTWARE + "\r\n"
+                + "format: WARC File Format 1.0\r\n"
+                + "isPartOf: " + this.uniqueName + "\r\n";
+        StringBuilder header = recordHeader("warcinfo", newRecordId(), time, null)
+                .append("WARC-Filename: ").append(this.segment.getFile().getName()).append("\r\n")
+                .append("Content-Type: application/warc-fields\r\n");
+        appendRecord(header, fields.getBytes(StandardCharsets.UTF_8), null);
+    }
+
+    private void closeSegment()
+    {
+        if (this.segment == null)
+        {
+            return;
+        }
+        try
+        {
+            this.segment.close();
+        } catch (IOException e)
+        {
+            logger.error(this.uniqueName + ": Could not close " + this.segment.getFile() + " - " + e.toString());
+        }
+        this.segment = null;
+    }
+
+    private void writeRecords(Exchange exchange) throws IOException
+    {
+        FetchResponse response = exchange.response;
+        String targetUri = response.getUrl() != null ? response.getUrl() : exchange.url;
+        byte[] body = response.getBody();
+        String digest = base32(this.sha1.digest(body));
+        String responseId = newRecordId();
+
+        StringBuilder header = recordHeader("response", responseId, exchange.time, targetUri)
+                .append("WARC-Payload-Digest: sha1:").append(digest).append("\r\n");
+        String truncated = truncation(response);
+        if (truncated != null)
+        {
+            header.append("WARC-Truncated: ").append(truncated).append("\r\n");
+        }
+        header.append("Content-Type: application/http; msgtype=response\r\n");
+        long offset = this.segment.size();
+        int length = appendRecord(header, httpResponseHeader(response), body);
+        this.segment.index(indexLine(targetUri, exchange.time, response, digest, length, offset,
+                this.segment.getFile().getName()));
+
+        header = recordHeader("request", newRecordId(), exchange.time, targetUri)
+                .append("WARC-Concurrent-To: ").append(responseId).append("\r\n")
+                .append("Content-Type: application/http; msgtype=request\r\n");
+        appendRecord(header, httpRequestHeader(targetUri, exchange.requestHeaders), null);
+    }
+
+    private static StringBuilder recordHeader(String type, String recordId, long time, String targetUri)
+    {
+        StringBuilder header = new StringBuilder(512).append("WARC/1.0\r\n")
+                .append("WARC-Type: ").append(type).append("\r\n")
+                .append("WARC-Record-ID: ").append(recordId).append("\r\n")
+                .append("WARC-Date: ").append(WARC_DATE.format(Instant.ofEpochMilli(time))).append("\r\n");
+        if (targetUri != null)
+        {
+            header.append("WARC-Target-URI: ").append(targetUri).append("\r\n");
+        }
+        return header;
+    }
+
+    /**
+     * Compress a record into a gzip member and append it to the segment
+     *
+     * @param header WARC header without Content-Length
+     * @param block  first part of the content block
+     * @param body   second part of the content block or null
+     * @return compressed length of the record
+     */
+    private int appendRecord(StringBuilder header, byte[] block, byte[] body) throws IOException
+    {
+        int contentLength = block.length + (body != null ? body.length : 0);
+        header.append("Content-Length: ").append(contentLength).append("\r\n\r\n");
+        this.member.reset();
+        try (OutputStream gzip = new GZIPOutputStream(this.member, 8192))
+        {
+            gzip.write(header.toString().getBytes(StandardCharsets.UTF_8));
+            gzip.write(block);
+            if (body != null)
+            {
+                gzip.write(body);
+            }
+            gzip.write(RECORD_END);
+        }
+        this.segment.append(this.member.array(), this.member.size());
+        this.bytes.addAndGet(this.member.size());
+        return this.member.size();
+    }
+
+    private static byte[] httpResponseHeader(FetchResponse response)
+    {
+        StringBuilder http = new StringBuilder(1024).append("HTTP/1.1 ").append(response.getStatusCode()).append(' ')
+                .append(HttpStatus.getMessage(response.getStatusCode())).append("\r\n");
+        for (Map.Entry<String, String> header : response.getHeaderFields())
+        {
+            String name = header.getKey();
+            if ("Content-Encoding".equalsIgnoreCase(name) || "Transfer-Encoding".equalsIgnoreCase(name)
+                    || "Content-Length".equalsIgnoreCase(name))
+            {
+                // the body is stored decoded and possibly shortened
+                name = "X-Archive-Orig-" + name;
+            }
+            http.append(name).append(": ").append(header.getValue()).append("\r\n");
+        }
+        http.append("Content-Length: ").append(response.getBody().length).append("\r\n\r\n");
+        return http.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] httpRequestHeader(String url, Map<String, String> headers)
+    {
+        StringBuilder http = new StringBuilder(512);
+        try
+        {
+            URI uri = new URI(url);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            http.append("GET ").append(path);
+            if (uri.getRawQuery() != null)
+            {
+                http.append('?').append(uri.getRawQuery());
+            }
+            http.append(" HTTP/1.1\r\nHost: ").append(uri.getRawAuthority()).append("\r\n");
+        } catch (URISyntaxException e)
+        {
+            http.append("GET ").append(url).append(" HTTP/1.1\r\n");
+        }
+        for (Map.Entry<String, String> header : headers.entrySet())
+        {
+            http.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        return http.append("\r\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return value of the WARC-Truncated header or null if the whole body is stored
+     */
+    private static String truncation(FetchResponse response)
+    {
+        if (response.isTruncated())
+        {
+            return "length";
+        }
+        if (response.getBody().length == 0 && response.getStatusCode() == 200
+                && !PageValidation.isHtmlContentType(response.getContentType())
+                && !"0".equals(response.getHeader("Content-Length")))
+        {
+            // the fetcher does not download bodies of other content types
+            return "unspecified";
+        }
+        return null;
+    }
+
+    private static String indexLine(String url, long time, FetchResponse response, String digest, int length,
+                                    long offset, String fileName)
+    {
+        String contentType = response.getContentType();
+        String mime = contentType == null || contentType.trim().isEmpty() ? "-"
+                : contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        String location = response.getHeader("Location");
+        return urlKey(url) + ' ' + CDX_DATE.format(Instant.ofEpochMilli(time).truncatedTo(ChronoUnit.SECONDS)) + ' '
+                + cdxField(url) + ' ' + cdxField(mime) + ' ' + response.getStatusCode() + ' ' + digest + ' '
+                + (location == null ? "-" : cdxField(location)) + " - " + length + ' ' + offset + ' '
+                + fileName;
+    }
+
+    /**
+     * Url key of the index, the host is reversed and without www, like com,example)/path?query
+     *
+     * @param url an absolute url
+     * @return the url key in lower case
+     */
+    static String urlKey(String url)
+    {
+        try
+        {
+            URI uri = new URI(url);
+            String host = uri.getHost();
+            if (host == null)
+            {
+                return cdxField(url.toLowerCase(Locale.ROOT));
+            }
+            host = host.toLowerCase(Locale.ROOT);
+            if (host.startsWith("www."))
+            {
+                host = host.substring(4);
+            }
+            String[] labels = host.split("\\.");
+            StringBuilder key = new StringBuilder(url.length());
+            for (int i = labels.length - 1; i >= 0; i--)
+            {
+                key.append(labels[i]).append(i > 0 ? "," : "");
+            }
+            if (uri.getPort() != -1 && uri.getPort() != 80 && uri.getPort() != 443)
+            {
+                key.append(':').append(uri.getPort());
+            }
+            key.append(')').append(uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath());
+            if (uri.getRawQuery() != null)
+            {
+                key.append('?').append(uri.getRawQuery());
+            }
+            return cdxField(key.toString().toLowerCase(Locale.ROOT));
+        } catch (URISyntaxException e)
+        {
+            return cdxField(url.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Index fields are separated by spaces
+     */
+    private static String cdxField(String value)
+    {
+        return value.replace(" ", "%20").replace("\n", "%0A").replace("\r", "%0D");
+    }
+
+    /**
+     * @return Base32 (RFC 4648) of the bytes, the encoding of WARC payload digests
+     */
+    static String base32(byte[] bytes)
+    {
+        StringBuilder encoded = new StringBuilder((bytes.length * 8 + 4) / 5);
+        int buffer = 0;
+        int bits = 0;
+        for (byte b : bytes)
+        {
+            buffer = (buffer << 8) | (b & 0xFF);
+            bits += 8;
+            while (bits >= 5)
+            {
+                encoded.append(BASE32[(buffer >> (bits - 5)) & 0x1F]);
+                bits -= 5;
+            }
+        }
+        if (bits > 0)
+        {
+            encoded.append(BASE32[(buffer << (5 - bits)) & 0x1F]);
+        }
+        return encoded.toString();
+    }
+
+    private static String newRecordId()
+    {
+        return "<urn:uuid:" + UUID.randomUUID() + ">";
+    }
+
+    /**
+     * @return the WARC files written so far
+     */
+    public List<File> getSegments()
+    {
+        synchronized (this.segments)
+        {
+            return new ArrayList<>(this.segments);
+        }
+    }
+
+    public long getRecords()
+    {
+        return records.get();
+    }
+
+    public long getFailed()
+    {
+        return failed.get();
+    }
+
+    public long getBlocked()
+    {
+        return blocked.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(Locale.ROOT, "WarcWriter %s: %d responses archived in %d segments (%.1f MB); %d failed; "
+                        + "%d archive calls blocked", this.uniqueName, this.records.get(), this.segments.size(),
+                this.bytes.get() / 1024.0 / 1024.0, this.failed.get(), this.blocked.get());
+    }
+
+    /**
+     * Request and response of an url, queued for the writer thread
+     */
+    private static class Exchange
+    {
+        private final String url;
+        private final Map<String, String> requestHeaders;
+        private final FetchResponse response;
+        private final long time; // capture time in milliseconds
+
+        private Exchange(String url, Map<String, String> requestHeaders, FetchResponse response, long time)
+        {
+            this.url = url;
+            this.requestHeaders = requestHeaders;
+            this.response = response;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Reused buffer of the gzip members, which gives access to its array without a copy
+     */
+    private static class MemberBuffer extends ByteArrayOutputStream
+    {
+        private MemberBuffer()
+        {
+            super(64 * 1024);
+        }
+
+        private byte[] array()
+        {
+            return this.buf;
+        }
+    }
+}
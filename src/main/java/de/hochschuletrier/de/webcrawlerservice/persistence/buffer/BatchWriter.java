@@ -0,0 +1,15 @@
+package de.hochschuletrier.de.webcrawlerservice.persistence.buffer;
+
+import java.util.List;
+
+/**
+ * Writes one batch of a {@link WriteBehindBuffer} to the database
+ */
+@FunctionalInterface
+public interface BatchWriter<T>
+{
+    /**
+     * @param batch the entities, which must not be kept after the call
+     */
+    void write(List<T> batch);
+}
@@ -0,0 +1,34 @@
+package de.hochschuletrier.de.webcrawlerservice.persistence.buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thrown by a {@link BatchWriter} if only some entities of a batch could not be written, for example by an unordered
+ * bulk operation. The other entities of the batch are written.
+ */
+public class PartialBatchException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<?> failed; // entities of the batch which were not written
+
+    /**
+     * @param message the detail message
+     * @param failed  entities of the batch which were not written
+     * @param cause   the error of the database
+     */
+    public PartialBatchException(String message, List<?> failed, Throwable cause)
+    {
+        super(message, cause);
+        this.failed = new ArrayList<>(failed);
+    }
+
+    /**
+     * @return entities of the batch which were not written
+     */
+    public List<?> getFailed()
+    {
+        return failed;
+    }
+}
@@ -0,0 +1,485 @@
+package de.hochschuletrier.de.webcrawlerservice.persistence.buffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.repository.CrudRepository;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write behind buffer in front of a repository.
+ * <p>
+ * Entities are queued by the crawler threads and written by a background thread with one saveAll call per batch,
+ * which Spring Data executes as a single bulk insert for new entities, or with another {@link BatchWriter}. A batch
+ * is written once batchSize entities are queued or flushInterval milliseconds after its first entity arrived. If the
+ * database falls behind and capacity entities are waiting, {@link #add(Object)} blocks until the next batch is
+ * written, so the crawl slows down instead of filling the heap.
+ * <p>
+ * A batch which failed with a transient database error is written again after a backoff, which doubles with every
+ * attempt. If a {@link PartialBatchException} reports that only some entities of a batch failed, only these are
+ * written again. Entities which are still not written after maxAttempts are counted as failed.
+ * <p>
+ * The background thread is started with the first entity and stopped by {@link #close()}, which writes all queued
+ * entities. Open buffers are closed by {@link #closeAll()} when the service shuts down.
+ */
+public class WriteBehindBuffer<T> implements Closeable
+{
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final int DEFAULT_MAX_ATTEMPTS = 4;
+    public static final long DEFAULT_RETRY_BACKOFF = 200;
+
+    private static final long IDLE_POLL = 100; // milliseconds an idle writer waits before it checks for close
+
+    private static final Set<WriteBehindBuffer<?>> OPEN_BUFFERS = ConcurrentHashMap.newKeySet();
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    private final String name;
+    private final BatchWriter<T> batchWriter;
+    private final int batchSize;
+    private final long flushInterval; // milliseconds a queued entity waits at most for its batch
+    private final BlockingQueue<T> queue;
+    private volatile Writer writer; // null while the buffer is not started
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS; // writes of a batch before its entities are dropped
+    private volatile long retryBackoff = DEFAULT_RETRY_BACKOFF; // milliseconds before the first retry
+
+    // statistics
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong blockedAdds = new AtomicLong(); // adds which had to wait for a free slot
+    private volatile long lastFlushNanos;
+
+    /**
+     * @param name       name of the buffer, used for the writer thread and the statistics
+     * @param repository repository the entities are written to
+     */
+    public WriteBehindBuffer(String name, CrudRepository<T, ?> repository)
+    {
+        this(name, repository, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param name          name of the buffer, used for the writer thread and the statistics
+     * @param repository    repository the entities are written to
+     * @param batchSize     maximum number of entities written with one bulk operation
+     * @param flushInterval milliseconds a queued entity waits at most for its batch
+     * @param capacity      maximum number of queued entities, further adds block
+     */
+    public WriteBehindBuffer(String name, CrudRepository<T, ?> repository, int batchSize, long flushInterval,
+                             int capacity)
+    {
+        this(name, (BatchWriter<T>) repository::saveAll, batchSize, flushInterval, capacity);
+    }
+
+    /**
+     * @param name          name of the buffer, used for the writer thread and the statistics
+     * @param batchWriter   writes the batches, for example as bulk upsert
+     * @param batchSize     maximum number of entities written with one bulk operation
+     * @param flushInterval milliseconds a queued entity waits at most for its batch
+     * @param capacity      maximum number of queued entities, further adds block
+     */
+    public WriteBehindBuffer(String name, BatchWriter<T> batchWriter, int batchSize, long flushInterval, int capacity)
+    {
+        this.name = name;
+        this.batchWriter = batchWriter;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushInterval = Math.max(1, flushInterval);
+        this.queue = new ArrayBlockingQueue<>(Math.max(this.batchSize, capacity));
+    }
+
+    /**
+     * @param maxAttempts  writes of a batch before its entities are counted as failed, at least 1
+     * @param retryBackoff milliseconds before the first retry, doubled for every further retry
+     */
+    public void setRetries(int maxAttempts, long retryBackoff)
+    {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = Math.max(0, retryBackoff);
+    }
+
+    /**
+     * Queue an entity for writing. Blocks while the buffer is full.
+     *
+     * @param entity the entity to write
+     */
+    public void add(T entity)
+    {
+        if (this.writer == null)
+        {
+            start();
+        }
+        if (this.queue.offer(entity))
+        {
+            return;
+        }
+        this.blockedAdds.incrementAndGet();
+        logger.debug(this.name + ": Write behind buffer is full, waiting for the database");
+        try
+        {
+            this.queue.put(entity);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            // write the entity on the calling thread instead of losing it
+            write(singletonBatch(entity));
+        }
+    }
+
+    private synchronized void start()
+    {
+        if (this.writer == null)
+        {
+            this.writer = new Writer();
+            OPEN_BUFFERS.add(this);
+        }
+    }
+
+    /**
+     * Write all queued entities and stop the background thread. The buffer is started again by the next add.
+     */
+    @Override
+    public void close()
+    {
+        Writer stopped;
+        synchronized (this)
+        {
+            stopped = this.writer;
+            this.writer = null;
+            OPEN_BUFFERS.remove(this);
+        }
+        if (stopped != null)
+        {
+            stopped.stop();
+        }
+        // entities added while the thread stopped
+        List<T> batch = new ArrayList<>(this.batchSize);
+        while (this.queue.drainTo(batch, this.batchSize) > 0)
+        {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Close all buffers which are still open, called when the service shuts down
+     */
+    public static void closeAll()
+    {
+        for (WriteBehindBuffer<?> buffer : new ArrayList<>(OPEN_BUFFERS))
+        {
+            buffer.close();
+        }
+    }
+
+    /**
+     * @return statistics of all open buffers
+     */
+    public static List<Stats> openBufferStats()
+    {
+        List<Stats> stats = new ArrayList<>();
+        for (WriteBehindBuffer<?> buffer : OPEN_BUFFERS)
+        {
+            stats.add(buffer.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Background thread, which collects the queued entities into batches
+     */
+    private class Writer implements Runnable
+    {
+        private final Thread thread;
+        private volatile boolean closing; // write the queued entities without waiting for full batches and stop
+
+        private Writer()
+        {
+            this.thread = new Thread(this, name + "-write-behind");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void stop()
+        {
+            this.closing = true;
+            try
+            {
+                this.thread.join();
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            List<T> batch = new ArrayList<>(batchSize);
+            try
+            {
+                writeBatches(batch);
+            } catch (InterruptedException e)
+            {
+                logger.warn(name + ": Write behind thread interrupted, " + queue.size() + " entities left");
+                write(batch);
+            }
+        }
+
+        private void writeBatches(List<T> batch) throws InterruptedException
+        {
+            while (!this.closing || !queue.isEmpty())
+            {
+                T first = queue.poll(Math.min(flushInterval, IDLE_POLL), TimeUnit.MILLISECONDS);
+                if (first == null)
+                {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval);
+                while (batch.size() < batchSize && !this.closing)
+                {
+                    if (queue.drainTo(batch, batchSize - batch.size()) == 0)
+                    {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0)
+                        {
+                            break;
+                        }
+                        T next = queue.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(IDLE_POLL)),
+                                TimeUnit.NANOSECONDS);
+                        if (next != null)
+                        {
+                            batch.add(next);
+                        }
+                    }
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<T> batch)
+    {
+        if (batch.isEmpty())
+        {
+            return;
+        }
+        long start = System.nanoTime();
+        List<T> pending = batch;
+        boolean interrupted = false;
+        for (int attempt = 1; ; attempt++)
+        {
+            RuntimeException error;
+            try
+            {
+                this.batchWriter.write(pending);
+                this.written.addAndGet(pending.size());
+                break;
+            } catch (PartialBatchException e)
+            {
+                List<T> failedEntities = failedEntities(e);
+                this.written.addAndGet(pending.size() - failedEntities.size());
+                pending = failedEntities;
+                error = e;
+            } catch (RuntimeException e)
+            {
+                if (!isTransient(e))
+                {
+                    this.failed.addAndGet(pending.size());
+                    logger.error(this.name + ": Could not write " + pending.size() + " entities - " + e.toString());
+                    break;
+                }
+                error = e;
+            }
+            if (attempt >= this.maxAttempts)
+            {
+                this.failed.addAndGet(pending.size());
+                logger.error(this.name + ": Could not write " + pending.size() + " entities after " + attempt
+                        + " attempts - " + error.toString());
+                break;
+            }
+            long backoff = this.retryBackoff << (attempt - 1);
+            logger.warn(this.name + ": Writing " + pending.size() + " entities again in " + backoff + " ms - "
+                    + error.toString());
+            this.retries.incrementAndGet();
+            if (!interrupted)
+            {
+                // an interrupted thread, for example while the service stops, retries without waiting
+                interrupted = sleep(backoff);
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+        this.lastFlushNanos = System.nanoTime() - start;
+        this.totalFlushNanos.addAndGet(this.lastFlushNanos);
+        this.flushes.incrementAndGet();
+    }
+
+    /**
+     * @return the entities of the batch reported by the writer as not written
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> failedEntities(PartialBatchException e)
+    {
+        return (List<T>) e.getFailed();
+    }
+
+    /**
+     * @return boolean: True if the same write can succeed later, like a lost connection or a timeout
+     */
+    private static boolean isTransient(RuntimeException e)
+    {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+
+    /**
+     * @return boolean: True if the thread was interrupted instead of sleeping
+     */
+    private static boolean sleep(long millis)
+    {
+        if (Thread.currentThread().isInterrupted())
+        {
+            return true;
+        }
+        try
+        {
+            Thread.sleep(millis);
+            return false;
+        } catch (InterruptedException e)
+        {
+            return true;
+        }
+    }
+
+    private static <T> List<T> singletonBatch(T entity)
+    {
+        List<T> batch = new ArrayList<>(1);
+        batch.add(entity);
+        return batch;
+    }
+
+    /**
+     * @return number of entities waiting to be written
+     */
+    public int getQueueDepth()
+    {
+        return this.queue.size();
+    }
+
+    public Stats getStats()
+    {
+        long flushCount = this.flushes.get();
+        return new Stats(this.name, this.queue.size(), this.written.get(), this.failed.get(), this.retries.get(),
+                flushCount, this.lastFlushNanos / 1_000_000.0,
+                flushCount == 0 ? 0 : this.totalFlushNanos.get() / 1_000_000.0 / flushCount, this.blockedAdds.get());
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public String toString()
+    {
+        Stats stats = getStats();
+        return String.format("WriteBehindBuffer %s: %d written in %d flushes (%.1f ms average); %d failed; "
+                        + "%d retries; %d adds blocked", this.name, stats.getWritten(), stats.getFlushes(),
+                stats.getAverageFlushMillis(), stats.getFailed(), stats.getRetries(), stats.getBlockedAdds());
+    }
+
+    /**
+     * Snapshot of the statistics of a buffer
+     */
+    public static class Stats
+    {
+        private final String name;
+        private final int queueDepth;
+        private final long written;
+        private final long failed;
+        private final long retries; // writes of batches which were repeated after an error
+        private final long flushes;
+        private final double lastFlushMillis;
+        private final double averageFlushMillis;
+        private final long blockedAdds;
+
+        private Stats(String name, int queueDepth, long written, long failed, long retries, long flushes,
+                      double lastFlushMillis, double averageFlushMillis, long blockedAdds)
+        {
+            this.name = name;
+            this.queueDepth = queueDepth;
+            this.written = written;
+            this.failed = failed;
+            this.retries = retries;
+            this.flushes = flushes;
+            this.lastFlushMillis = lastFlushMillis;
+            this.averageFlushMillis = averageFlushMillis;
+            this.blockedAdds = blockedAdds;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public int getQueueDepth()
+        {
+            return queueDepth;
+        }
+
+        public long getWritten()
+        {
+            return written;
+        }
+
+        public long getFailed()
+        {
+            return failed;
+        }
+
+        public long getRetries()
+        {
+            return retries;
+        }
+
+        public long getFlushes()
+        {
+            return flushes;
+        }
+
+        public double getLastFlushMillis()
+        {
+            return lastFlushMillis;
+        }
+
+        public double getAverageFlushMillis()
+        {
+            return averageFlushMillis;
+        }
+
+        public long getBlockedAdds()
+        {
+            return blockedAdds;
+        }
+    }
+}
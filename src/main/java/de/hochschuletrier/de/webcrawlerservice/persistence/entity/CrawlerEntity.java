@@ -26,6 +26,10 @@ public class CrawlerEntity
     private Date finishedAt;
     private Integer crawledPages;
     private Integer cycleNumber;
+    private Integer avoidedFetches; // links which were not crawled, because they were a variant of a known url
+    private Integer notModifiedPages; // revisited pages which were answered with 304 Not Modified
+    private Long bytesSaved; // body bytes which were not downloaded again, because the page was not modified
+    private Integer nearDuplicates; // pages which were stored as reference to a nearly identical page
 
     public CrawlerEntity()
     {
@@ -171,4 +175,44 @@ public class CrawlerEntity
     {
         this.statusId = statusId;
     }
+
+    public Integer getAvoidedFetches()
+    {
+        return avoidedFetches;
+    }
+
+    public void setAvoidedFetches(Integer avoidedFetches)
+    {
+        this.avoidedFetches = avoidedFetches;
+    }
+
+    public Integer getNotModifiedPages()
+    {
+        return notModifiedPages;
+    }
+
+    public void setNotModifiedPages(Integer notModifiedPages)
+    {
+        this.notModifiedPages = notModifiedPages;
+    }
+
+    public Long getBytesSaved()
+    {
+        return bytesSaved;
+    }
+
+    public void setBytesSaved(Long bytesSaved)
+    {
+        this.bytesSaved = bytesSaved;
+    }
+
+    public Integer getNearDuplicates()
+    {
+        return nearDuplicates;
+    }
+
+    public void setNearDuplicates(Integer nearDuplicates)
+    {
+        this.nearDuplicates = nearDuplicates;
+    }
 }
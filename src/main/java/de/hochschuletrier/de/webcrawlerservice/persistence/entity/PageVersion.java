@@ -0,0 +1,103 @@
+package de.hochschuletrier.de.webcrawlerservice.persistence.entity;
+
+import java.util.Date;
+
+/**
+ * Metadata of one stored version of a page, kept in the version history of its {@link WebPageEntity}. Only the body
+ * of the newest version is stored.
+ */
+public class PageVersion
+{
+    private Date crawlingDateTime;
+    private Date lastModified;
+    private String etag;
+    private Integer statusCode;
+    private Integer bodySize; // uncompressed bytes of the body
+    private Long simHash; // SimHash fingerprint of the page text
+    private String duplicateOf; // url of the page this version nearly duplicated
+
+    public PageVersion(WebPageEntity page)
+    {
+        this.crawlingDateTime = page.getCrawlingDateTime();
+        this.lastModified = page.getLastModified();
+        this.etag = page.getEtag();
+        this.statusCode = page.getStatusCode();
+        this.bodySize = page.getBodySize();
+        this.simHash = page.getSimHash();
+        this.duplicateOf = page.getDuplicateOf();
+    }
+
+    public PageVersion()
+    {
+    }
+
+    public Date getCrawlingDateTime()
+    {
+        return crawlingDateTime;
+    }
+
+    public void setCrawlingDateTime(Date crawlingDateTime)
+    {
+        this.crawlingDateTime = crawlingDateTime;
+    }
+
+    public Date getLastModified()
+    {
+        return lastModified;
+    }
+
+    public void setLastModified(Date lastModified)
+    {
+        this.lastModified = lastModified;
+    }
+
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    public void setEtag(String etag)
+    {
+        this.etag = etag;
+    }
+
+    public Integer getStatusCode()
+    {
+        return statusCode;
+    }
+
+    public void setStatusCode(Integer statusCode)
+    {
+        this.statusCode = statusCode;
+    }
+
+    public Integer getBodySize()
+    {
+        return bodySize;
+    }
+
+    public void setBodySize(Integer bodySize)
+    {
+        this.bodySize = bodySize;
+    }
+
+    public Long getSimHash()
+    {
+        return simHash;
+    }
+
+    public void setSimHash(Long simHash)
+    {
+        this.simHash = simHash;
+    }
+
+    public String getDuplicateOf()
+    {
+        return duplicateOf;
+    }
+
+    public void setDuplicateOf(String duplicateOf)
+    {
+        this.duplicateOf = duplicateOf;
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.data.annotation.Id;
 
 import java.net.URISyntaxException;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Entity which stores all information about a single html page in the DB
@@ -21,11 +22,21 @@ public class WebPageEntity
     private String id;
     private String url;
     private Date lastModified;
+    private String etag;
     private Date crawlingDateTime;
     private String title;
-    private String htmlDoc;
+    private String htmlDoc; // serialized document of pages stored before compression, null for new pages
+    private byte[] body; // compressed response body, null if it is stored in GridFS
+    private String bodyFileId; // GridFS file of compressed bodies above the threshold
+    private String codec; // PageCodec of the body
+    private Integer bodySize; // uncompressed bytes of the body
+    private String charset; // charset of the body
     private Integer statusCode;
     private String domain;
+    private Long simHash; // SimHash fingerprint of the page text
+    private String duplicateOf; // url of the stored page this page nearly duplicates, the body is not stored then
+    private Date firstCrawledAt; // crawl time of the first version
+    private List<PageVersion> versions; // metadata of the newest versions, oldest first, see CrawlResultStore
 
     public WebPageEntity(String url, Date lastModified, Date crawlingDateTime, String title, String htmlDoc, Integer statusCode, String domain)
     {
@@ -46,10 +57,12 @@ public class WebPageEntity
     {
         this.url = page.getUrl();
         this.lastModified = page.getLastModified();
+        this.etag = page.getEtag();
         this.crawlingDateTime = page.getCrawlingDateTime();
-        this.title = page.getHtmlBody().title();
-        this.htmlDoc = page.getHtmlBody().toString();
+        this.title = page.getTitle();
         this.statusCode = page.getStatusCode();
+        this.simHash = page.getSimHash();
+        this.duplicateOf = page.getDuplicateOf();
         try
         {
             this.domain = HTMLExtractionUtils.getDomainName(page.getUrl());
@@ -90,6 +103,16 @@ public class WebPageEntity
         this.lastModified = lastModified;
     }
 
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    public void setEtag(String etag)
+    {
+        this.etag = etag;
+    }
+
     public Date getCrawlingDateTime()
     {
         return crawlingDateTime;
@@ -120,6 +143,59 @@ public class WebPageEntity
         this.htmlDoc = htmlDoc;
     }
 
+    /**
+     * @return compressed body, use PageBodyStore.readHtml to read the html
+     */
+    public byte[] getBody()
+    {
+        return body;
+    }
+
+    public void setBody(byte[] body)
+    {
+        this.body = body;
+    }
+
+    public String getBodyFileId()
+    {
+        return bodyFileId;
+    }
+
+    public void setBodyFileId(String bodyFileId)
+    {
+        this.bodyFileId = bodyFileId;
+    }
+
+    public String getCodec()
+    {
+        return codec;
+    }
+
+    public void setCodec(String codec)
+    {
+        this.codec = codec;
+    }
+
+    public Integer getBodySize()
+    {
+        return bodySize;
+    }
+
+    public void setBodySize(Integer bodySize)
+    {
+        this.bodySize = bodySize;
+    }
+
+    public String getCharset()
+    {
+        return charset;
+    }
+
+    public void setCharset(String charset)
+    {
+        this.charset = charset;
+    }
+
     public Integer getStatusCode()
     {
         return statusCode;
@@ -140,5 +216,43 @@ public class WebPageEntity
         this.domain = domain;
     }
 
+    public Long getSimHash()
+    {
+        return simHash;
+    }
+
+    public void setSimHash(Long simHash)
+    {
+        this.simHash = simHash;
+    }
+
+    public String getDuplicateOf()
+    {
+        return duplicateOf;
+    }
 
+    public void setDuplicateOf(String duplicateOf)
+    {
+        this.duplicateOf = duplicateOf;
+    }
+
+    public Date getFirstCrawledAt()
+    {
+        return firstCrawledAt;
+    }
+
+    public void setFirstCrawledAt(Date firstCrawledAt)
+    {
+        this.firstCrawledAt = firstCrawledAt;
+    }
+
+    public List<PageVersion> getVersions()
+    {
+        return versions;
+    }
+
+    public void setVersions(List<PageVersion> versions)
+    {
+        this.versions = versions;
+    }
 }
@@ -0,0 +1,28 @@
+package de.hochschuletrier.de.webcrawlerservice.persistence.query;
+
+import java.util.List;
+
+/**
+ * One page of a keyset paginated result
+ */
+public class CursorPage<T>
+{
+    private final List<T> items;
+    private final String nextCursor; // id of the last item, null on the last page
+
+    public CursorPage(List<T> items, String nextCursor)
+    {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems()
+    {
+        return items;
+    }
+
+    public String getNextCursor()
+    {
+        return nextCursor;
+    }
+}
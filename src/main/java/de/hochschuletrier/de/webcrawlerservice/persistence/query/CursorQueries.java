@@ -0,0 +1,187 @@
+package de.hochschuletrier.de.webcrawlerservice.persistence.query;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Reads large collections without loading them into the heap.
+ * <p>
+ * Pages are read by keyset pagination on the _id index: the cursor is the id of the last returned document, the next
+ * page starts behind it. Unlike skip based paging every page costs the same, and documents inserted while a client
+ * pages through the result do not shift the pages. The whole result can also be streamed as newline delimited JSON
+ * from a Mongo cursor, which holds only one batch of documents in memory.
+ */
+@Component
+public class CursorQueries
+{
+    public static final String NDJSON = "application/x-ndjson";
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private static final String ID = "_id";
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final MongoOperations mongoOperations;
+    private final ObjectWriter objectWriter;
+
+    @Autowired
+    public CursorQueries(MongoOperations mongoOperations, ObjectMapper objectMapper)
+    {
+        this.mongoOperations = mongoOperations;
+        // the output stream belongs to the response and is closed by the servlet container
+        this.objectWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Read the page behind a cursor
+     *
+     * @param query  filter of the documents, without sort and limit
+     * @param type   entity class of the collection
+     * @param idOf   id of an entity
+     * @param cursor id of the last document of the previous page, null for the first page
+     * @param limit  maximum number of documents, limited to MAX_LIMIT
+     * @return the documents in _id order and the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is no document id
+     */
+    public <T> CursorPage<T> page(Query query, Class<T> type, Function<T, String> idOf, String cursor, int limit)
+    {
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+        startAfter(query, cursor);
+        // one more document tells if there is a next page
+        query.with(Sort.by(Sort.Direction.ASC, ID)).limit(pageSize + 1);
+        List<T> items = this.mongoOperations.find(query, type);
+        String nextCursor = null;
+        if (items.size() > pageSize)
+        {
+            items = items.subList(0, pageSize);
+            nextCursor = idOf.apply(items.get(pageSize - 1));
+        }
+        return new CursorPage<>(items, nextCursor);
+    }
+
+    /**
+     * Write all documents of the query behind the cursor as newline delimited JSON
+     *
+     * @param query  filter of the documents
+     * @param type   entity class of the collection
+     * @param cursor id of the last document the client already has, null to write all documents
+     * @param output the response stream
+     * @throws IOException if the client closed the connection
+     * @throws IllegalArgumentException if the cursor is no document id
+     */
+    public <T> void stream(Query query, Class<T> type, String cursor, OutputStream output) throws IOException
+    {
+        startAfter(query, cursor);
+        query.with(Sort.by(Sort.Direction.ASC, ID));
+        try (CloseableIterator<T> documents = this.mongoOperations.stream(query, type))
+        {
+            while (documents.hasNext())
+            {
+                this.objectWriter.writeValue(output, documents.next());
+                output.write(NEWLINE);
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Write the items of a page as JSON array
+     *
+     * @param items  the items
+     * @param output the response stream
+     * @throws IOException if the client closed the connection
+     */
+    public void write(List<?> items, OutputStream output) throws IOException
+    {
+        this.objectWriter.writeValue(output, items);
+        output.flush();
+    }
+
+    /**
+     * Create an ascending index for a filter of the result, if it does not exist
+     *
+     * @param type   entity class of the collection
+     * @param fields indexed fields, end with _id if the filter is an equality filter
+     */
+    public void ensureIndex(Class<?> type, String... fields)
+    {
+        Index index = new Index();
+        for (String field : fields)
+        {
+            index.on(field, Sort.Direction.ASC);
+        }
+        this.mongoOperations.indexOps(type).ensureIndex(index);
+    }
+
+    /**
+     * @param cursor cursor of a request, null or empty for the first page
+     * @return True if the cursor can be used as start of a page
+     */
+    public static boolean isValidCursor(String cursor)
+    {
+        return cursor == null || cursor.isEmpty() || ObjectId.isValid(cursor);
+    }
+
+    private static void startAfter(Query query, String cursor)
+    {
+        if (!isValidCursor(cursor))
+        {
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+        if (cursor != null && !cursor.isEmpty())
+        {
+            query.addCriteria(Criteria.where(ID).gt(new ObjectId(cursor)));
+        }
+    }
+
+    /**
+     * Add a time range on a date field to the query
+     *
+     * @param query the query
+     * @param field name of the date field
+     * @param since inclusive start or null
+     * @param until exclusive end or null
+     * @return the query
+     */
+    public static Query timeRange(Query query, String field, Date since, Date until)
+    {
+        if (since == null && until == null)
+        {
+            return query;
+        }
+        Criteria criteria = Criteria.where(field);
+        if (since != null)
+        {
+            criteria.gte(since);
+        }
+        if (until != null)
+        {
+            criteria.lt(until);
+        }
+        return query.addCriteria(criteria);
+    }
+
+    /**
+     * Add an equality filter to the query, if a value is given
+     */
+    public static Query equal(Query query, String field, Object value)
+    {
+        return value == null ? query : query.addCriteria(Criteria.where(field).is(value));
+    }
+}
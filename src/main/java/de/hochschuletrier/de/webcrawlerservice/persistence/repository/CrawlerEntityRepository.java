@@ -3,6 +3,8 @@ package de.hochschuletrier.de.webcrawlerservice.persistence.repository;
 import de.hochschuletrier.de.webcrawlerservice.persistence.entity.CrawlerEntity;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.List;
+
 /**
  * Interface for Crawler Entity Queries
  *
@@ -14,4 +16,6 @@ public interface CrawlerEntityRepository extends MongoRepository<CrawlerEntity,
 
     public CrawlerEntity findByUniqueName(String uniqueName);
 
+    public List<CrawlerEntity> findByStatusId(int statusId);
+
 }
\ No newline at end of file
@@ -1,8 +1,11 @@
 package de.hochschuletrier.de.webcrawlerservice.persistence.repository;
 
 import de.hochschuletrier.de.webcrawlerservice.persistence.entity.WebPageEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.List;
+
 /**
  * Interface for WebPage Queries
  *
@@ -11,4 +14,11 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 public interface WebPageEntityRepository extends MongoRepository<WebPageEntity, String>
 {
     public WebPageEntity findByUrl(String url);
+
+    public boolean existsByUrl(String url);
+
+    /**
+     * @return pages stored before compression was introduced, see PageBodyStore.migrate
+     */
+    public List<WebPageEntity> findByHtmlDocNotNull(Pageable pageable);
 }
@@ -0,0 +1,341 @@
+package de.hochschuletrier.de.webcrawlerservice.persistence.storage;
+
+import com.mongodb.BulkWriteError;
+import de.hochschuletrier.de.webcrawlerservice.persistence.buffer.PartialBatchException;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.DeadLinkEntity;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.FileLinkEntity;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.PageVersion;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.WebPageEntity;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Writes pages, file links and dead links as idempotent upserts keyed on their canonical url.
+ * <p>
+ * Every url has one document. A batch is written with one unordered bulk operation, which updates the existing
+ * documents and inserts the new ones, so a revisit or a second dead link report of the same url replaces the stored
+ * values instead of adding a document or failing on the unique index. A page keeps the metadata of its newest
+ * maxVersions versions in its versions array, older entries are removed by the same update. Only the body of the
+ * newest version is kept; a replaced body in GridFS is deleted after the batch was written.
+ * <p>
+ * The unique url indexes can not be built while a collection still holds the duplicates of earlier revisits. They are
+ * created as plain indexes then, until {@link #deduplicate()} removed the duplicates.
+ */
+@Component
+public class CrawlResultStore
+{
+    public static final int DEFAULT_MAX_VERSIONS = 10;
+
+    private static final String ID = "_id";
+    private static final String URL = "url";
+    private static final String FILE_URL = "fileURL";
+    private static final String BODY_FILE_ID = "bodyFileId";
+    private static final String VERSIONS = "versions";
+    private static final String FIRST_CRAWLED_AT = "firstCrawledAt";
+
+    private final MongoOperations mongoOperations;
+    private final PageBodyStore pageBodyStore;
+    private final int maxVersions; // versions kept in the history of a page
+
+    private static final Logger logger = LoggerFactory.getLogger(CrawlResultStore.class);
+
+    @Autowired
+    public CrawlResultStore(MongoOperations mongoOperations, PageBodyStore pageBodyStore,
+                            @Value("${crawler.storage.max-versions:10}") int maxVersions)
+    {
+        this.mongoOperations = mongoOperations;
+        this.pageBodyStore = pageBodyStore;
+        this.maxVersions = Math.max(1, maxVersions);
+    }
+
+    /**
+     * Insert or replace the current version of pages and add it to their version history
+     *
+     * @param pages pages with their stored bodies
+     */
+    public void upsertPages(List<WebPageEntity> pages)
+    {
+        if (pages.isEmpty())
+        {
+            return;
+        }
+        Map<String, WebPageEntity> newest = newestByKey(pages, WebPageEntity::getUrl);
+        Map<String, String> replacedFiles = this.pageBodyStore.usesGridFs() ? bodyFiles(newest.keySet())
+                : new HashMap<>();
+        try
+        {
+            upsert(newest, WebPageEntity.class, URL, page ->
+            {
+                Update update = setFields(page, VERSIONS, FIRST_CRAWLED_AT);
+                update.setOnInsert(FIRST_CRAWLED_AT, page.getCrawlingDateTime());
+                update.push(VERSIONS).slice(-this.maxVersions).each(new PageVersion(page));
+                return update;
+            });
+        } catch (PartialBatchException e)
+        {
+            // the written pages replaced their bodies, the failed ones are written again later
+            for (Object failed : e.getFailed())
+            {
+                replacedFiles.remove(((WebPageEntity) failed).getUrl());
+            }
+            deleteReplacedFiles(newest, replacedFiles);
+            throw e;
+        }
+        deleteReplacedFiles(newest, replacedFiles);
+    }
+
+    private void deleteReplacedFiles(Map<String, WebPageEntity> newest, Map<String, String> replacedFiles)
+    {
+        for (Map.Entry<String, String> replaced : replacedFiles.entrySet())
+        {
+            if (!replaced.getValue().equals(newest.get(replaced.getKey()).getBodyFileId()))
+            {
+                this.pageBodyStore.deleteFile(replaced.getValue());
+            }
+        }
+    }
+
+    /**
+     * Insert file links, which are not stored yet
+     */
+    public void upsertFileLinks(List<FileLinkEntity> fileLinks)
+    {
+        upsert(newestByKey(fileLinks, FileLinkEntity::getFileURL), FileLinkEntity.class, FILE_URL,
+                fileLink -> setFields(fileLink));
+    }
+
+    /**
+     * Insert dead links or update the time they were found dead
+     */
+    public void upsertDeadLinks(List<DeadLinkEntity> deadLinks)
+    {
+        upsert(newestByKey(deadLinks, DeadLinkEntity::getUrl), DeadLinkEntity.class, URL,
+                deadLink -> setFields(deadLink));
+    }
+
+    /**
+     * Write the entities with one unordered bulk operation
+     *
+     * @throws PartialBatchException if some of the upserts failed, the others are written
+     */
+    private <T> void upsert(Map<String, T> entities, Class<T> type, String keyField, Function<T, Update> updateOf)
+    {
+        if (entities.isEmpty())
+        {
+            return;
+        }
+        BulkOperations bulk = this.mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, type);
+        List<T> operations = new ArrayList<>(entities.size()); // entities in the order of their upserts
+        for (Map.Entry<String, T> entity : entities.entrySet())
+        {
+            bulk.upsert(Query.query(Criteria.where(keyField).is(entity.getKey())), updateOf.apply(entity.getValue()));
+            operations.add(entity.getValue());
+        }
+        try
+        {
+            bulk.execute();
+        } catch (BulkOperationException e)
+        {
+            List<T> failed = new ArrayList<>(e.getErrors().size());
+            for (BulkWriteError error : e.getErrors())
+            {
+                failed.add(operations.get(error.getIndex()));
+            }
+            throw new PartialBatchException(failed.size() + " of " + operations.size() + " upserts of "
+                    + type.getSimpleName() + " failed", failed, e);
+        }
+    }
+
+    /**
+     * Two upserts of the same new url in one unordered bulk would both insert, so only the last entity of a url is
+     * written
+     */
+    private static <T> Map<String, T> newestByKey(List<T> entities, Function<T, String> keyOf)
+    {
+        Map<String, T> newest = new LinkedHashMap<>(entities.size() * 2);
+        for (T entity : entities)
+        {
+            newest.put(keyOf.apply(entity), entity);
+        }
+        return newest;
+    }
+
+    /**
+     * Set all persistent fields of an entity and remove the ones it does not have, so no value of the replaced
+     * version remains
+     */
+    private Update setFields(Object entity, String... skippedFields)
+    {
+        Document document = new Document();
+        this.mongoOperations.getConverter().write(entity, document);
+        MongoPersistentEntity<?> persistentEntity = this.mongoOperations.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(entity.getClass());
+        List<String> skipped = Arrays.asList(skippedFields);
+        Update update = new Update();
+        for (MongoPersistentProperty property : persistentEntity)
+        {
+            String field = property.getFieldName();
+            if (property.isIdProperty() || skipped.contains(field))
+            {
+                continue;
+            }
+            if (document.containsKey(field))
+            {
+                update.set(field, document.get(field));
+            } else
+            {
+                update.unset(field);
+            }
+        }
+        return update;
+    }
+
+    /**
+     * @return GridFS files of the stored versions of the urls
+     */
+    private Map<String, String> bodyFiles(Iterable<String> urls)
+    {
+        List<String> urlList = new ArrayList<>();
+        urls.forEach(urlList::add);
+        Query query = Query.query(Criteria.where(URL).in(urlList).and(BODY_FILE_ID).ne(null));
+        query.fields().include(URL).include(BODY_FILE_ID);
+        Map<String, String> files = new HashMap<>();
+        for (WebPageEntity stored : this.mongoOperations.find(query, WebPageEntity.class))
+        {
+            files.put(stored.getUrl(), stored.getBodyFileId());
+        }
+        return files;
+    }
+
+    /**
+     * Create the url indexes and the indexes of the common filters, if they do not exist
+     */
+    public void ensureIndexes()
+    {
+        ensureUniqueIndex(WebPageEntity.class, URL);
+        this.mongoOperations.indexOps(WebPageEntity.class).ensureIndex(
+                new Index().on("domain", Sort.Direction.ASC).on("crawlingDateTime", Sort.Direction.ASC));
+        ensureUniqueIndex(FileLinkEntity.class, FILE_URL);
+        this.mongoOperations.indexOps(FileLinkEntity.class).ensureIndex(
+                new Index().on("extension", Sort.Direction.ASC).on(FILE_URL, Sort.Direction.ASC));
+        ensureUniqueIndex(DeadLinkEntity.class, URL);
+    }
+
+    private void ensureUniqueIndex(Class<?> type, String field)
+    {
+        IndexOperations indexOperations = this.mongoOperations.indexOps(type);
+        try
+        {
+            indexOperations.ensureIndex(new Index().on(field, Sort.Direction.ASC).unique());
+        } catch (DataAccessException e)
+        {
+            logger.warn("No unique index on " + type.getSimpleName() + "." + field
+                    + ", the collection contains duplicates. Run POST /migrate/deduplicate - " + e.toString());
+            indexOperations.ensureIndex(new Index().on(field, Sort.Direction.ASC));
+        }
+    }
+
+    /**
+     * Remove the duplicates stored before the results were upserted and replace the plain url indexes by unique
+     * ones. The newest document of every url is kept. Safe to run while crawlers write.
+     *
+     * @return number of removed documents
+     */
+    public long deduplicate()
+    {
+        long removed = removeDuplicates(WebPageEntity.class, URL, "crawlingDateTime")
+                + removeDuplicates(FileLinkEntity.class, FILE_URL, ID)
+                + removeDuplicates(DeadLinkEntity.class, URL, "lastCrawledAt");
+        dropPlainIndex(WebPageEntity.class, URL);
+        dropPlainIndex(FileLinkEntity.class, FILE_URL);
+        dropPlainIndex(DeadLinkEntity.class, URL);
+        ensureIndexes();
+        return removed;
+    }
+
+    private long removeDuplicates(Class<?> type, String keyField, String orderField)
+    {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.sort(Sort.Direction.ASC, orderField),
+                Aggregation.group(keyField).push(ID).as("ids").count().as("count"),
+                Aggregation.match(Criteria.where("count").gt(1)))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        long removed = 0;
+        try (CloseableIterator<Document> groups = this.mongoOperations.aggregateStream(aggregation,
+                this.mongoOperations.getCollectionName(type), Document.class))
+        {
+            while (groups.hasNext())
+            {
+                List<?> ids = groups.next().get("ids", List.class);
+                List<?> duplicates = ids.subList(0, ids.size() - 1);
+                if (type == WebPageEntity.class)
+                {
+                    deleteBodyFiles(duplicates);
+                }
+                removed += this.mongoOperations.remove(Query.query(Criteria.where(ID).in(duplicates)), type)
+                        .getDeletedCount();
+            }
+        }
+        logger.info("Removed " + removed + " duplicates of " + type.getSimpleName());
+        return removed;
+    }
+
+    private void deleteBodyFiles(List<?> pageIds)
+    {
+        Query query = Query.query(Criteria.where(ID).in(pageIds));
+        query.fields().include(BODY_FILE_ID);
+        for (WebPageEntity page : this.mongoOperations.find(query, WebPageEntity.class))
+        {
+            if (page.getBodyFileId() != null)
+            {
+                this.pageBodyStore.deleteFile(page.getBodyFileId());
+            }
+        }
+    }
+
+    private void dropPlainIndex(Class<?> type, String field)
+    {
+        IndexOperations indexOperations = this.mongoOperations.indexOps(type);
+        for (IndexInfo indexInfo : indexOperations.getIndexInfo())
+        {
+            if (!indexInfo.isUnique() && indexInfo.getIndexFields().size() == 1
+                    && indexInfo.getIndexFields().get(0).getKey().equals(field))
+            {
+                indexOperations.dropIndex(indexInfo.getName());
+            }
+        }
+    }
+
+    public int getMaxVersions()
+    {
+        return maxVersions;
+    }
+}
@@ -0,0 +1,213 @@
+package de.hochschuletrier.de.webcrawlerservice.persistence.storage;
+
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.WebPageEntity;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.WebPageEntityRepository;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsCriteria;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Stores the original response bytes of a page compressed with the configured {@link PageCodec}.
+ * <p>
+ * Compressed bodies up to gridFsThreshold bytes are kept in the page document, larger ones are moved to GridFS, so
+ * the page collection stays small and no document reaches the Mongo size limit. Bodies are only decompressed when
+ * {@link #readHtml(WebPageEntity)} is called. Pages stored before compression keep their htmlDoc until they are
+ * converted by {@link #migrate(WebPageEntityRepository, int)}.
+ */
+@Component
+public class PageBodyStore
+{
+    public static final int DEFAULT_GRIDFS_THRESHOLD = 256 * 1024;
+
+    private static final String CONTENT_TYPE = "application/octet-stream";
+
+    private final PageCodec codec; // codec of new bodies
+    private final int gridFsThreshold; // compressed bodies above this size are stored in GridFS
+    private final GridFsOperations gridFs; // null if all bodies are kept in the documents
+
+    private static final Logger logger = LoggerFactory.getLogger(PageBodyStore.class);
+
+    /**
+     * Store which keeps all bodies in the page documents
+     *
+     * @param codec codec of new bodies
+     */
+    public PageBodyStore(PageCodec codec)
+    {
+        this(codec, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * @param codec           codec of new bodies
+     * @param gridFsThreshold compressed bodies above this number of bytes are stored in GridFS
+     * @param gridFs          GridFS of the page database
+     */
+    public PageBodyStore(PageCodec codec, int gridFsThreshold, GridFsOperations gridFs)
+    {
+        this.codec = codec;
+        this.gridFsThreshold = gridFsThreshold;
+        this.gridFs = gridFs;
+    }
+
+    @Autowired
+    public PageBodyStore(@Value("${crawler.storage.codec:zstd}") String codec,
+                         @Value("${crawler.storage.gridfs-threshold:262144}") int gridFsThreshold,
+                         GridFsOperations gridFs)
+    {
+        this(PageCodec.forName(codec), gridFsThreshold, gridFs);
+    }
+
+    /**
+     * Compress the body of a page into its entity. Bodies above the threshold are written to GridFS immediately, the
+     * entity only references them.
+     *
+     * @param entity  the entity of the page
+     * @param body    the original response bytes
+     * @param charset charset of the body
+     */
+    public void store(WebPageEntity entity, byte[] body, String charset)
+    {
+        byte[] encoded = this.codec.encode(body);
+        entity.setCodec(this.codec.name());
+        entity.setBodySize(body.length);
+        entity.setCharset(charset);
+        entity.setHtmlDoc(null);
+        if (encoded.length > this.gridFsThreshold && this.gridFs != null)
+        {
+            // revisits store the same url again, so the files get unique names
+            String fileName = new ObjectId().toHexString();
+            Document metadata = new Document("url", entity.getUrl()).append("codec", this.codec.name())
+                    .append("bodySize", body.length);
+            this.gridFs.store(new ByteArrayInputStream(encoded), fileName, CONTENT_TYPE, metadata);
+            entity.setBodyFileId(fileName);
+            entity.setBody(null);
+        } else
+        {
+            entity.setBody(encoded);
+            entity.setBodyFileId(null);
+        }
+    }
+
+    /**
+     * Decompress the body of a page
+     *
+     * @param entity the stored entity
+     * @return the html of the page or null if no body was stored, for example for near duplicates
+     */
+    public String readHtml(WebPageEntity entity)
+    {
+        if (entity.getHtmlDoc() != null)
+        {
+            return entity.getHtmlDoc();
+        }
+        byte[] encoded = entity.getBody();
+        if (encoded == null && entity.getBodyFileId() != null)
+        {
+            encoded = readFile(entity.getBodyFileId());
+        }
+        if (encoded == null)
+        {
+            return null;
+        }
+        byte[] body = PageCodec.forName(entity.getCodec()).decode(encoded, entity.getBodySize());
+        return new String(body, entity.getCharset() != null ? Charset.forName(entity.getCharset())
+                : StandardCharsets.UTF_8);
+    }
+
+    private byte[] readFile(String fileName)
+    {
+        if (this.gridFs == null)
+        {
+            throw new IllegalStateException("No GridFS to read body " + fileName);
+        }
+        GridFsResource resource = this.gridFs.getResource(fileName);
+        if (resource == null || !resource.exists())
+        {
+            logger.warn("Body " + fileName + " is missing in GridFS");
+            return null;
+        }
+        try (InputStream input = resource.getInputStream())
+        {
+            return StreamUtils.copyToByteArray(input);
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Delete the GridFS file of a body, which is no longer referenced by a page
+     *
+     * @param fileName bodyFileId of the replaced page
+     */
+    public void deleteFile(String fileName)
+    {
+        if (this.gridFs != null)
+        {
+            this.gridFs.delete(Query.query(GridFsCriteria.whereFilename().is(fileName)));
+        }
+    }
+
+    /**
+     * @return True if large bodies are moved to GridFS
+     */
+    public boolean usesGridFs()
+    {
+        return this.gridFs != null;
+    }
+
+    /**
+     * Compress the htmlDoc of pages stored before compression was introduced. Converted pages no longer match the
+     * query, so the first page of the query is read until it is empty. Safe to run while crawlers write new pages.
+     *
+     * @param repository repository of the pages
+     * @param batchSize  number of pages converted and written at once
+     * @return number of converted pages
+     */
+    public int migrate(WebPageEntityRepository repository, int batchSize)
+    {
+        int converted = 0;
+        List<WebPageEntity> batch = repository.findByHtmlDocNotNull(PageRequest.of(0, batchSize));
+        while (!batch.isEmpty())
+        {
+            for (WebPageEntity entity : batch)
+            {
+                // the original response is gone, the serialized document is stored instead
+                store(entity, entity.getHtmlDoc().getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8.name());
+            }
+            repository.saveAll(batch);
+            converted += batch.size();
+            logger.info("Compressed " + converted + " stored pages");
+            batch = repository.findByHtmlDocNotNull(PageRequest.of(0, batchSize));
+        }
+        return converted;
+    }
+
+    public PageCodec getCodec()
+    {
+        return codec;
+    }
+
+    public int getGridFsThreshold()
+    {
+        return gridFsThreshold;
+    }
+}
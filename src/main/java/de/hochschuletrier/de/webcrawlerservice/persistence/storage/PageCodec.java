@@ -0,0 +1,123 @@
+package de.hochschuletrier.de.webcrawlerservice.persistence.storage;
+
+import com.github.luben.zstd.Zstd;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of the stored response bodies. The name of the codec is stored with every body, so bodies written with
+ * another codec can still be read after the configuration changed.
+ */
+public enum PageCodec
+{
+    NONE
+            {
+                @Override
+                public byte[] encode(byte[] data)
+                {
+                    return data;
+                }
+
+                @Override
+                public byte[] decode(byte[] data, int size)
+                {
+                    return data;
+                }
+            },
+    DEFLATE
+            {
+                @Override
+                public byte[] encode(byte[] data)
+                {
+                    Deflater deflater = new Deflater(DEFLATE_LEVEL, true);
+                    try
+                    {
+                        deflater.setInput(data);
+                        deflater.finish();
+                        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 4 + 64);
+                        byte[] buffer = new byte[8192];
+                        while (!deflater.finished())
+                        {
+                            output.write(buffer, 0, deflater.deflate(buffer));
+                        }
+                        return output.toByteArray();
+                    } finally
+                    {
+                        deflater.end();
+                    }
+                }
+
+                @Override
+                public byte[] decode(byte[] data, int size)
+                {
+                    Inflater inflater = new Inflater(true);
+                    try
+                    {
+                        inflater.setInput(data);
+                        byte[] result = new byte[size];
+                        int length = 0;
+                        while (length < size && !inflater.finished())
+                        {
+                            int inflated = inflater.inflate(result, length, size - length);
+                            if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                            {
+                                break;
+                            }
+                            length += inflated;
+                        }
+                        return length == size ? result : Arrays.copyOf(result, length);
+                    } catch (DataFormatException e)
+                    {
+                        throw new IllegalArgumentException("Corrupt deflate body", e);
+                    } finally
+                    {
+                        inflater.end();
+                    }
+                }
+            },
+    ZSTD
+            {
+                @Override
+                public byte[] encode(byte[] data)
+                {
+                    return Zstd.compress(data, ZSTD_LEVEL);
+                }
+
+                @Override
+                public byte[] decode(byte[] data, int size)
+                {
+                    return Zstd.decompress(data, size);
+                }
+            };
+
+    private static final int DEFLATE_LEVEL = 6; // zlib default, level 9 is much slower for about 3 percent
+    private static final int ZSTD_LEVEL = 3; // zstd default
+
+    /**
+     * @param data uncompressed bytes
+     * @return compressed bytes
+     */
+    public abstract byte[] encode(byte[] data);
+
+    /**
+     * @param data compressed bytes
+     * @param size number of uncompressed bytes
+     * @return uncompressed bytes
+     */
+    public abstract byte[] decode(byte[] data, int size);
+
+    /**
+     * @param name name of a codec, case insensitive
+     * @return the codec
+     * @throws IllegalArgumentException for unknown names
+     */
+    public static PageCodec forName(String name)
+    {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,80 @@
+package de.hochschuletrier.de.webcrawlerservice.utils;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.ClusterMembership;
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.ClusterNode;
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.EurekaClusterMembership;
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.HttpLinkTransport;
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.LinkTransport;
+import de.hochschuletrier.de.webcrawlerservice.crawler.cluster.StaticClusterMembership;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration of sharded crawls, only active with crawler.cluster.enabled
+ * <p>
+ * With crawler.cluster.registry 'eureka' the live instances are taken from Eureka. With 'static' they are the fixed
+ * base urls of crawler.cluster.nodes and this instance is crawler.cluster.local-url, for several instances on
+ * localhost without a registry.
+ */
+@Configuration
+@ConditionalOnProperty(name = "crawler.cluster.enabled", havingValue = "true")
+public class ClusterConfig
+{
+    @Value("${crawler.cluster.registry:eureka}")
+    private String registry;
+
+    @Value("${crawler.cluster.nodes:}")
+    private List<String> staticNodes;
+
+    @Value("${crawler.cluster.local-url:}")
+    private String localUrl;
+
+    @Value("${crawler.cluster.send-timeout:10000}")
+    private long sendTimeout;
+
+    @Bean
+    public ClusterMembership clusterMembership(ObjectProvider<DiscoveryClient> discoveryClient,
+                                               ObjectProvider<Registration> registration)
+    {
+        if ("static".equals(this.registry))
+        {
+            List<ClusterNode> nodes = new ArrayList<>();
+            for (String node : this.staticNodes)
+            {
+                if (!node.trim().isEmpty())
+                {
+                    nodes.add(staticNode(node));
+                }
+            }
+            return new StaticClusterMembership(staticNode(this.localUrl), nodes.toArray(new ClusterNode[0]));
+        }
+        return new EurekaClusterMembership(discoveryClient.getObject(), registration.getObject());
+    }
+
+    /**
+     * @param baseUrl base url of an instance, which is also its id
+     */
+    private static ClusterNode staticNode(String baseUrl)
+    {
+        String url = baseUrl.trim();
+        url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        return new ClusterNode(url, url);
+    }
+
+    @Bean
+    public LinkTransport linkTransport(RestTemplateBuilder restTemplateBuilder)
+    {
+        return new HttpLinkTransport(restTemplateBuilder.setConnectTimeout((int) this.sendTimeout)
+                .setReadTimeout((int) this.sendTimeout).build());
+    }
+}
@@ -19,6 +19,14 @@ public class GenericCrawlerData
     private Integer timeout;
     private boolean followRedirects;
     private Integer maxPages;
+    private Integer maxWorkers;
+    private Integer memoryBudget;
+    private boolean persistentFrontier;
+    private boolean jsoupFetcher;
+    private Integer nearDuplicateDistance;
+    private boolean streamingExtraction;
+    private Integer maxBodySize;
+    private boolean distributed;
 
     public GenericCrawlerData()
     {
@@ -120,6 +128,86 @@ public class GenericCrawlerData
         this.maxPages = maxPages;
     }
 
+    public Integer getMaxWorkers()
+    {
+        return maxWorkers;
+    }
+
+    public void setMaxWorkers(Integer maxWorkers)
+    {
+        this.maxWorkers = maxWorkers;
+    }
+
+    public Integer getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    public void setMemoryBudget(Integer memoryBudget)
+    {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public boolean isPersistentFrontier()
+    {
+        return persistentFrontier;
+    }
+
+    public void setPersistentFrontier(boolean persistentFrontier)
+    {
+        this.persistentFrontier = persistentFrontier;
+    }
+
+    public boolean isJsoupFetcher()
+    {
+        return jsoupFetcher;
+    }
+
+    public void setJsoupFetcher(boolean jsoupFetcher)
+    {
+        this.jsoupFetcher = jsoupFetcher;
+    }
+
+    public Integer getNearDuplicateDistance()
+    {
+        return nearDuplicateDistance;
+    }
+
+    public void setNearDuplicateDistance(Integer nearDuplicateDistance)
+    {
+        this.nearDuplicateDistance = nearDuplicateDistance;
+    }
+
+    public boolean isStreamingExtraction()
+    {
+        return streamingExtraction;
+    }
+
+    public void setStreamingExtraction(boolean streamingExtraction)
+    {
+        this.streamingExtraction = streamingExtraction;
+    }
+
+    public Integer getMaxBodySize()
+    {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(Integer maxBodySize)
+    {
+        this.maxBodySize = maxBodySize;
+    }
+
+    public boolean isDistributed()
+    {
+        return distributed;
+    }
+
+    public void setDistributed(boolean distributed)
+    {
+        this.distributed = distributed;
+    }
+
     @Override
     public String toString()
     {
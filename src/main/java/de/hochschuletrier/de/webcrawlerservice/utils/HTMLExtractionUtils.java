@@ -3,14 +3,17 @@ package de.hochschuletrier.de.webcrawlerservice.utils;
 import de.hochschuletrier.de.webcrawlerservice.crawler.utils.Page;
 import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageValidation;
 import org.jetbrains.annotations.NotNull;
+import org.jsoup.helper.StringUtil;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -56,27 +59,43 @@ public class HTMLExtractionUtils
 
 
     /**
-     * Create an absolute path URL String from relative link
+     * Create an absolute path URL String from relative link. The link is resolved against the base uri of the
+     * document, which is the url of the page or the href of its base element.
      *
      * @param link String relative link
-     * @param page Page object to get host from
-     * @return absolute link String
+     * @param page Page object to get the base url from
+     * @return absolute link String or null if the link can not be resolved
      */
     public static String createUrlFromRelativeLink(String link, Page page)
     {
-        String host = page.getHeaderMap().get("Host");
-        return "http://www." + host + link;
+        String baseUrl = page.getUrl();
+        if (page.getHtmlBody() != null && !page.getHtmlBody().baseUri().isEmpty())
+        {
+            baseUrl = page.getHtmlBody().baseUri();
+        }
+        try
+        {
+            return StringUtil.resolve(new URL(baseUrl), link).toString();
+        } catch (MalformedURLException e)
+        {
+            logger.debug("Could not resolve {} against {}", link, baseUrl);
+            return null;
+        }
     }
 
 
     /**
      * Get all links from a html Document and return an array of links as string
      *
-     * @param page Page object to extract the links
+     * @param page Page object to extract the links, streamed pages return the links of the extractor
      * @return String List with all found links
      */
     public static ArrayList<String> getLinksFromDocument(Page page)
     {
+        if (page.getHtmlBody() == null && page.getLinks() != null)
+        {
+            return new ArrayList<>(page.getLinks());
+        }
         Elements elements = new Elements();
         ArrayList<String> linkArrayList = new ArrayList<>();
         //Check if htmlBody is null. Should no longer happen
@@ -95,16 +114,19 @@ public class HTMLExtractionUtils
             for (Element element : elements)
             {
                 String link = element.attr("abs:href");
-                if (!link.isEmpty())
+                if (link.isEmpty())
                 {
-                    if (PageValidation.isUrlValidURI(link))
-                    {
-                        linkArrayList.add(link);
-                    } else if (HTMLExtractionUtils.isRelativeUrl(link))
+                    // jsoup could not resolve the link against the base uri
+                    String href = element.attr("href").trim();
+                    if (!href.isEmpty() && HTMLExtractionUtils.isRelativeUrl(href))
                     {
-                        linkArrayList.add(HTMLExtractionUtils.createUrlFromRelativeLink(link, page));
+                        link = HTMLExtractionUtils.createUrlFromRelativeLink(href, page);
                     }
                 }
+                if (link != null && !link.isEmpty() && PageValidation.isUrlValidURI(link))
+                {
+                    linkArrayList.add(link);
+                }
             }
         } else
         {
@@ -173,7 +195,7 @@ public class HTMLExtractionUtils
             String link = element.attr("abs:href");
             if (!link.isEmpty())
             {
-                if (PageValidation.isUrlValidURI(link) && allowedFileExtensions.contains(link))
+                if (isFileLink(link, allowedFileExtensions) && PageValidation.isUrlValidURI(link))
                 {
                     fileLinks.add(link);
                 }
@@ -182,6 +204,52 @@ public class HTMLExtractionUtils
         return fileLinks;
     }
 
+    /**
+     * Filter the file links from a list of absolute links
+     *
+     * @param links                 absolute links of a page
+     * @param allowedFileExtensions lower case file extensions without dot, like pdf
+     * @return List of file Links
+     */
+    public static List<String> getFileLinks(List<String> links, List<String> allowedFileExtensions)
+    {
+        List<String> fileLinks = new ArrayList<>();
+        for (String link : links)
+        {
+            if (isFileLink(link, allowedFileExtensions))
+            {
+                fileLinks.add(link);
+            }
+        }
+        return fileLinks;
+    }
+
+    /**
+     * @param link                  an absolute link
+     * @param allowedFileExtensions lower case file extensions without dot, like pdf
+     * @return True if the path of the link ends with one of the extensions
+     */
+    public static boolean isFileLink(String link, List<String> allowedFileExtensions)
+    {
+        int end = link.length();
+        int query = link.indexOf('?');
+        int fragment = link.indexOf('#');
+        if (query >= 0)
+        {
+            end = query;
+        }
+        if (fragment >= 0 && fragment < end)
+        {
+            end = fragment;
+        }
+        int dot = link.lastIndexOf('.', end - 1);
+        if (dot < 0 || link.indexOf('/', dot) >= 0 && link.indexOf('/', dot) < end)
+        {
+            return false;
+        }
+        return allowedFileExtensions.contains(link.substring(dot + 1, end).toLowerCase(Locale.ROOT));
+    }
+
 
     /**
      * get domain name
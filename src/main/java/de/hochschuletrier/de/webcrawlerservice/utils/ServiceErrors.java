@@ -36,4 +36,81 @@ public class ServiceErrors
         jsonValues.put("crawlerdata", crawlerData.toString());
         return new JSONObject(jsonValues).toString();
     }
+
+    public static String crawlerNotResumable(String path, String uniqueName)
+    {
+        Map<String, String> jsonValues = new HashMap<>();
+        jsonValues.put("status", "9003");
+        jsonValues.put("result", "ERROR");
+        jsonValues.put("path", path);
+        jsonValues.put("message", "CrawlerEntity can not be resumed");
+        jsonValues.put("uniqueName", uniqueName);
+        return new JSONObject(jsonValues).toString();
+    }
+
+    public static String invalidCursor(String path, String cursor)
+    {
+        Map<String, String> jsonValues = new HashMap<>();
+        jsonValues.put("status", "9004");
+        jsonValues.put("result", "ERROR");
+        jsonValues.put("path", path);
+        jsonValues.put("message", "cursor is not valid");
+        jsonValues.put("cursor", cursor);
+        return new JSONObject(jsonValues).toString();
+    }
+
+    public static String crawlerAlreadyRunning(String path, String name)
+    {
+        Map<String, String> jsonValues = new HashMap<>();
+        jsonValues.put("status", "9005");
+        jsonValues.put("result", "ERROR");
+        jsonValues.put("path", path);
+        jsonValues.put("message", "sharded crawl already runs on this instance");
+        jsonValues.put("name", name);
+        return new JSONObject(jsonValues).toString();
+    }
+
+    public static String crawlNotRunning(String path, String name)
+    {
+        Map<String, String> jsonValues = new HashMap<>();
+        jsonValues.put("status", "9006");
+        jsonValues.put("result", "ERROR");
+        jsonValues.put("path", path);
+        jsonValues.put("message", "sharded crawl does not run on this instance");
+        jsonValues.put("name", name);
+        return new JSONObject(jsonValues).toString();
+    }
+
+    public static String jobQueueFull(String path, String name)
+    {
+        Map<String, String> jsonValues = new HashMap<>();
+        jsonValues.put("status", "9007");
+        jsonValues.put("result", "ERROR");
+        jsonValues.put("path", path);
+        jsonValues.put("message", "crawl job queue is full, try again later");
+        jsonValues.put("name", name);
+        return new JSONObject(jsonValues).toString();
+    }
+
+    public static String jobNotChangeable(String path, long id, String action)
+    {
+        Map<String, String> jsonValues = new HashMap<>();
+        jsonValues.put("status", "9008");
+        jsonValues.put("result", "ERROR");
+        jsonValues.put("path", path);
+        jsonValues.put("message", "crawl job is unknown or can not be " + action);
+        jsonValues.put("id", String.valueOf(id));
+        return new JSONObject(jsonValues).toString();
+    }
+
+    public static String crawlerAlreadyResumed(String path, String uniqueName)
+    {
+        Map<String, String> jsonValues = new HashMap<>();
+        jsonValues.put("status", "9009");
+        jsonValues.put("result", "ERROR");
+        jsonValues.put("path", path);
+        jsonValues.put("message", "CrawlerEntity already has a job");
+        jsonValues.put("uniqueName", uniqueName);
+        return new JSONObject(jsonValues).toString();
+    }
 }
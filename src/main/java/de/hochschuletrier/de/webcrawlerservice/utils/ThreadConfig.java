@@ -1,27 +1,77 @@
 package de.hochschuletrier.de.webcrawlerservice.utils;
 
+import de.hochschuletrier.de.webcrawlerservice.crawler.metrics.CrawlerMetrics;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.ConcurrencyLimitedExecutor;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.WorkerExecutors;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.ExecutorService;
+
 /**
- * Configuration class for the Thread execution of the Crawler
+ * Configuration class for the Thread execution of background tasks like the migrations. Crawl jobs are run by the
+ * {@link de.hochschuletrier.de.webcrawlerservice.crawler.jobs.CrawlJobScheduler}.
+ * <p>
+ * With crawler.execution.mode 'virtual' every task runs on its own virtual thread and at most
+ * crawler.execution.max-concurrent-crawls tasks run at the same time, further tasks wait for a free slot. Platform
+ * threads queue at most crawler.execution.max-queued-tasks tasks, further tasks are rejected.
+ * <p>
+ * The queue depth and the active tasks of the executor are published as executor metrics with the name
+ * background-tasks.
  *
  * @author: Oliver Fries
  */
 @Configuration
 public class ThreadConfig
 {
+    @Value("${crawler.execution.mode:platform}")
+    private String executionMode;
+
+    @Value("${crawler.execution.max-concurrent-crawls:20}")
+    private int maxConcurrentCrawls;
+
+    @Value("${crawler.execution.max-queued-tasks:100}")
+    private int maxQueuedTasks;
+
+    private static final String EXECUTOR_NAME = "background-tasks";
+
     @Bean
-    public TaskExecutor threadPoolTaskExecutor()
+    public TaskExecutor threadPoolTaskExecutor(MeterRegistry meterRegistry)
     {
+        if (WorkerExecutors.usesVirtualThreads(this.executionMode))
+        {
+            ExecutorService executor = WorkerExecutors.newExecutor(WorkerExecutors.VIRTUAL,
+                    "default_task_executor_thread", this.maxConcurrentCrawls);
+            if (executor instanceof ConcurrencyLimitedExecutor)
+            {
+                Tags tags = Tags.of("name", EXECUTOR_NAME);
+                Gauge.builder("executor.queued", executor, CrawlerMetrics::queuedTasks).tags(tags)
+                        .register(meterRegistry);
+                Gauge.builder("executor.active", (ConcurrencyLimitedExecutor) executor,
+                        ConcurrencyLimitedExecutor::getActiveCount).tags(tags).register(meterRegistry);
+            } else
+            {
+                new ExecutorServiceMetrics(executor, EXECUTOR_NAME, Tags.empty()).bindTo(meterRegistry);
+            }
+            return new ConcurrentTaskExecutor(executor);
+        }
 
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(20);
+        executor.setQueueCapacity(this.maxQueuedTasks);
         executor.setThreadNamePrefix("default_task_executor_thread");
         executor.initialize();
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), EXECUTOR_NAME, Tags.empty())
+                .bindTo(meterRegistry);
 
         return executor;
     }
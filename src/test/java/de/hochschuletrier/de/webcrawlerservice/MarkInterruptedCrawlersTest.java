@@ -0,0 +1,69 @@
+package de.hochschuletrier.de.webcrawlerservice;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.PersistentFrontier;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.CrawlerEntity;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.CrawlerEntityRepository;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MarkInterruptedCrawlersTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final CrawlerEntityRepository crawlerEntityRepository = mock(CrawlerEntityRepository.class);
+    private final WebCrawlerServiceApplication application = new WebCrawlerServiceApplication();
+
+    @Before
+    public void setUp()
+    {
+        ReflectionTestUtils.setField(this.application, "crawlerEntityRepository", this.crawlerEntityRepository);
+        ReflectionTestUtils.setField(this.application, "frontierDirectory", folder.getRoot().getPath());
+    }
+
+    @Test
+    public void runningAndPausedCrawlersAreMarkedByTheirFrontier()
+    {
+        CrawlerEntity running = new CrawlerEntity("running", "running-1", "running", 2, null, null, 10, 1);
+        CrawlerEntity paused = new CrawlerEntity("paused", "paused-1", "paused", 5, null, null, 10, 1);
+        CrawlerEntity inMemory = new CrawlerEntity("memory", "memory-1", "running", 2, null, null, 10, 1);
+        CrawlerEntity lostPause = new CrawlerEntity("lost", "lost-1", "paused", 5, null, null, 10, 1);
+        PersistentFrontier.open(folder.getRoot(), "running-1", 4L * 1024 * 1024).close();
+        PersistentFrontier.open(folder.getRoot(), "paused-1", 4L * 1024 * 1024).close();
+        when(this.crawlerEntityRepository.findByStatusId(2)).thenReturn(Arrays.asList(running, inMemory));
+        when(this.crawlerEntityRepository.findByStatusId(5)).thenReturn(Arrays.asList(paused, lostPause));
+
+        this.application.markInterruptedCrawlers();
+
+        assertThat(running.getStatusId()).isEqualTo(3);
+        assertThat(paused.getStatusId()).isEqualTo(3);
+        assertThat(running.getStatus()).isEqualTo("interrupted");
+        assertThat(inMemory.getStatusId()).isEqualTo(7);
+        assertThat(inMemory.getStatus()).isEqualTo("failed");
+        assertThat(lostPause.getStatusId()).isEqualTo(7);
+        verify(this.crawlerEntityRepository).save(running);
+        verify(this.crawlerEntityRepository).save(paused);
+        verify(this.crawlerEntityRepository).save(inMemory);
+        verify(this.crawlerEntityRepository).save(lostPause);
+    }
+
+    @Test
+    public void anUnavailableDatabaseDoesNotStopTheService()
+    {
+        when(this.crawlerEntityRepository.findByStatusId(2))
+                .thenThrow(new DataAccessResourceFailureException("no database"));
+
+        this.application.markInterruptedCrawlers();
+    }
+}
@@ -0,0 +1,148 @@
+package de.hochschuletrier.de.webcrawlerservice;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local http server for tests, which answers with fixed responses and counts the requests per path
+ */
+public class StubHttpServer implements AutoCloseable
+{
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, StubResponse> responses;
+    private final Map<String, AtomicInteger> requestCounts;
+
+    public StubHttpServer() throws IOException
+    {
+        this.responses = new ConcurrentHashMap<>();
+        this.requestCounts = new ConcurrentHashMap<>();
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    /**
+     * Answer requests to the path with the given status, content type and body
+     */
+    public StubHttpServer respond(String path, int status, String contentType, String body)
+    {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", contentType);
+        return respond(path, status, headers, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Answer requests to the path with the given status, headers and body
+     */
+    public StubHttpServer respond(String path, int status, Map<String, String> headers, byte[] body)
+    {
+        this.responses.put(path, new StubResponse(status, headers, body, null));
+        return this;
+    }
+
+    /**
+     * Answer requests to the path with the given entity tag, content type and body. Requests whose If-None-Match
+     * header matches the entity tag are answered with 304 Not Modified.
+     */
+    public StubHttpServer respondWithETag(String path, String etag, String contentType, String body)
+    {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", contentType);
+        headers.put("ETag", etag);
+        this.responses.put(path, new StubResponse(200, headers, body.getBytes(StandardCharsets.UTF_8), etag));
+        return this;
+    }
+
+    /**
+     * @return absolute url of the path on this server
+     */
+    public String url(String path)
+    {
+        return "http://localhost:" + this.server.getAddress().getPort() + path;
+    }
+
+    /**
+     * @return number of requests the server received for the path
+     */
+    public int requestCount(String path)
+    {
+        AtomicInteger count = this.requestCounts.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return request counts of all requested paths
+     */
+    public Map<String, Integer> requestCounts()
+    {
+        Map<String, Integer> counts = new HashMap<>();
+        this.requestCounts.forEach((path, count) -> counts.put(path, count.get()));
+        return counts;
+    }
+
+    @Override
+    public void close()
+    {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        String path = exchange.getRequestURI().getRawPath();
+        this.requestCounts.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+        StubResponse response = this.responses.get(path);
+        if (response == null)
+        {
+            // the jdk server closes the connection after a 404, so clients must not reuse it
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Connection", "close");
+            response = new StubResponse(404, headers, new byte[0], null);
+        } else if (response.etag != null
+                && response.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+        {
+            response = new StubResponse(304, response.headers, new byte[0], response.etag);
+        }
+        response.headers.forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+        boolean hasBody = response.body.length > 0 && !"HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(response.status, hasBody ? response.body.length : -1);
+        if (hasBody)
+        {
+            try (OutputStream outputStream = exchange.getResponseBody())
+            {
+                outputStream.write(response.body);
+            }
+        }
+        exchange.close();
+    }
+
+    private static class StubResponse
+    {
+        private final int status;
+        private final Map<String, String> headers;
+        private final byte[] body;
+        private final String etag; // null if the response ignores conditional requests
+
+        private StubResponse(int status, Map<String, String> headers, byte[] body, String etag)
+        {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.etag = etag;
+        }
+    }
+}
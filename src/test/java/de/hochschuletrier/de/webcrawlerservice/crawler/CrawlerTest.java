@@ -0,0 +1,197 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler;
+
+import de.hochschuletrier.de.webcrawlerservice.StubHttpServer;
+import de.hochschuletrier.de.webcrawlerservice.crawler.journal.CrawlEvent;
+import de.hochschuletrier.de.webcrawlerservice.crawler.spiders.GenericSpider;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.UserAgent;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.WorkerExecutors;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.FileLinkEntity;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.CrawlerEntityRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.DeadLinkRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.FileLinkRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.WebPageEntityRepository;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+@RunWith(Parameterized.class)
+public class CrawlerTest
+{
+    @Parameterized.Parameters(name = "jsoupFetcher={0}, executionMode={1}")
+    public static Collection<Object[]> fetchers()
+    {
+        return Arrays.asList(new Object[][]{
+                {false, WorkerExecutors.PLATFORM}, {true, WorkerExecutors.PLATFORM},
+                {false, WorkerExecutors.VIRTUAL}, {true, WorkerExecutors.VIRTUAL}});
+    }
+
+    @Parameterized.Parameter
+    public boolean jsoupFetcher;
+
+    @Parameterized.Parameter(1)
+    public String executionMode;
+
+    private static final String NEWS = "<html><body><p>Nothing new today</p></body></html>";
+
+    private StubHttpServer server;
+
+    @Before
+    public void startServer() throws Exception
+    {
+        Assume.assumeTrue(WorkerExecutors.PLATFORM.equals(this.executionMode)
+                || WorkerExecutors.isVirtualThreadSupported());
+        this.server = new StubHttpServer()
+                .respond("/", 200, "text/html; charset=utf-8",
+                        "<html><body><a href=\"/a\">a</a><a href=\"/b\">b</a>"
+                                + "<a href=\"/file.pdf\">pdf</a></body></html>")
+                .respond("/a", 200, "text/html", "<html><body><a href=\"/\">home</a><a href=\"/b\">b</a>"
+                        + "<a href=\"/b#top\">b</a><a href=\"./b?utm_source=test\">b</a></body></html>")
+                .respond("/b", 200, "text/html", "<html><body><a href=\"/a\">a</a></body></html>")
+                .respond("/file.pdf", 200, "application/pdf", "%PDF-1.4")
+                .respondWithETag("/news", "\"v1\"", "text/html", NEWS);
+    }
+
+    @After
+    public void stopServer()
+    {
+        if (this.server != null)
+        {
+            this.server.close();
+        }
+    }
+
+    @Test
+    public void everyUrlIsRequestedOnlyOnce()
+    {
+        Crawler crawler = new GenericSpider("test", new ArrayList<>(Collections.singletonList("localhost")),
+                new ArrayList<>(Collections.singletonList(this.server.url("/"))), false, new ArrayList<>(),
+                mock(CrawlerEntityRepository.class), mock(DeadLinkRepository.class), mock(FileLinkRepository.class),
+                mock(WebPageEntityRepository.class));
+        crawler.setCrawlingDelay(0);
+        crawler.setJsoupFetcher(this.jsoupFetcher);
+        crawler.setExecutionMode(this.executionMode);
+
+        crawler.run(UserAgent.Default);
+
+        Map<String, Integer> requestCounts = this.server.requestCounts();
+        assertThat(requestCounts).containsKeys("/", "/a", "/b", "/file.pdf");
+        assertThat(requestCounts.values()).containsOnly(1);
+        assertThat(crawler.getAvoidedFetches()).isEqualTo(2);
+        assertThat(crawler.getJournal().count(CrawlEvent.Type.FETCH)).isEqualTo(4);
+        assertThat(crawler.getJournal().count(CrawlEvent.Type.STORED)).isEqualTo(3);
+    }
+
+    @Test
+    public void unmodifiedPagesAreNotDownloadedAgainOnRevisit()
+    {
+        Crawler crawler = new GenericSpider("test", new ArrayList<>(Collections.singletonList("localhost")),
+                new ArrayList<>(Collections.singletonList(this.server.url("/news"))), true, new ArrayList<>(),
+                mock(CrawlerEntityRepository.class), mock(DeadLinkRepository.class), mock(FileLinkRepository.class),
+                mock(WebPageEntityRepository.class));
+        crawler.setCrawlingDelay(0);
+        crawler.setJsoupFetcher(this.jsoupFetcher);
+        crawler.setExecutionMode(this.executionMode);
+        crawler.setRevisitIntervals(0, 0);
+        crawler.setMaxPages(2);
+
+        crawler.run(UserAgent.Default);
+
+        assertThat(this.server.requestCount("/news")).isEqualTo(2);
+        assertThat(crawler.getNotModifiedPages()).isEqualTo(1);
+        assertThat(crawler.getBytesSaved()).isEqualTo(NEWS.length());
+    }
+
+    @Test
+    public void robotsTxtIsObeyedWithItsCrawlDelay()
+    {
+        this.server.respond("/robots.txt", 200, "text/plain", "User-agent: *\nDisallow: /b\nCrawl-delay: 0.2\n");
+        Crawler crawler = new GenericSpider("test", new ArrayList<>(Collections.singletonList("localhost")),
+                new ArrayList<>(Collections.singletonList(this.server.url("/"))), false, new ArrayList<>(),
+                mock(CrawlerEntityRepository.class), mock(DeadLinkRepository.class), mock(FileLinkRepository.class),
+                mock(WebPageEntityRepository.class));
+        crawler.setCrawlingDelay(0);
+        crawler.setJsoupFetcher(this.jsoupFetcher);
+        crawler.setExecutionMode(this.executionMode);
+        long start = System.currentTimeMillis();
+
+        crawler.run(UserAgent.Default);
+
+        Map<String, Integer> requestCounts = this.server.requestCounts();
+        assertThat(requestCounts).containsKeys("/robots.txt", "/", "/a", "/file.pdf").doesNotContainKey("/b");
+        assertThat(requestCounts.values()).containsOnly(1);
+        assertThat(crawler.getRobotsDenied()).isEqualTo(1);
+        // three pages of the host, each one at least Crawl-delay after the previous one
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(400);
+    }
+
+    @Test
+    public void sitemapUrlsAreAddedToTheFrontier()
+    {
+        this.server.respond("/robots.txt", 200, "text/plain", "Sitemap: " + this.server.url("/sitemap-pages.xml"))
+                .respond("/sitemap-pages.xml", 200, "application/xml", "<urlset><url><loc>"
+                        + this.server.url("/news") + "</loc></url><url><loc>" + this.server.url("/a")
+                        + "</loc></url></urlset>");
+        Crawler crawler = new GenericSpider("test", new ArrayList<>(Collections.singletonList("localhost")),
+                new ArrayList<>(Collections.singletonList(this.server.url("/b"))), false, new ArrayList<>(),
+                mock(CrawlerEntityRepository.class), mock(DeadLinkRepository.class), mock(FileLinkRepository.class),
+                mock(WebPageEntityRepository.class));
+        crawler.setCrawlingDelay(0);
+        crawler.setJsoupFetcher(this.jsoupFetcher);
+        crawler.setExecutionMode(this.executionMode);
+
+        crawler.run(UserAgent.Default);
+
+        Map<String, Integer> requestCounts = this.server.requestCounts();
+        assertThat(requestCounts).containsKeys("/sitemap-pages.xml", "/news", "/a", "/b", "/").doesNotContainKey(
+                "/sitemap.xml");
+        assertThat(requestCounts.values()).containsOnly(1);
+        assertThat(crawler.getSitemapUrls()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void streamingExtractionFindsTheSameUrlsAndFileLinks()
+    {
+        List<String> fileLinks = new CopyOnWriteArrayList<>();
+        FileLinkRepository fileLinkRepository = mock(FileLinkRepository.class);
+        doAnswer(invocation ->
+        {
+            for (Object entity : (Iterable<?>) invocation.getArgument(0))
+            {
+                fileLinks.add(((FileLinkEntity) entity).getFileURL());
+            }
+            return null;
+        }).when(fileLinkRepository).saveAll(anyIterable());
+        Crawler crawler = new GenericSpider("test", new ArrayList<>(Collections.singletonList("localhost")),
+                new ArrayList<>(Collections.singletonList(this.server.url("/"))), false, new ArrayList<>(),
+                mock(CrawlerEntityRepository.class), mock(DeadLinkRepository.class), fileLinkRepository,
+                mock(WebPageEntityRepository.class));
+        crawler.setCrawlingDelay(0);
+        crawler.setJsoupFetcher(this.jsoupFetcher);
+        crawler.setExecutionMode(this.executionMode);
+        crawler.setStreamingExtraction(true);
+
+        crawler.run(UserAgent.Default);
+
+        Map<String, Integer> requestCounts = this.server.requestCounts();
+        assertThat(requestCounts).containsKeys("/", "/a", "/b", "/file.pdf");
+        assertThat(requestCounts.values()).containsOnly(1);
+        assertThat(crawler.getAvoidedFetches()).isEqualTo(2);
+        assertThat(fileLinks).containsExactly(this.server.url("/file.pdf"));
+    }
+}
@@ -0,0 +1,227 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.cluster;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.Crawler;
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.HostScheduler;
+import de.hochschuletrier.de.webcrawlerservice.crawler.spiders.GenericSpider;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.FetchResponse;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageFetcher;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.UserAgent;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.CrawlerEntityRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.DeadLinkRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.FileLinkRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.WebPageEntityRepository;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class CrawlShardTest
+{
+    private static final int HOSTS = 8;
+
+    private final ClusterNode nodeA = new ClusterNode("node-a", "http://localhost:8081");
+    private final ClusterNode nodeB = new ClusterNode("node-b", "http://localhost:8082");
+    private final ClusterNode nodeC = new ClusterNode("node-c", "http://localhost:8083");
+
+    /**
+     * Delivers the batches to the shards of this JVM, like the /cluster/links endpoint of the receiving instance
+     */
+    private final LinkTransport inJvmTransport = (node, batch) ->
+    {
+        if (!CrawlShard.deliver(node, batch))
+        {
+            throw new IOException("Crawl does not run on " + node);
+        }
+    };
+
+    /**
+     * @return an url of a host the node owns
+     */
+    private static String urlOwnedBy(HashRing ring, ClusterNode node, int skip)
+    {
+        for (int i = 0; ; i++)
+        {
+            String host = "host" + i + ".example.com";
+            if (ring.ownerOf(host).equals(node) && skip-- == 0)
+            {
+                return "http://" + host + "/";
+            }
+        }
+    }
+
+    @Test
+    public void linksAreForwardedInBatchesToTheOwnerOfTheirHost() throws Exception
+    {
+        List<LinkBatch> sent = new CopyOnWriteArrayList<>();
+        LinkTransport transport = (node, batch) ->
+        {
+            sent.add(batch);
+            this.inJvmTransport.send(node, batch);
+        };
+        CrawlShard shardA = new CrawlShard("forward", null, new StaticClusterMembership(nodeA, nodeA, nodeB),
+                transport, 2, 60000, 60000, 0);
+        CrawlShard shardB = new CrawlShard("forward", null, new StaticClusterMembership(nodeB, nodeA, nodeB),
+                transport, 2, 60000, 60000, 0);
+        List<String> receivedByB = new CopyOnWriteArrayList<>();
+        shardB.attach(receivedByB::addAll);
+        try
+        {
+            HashRing ring = shardA.getRing();
+            List<String> urls = Arrays.asList(urlOwnedBy(ring, nodeB, 0), urlOwnedBy(ring, nodeB, 1),
+                    urlOwnedBy(ring, nodeB, 2));
+
+            assertThat(shardA.isLocal(urlOwnedBy(ring, nodeA, 0))).isTrue();
+            assertThat(shardA.isLocal(urls.get(0))).isFalse();
+            for (String url : urls)
+            {
+                shardA.forward(url);
+                shardA.forward(url);
+            }
+            shardA.flush();
+
+            assertThat(receivedByB).containsExactlyInAnyOrderElementsOf(urls);
+            assertThat(sent).allSatisfy(batch -> assertThat(batch.getUrls().size()).isLessThanOrEqualTo(2));
+            assertThat(shardA.getForwarded()).isEqualTo(3);
+            assertThat(shardB.getReceived()).isEqualTo(3);
+        } finally
+        {
+            shardA.close();
+            shardB.close();
+        }
+    }
+
+    @Test
+    public void urlsOfALeavingNodeAreRoutedToTheRemainingNodes()
+    {
+        StaticClusterMembership membershipA = new StaticClusterMembership(nodeA, nodeA, nodeB, nodeC);
+        CrawlShard shardA = new CrawlShard("rebalance", null, membershipA, this.inJvmTransport, 10, 60000, 60000, 0);
+        CrawlShard shardB = new CrawlShard("rebalance", null, new StaticClusterMembership(nodeB, nodeA, nodeB),
+                this.inJvmTransport, 10, 60000, 60000, 0);
+        Set<String> received = ConcurrentHashMap.newKeySet();
+        shardA.attach(received::addAll);
+        shardB.attach(received::addAll);
+        try
+        {
+            // node c does not run the crawl, the batch fails and stays pending
+            List<String> urls = new ArrayList<>();
+            for (int i = 0; i < 5; i++)
+            {
+                urls.add(urlOwnedBy(shardA.getRing(), nodeC, i));
+                shardA.forward(urls.get(i));
+            }
+            shardA.flush();
+            assertThat(received).isEmpty();
+
+            membershipA.setLiveNodes(Arrays.asList(nodeA, nodeB));
+            shardA.refreshRing();
+            shardA.flush();
+
+            assertThat(received).containsExactlyInAnyOrderElementsOf(urls);
+            assertThat(shardA.getRing().getNodes()).containsExactly(nodeA, nodeB);
+        } finally
+        {
+            shardA.close();
+            shardB.close();
+        }
+    }
+
+    @Test
+    public void shardedCrawlersOnlyFetchTheHostsTheyOwn() throws Exception
+    {
+        List<String> seeds = Collections.singletonList("http://site0.example.com/");
+        Map<ClusterNode, List<String>> requested = new ConcurrentHashMap<>();
+        List<Crawler> crawlers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (ClusterNode node : Arrays.asList(nodeA, nodeB))
+        {
+            Crawler crawler = new GenericSpider("sharded", new ArrayList<>(Collections.singletonList("example")),
+                    new ArrayList<>(seeds), false, new ArrayList<>(), mock(CrawlerEntityRepository.class),
+                    mock(DeadLinkRepository.class), mock(FileLinkRepository.class),
+                    mock(WebPageEntityRepository.class));
+            crawler.setCrawlingDelay(0);
+            crawler.setRobotsEnabled(false);
+            crawler.setSitemaps(false, 0);
+            requested.put(node, new CopyOnWriteArrayList<>());
+            crawler.setPageFetcher(new SitePageFetcher(requested.get(node)));
+            crawler.setShard(new CrawlShard("sharded", null, new StaticClusterMembership(node, nodeA, nodeB),
+                    this.inJvmTransport, 2, 20, 60000, 500));
+            crawlers.add(crawler);
+            threads.add(new Thread(() -> crawler.run(UserAgent.Default)));
+        }
+        HashRing ring = crawlers.get(0).getShard().getRing();
+
+        threads.forEach(Thread::start);
+        for (Thread thread : threads)
+        {
+            thread.join(20000);
+        }
+
+        List<String> all = new ArrayList<>(requested.get(nodeA));
+        all.addAll(requested.get(nodeB));
+        assertThat(all).hasSize(HOSTS * 2).doesNotHaveDuplicates();
+        for (ClusterNode node : Arrays.asList(nodeA, nodeB))
+        {
+            assertThat(requested.get(node)).isNotEmpty()
+                    .allSatisfy(url -> assertThat(ring.ownerOf(HostScheduler.hostOf(url))).isEqualTo(node));
+        }
+        assertThat(crawlers.get(0).getShard().getForwarded()).isPositive();
+        assertThat(crawlers.get(1).getShard().getForwarded()).isPositive();
+    }
+
+    /**
+     * Serves HOSTS sites, the home page of every site links to a page of the site and to the next site
+     */
+    private static class SitePageFetcher implements PageFetcher
+    {
+        private final List<String> requested;
+
+        private SitePageFetcher(List<String> requested)
+        {
+            this.requested = requested;
+        }
+
+        @Override
+        public CompletableFuture<FetchResponse> fetch(String url, Map<String, String> headers)
+        {
+            this.requested.add(url);
+            String host = HostScheduler.hostOf(url);
+            int site = Integer.parseInt(host.substring(4, host.indexOf('.')));
+            String body = url.endsWith("/page") ? "<html><body>page</body></html>"
+                    : "<html><body><a href=\"/page\">page</a><a href=\"http://site" + (site + 1) % HOSTS
+                    + ".example.com/\">next</a></body></html>";
+            return CompletableFuture.completedFuture(new FetchResponse(url, 200,
+                    Collections.singletonMap("Content-Type", "text/html"), body.getBytes(StandardCharsets.UTF_8),
+                    false));
+        }
+
+        @Override
+        public CompletableFuture<FetchResponse> fetchFile(String url, int maxBodySize)
+        {
+            return fetch(url, Collections.emptyMap());
+        }
+
+        @Override
+        public InputStream openStream(String url) throws IOException
+        {
+            throw new IOException("No sitemaps");
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.cluster;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HashRingTest
+{
+    private static final int HOSTS = 20000;
+
+    private static List<ClusterNode> nodes(int count)
+    {
+        List<ClusterNode> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            nodes.add(new ClusterNode("10.0.0." + i + ":8080", "http://10.0.0." + i + ":8080"));
+        }
+        return nodes;
+    }
+
+    private static Map<String, ClusterNode> owners(HashRing ring)
+    {
+        Map<String, ClusterNode> owners = new HashMap<>();
+        for (int i = 0; i < HOSTS; i++)
+        {
+            String host = "host" + i + ".example.com";
+            owners.put(host, ring.ownerOf(host));
+        }
+        return owners;
+    }
+
+    @Test
+    public void hostsAreSpreadEvenlyAcrossTheNodes()
+    {
+        Map<ClusterNode, Integer> counts = new HashMap<>();
+        owners(new HashRing(nodes(4), HashRing.DEFAULT_VIRTUAL_NODES))
+                .values().forEach(node -> counts.merge(node, 1, Integer::sum));
+
+        assertThat(counts).hasSize(4);
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(HOSTS / 4 * 7 / 10,
+                HOSTS / 4 * 13 / 10));
+    }
+
+    @Test
+    public void onlyTheHostsOfAJoiningOrLeavingNodeMove()
+    {
+        List<ClusterNode> nodes = nodes(5);
+        Map<String, ClusterNode> before = owners(new HashRing(nodes.subList(0, 4), HashRing.DEFAULT_VIRTUAL_NODES));
+        Map<String, ClusterNode> joined = owners(new HashRing(nodes, HashRing.DEFAULT_VIRTUAL_NODES));
+        Map<String, ClusterNode> left = owners(new HashRing(Arrays.asList(nodes.get(0), nodes.get(2), nodes.get(3)),
+                HashRing.DEFAULT_VIRTUAL_NODES));
+
+        int moved = 0;
+        for (Map.Entry<String, ClusterNode> owner : before.entrySet())
+        {
+            if (!joined.get(owner.getKey()).equals(owner.getValue()))
+            {
+                assertThat(joined.get(owner.getKey())).isEqualTo(nodes.get(4));
+                moved++;
+            }
+            if (!owner.getValue().equals(nodes.get(1)))
+            {
+                assertThat(left.get(owner.getKey())).isEqualTo(owner.getValue());
+            }
+        }
+        assertThat(moved).isBetween(HOSTS / 5 * 7 / 10, HOSTS / 5 * 13 / 10);
+    }
+
+    @Test
+    public void everyInstanceBuildsTheSameRing()
+    {
+        List<ClusterNode> nodes = nodes(3);
+        List<ClusterNode> reversed = Arrays.asList(nodes.get(2), nodes.get(1), nodes.get(0));
+
+        assertThat(owners(new HashRing(reversed, HashRing.DEFAULT_VIRTUAL_NODES)))
+                .isEqualTo(owners(new HashRing(nodes, HashRing.DEFAULT_VIRTUAL_NODES)));
+        assertThat(new HashRing(reversed, 8).hasSameNodes(new HashRing(nodes, 8))).isTrue();
+        assertThat(new HashRing(nodes.subList(0, 2), 8).hasSameNodes(new HashRing(nodes, 8))).isFalse();
+    }
+}
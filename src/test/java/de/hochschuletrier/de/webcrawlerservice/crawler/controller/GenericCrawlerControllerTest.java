@@ -0,0 +1,90 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.PersistentFrontier;
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.UrlFrontier.UrlState;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.CrawlerEntity;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.CrawlerEntityRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.DeadLinkRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.FileLinkRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.WebPageEntityRepository;
+import de.hochschuletrier.de.webcrawlerservice.utils.GenericCrawlerData;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class GenericCrawlerControllerTest
+{
+    private static final long CACHE_SIZE = 4L * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CrawlerEntityRepository crawlerEntityRepository = mock(CrawlerEntityRepository.class);
+    private GenericCrawlerController controller;
+
+    @Before
+    public void setUp()
+    {
+        this.controller = new GenericCrawlerController();
+        ReflectionTestUtils.setField(this.controller, "objectMapper", this.objectMapper);
+        ReflectionTestUtils.setField(this.controller, "frontierDirectory", folder.getRoot().getPath());
+        ReflectionTestUtils.setField(this.controller, "executionMode", "platform");
+        ReflectionTestUtils.setField(this.controller, "writeBehindBatchSize", 100);
+        ReflectionTestUtils.setField(this.controller, "writeBehindFlushInterval", 1000L);
+        ReflectionTestUtils.setField(this.controller, "writeBehindCapacity", 1000);
+    }
+
+    @Test
+    public void interruptedCrawlerResumesFromItsFrontier() throws Exception
+    {
+        GenericCrawlerData genericCrawlerData = new GenericCrawlerData();
+        genericCrawlerData.setName("resumed");
+        genericCrawlerData.setSeedURLs(Collections.singletonList("http://localhost/"));
+        genericCrawlerData.setAllowedDomains(Collections.singletonList("localhost"));
+        genericCrawlerData.setMemoryBudget(16);
+        genericCrawlerData.setPersistentFrontier(true);
+        PersistentFrontier frontier = PersistentFrontier.open(folder.getRoot(), "resumed-1", CACHE_SIZE);
+        frontier.putMetadata("crawlerData", this.objectMapper.writeValueAsString(genericCrawlerData));
+        frontier.putIfAbsent("localhost/", UrlState.VISITED);
+        frontier.close();
+        CrawlerEntity crawlerEntity = new CrawlerEntity("resumed", "resumed-1", "interrupted", 3, null, null, 1, 1);
+
+        assertThat(resume(crawlerEntity)).isTrue();
+        assertThat(this.controller.getUniqueName()).isEqualTo("resumed-1");
+        this.controller.cancel();
+
+        frontier = PersistentFrontier.open(folder.getRoot(), "resumed-1", CACHE_SIZE);
+        try
+        {
+            assertThat(frontier.get("localhost/")).isEqualTo(UrlState.VISITED);
+            assertThat(this.objectMapper.readValue(frontier.getMetadata("crawlerData"), GenericCrawlerData.class)
+                    .getMemoryBudget()).isEqualTo(16);
+        } finally
+        {
+            frontier.close();
+        }
+    }
+
+    @Test
+    public void crawlerWithoutFrontierIsNotResumed()
+    {
+        CrawlerEntity crawlerEntity = new CrawlerEntity("memory", "memory-1", "interrupted", 3, null, null, 1, 1);
+
+        assertThat(resume(crawlerEntity)).isFalse();
+    }
+
+    private boolean resume(CrawlerEntity crawlerEntity)
+    {
+        return this.controller.initResume(crawlerEntity, this.crawlerEntityRepository,
+                mock(DeadLinkRepository.class), mock(WebPageEntityRepository.class), mock(FileLinkRepository.class));
+    }
+}
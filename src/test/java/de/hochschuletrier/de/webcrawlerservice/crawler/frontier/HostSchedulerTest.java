@@ -0,0 +1,164 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.frontier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class HostSchedulerTest
+{
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void shutdown()
+    {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void aHostIsHandedOutToOneWorkerAtATime() throws Exception
+    {
+        HostScheduler scheduler = new HostScheduler(0, 10);
+        scheduler.add("http://a.example/1");
+        scheduler.add("http://a.example/2");
+        scheduler.add("http://b.example/1");
+
+        assertThat(scheduler.take()).isEqualTo("http://a.example/1");
+        assertThat(scheduler.take()).isEqualTo("http://b.example/1");
+        assertThat(scheduler.size()).isEqualTo(1);
+        assertThat(scheduler.inFlight()).isEqualTo(2);
+
+        Future<String> next = this.executor.submit(scheduler::take);
+        assertBlocked(next);
+        scheduler.release("http://a.example/1");
+        assertThat(next.get(1, TimeUnit.SECONDS)).isEqualTo("http://a.example/2");
+        assertThat(scheduler.size()).isZero();
+        assertThat(scheduler.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    public void aHostWaitsForItsDelayWhileOtherHostsAreCrawled() throws Exception
+    {
+        HostScheduler scheduler = new HostScheduler(300, 10);
+        scheduler.setHostDelay("SLOW.example", 600);
+        scheduler.add("http://a.example/1");
+        scheduler.add("http://a.example/2");
+        scheduler.add("http://slow.example/1");
+        scheduler.add("http://slow.example/2");
+
+        assertThat(scheduler.take()).isEqualTo("http://a.example/1");
+        assertThat(scheduler.take()).isEqualTo("http://slow.example/1");
+        long released = System.currentTimeMillis();
+        scheduler.release("http://slow.example/1");
+        scheduler.release("http://a.example/1");
+        scheduler.add("http://b.example/1");
+
+        assertThat(scheduler.take()).isEqualTo("http://b.example/1");
+        assertThat(System.currentTimeMillis() - released).isLessThan(300);
+        assertThat(scheduler.take()).isEqualTo("http://a.example/2");
+        assertThat(System.currentTimeMillis() - released).isGreaterThanOrEqualTo(300);
+        assertThat(scheduler.take()).isEqualTo("http://slow.example/2");
+        assertThat(System.currentTimeMillis() - released).isGreaterThanOrEqualTo(600);
+    }
+
+    @Test
+    public void anUnrequestedUrlReleasesItsHostAtOnce() throws Exception
+    {
+        HostScheduler scheduler = new HostScheduler(60000, 10);
+        scheduler.add("http://a.example/1");
+        scheduler.add("http://a.example/2");
+
+        assertThat(scheduler.take()).isEqualTo("http://a.example/1");
+        scheduler.release("http://a.example/1", false);
+        scheduler.release("http://a.example/1", false);
+        scheduler.release("http://unknown.example/", true);
+        assertThat(scheduler.inFlight()).isZero();
+        assertThat(scheduler.take()).isEqualTo("http://a.example/2");
+        assertThat(scheduler.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    public void maxInFlightLimitsTheHostsCrawledAtTheSameTime() throws Exception
+    {
+        HostScheduler scheduler = new HostScheduler(0, 1);
+        scheduler.add("http://a.example/1");
+        scheduler.add("http://b.example/1");
+
+        assertThat(scheduler.take()).isEqualTo("http://a.example/1");
+        Future<String> next = this.executor.submit(scheduler::take);
+        assertBlocked(next);
+        scheduler.release("http://a.example/1");
+        assertThat(next.get(1, TimeUnit.SECONDS)).isEqualTo("http://b.example/1");
+    }
+
+    @Test
+    public void takeWaitsWhileUrlsAreInFlightAndEndsWhenAllAreDone() throws Exception
+    {
+        HostScheduler scheduler = new HostScheduler(0, 10);
+        scheduler.add("http://a.example/1");
+        assertThat(scheduler.take()).isEqualTo("http://a.example/1");
+
+        // an url in flight may still add new urls, so an empty queue does not end the crawl
+        Future<String> next = this.executor.submit(scheduler::take);
+        assertBlocked(next);
+        scheduler.add("http://b.example/1");
+        assertThat(next.get(1, TimeUnit.SECONDS)).isEqualTo("http://b.example/1");
+
+        scheduler.release("http://a.example/1");
+        next = this.executor.submit(scheduler::take);
+        assertBlocked(next);
+        scheduler.release("http://b.example/1");
+        assertThat(next.get(1, TimeUnit.SECONDS)).isNull();
+        assertThat(scheduler.take()).isNull();
+    }
+
+    @Test
+    public void suspendedSchedulerKeepsItsUrls() throws Exception
+    {
+        HostScheduler scheduler = new HostScheduler(0, 10);
+        scheduler.add("http://a.example/1");
+        scheduler.add("http://a.example/2");
+        assertThat(scheduler.take()).isEqualTo("http://a.example/1");
+
+        Future<String> next = this.executor.submit(scheduler::take);
+        assertBlocked(next);
+        scheduler.setSuspended(true);
+        assertThat(next.get(1, TimeUnit.SECONDS)).isNull();
+        assertThat(scheduler.remaining()).containsExactly("http://a.example/2");
+
+        scheduler.release("http://a.example/1");
+        scheduler.setSuspended(false);
+        assertThat(scheduler.take()).isEqualTo("http://a.example/2");
+    }
+
+    @Test
+    public void awaitIdleWaitsForAllReleases() throws Exception
+    {
+        HostScheduler scheduler = new HostScheduler(0, 10);
+        scheduler.add("http://a.example/1");
+        scheduler.take();
+
+        assertThat(scheduler.awaitIdle(50)).isFalse();
+        scheduler.release("http://a.example/1");
+        assertThat(scheduler.awaitIdle(50)).isTrue();
+    }
+
+    private static void assertBlocked(Future<String> future) throws Exception
+    {
+        try
+        {
+            future.get(200, TimeUnit.MILLISECONDS);
+            fail("take returned before the scheduler had an url to hand out");
+        } catch (TimeoutException e)
+        {
+            // still waiting
+        }
+    }
+}
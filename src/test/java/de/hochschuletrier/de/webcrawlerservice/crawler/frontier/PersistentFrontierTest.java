@@ -0,0 +1,99 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.frontier;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.UrlFrontier.UrlState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersistentFrontierTest
+{
+    private static final long CACHE_SIZE = 4L * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void statesAndQueueSurviveAReopen()
+    {
+        PersistentFrontier frontier = PersistentFrontier.open(folder.getRoot(), "test", CACHE_SIZE);
+        for (String url : new String[]{"http://a.example/1", "http://a.example/2", "http://a.example/3"})
+        {
+            frontier.putIfAbsent(url, UrlState.QUEUED);
+            frontier.enqueue(url);
+        }
+        assertThat(frontier.loadHead(2)).containsExactly("http://a.example/1", "http://a.example/2");
+        frontier.put("http://a.example/1", UrlState.VISITED);
+        frontier.setLastModified("http://a.example/1", new Date(1000));
+        frontier.setValidators("http://a.example/1", "\"a1\"", 12);
+        frontier.done("http://a.example/1");
+        frontier.putMetadata("crawlerData", "{}");
+        frontier.close();
+
+        assertThat(PersistentFrontier.exists(folder.getRoot(), "test")).isTrue();
+        frontier = PersistentFrontier.open(folder.getRoot(), "test", CACHE_SIZE);
+        try
+        {
+            assertThat(frontier.get("http://a.example/1")).isEqualTo(UrlState.VISITED);
+            assertThat(frontier.get("http://a.example/3")).isEqualTo(UrlState.QUEUED);
+            assertThat(frontier.count(UrlState.VISITED)).isEqualTo(1);
+            assertThat(frontier.count(UrlState.QUEUED)).isEqualTo(2);
+            assertThat(frontier.countWithLastModified()).isEqualTo(1);
+            assertThat(frontier.getLastModified("http://a.example/1")).isEqualTo(new Date(1000));
+            assertThat(frontier.getETag("http://a.example/1")).isEqualTo("\"a1\"");
+            assertThat(frontier.getContentLength("http://a.example/1")).isEqualTo(12);
+            assertThat(frontier.getMetadata("crawlerData")).isEqualTo("{}");
+            assertThat(frontier.recoverHead()).containsExactly("http://a.example/2");
+            assertThat(frontier.getQueuedOnDisk()).isEqualTo(1);
+            frontier.enqueue("http://a.example/4");
+            assertThat(frontier.loadHead(10)).containsExactly("http://a.example/3", "http://a.example/4");
+        } finally
+        {
+            frontier.close();
+        }
+    }
+
+    @Test
+    public void resumedFrontierQueuesTheUrlsWhichWereInFlight() throws Exception
+    {
+        UrlFrontier frontier = new UrlFrontier(0, 10, PersistentFrontier.open(folder.getRoot(), "test", CACHE_SIZE));
+        frontier.offer("http://a.example/1");
+        frontier.offer("http://b.example/1");
+        frontier.offer("http://a.example/2");
+        frontier.release(frontier.take());
+        assertThat(frontier.take()).isEqualTo("http://b.example/1");
+        frontier.close();
+
+        frontier = new UrlFrontier(0, 10, PersistentFrontier.open(folder.getRoot(), "test", CACHE_SIZE));
+        try
+        {
+            assertThat(frontier.isVisited("http://a.example/1")).isTrue();
+            assertThat(frontier.isQueued("http://b.example/1")).isTrue();
+            assertThat(frontier.offer("http://a.example/1")).isFalse();
+            assertThat(frontier.size()).isEqualTo(2);
+            assertThat(frontier.remaining()).containsExactlyInAnyOrder("http://b.example/1", "http://a.example/2");
+            assertThat(frontier.count(UrlState.IN_FLIGHT)).isZero();
+        } finally
+        {
+            frontier.close();
+        }
+    }
+
+    @Test
+    public void cacheSizeCanBeChangedWhileOpen()
+    {
+        PersistentFrontier frontier = PersistentFrontier.open(folder.getRoot(), "test", CACHE_SIZE);
+        try
+        {
+            assertThat(frontier.getCacheSize()).isEqualTo(CACHE_SIZE);
+            frontier.setCacheSize(2 * CACHE_SIZE);
+            assertThat(frontier.getCacheSize()).isEqualTo(2 * CACHE_SIZE);
+        } finally
+        {
+            frontier.close();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.frontier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RevisitSchedulerTest
+{
+    private static final String URL = "http://localhost/news";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void unchangedPagesBackOffUpToTheMaxInterval()
+    {
+        RevisitScheduler revisits = new RevisitScheduler(null);
+        revisits.setIntervals(1000, 16000);
+
+        long visit = revisits.visited(URL, null, 0x0F0F0F0FL, 0);
+        assertThat(revisits.getInterval(URL)).isEqualTo(1000);
+        for (long expected : new long[]{2000, 4000, 8000, 16000, 16000})
+        {
+            visit = revisits.visited(URL, false, 0, visit);
+            assertThat(revisits.getInterval(URL)).isEqualTo(expected);
+        }
+        // a text which only differs in a few bits is a near duplicate of the last one
+        revisits.visited(URL, null, 0x0F0F0F0EL, visit);
+        assertThat(revisits.getInterval(URL)).isEqualTo(16000);
+    }
+
+    @Test
+    public void changingPagesAreCheckedAtTheMinInterval()
+    {
+        RevisitScheduler revisits = new RevisitScheduler(null);
+        revisits.setIntervals(1000, 16000);
+
+        long visit = revisits.visited(URL, null, 0, 0);
+        for (int i = 0; i < 5; i++)
+        {
+            visit = revisits.visited(URL, true, 0, visit);
+        }
+
+        assertThat(revisits.getInterval(URL)).isEqualTo(1000);
+    }
+
+    @Test
+    public void sitemapLastModifiedAfterTheLastVisitMakesAPageDue()
+    {
+        RevisitScheduler revisits = new RevisitScheduler(null);
+        revisits.setIntervals(1000, 16000);
+        revisits.visited(URL, null, 0, 0);
+
+        assertThat(revisits.lastModified(URL, 0, 500)).isFalse();
+        assertThat(revisits.lastModified("http://localhost/unknown", 400, 500)).isFalse();
+        assertThat(revisits.lastModified(URL, 400, 500)).isTrue();
+        assertThat(revisits.pollDue(500)).containsExactly(URL);
+    }
+
+    @Test
+    public void dueUrlsArePolledOnceInVisitOrder()
+    {
+        RevisitScheduler revisits = new RevisitScheduler(null);
+        revisits.setIntervals(1000, 16000);
+        revisits.visited("http://localhost/b", null, 0, 500);
+        revisits.visited("http://localhost/a", null, 0, 0);
+
+        assertThat(revisits.nextVisit()).isEqualTo(1000);
+        assertThat(revisits.pollDue(999)).isEmpty();
+        assertThat(revisits.pollDue(1500)).containsExactly("http://localhost/a", "http://localhost/b");
+        assertThat(revisits.pollDue(1500)).isEmpty();
+        assertThat(revisits.nextVisit()).isEqualTo(RevisitScheduler.NONE);
+    }
+
+    @Test
+    public void theScheduleSurvivesARestart()
+    {
+        File baseDirectory = this.folder.getRoot();
+        PersistentFrontier persistent = PersistentFrontier.open(baseDirectory, "revisits", 1 << 20);
+        RevisitScheduler revisits = new UrlFrontier(0, 1, persistent).getRevisits();
+        revisits.setIntervals(1000, 16000);
+        long visit = revisits.visited(URL, null, 0, 0);
+        long nextVisit = revisits.visited(URL, false, 0, visit);
+        persistent.close();
+
+        persistent = PersistentFrontier.open(baseDirectory, "revisits", 1 << 20);
+        RevisitScheduler restored = new UrlFrontier(0, 1, persistent).getRevisits();
+        persistent.close();
+
+        assertThat(restored.nextVisit()).isEqualTo(nextVisit);
+        assertThat(restored.getInterval(URL)).isEqualTo(2000);
+    }
+}
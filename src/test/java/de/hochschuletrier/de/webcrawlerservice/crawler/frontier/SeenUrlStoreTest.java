@@ -0,0 +1,118 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.frontier;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.UrlFrontier.UrlState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SeenUrlStoreTest
+{
+    private static final String URL = "http://localhost/page/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void growingKeepsStatesAndValidators()
+    {
+        SeenUrlStore store = new SeenUrlStore(SeenUrlStore.DEFAULT_MEMORY_BUDGET, folder.getRoot());
+        for (int i = 0; i < 10000; i++)
+        {
+            assertThat(store.putIfAbsent(URL + i, UrlState.QUEUED)).isTrue();
+        }
+        store.setLastModified(URL + 1, new Date(1000));
+        store.setValidators(URL + 2, "\"v2\"", 42);
+        for (int i = 10000; i < 50000; i++)
+        {
+            store.putIfAbsent(URL + i, i % 2 == 0 ? UrlState.VISITED : UrlState.QUEUED);
+        }
+
+        assertThat(store.isSpilled()).isFalse();
+        assertThat(store.size()).isEqualTo(50000);
+        assertThat(store.putIfAbsent(URL + 0, UrlState.VISITED)).isFalse();
+        assertThat(store.get(URL + 0)).isEqualTo(UrlState.QUEUED);
+        assertThat(store.get(URL + 49998)).isEqualTo(UrlState.VISITED);
+        assertThat(store.get(URL + 50000)).isNull();
+        assertThat(store.getLastModified(URL + 1)).isEqualTo(new Date(1000));
+        assertThat(store.getETag(URL + 2)).isEqualTo("\"v2\"");
+        assertThat(store.getContentLength(URL + 2)).isEqualTo(42);
+        assertThat(store.count(UrlState.VISITED)).isEqualTo(20000);
+        assertThat(store.count(UrlState.QUEUED)).isEqualTo(30000);
+        assertThat(store.countWithLastModified()).isEqualTo(1);
+    }
+
+    @Test
+    public void tableSpillsToDiskBeyondTheBudget()
+    {
+        SeenUrlStore store = new SeenUrlStore(64 * 1024, folder.getRoot());
+        for (int i = 0; i < 20000; i++)
+        {
+            store.putIfAbsent(URL + i, UrlState.QUEUED);
+        }
+
+        assertThat(store.isSpilled()).isTrue();
+        assertThat(store.getByteUsage()).isGreaterThan(64 * 1024);
+        for (int i = 0; i < 20000; i++)
+        {
+            assertThat(store.get(URL + i)).isEqualTo(UrlState.QUEUED);
+        }
+        assertThat(store.get(URL + 20000)).isNull();
+    }
+
+    @Test
+    public void replaceOnlyChangesTheExpectedState()
+    {
+        SeenUrlStore store = new SeenUrlStore(SeenUrlStore.DEFAULT_MEMORY_BUDGET, folder.getRoot());
+        store.putIfAbsent(URL, UrlState.QUEUED);
+
+        assertThat(store.replace(URL, UrlState.IN_FLIGHT, UrlState.VISITED)).isFalse();
+        assertThat(store.replace(URL + "unknown", UrlState.QUEUED, UrlState.IN_FLIGHT)).isFalse();
+        assertThat(store.replace(URL, UrlState.QUEUED, UrlState.IN_FLIGHT)).isTrue();
+        assertThat(store.get(URL)).isEqualTo(UrlState.IN_FLIGHT);
+        assertThat(store.get(URL + "unknown")).isNull();
+        assertThat(store.count(UrlState.QUEUED)).isZero();
+        assertThat(store.count(UrlState.IN_FLIGHT)).isEqualTo(1);
+        assertThat(store.put(URL, UrlState.DEAD)).isEqualTo(UrlState.IN_FLIGHT);
+        assertThat(store.count(UrlState.IN_FLIGHT)).isZero();
+        assertThat(store.count(UrlState.DEAD)).isEqualTo(1);
+    }
+
+    @Test
+    public void bloomFilterStaysSelectiveWhenTheTableOutgrowsTheBudget()
+    {
+        SeenUrlStore store = new SeenUrlStore(64 * 1024, folder.getRoot());
+        for (int i = 0; i < 200000; i++)
+        {
+            store.putIfAbsent(URL + i, UrlState.VISITED);
+        }
+        for (int i = 0; i < 100000; i++)
+        {
+            assertThat(store.get("http://localhost/other/" + i)).isNull();
+        }
+
+        assertThat(store.getExpectedFalsePositiveRate()).isLessThan(0.01);
+        assertThat(store.getFalsePositiveRate()).isLessThan(0.01);
+    }
+
+    @Test
+    public void entityTagsAreCappedToTheBudget()
+    {
+        SeenUrlStore store = new SeenUrlStore(64 * 1024, folder.getRoot());
+        for (int i = 0; i < 10000; i++)
+        {
+            store.setValidators(URL + i, "\"etag-" + i + "\"", i);
+        }
+
+        assertThat(store.getETagByteUsage()).isLessThanOrEqualTo(64 * 1024 / 16);
+        assertThat(store.getETag(URL + 0)).isNull();
+        assertThat(store.getETag(URL + 9999)).isEqualTo("\"etag-9999\"");
+        assertThat(store.getContentLength(URL + 0)).isZero();
+        assertThat(store.getContentLength(URL + 1)).isEqualTo(1);
+        store.setValidators(URL + 9999, null, 0);
+        assertThat(store.getETag(URL + 9999)).isNull();
+    }
+}
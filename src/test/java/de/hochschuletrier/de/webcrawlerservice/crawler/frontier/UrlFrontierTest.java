@@ -0,0 +1,129 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.frontier;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.frontier.UrlFrontier.UrlState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against the in memory {@link SeenUrlStore} and the disk backed {@link PersistentFrontier}
+ */
+@RunWith(Parameterized.class)
+public class UrlFrontierTest
+{
+    private static final long CACHE_SIZE = 4L * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Parameterized.Parameter
+    public boolean persistent;
+
+    private UrlFrontier frontier;
+
+    @Parameterized.Parameters(name = "persistent={0}")
+    public static Collection<Object[]> stores()
+    {
+        return Arrays.asList(new Object[]{false}, new Object[]{true});
+    }
+
+    @Before
+    public void openFrontier()
+    {
+        if (this.persistent)
+        {
+            this.frontier = new UrlFrontier(0, 10, PersistentFrontier.open(folder.getRoot(), "test", CACHE_SIZE));
+        } else
+        {
+            this.frontier = new UrlFrontier(0, 10, new SeenUrlStore(SeenUrlStore.DEFAULT_MEMORY_BUDGET,
+                    folder.getRoot()));
+        }
+    }
+
+    @After
+    public void closeFrontier()
+    {
+        this.frontier.close();
+    }
+
+    @Test
+    public void offerQueuesEveryPageOnce()
+    {
+        assertThat(this.frontier.offer("http://example.org/a")).isTrue();
+        assertThat(this.frontier.offer("http://example.org/a")).isFalse();
+        assertThat(this.frontier.offer("https://www.example.org/a")).isFalse();
+        assertThat(this.frontier.offer("http://example.org/b")).isTrue();
+
+        assertThat(this.frontier.size()).isEqualTo(2);
+        assertThat(this.frontier.isQueued("https://example.org/a")).isTrue();
+        assertThat(this.frontier.isKnown("http://example.org/c")).isFalse();
+        assertThat(this.frontier.count(UrlState.QUEUED)).isEqualTo(2);
+    }
+
+    @Test
+    public void urlsMoveFromQueuedOverInFlightToVisited() throws Exception
+    {
+        this.frontier.offer("http://example.org/a");
+        this.frontier.offer("http://other.example/b");
+
+        String url = this.frontier.take();
+        assertThat(url).isEqualTo("http://example.org/a");
+        assertThat(this.frontier.getStates().get("example.org/a")).isEqualTo(UrlState.IN_FLIGHT);
+        assertThat(this.frontier.count(UrlState.IN_FLIGHT)).isEqualTo(1);
+        assertThat(this.frontier.offer(url)).isFalse();
+
+        this.frontier.release(url);
+        assertThat(this.frontier.isVisited(url)).isTrue();
+        assertThat(this.frontier.offer(url)).isFalse();
+
+        String handedOff = this.frontier.take();
+        assertThat(handedOff).isEqualTo("http://other.example/b");
+        this.frontier.handOff(handedOff);
+        assertThat(this.frontier.isVisited(handedOff)).isTrue();
+
+        assertThat(this.frontier.take()).isNull();
+        assertThat(this.frontier.count(UrlState.VISITED)).isEqualTo(2);
+        assertThat(this.frontier.count(UrlState.QUEUED)).isZero();
+        assertThat(this.frontier.count(UrlState.IN_FLIGHT)).isZero();
+    }
+
+    @Test
+    public void requeueOnlyQueuesUrlsWhichAreNotQueued() throws Exception
+    {
+        this.frontier.offer("http://example.org/a");
+        assertThat(this.frontier.requeue("http://example.org/a")).isFalse();
+        this.frontier.release(this.frontier.take());
+
+        assertThat(this.frontier.requeue("http://example.org/a")).isTrue();
+        assertThat(this.frontier.isQueued("http://example.org/a")).isTrue();
+        assertThat(this.frontier.take()).isEqualTo("http://example.org/a");
+    }
+
+    @Test
+    public void deadUrlsAndValidatorsAreStored()
+    {
+        this.frontier.markDead("http://example.org/gone");
+        this.frontier.setLastModified("http://example.org/a", new Date(1000));
+        this.frontier.setValidators("http://example.org/b", "\"b\"", 7);
+
+        assertThat(this.frontier.isDead("http://example.org/gone")).isTrue();
+        assertThat(this.frontier.offer("http://example.org/gone")).isFalse();
+        assertThat(this.frontier.getLastModified("https://example.org/a")).isEqualTo(new Date(1000));
+        assertThat(this.frontier.hasValidators("http://example.org/b")).isTrue();
+        assertThat(this.frontier.getETag("http://example.org/b")).isEqualTo("\"b\"");
+        assertThat(this.frontier.getContentLength("http://example.org/b")).isEqualTo(7);
+        assertThat(this.frontier.hasValidators("http://example.org/c")).isFalse();
+        assertThat(this.frontier.countWithLastModified()).isEqualTo(1);
+        assertThat(this.frontier.isPersistent()).isEqualTo(this.persistent);
+    }
+}
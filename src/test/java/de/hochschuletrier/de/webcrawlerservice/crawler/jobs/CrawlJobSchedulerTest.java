@@ -0,0 +1,381 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.jobs;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.Crawler;
+import de.hochschuletrier.de.webcrawlerservice.crawler.spiders.GenericSpider;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.FetchResponse;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageFetcher;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.UserAgent;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.WorkerExecutors;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.CrawlerEntityRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.DeadLinkRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.FileLinkRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.WebPageEntityRepository;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+public class CrawlJobSchedulerTest
+{
+    private static final int PAGES = 20;
+
+    private final List<String> started = new CopyOnWriteArrayList<>();
+    private CrawlJobScheduler scheduler;
+
+    @After
+    public void shutdown()
+    {
+        if (this.scheduler != null)
+        {
+            this.scheduler.shutdown();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean())
+        {
+            assertThat(System.currentTimeMillis()).as("condition met in time").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void queuedJobsStartByPriorityAndAFullQueueIsRejected() throws Exception
+    {
+        this.scheduler = new CrawlJobScheduler(WorkerExecutors.PLATFORM, 1, 2, 10);
+        BlockingTask first = new BlockingTask("first");
+        BlockingTask low = new BlockingTask("low");
+        BlockingTask high = new BlockingTask("high");
+        CrawlJob firstJob = this.scheduler.submit("first", 0, () -> first);
+        await(() -> this.started.contains("first"));
+        this.scheduler.submit("low", 0, () -> low);
+        CrawlJob highJob = this.scheduler.submit("high", 5, () -> high);
+
+        assertThatThrownBy(() -> this.scheduler.submit("rejected", 9, () -> new BlockingTask("rejected")))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(this.scheduler.getQueued()).isEqualTo(2);
+        assertThat(this.scheduler.getRunning()).isEqualTo(1);
+
+        first.stop(CrawlJob.State.FINISHED);
+        await(() -> highJob.getState() == CrawlJob.State.RUNNING);
+        high.stop(CrawlJob.State.FINISHED);
+        await(() -> this.started.size() == 3);
+
+        assertThat(this.started).containsExactly("first", "high", "low");
+        assertThat(firstJob.getState()).isEqualTo(CrawlJob.State.FINISHED);
+        assertThat(firstJob.getTask()).isNull();
+    }
+
+    @Test
+    public void jobsArePausedResumedAndCancelled() throws Exception
+    {
+        this.scheduler = new CrawlJobScheduler(WorkerExecutors.PLATFORM, 1, 10, 10);
+        BlockingTask running = new BlockingTask("running");
+        BlockingTask queued = new BlockingTask("queued");
+        CrawlJob runningJob = this.scheduler.submit("running", 0, () -> running);
+        CrawlJob queuedJob = this.scheduler.submit("queued", 0, () -> queued);
+        await(() -> this.started.contains("running"));
+
+        assertThat(this.scheduler.pause(runningJob.getId())).isTrue();
+        await(() -> runningJob.getState() == CrawlJob.State.PAUSED);
+        // the free slot went to the queued job
+        await(() -> this.started.contains("queued"));
+        assertThat(this.scheduler.resume(runningJob.getId())).isTrue();
+        assertThat(runningJob.getState()).isEqualTo(CrawlJob.State.QUEUED);
+
+        assertThat(this.scheduler.cancel(runningJob.getId())).isTrue();
+        assertThat(runningJob.getState()).isEqualTo(CrawlJob.State.CANCELLED);
+        assertThat(running.cancelled).isTrue();
+        assertThat(this.scheduler.cancel(queuedJob.getId())).isTrue();
+        await(() -> queuedJob.getState() == CrawlJob.State.CANCELLED);
+        assertThat(queuedJob.getTask()).isNull();
+        assertThat(this.scheduler.resume(queuedJob.getId())).isFalse();
+        assertThat(this.scheduler.pause(42)).isFalse();
+        assertThat(this.scheduler.getRunning()).isZero();
+    }
+
+    @Test
+    public void theSchedulerIsNotBlockedWhileATaskIsCreated() throws Exception
+    {
+        this.scheduler = new CrawlJobScheduler(WorkerExecutors.PLATFORM, 1, 1, 10);
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch created = new CountDownLatch(1);
+        ExecutorService submitter = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<CrawlJob> slowJob = submitter.submit(() -> this.scheduler.submit("slow", 0, () ->
+            {
+                creating.countDown();
+                try
+                {
+                    created.await();
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return new BlockingTask("slow");
+            }));
+            assertThat(creating.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // the reservation takes the only place in the queue, but the scheduler answers
+            assertThat(this.scheduler.getQueued()).isZero();
+            assertThat(this.scheduler.getJobs()).isEmpty();
+            assertThat(this.scheduler.pause(42)).isFalse();
+            assertThatThrownBy(() -> this.scheduler.submit("rejected", 0, () -> new BlockingTask("rejected")))
+                    .isInstanceOf(RejectedExecutionException.class);
+
+            created.countDown();
+            CrawlJob job = slowJob.get(5, TimeUnit.SECONDS);
+            await(() -> this.started.contains("slow"));
+            assertThat(job.getState()).isEqualTo(CrawlJob.State.RUNNING);
+        } finally
+        {
+            submitter.shutdownNow();
+        }
+    }
+
+    @Test
+    public void aTaskWhichCouldNotBeCreatedGivesUpItsReservation() throws Exception
+    {
+        this.scheduler = new CrawlJobScheduler(WorkerExecutors.PLATFORM, 1, 1, 10);
+
+        assertThatThrownBy(() -> this.scheduler.submit("broken", 0, () ->
+        {
+            throw new IllegalStateException("no frontier");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(this.scheduler.submit("missing", 0, () -> null)).isNull();
+        CrawlJob job = this.scheduler.submit("admitted", 0, () -> new BlockingTask("admitted"));
+
+        await(() -> this.started.contains("admitted"));
+        assertThat(this.scheduler.getJobs()).containsExactly(job);
+    }
+
+    @Test
+    public void aCrawlerGetsNoSecondJobUntilItsJobStopped() throws Exception
+    {
+        this.scheduler = new CrawlJobScheduler(WorkerExecutors.PLATFORM, 1, 10, 10);
+        BlockingTask resumed = new BlockingTask("resumed");
+
+        assertThat(this.scheduler.submit("resumed", "resumed", 0, () ->
+        {
+            assertThatThrownBy(() -> this.scheduler.submit("resumed", "resumed", 0, () -> resumed))
+                    .as("submitted while the first task is created").isInstanceOf(IllegalStateException.class);
+            return null;
+        })).isNull();
+        CrawlJob job = this.scheduler.submit("resumed", "resumed", 0, () -> resumed);
+        await(() -> this.started.contains("resumed"));
+        assertThatThrownBy(() -> this.scheduler.submit("resumed", "resumed", 0, () -> new BlockingTask("resumed")))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(this.scheduler.submit("other", "other", 0, () -> new BlockingTask("other"))).isNotNull();
+
+        resumed.stop(CrawlJob.State.INTERRUPTED);
+        await(() -> job.getState() == CrawlJob.State.INTERRUPTED);
+        assertThat(this.scheduler.submit("resumed", "resumed", 0, () -> new BlockingTask("resumed"))).isNotNull();
+    }
+
+    @Test
+    public void aPausedCrawlerContinuesWhereItStopped() throws Exception
+    {
+        this.scheduler = new CrawlJobScheduler(WorkerExecutors.PLATFORM, 1, 10, 10);
+        List<String> requested = new CopyOnWriteArrayList<>();
+        Crawler crawler = new GenericSpider("paused", new ArrayList<>(Collections.singletonList("example")),
+                new ArrayList<>(Collections.singletonList("http://site.example.com/0")), false, new ArrayList<>(),
+                mock(CrawlerEntityRepository.class), mock(DeadLinkRepository.class), mock(FileLinkRepository.class),
+                mock(WebPageEntityRepository.class));
+        crawler.setCrawlingDelay(20);
+        crawler.setRobotsEnabled(false);
+        crawler.setSitemaps(false, 0);
+        crawler.setPageFetcher(new ChainPageFetcher(requested));
+        CrawlJob job = this.scheduler.submit("paused", 0, () -> new CrawlerTask(crawler));
+
+        await(() -> requested.size() >= 3);
+        this.scheduler.pause(job.getId());
+        await(() -> job.getState() == CrawlJob.State.PAUSED);
+        int requestedWhilePaused = requested.size();
+        Thread.sleep(100);
+        assertThat(requested).hasSize(requestedWhilePaused);
+        assertThat(requestedWhilePaused).isLessThan(PAGES);
+
+        this.scheduler.resume(job.getId());
+        await(() -> job.getState() == CrawlJob.State.FINISHED);
+
+        assertThat(requested).hasSize(PAGES).doesNotHaveDuplicates();
+        assertThat(job.getTask()).isNull();
+    }
+
+    /**
+     * Runs until it is stopped from the test or by a request
+     */
+    private class BlockingTask implements CrawlTask
+    {
+        private final String name;
+        private CrawlJob.State stop;
+        private volatile boolean cancelled;
+
+        private BlockingTask(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public String getUniqueName()
+        {
+            return this.name;
+        }
+
+        @Override
+        public synchronized CrawlJob.State run()
+        {
+            started.add(this.name);
+            try
+            {
+                while (this.stop == null)
+                {
+                    wait();
+                }
+                return this.stop;
+            } catch (InterruptedException e)
+            {
+                return CrawlJob.State.INTERRUPTED;
+            } finally
+            {
+                this.stop = null;
+            }
+        }
+
+        private synchronized void stop(CrawlJob.State state)
+        {
+            this.stop = state;
+            notifyAll();
+        }
+
+        @Override
+        public void requestPause()
+        {
+            stop(CrawlJob.State.PAUSED);
+        }
+
+        @Override
+        public void requestCancel()
+        {
+            stop(CrawlJob.State.CANCELLED);
+        }
+
+        @Override
+        public void cancel()
+        {
+            this.cancelled = true;
+        }
+    }
+
+    /**
+     * Runs a crawler like the GenericCrawlerController
+     */
+    private static class CrawlerTask implements CrawlTask
+    {
+        private final Crawler crawler;
+
+        private CrawlerTask(Crawler crawler)
+        {
+            this.crawler = crawler;
+        }
+
+        @Override
+        public String getUniqueName()
+        {
+            return this.crawler.getUniqueName();
+        }
+
+        @Override
+        public CrawlJob.State run()
+        {
+            this.crawler.run(UserAgent.Default);
+            if (this.crawler.isPaused())
+            {
+                return CrawlJob.State.PAUSED;
+            }
+            return this.crawler.isCancelled() ? CrawlJob.State.CANCELLED : CrawlJob.State.FINISHED;
+        }
+
+        @Override
+        public void requestPause()
+        {
+            this.crawler.requestPause();
+        }
+
+        @Override
+        public void requestCancel()
+        {
+            this.crawler.requestCancel();
+        }
+
+        @Override
+        public void cancel()
+        {
+            this.crawler.cancel();
+        }
+    }
+
+    /**
+     * Serves PAGES pages on one host, every page links to the next one
+     */
+    private static class ChainPageFetcher implements PageFetcher
+    {
+        private final List<String> requested;
+
+        private ChainPageFetcher(List<String> requested)
+        {
+            this.requested = requested;
+        }
+
+        @Override
+        public CompletableFuture<FetchResponse> fetch(String url, Map<String, String> headers)
+        {
+            this.requested.add(url);
+            int page = Integer.parseInt(url.substring(url.lastIndexOf('/') + 1));
+            String body = page + 1 < PAGES ? "<html><body><a href=\"/" + (page + 1) + "\">next</a></body></html>"
+                    : "<html><body>last</body></html>";
+            return CompletableFuture.completedFuture(new FetchResponse(url, 200,
+                    Collections.singletonMap("Content-Type", "text/html"), body.getBytes(StandardCharsets.UTF_8),
+                    false));
+        }
+
+        @Override
+        public CompletableFuture<FetchResponse> fetchFile(String url, int maxBodySize)
+        {
+            return fetch(url, Collections.emptyMap());
+        }
+
+        @Override
+        public InputStream openStream(String url) throws IOException
+        {
+            throw new IOException("No sitemaps");
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CrawlJournalTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<CrawlEvent> readAll(File file) throws IOException
+    {
+        List<CrawlEvent> events = new ArrayList<>();
+        try (CrawlJournalReader reader = new CrawlJournalReader(file))
+        {
+            CrawlEvent event;
+            while ((event = reader.next()) != null)
+            {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    @Test
+    public void recordedEventsAreReadBackAndCounted() throws Exception
+    {
+        // the buffer holds about one event, so most events are written when the next one arrives
+        CrawlJournal journal = CrawlJournal.open(this.folder.getRoot(), "test-http://example.com/", 64);
+        StringBuilder longUrl = new StringBuilder("http://example.com/");
+        for (int i = 0; i < 100; i++)
+        {
+            longUrl.append("segment/");
+        }
+        journal.record(CrawlEvent.Type.FETCH, "http://example.com/", 200, 1234, 5000000, null);
+        journal.record(CrawlEvent.Type.SKIPPED, "http://example.com/b\u00fccher", 0, 0, 0, "robots");
+        journal.record(CrawlEvent.Type.FETCH, longUrl.toString(), 404, 0, 3000000, null);
+        journal.record(CrawlEvent.Type.DEAD, longUrl.toString(), 0, 0, 0, null);
+        journal.close();
+
+        List<CrawlEvent> events = readAll(journal.getFile());
+
+        assertThat(journal.getFile().getName()).isEqualTo("test-http___example.com_.journal");
+        assertThat(events).extracting(CrawlEvent::getType).containsExactly(CrawlEvent.Type.FETCH,
+                CrawlEvent.Type.SKIPPED, CrawlEvent.Type.FETCH, CrawlEvent.Type.DEAD);
+        assertThat(events.get(0).getStatus()).isEqualTo(200);
+        assertThat(events.get(0).getBytes()).isEqualTo(1234);
+        assertThat(events.get(0).getNanos()).isEqualTo(5000000);
+        assertThat(events.get(1).getUrl()).isEqualTo("http://example.com/b\u00fccher");
+        assertThat(events.get(1).getDetail()).isEqualTo("robots");
+        assertThat(events.get(2).getUrl()).isEqualTo(longUrl.toString());
+        assertThat(events.get(2).getDetail()).isNull();
+        assertThat(journal.count(CrawlEvent.Type.FETCH)).isEqualTo(2);
+        assertThat(journal.averageMillis(CrawlEvent.Type.FETCH)).isEqualTo(4.0);
+    }
+
+    @Test
+    public void eventsOfConcurrentCrawlThreadsAreWrittenInRecordOrder() throws Exception
+    {
+        CrawlJournal journal = CrawlJournal.open(this.folder.getRoot(), "concurrent", 256);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            String prefix = "http://example.com/" + t + "/";
+            threads[t] = new Thread(() ->
+            {
+                for (int i = 0; i < 1000; i++)
+                {
+                    journal.record(CrawlEvent.Type.FETCH, prefix + i, 200, i, 0, null);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        journal.flush();
+        List<CrawlEvent> flushed = readAll(journal.getFile());
+        journal.close();
+
+        assertThat(flushed).hasSize(4000);
+        for (int t = 0; t < threads.length; t++)
+        {
+            String prefix = "http://example.com/" + t + "/";
+            assertThat(flushed).filteredOn(event -> event.getUrl().startsWith(prefix))
+                    .extracting(CrawlEvent::getBytes).isSorted().hasSize(1000);
+        }
+        assertThat(journal.count(CrawlEvent.Type.FETCH)).isEqualTo(4000);
+    }
+
+    @Test
+    public void aTornRecordIsCutOffBeforeTheNextRunAppends() throws Exception
+    {
+        CrawlJournal first = CrawlJournal.open(this.folder.getRoot(), "torn", CrawlJournal.DEFAULT_BUFFER_SIZE);
+        first.record(CrawlEvent.Type.FETCH, "http://example.com/a", 200, 10, 1, null);
+        first.record(CrawlEvent.Type.FETCH, "http://example.com/b", 200, 20, 2, null);
+        first.close();
+        try (RandomAccessFile file = new RandomAccessFile(first.getFile(), "rw"))
+        {
+            file.setLength(file.length() - 3);
+        }
+        assertThat(readAll(first.getFile())).extracting(CrawlEvent::getUrl).containsExactly("http://example.com/a");
+
+        CrawlJournal second = CrawlJournal.open(this.folder.getRoot(), "torn", CrawlJournal.DEFAULT_BUFFER_SIZE);
+        second.record(CrawlEvent.Type.STORED, "http://example.com/c", 0, 30, 0, null);
+        second.close();
+
+        assertThat(readAll(second.getFile())).extracting(CrawlEvent::getUrl)
+                .containsExactly("http://example.com/a", "http://example.com/c");
+    }
+
+    @Test
+    public void aCountingJournalWritesNoFile()
+    {
+        CrawlJournal journal = CrawlJournal.counting();
+        journal.record(CrawlEvent.Type.STORED, "http://example.com/", 0, 100, 0, null);
+        journal.close();
+
+        assertThat(journal.getFile()).isNull();
+        assertThat(journal.count(CrawlEvent.Type.STORED)).isEqualTo(1);
+        assertThat(journal.bytes(CrawlEvent.Type.STORED)).isEqualTo(100);
+        assertThat(journal.toString()).contains("1 stored");
+    }
+}
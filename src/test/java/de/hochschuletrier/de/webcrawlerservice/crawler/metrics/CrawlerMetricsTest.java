@@ -0,0 +1,59 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CrawlerMetricsTest
+{
+    @Test
+    public void tagsFetchesByHostAndStatusClass()
+    {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        CrawlerMetrics metrics = new CrawlerMetrics(registry, "status-crawler");
+
+        metrics.recordFetch("http://status.example.com/a", TimeUnit.MILLISECONDS.toNanos(20), 200, 100);
+        metrics.recordFetch("http://status.example.com/b", TimeUnit.MILLISECONDS.toNanos(20), 204, 50);
+        metrics.recordFetch("http://status.example.com/c", TimeUnit.MILLISECONDS.toNanos(20), 0, 0);
+
+        assertThat(registry.get("crawler.fetch").tags("host", "status.example.com", "status", "2xx").timer()
+                .count()).isEqualTo(2);
+        assertThat(registry.get("crawler.fetch").tags("host", "status.example.com", "status", "error").timer()
+                .count()).isEqualTo(1);
+        assertThat(registry.get("crawler.bytes").tags("crawler", "status-crawler").counter().count())
+                .isEqualTo(150);
+    }
+
+    @Test
+    public void limitsTheNumberOfTagValues()
+    {
+        BoundedTagValues hosts = new BoundedTagValues(2);
+
+        assertThat(hosts.tag("a.example.org")).isEqualTo("a.example.org");
+        assertThat(hosts.tag("b.example.org")).isEqualTo("b.example.org");
+        assertThat(hosts.tag("c.example.org")).isEqualTo(BoundedTagValues.OTHER);
+        assertThat(hosts.tag("a.example.org")).isEqualTo("a.example.org");
+        assertThat(hosts.tag(null)).isEqualTo(BoundedTagValues.OTHER);
+        assertThat(hosts.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void gaugesReadTheNewestRunOfACrawler()
+    {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        CrawlerMetrics firstRun = new CrawlerMetrics(registry, "gauge-crawler");
+        firstRun.bindFrontier(() -> 3);
+        CrawlerMetrics secondRun = new CrawlerMetrics(registry, "gauge-crawler");
+        secondRun.bindFrontier(() -> 7);
+
+        firstRun.close();
+        assertThat(registry.get("crawler.frontier.size").gauge().value()).isEqualTo(7);
+
+        secondRun.close();
+        assertThat(registry.get("crawler.frontier.size").gauge().value()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,86 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.robots;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.FetchResponse;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageFetcher;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.UserAgent;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RobotsCacheTest
+{
+    @Test
+    public void aBrokenResponseIsHandledLikeAnUnavailableRobotsTxt() throws Exception
+    {
+        FetchResponse broken = new FetchResponse("http://example.com/robots.txt", 200, Collections.emptyMap(),
+                new byte[0], false)
+        {
+            @Override
+            public byte[] getBody()
+            {
+                throw new IllegalStateException("broken body");
+            }
+        };
+        RobotsCache robotsCache = new RobotsCache(new RobotsFetcher(CompletableFuture.completedFuture(broken)),
+                UserAgent.Default, 60000);
+
+        RobotsRules rules = robotsCache.rulesFor("http://example.com/page").get(5, TimeUnit.SECONDS);
+
+        assertThat(rules).isSameAs(RobotsRules.DISALLOW_ALL);
+    }
+
+    @Test
+    public void aFailedDownloadCompletesWithTheDefaultRules() throws Exception
+    {
+        CompletableFuture<FetchResponse> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("connection refused"));
+        RobotsCache robotsCache = new RobotsCache(new RobotsFetcher(failed), UserAgent.Default, 60000);
+
+        RobotsRules rules = robotsCache.rulesFor("http://example.com/page").get(5, TimeUnit.SECONDS);
+
+        assertThat(rules).isSameAs(RobotsRules.DISALLOW_ALL);
+    }
+
+    /**
+     * Answers every robots.txt request with the same download
+     */
+    private static class RobotsFetcher implements PageFetcher
+    {
+        private final CompletableFuture<FetchResponse> download;
+
+        private RobotsFetcher(CompletableFuture<FetchResponse> download)
+        {
+            this.download = download;
+        }
+
+        @Override
+        public CompletableFuture<FetchResponse> fetch(String url, Map<String, String> headers)
+        {
+            return this.download;
+        }
+
+        @Override
+        public CompletableFuture<FetchResponse> fetchFile(String url, int maxBodySize)
+        {
+            return this.download;
+        }
+
+        @Override
+        public InputStream openStream(String url) throws IOException
+        {
+            throw new IOException("No stream " + url);
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
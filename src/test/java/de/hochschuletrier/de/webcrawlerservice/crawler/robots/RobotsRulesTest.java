@@ -0,0 +1,67 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.robots;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.UserAgent;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RobotsRulesTest
+{
+    private static final String ROBOTS = "# example robots.txt\n"
+            + "User-agent: *\n"
+            + "Disallow: /private/\n"
+            + "Allow: /private/public.html\n"
+            + "Disallow: /*.pdf$\n"
+            + "Disallow: /search?*q=\n"
+            + "Crawl-delay: 2.5\n"
+            + "\n"
+            + "User-agent: Googlebot\n"
+            + "User-agent: bingbot\n"
+            + "Disallow: /nogoogle\n"
+            + "\n"
+            + "Sitemap: https://example.com/sitemap.xml\n";
+
+    @Test
+    public void longestMatchWinsAndAllowWinsTies()
+    {
+        RobotsRules rules = RobotsRules.parse(ROBOTS, UserAgent.Default);
+
+        assertThat(rules.isAllowed("https://example.com/")).isTrue();
+        assertThat(rules.isAllowed("https://example.com/private/secret.html")).isFalse();
+        assertThat(rules.isAllowed("https://example.com/private/public.html")).isTrue();
+        assertThat(rules.isAllowed("https://example.com/nogoogle")).isTrue();
+        assertThat(RobotsRules.parse("User-agent: *\nDisallow: /page\nAllow: /page\n", UserAgent.Default)
+                .isPathAllowed("/page")).isTrue();
+    }
+
+    @Test
+    public void wildcardsAndEndAnchorsAreMatched()
+    {
+        RobotsRules rules = RobotsRules.parse(ROBOTS, UserAgent.Default);
+
+        assertThat(rules.isAllowed("https://example.com/files/report.pdf")).isFalse();
+        assertThat(rules.isAllowed("https://example.com/files/report.pdf?download=1")).isTrue();
+        assertThat(rules.isAllowed("https://example.com/search?lang=de&q=trier")).isFalse();
+        assertThat(rules.isAllowed("https://example.com/search?lang=de")).isTrue();
+        assertThat(rules.isAllowed("https://example.com/robots.txt")).isTrue();
+    }
+
+    @Test
+    public void mostSpecificAgentGroupApplies()
+    {
+        RobotsRules rules = RobotsRules.parse(ROBOTS, UserAgent.GoogleSmarphone);
+
+        assertThat(rules.isAllowed("https://example.com/nogoogle")).isFalse();
+        assertThat(rules.isAllowed("https://example.com/private/secret.html")).isTrue();
+        assertThat(rules.getCrawlDelay()).isEqualTo(-1);
+    }
+
+    @Test
+    public void crawlDelayAndSitemapsAreKept()
+    {
+        RobotsRules rules = RobotsRules.parse(ROBOTS, UserAgent.Default);
+
+        assertThat(rules.getCrawlDelay()).isEqualTo(2500);
+        assertThat(rules.getSitemaps()).containsExactly("https://example.com/sitemap.xml");
+    }
+}
@@ -0,0 +1,145 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.sitemap;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.Crawler;
+import de.hochschuletrier.de.webcrawlerservice.crawler.spiders.GenericSpider;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.FetchResponse;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageFetcher;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.UserAgent;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.CrawlerEntityRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.DeadLinkRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.FileLinkRepository;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.WebPageEntityRepository;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class SitemapIngestionTest
+{
+    private static final String HOST = "http://sitemaps.example.com";
+
+    @Test
+    public void sitemapUrlsAreCrawledWhileTheSitemapIsStillRead() throws Exception
+    {
+        CountDownLatch firstPageRequested = new CountDownLatch(1);
+        SlowSitemapFetcher fetcher = new SlowSitemapFetcher(firstPageRequested);
+        Crawler crawler = new GenericSpider("sitemaps", new ArrayList<>(Collections.singletonList("example")),
+                new ArrayList<>(Collections.singletonList(HOST + "/")), false, new ArrayList<>(),
+                mock(CrawlerEntityRepository.class), mock(DeadLinkRepository.class), mock(FileLinkRepository.class),
+                mock(WebPageEntityRepository.class));
+        crawler.setCrawlingDelay(0);
+        crawler.setRobotsEnabled(false);
+        crawler.setSitemaps(true, 100);
+        crawler.setPageFetcher(fetcher);
+
+        crawler.run(UserAgent.Default);
+
+        // the first sitemap url arrived after the seed was crawled and was crawled before the rest of the sitemap
+        assertThat(fetcher.crawledBeforeSitemapEnd).isTrue();
+        assertThat(fetcher.requested).containsExactlyInAnyOrder(HOST + "/", HOST + "/first", HOST + "/second");
+        assertThat(crawler.getSitemapUrls()).isEqualTo(2);
+    }
+
+    /**
+     * Serves empty pages and a sitemap, which starts once the seed page is crawled and whose second half is only sent
+     * after its first url was requested
+     */
+    private static class SlowSitemapFetcher implements PageFetcher
+    {
+        private final List<String> requested = new CopyOnWriteArrayList<>();
+        private final CountDownLatch firstPageRequested;
+        private final CountDownLatch seedRequested = new CountDownLatch(1);
+        private volatile boolean crawledBeforeSitemapEnd;
+
+        private SlowSitemapFetcher(CountDownLatch firstPageRequested)
+        {
+            this.firstPageRequested = firstPageRequested;
+        }
+
+        @Override
+        public CompletableFuture<FetchResponse> fetch(String url, Map<String, String> headers)
+        {
+            this.requested.add(url);
+            if (url.equals(HOST + "/"))
+            {
+                this.seedRequested.countDown();
+            }
+            if (url.endsWith("/first"))
+            {
+                this.firstPageRequested.countDown();
+            }
+            return CompletableFuture.completedFuture(new FetchResponse(url, 200,
+                    Collections.singletonMap("Content-Type", "text/html"),
+                    "<html><body>page</body></html>".getBytes(StandardCharsets.UTF_8), false));
+        }
+
+        @Override
+        public CompletableFuture<FetchResponse> fetchFile(String url, int maxBodySize)
+        {
+            return fetch(url, Collections.emptyMap());
+        }
+
+        @Override
+        public InputStream openStream(String url) throws IOException
+        {
+            if (!url.equals(HOST + "/sitemap.xml"))
+            {
+                throw new IOException("No sitemap " + url);
+            }
+            try
+            {
+                // the frontier is empty once the seed page is processed
+                this.seedRequested.await(5, TimeUnit.SECONDS);
+                Thread.sleep(200);
+            } catch (InterruptedException e)
+            {
+                throw new InterruptedIOException();
+            }
+            InputStream first = new ByteArrayInputStream(("<urlset><url><loc>" + HOST + "/first</loc></url>")
+                    .getBytes(StandardCharsets.UTF_8));
+            InputStream rest = new InputStream()
+            {
+                private InputStream remaining;
+
+                @Override
+                public int read() throws IOException
+                {
+                    if (this.remaining == null)
+                    {
+                        try
+                        {
+                            crawledBeforeSitemapEnd = firstPageRequested.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e)
+                        {
+                            throw new InterruptedIOException();
+                        }
+                        this.remaining = new ByteArrayInputStream(("<url><loc>" + HOST + "/second</loc></url>"
+                                + "</urlset>").getBytes(StandardCharsets.UTF_8));
+                    }
+                    return this.remaining.read();
+                }
+            };
+            return new SequenceInputStream(first, rest);
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
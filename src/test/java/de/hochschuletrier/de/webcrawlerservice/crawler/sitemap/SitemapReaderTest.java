@@ -0,0 +1,149 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.sitemap;
+
+import de.hochschuletrier.de.webcrawlerservice.StubHttpServer;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.AsyncPageFetcher;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.PageFetcher;
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.UserAgent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+
+public class SitemapReaderTest
+{
+    private StubHttpServer server;
+    private PageFetcher pageFetcher;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.server = new StubHttpServer();
+        this.server.respond("/sitemap_index.xml", 200, "application/xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                + "<sitemap><loc>" + this.server.url("/sitemap-pages.xml") + "</loc></sitemap>"
+                + "<sitemap><loc>" + this.server.url("/sitemap-news.xml.gz") + "</loc>"
+                + "<lastmod>2018-09-21</lastmod></sitemap>"
+                + "<sitemap><loc>" + this.server.url("/sitemap-pages.xml") + "</loc></sitemap>"
+                + "</sitemapindex>");
+        this.server.respond("/sitemap-pages.xml", 200, "application/xml", "<?xml version=\"1.0\"?>"
+                + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\""
+                + " xmlns:image=\"http://www.google.com/schemas/sitemap-image/1.1\">"
+                + "<url><loc> https://example.com/a </loc><lastmod>2018-09-21T10:15:30+02:00</lastmod>"
+                + "<image:image><image:loc>https://example.com/a.jpg</image:loc></image:image></url>"
+                + "<url><loc>https://example.com/b?x=1&amp;y=2</loc><priority>0.5</priority></url>"
+                + "</urlset>");
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/gzip");
+        this.server.respond("/sitemap-news.xml.gz", 200, headers, gzip("<urlset>"
+                + "<url><loc>https://example.com/news</loc><lastmod>not a date</lastmod></url></urlset>"));
+        this.pageFetcher = new AsyncPageFetcher(UserAgent.Default, 5000, true, 2);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.pageFetcher.close();
+        this.server.close();
+    }
+
+    @Test
+    public void indexesAndGzippedSitemapsAreRead()
+    {
+        Map<String, Long> urls = new LinkedHashMap<>();
+        SitemapReader reader = new SitemapReader(this.pageFetcher, SitemapReader.DEFAULT_MAX_SITEMAPS);
+
+        long read = reader.read(Collections.singletonList(this.server.url("/sitemap_index.xml")),
+                (loc, lastModified) -> urls.put(loc, lastModified) == null);
+
+        assertThat(read).isEqualTo(3);
+        assertThat(urls).containsExactly(entry("https://example.com/a", 1537517730000L),
+                entry("https://example.com/b?x=1&y=2", -1L), entry("https://example.com/news", -1L));
+        assertThat(this.server.requestCount("/sitemap-pages.xml")).isEqualTo(1);
+    }
+
+    @Test
+    public void missingSitemapsAreSkipped()
+    {
+        SitemapReader reader = new SitemapReader(this.pageFetcher, SitemapReader.DEFAULT_MAX_SITEMAPS);
+
+        long read = reader.read(Arrays.asList(this.server.url("/sitemap.xml"), this.server.url("/sitemap-pages.xml")),
+                (loc, lastModified) -> true);
+
+        assertThat(read).isEqualTo(2);
+    }
+
+    @Test
+    public void largeSitemapsAreStreamed() throws Exception
+    {
+        int entries = 200000;
+        long[] count = {0};
+        SitemapReader reader = new SitemapReader(mock(PageFetcher.class), SitemapReader.DEFAULT_MAX_SITEMAPS);
+
+        boolean completed = reader.parse(generatedSitemap(entries), (loc, lastModified) -> ++count[0] > 0,
+                sitemap -> {});
+
+        assertThat(completed).isTrue();
+        assertThat(count[0]).isEqualTo(entries);
+        assertThat(SitemapReader.parseLastModified("2018-09-21")).isEqualTo(1537488000000L);
+    }
+
+    private static byte[] gzip(String content) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes))
+        {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return sitemap with the given number of entries, which is generated while it is read
+     */
+    private static InputStream generatedSitemap(int entries)
+    {
+        Enumeration<InputStream> parts = new Enumeration<InputStream>()
+        {
+            private int next = -1;
+
+            @Override
+            public boolean hasMoreElements()
+            {
+                return next <= entries;
+            }
+
+            @Override
+            public InputStream nextElement()
+            {
+                if (!hasMoreElements())
+                {
+                    throw new NoSuchElementException();
+                }
+                int n = next++;
+                String part = n < 0 ? "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                        : n == entries ? "</urlset>"
+                        : "<url><loc>https://example.com/page/" + n + "</loc><lastmod>2018-09-21</lastmod></url>";
+                return new ByteArrayInputStream(part.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+        return new SequenceInputStream(parts);
+    }
+}
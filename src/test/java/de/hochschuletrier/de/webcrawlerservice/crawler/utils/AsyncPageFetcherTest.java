@@ -0,0 +1,51 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AsyncPageFetcherTest
+{
+    @Test
+    public void theFetcherStartsOnHostsWithManyCores() throws Exception
+    {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-XX:ActiveProcessorCount=64", "-cp",
+                System.getProperty("java.class.path"), StartFetcher.class.getName())
+                .redirectErrorStream(true).start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream())
+        {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0)
+            {
+                output.write(buffer, 0, read);
+            }
+        }
+
+        assertThat(process.waitFor(60, TimeUnit.SECONDS)).isTrue();
+        assertThat(process.exitValue()).as(new String(output.toByteArray(), StandardCharsets.UTF_8)).isZero();
+    }
+
+    /**
+     * Starts and stops a fetcher in the forked JVM
+     */
+    public static class StartFetcher
+    {
+        public static void main(String[] args)
+        {
+            if (Runtime.getRuntime().availableProcessors() != 64)
+            {
+                throw new IllegalStateException("Expected 64 processors");
+            }
+            new AsyncPageFetcher(UserAgent.Default, 1000, false, 2).close();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrencyLimitedExecutorTest
+{
+    @Test
+    public void limitsTheTasksRunningAtTheSameTime() throws Exception
+    {
+        assertConcurrencyLimit(new ConcurrencyLimitedExecutor(Executors.defaultThreadFactory(), 3), 3);
+    }
+
+    @Test
+    public void virtualModeLimitsTheTasksRunningAtTheSameTime() throws Exception
+    {
+        Assume.assumeTrue(WorkerExecutors.isVirtualThreadSupported());
+        assertConcurrencyLimit(WorkerExecutors.newExecutor(WorkerExecutors.VIRTUAL, "test-", 3), 3);
+    }
+
+    @Test
+    public void platformModeLimitsTheTasksRunningAtTheSameTime() throws Exception
+    {
+        assertConcurrencyLimit(WorkerExecutors.newExecutor(WorkerExecutors.PLATFORM, "test-", 3), 3);
+    }
+
+    private static void assertConcurrencyLimit(ExecutorService executor, int limit) throws Exception
+    {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        for (int i = 0; i < 50; i++)
+        {
+            executor.execute(() ->
+            {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try
+                {
+                    Thread.sleep(5);
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                finished.incrementAndGet();
+            });
+        }
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(finished.get()).isEqualTo(50);
+        assertThat(maxRunning.get()).isEqualTo(limit);
+    }
+}
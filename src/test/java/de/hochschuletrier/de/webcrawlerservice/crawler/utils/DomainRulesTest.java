@@ -0,0 +1,111 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DomainRulesTest
+{
+    private static final List<String> ALLOWED = Arrays.asList("google", "news.google", "spring", "localhost");
+
+    // urls the previous regex based check and the compiled rules have to agree on
+    private static final String[][] CORPUS = {
+            {"https://www.google.com/", "true"},
+            {"https://google.de", "true"},
+            {"http://maps.google.com/maps?q=trier", "true"},
+            {"https://news.google.de/articles/abc", "true"},
+            {"https://www.news.google.com/", "true"},
+            {"https://user@google.com/path", "true"},
+            {"https://spring.io/guides/gs/rest-service/", "true"},
+            {"https://docs.spring.io/spring-boot/docs/current/reference/html/", "true"},
+            {"http://localhost:8080/index.html", "true"},
+            {"https://www.hochschule-trier.de/", "false"},
+            {"https://github.com/google", "false"},
+            {"https://example.org/?q=google", "false"},
+            {"https://bing.com/search#spring", "false"},
+            {"https://127.0.0.1/", "false"},
+    };
+
+    @Test
+    public void corpusMatchesPreviousDomainCheck()
+    {
+        DomainRules rules = DomainRules.compile(ALLOWED, Collections.emptyList());
+        for (String[] entry : CORPUS)
+        {
+            boolean expected = Boolean.parseBoolean(entry[1]);
+            assertThat(legacyWithinAllowedDomains(ALLOWED, entry[0])).as(entry[0]).isEqualTo(expected);
+            assertThat(rules.accepts(entry[0])).as(entry[0]).isEqualTo(expected);
+        }
+        // hosts are case insensitive, the previous check rejected upper case hosts
+        assertThat(legacyWithinAllowedDomains(ALLOWED, "https://GOOGLE.com/")).isFalse();
+        assertThat(rules.accepts("https://GOOGLE.com/")).isTrue();
+    }
+
+    @Test
+    public void domainsOnlyMatchWholeLabels()
+    {
+        DomainRules rules = DomainRules.compile(ALLOWED, Collections.emptyList());
+
+        assertThat(rules.accepts("https://notgoogle.com/")).isFalse();
+        assertThat(rules.accepts("https://googleusercontent.com/")).isFalse();
+        assertThat(rules.accepts("https://news.google.com.example.org/")).isTrue();
+    }
+
+    @Test
+    public void emptyAllowedDomainsAllowEverything()
+    {
+        DomainRules rules = DomainRules.compile(Collections.emptyList(), Collections.emptyList());
+
+        assertThat(rules.accepts("https://www.hochschule-trier.de/")).isTrue();
+        assertThat(rules.accepts("mailto:someone@google.com")).isFalse();
+    }
+
+    @Test
+    public void deniedRulesWinOverAllowedRules()
+    {
+        DomainRules rules = DomainRules.compile(ALLOWED,
+                Arrays.asList("ads.google", "https://www.google.com/private", "spring.io/blog"));
+
+        assertThat(rules.accepts("https://ads.google.com/")).isFalse();
+        assertThat(rules.accepts("https://www.google.com/private/page")).isFalse();
+        assertThat(rules.accepts("https://www.google.com/public")).isTrue();
+        assertThat(rules.accepts("https://spring.io/blog/2018")).isFalse();
+        assertThat(rules.accepts("https://spring.io/guides")).isTrue();
+        assertThat(rules.accepts("https://spring.io/projects/blog")).isTrue();
+    }
+
+    @Test
+    public void pathPrefixRulesRestrictTheDomain()
+    {
+        DomainRules rules = DomainRules.compile(Arrays.asList("spring.io/guides", "hochschule-trier.de/"),
+                Collections.emptyList());
+
+        assertThat(rules.accepts("https://spring.io/guides/gs")).isTrue();
+        assertThat(rules.accepts("https://spring.io/projects")).isFalse();
+        assertThat(rules.accepts("https://www.hochschule-trier.de/impressum")).isTrue();
+    }
+
+    /**
+     * The domain check used before the rules were compiled
+     */
+    private static boolean legacyWithinAllowedDomains(List<String> allowedDomains, String url)
+    {
+        for (String domain : allowedDomains)
+        {
+            Pattern p = Pattern.compile("^(?:https?:)?(?://)?(?:[^@\\n" +
+                    "]+@)?(?:www\\.)?([a-z.])*(?:"
+                    + domain
+                    + "){1}(.[a-z]{2,64}/)?([-A-Za-z0-9+&@#/%=~_|$?!:,.])*");
+            if (p.matcher(url).matches())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
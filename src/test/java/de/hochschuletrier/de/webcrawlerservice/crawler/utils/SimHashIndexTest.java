@@ -0,0 +1,99 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SimHashIndexTest
+{
+    @Test
+    public void nearDuplicatesAreFound()
+    {
+        Random random = new Random(42);
+        List<String> words = randomWords(random, 1000);
+        String article = String.join(" ", words);
+        words.set(500, "changed");
+        String variant = String.join(" ", words);
+        String printView = "Home News Login Print view session 8f3a2 " + article;
+        SimHashIndex index = new SimHashIndex();
+
+        assertThat(index.addIfAbsent(SimHash.fingerprint(article), "https://example.org/article")).isNull();
+
+        assertThat(index.addIfAbsent(SimHash.fingerprint(variant), "https://example.org/article?sid=1"))
+                .isEqualTo("https://example.org/article");
+        assertThat(index.addIfAbsent(SimHash.fingerprint(printView), "https://example.org/article/print"))
+                .isEqualTo("https://example.org/article");
+        assertThat(index.addIfAbsent(SimHash.fingerprint(String.join(" ", randomWords(random, 1000))),
+                "https://example.org/other")).isNull();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void earlierVersionsOfTheSameUrlAreNoDuplicates()
+    {
+        SimHashIndex index = new SimHashIndex();
+        long fingerprint = SimHash.fingerprint("the same text on the same page");
+        index.add(fingerprint, "https://example.org/");
+
+        assertThat(index.findNearDuplicate(fingerprint, "https://example.org/")).isNull();
+        assertThat(index.findNearDuplicate(fingerprint, "https://example.org/mirror"))
+                .isEqualTo("https://example.org/");
+    }
+
+    @Test
+    public void indexAgreesWithLinearScan()
+    {
+        Random random = new Random(7);
+        for (int maxDistance = 0; maxDistance <= SimHashIndex.MAX_SUPPORTED_DISTANCE; maxDistance++)
+        {
+            SimHashIndex index = new SimHashIndex(maxDistance);
+            long[] stored = new long[2000];
+            for (int i = 0; i < stored.length; i++)
+            {
+                stored[i] = random.nextLong();
+                index.add(stored[i], "https://example.org/" + i);
+            }
+            for (int query = 0; query < 2000; query++)
+            {
+                long fingerprint = stored[random.nextInt(stored.length)];
+                int flips = random.nextInt(maxDistance + 3);
+                for (int i = 0; i < flips; i++)
+                {
+                    fingerprint ^= 1L << random.nextInt(64);
+                }
+                boolean expected = false;
+                for (long candidate : stored)
+                {
+                    expected |= SimHash.distance(candidate, fingerprint) <= maxDistance;
+                }
+                String duplicate = index.findNearDuplicate(fingerprint, "https://example.org/query");
+                assertThat(duplicate != null).as("distance %d, query %d", maxDistance, query).isEqualTo(expected);
+                if (duplicate != null)
+                {
+                    long found = stored[Integer.parseInt(duplicate.substring(duplicate.lastIndexOf('/') + 1))];
+                    assertThat(SimHash.distance(found, fingerprint)).isLessThanOrEqualTo(maxDistance);
+                }
+            }
+        }
+    }
+
+    private static List<String> randomWords(Random random, int count)
+    {
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(7);
+            for (int j = 0; j < length; j++)
+            {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words.add(word.toString());
+        }
+        return words;
+    }
+}
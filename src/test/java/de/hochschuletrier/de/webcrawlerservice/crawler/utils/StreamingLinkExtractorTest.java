@@ -0,0 +1,72 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import de.hochschuletrier.de.webcrawlerservice.utils.HTMLExtractionUtils;
+import org.jsoup.Jsoup;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StreamingLinkExtractorTest
+{
+    private static final String HTML = "<!DOCTYPE html><html><head><title>News &amp; Events</title>"
+            + "<meta charset=\"utf-8\"><base href=\"https://example.org/news/\">"
+            + "<script>var html = '<a href=\"/script-link\">';</script>"
+            + "<style>a[href='/style-link'] { color: red }</style></head><body>"
+            + "<!-- <a href=\"/commented\">old</a> -->"
+            + "<nav><a href=\"/\">Home</a><A HREF='archive?page=2&amp;sort=date'>Archive</A>"
+            + "<a href=list.html>List</a><a name=\"top\">no link</a></nav>"
+            + "<p>First paragraph</p><p>Second&nbsp;paragraph with a <a href=\"../files/report.pdf\">report</a></p>"
+            + "<a href=\"javascript:void(0)\">menu</a><a href=\"mailto:info@example.org\">mail</a>"
+            + "</body></html>";
+
+    @Test
+    public void streamingExtractionFindsTheLinksOfTheDocument()
+    {
+        Page streamed = new Page("https://example.org/index.html");
+        StreamingLinkExtractor.extract(streamed, HTML.getBytes(StandardCharsets.UTF_8), Integer.MAX_VALUE, null,
+                streamed.getUrl());
+        Page parsed = new Page("https://example.org/index.html");
+        parsed.setHtmlBody(Jsoup.parse(HTML, parsed.getUrl()));
+
+        assertThat(streamed.getLinks()).containsExactly("https://example.org/",
+                "https://example.org/news/archive?page=2&sort=date", "https://example.org/news/list.html",
+                "https://example.org/files/report.pdf", "mailto:info@example.org");
+        assertThat(streamed.getLinks()).containsExactlyElementsOf(HTMLExtractionUtils.getLinksFromDocument(parsed));
+        assertThat(streamed.getFileUrls(Arrays.asList("pdf", "doc")))
+                .containsExactly("https://example.org/files/report.pdf")
+                .isEqualTo(parsed.getFileUrls(Arrays.asList("pdf", "doc")));
+        assertThat(streamed.getTitle()).isEqualTo(parsed.getTitle()).isEqualTo("News & Events");
+        assertThat(streamed.getText()).contains("First paragraph Second paragraph with a report")
+                .doesNotContain("var html", "color: red", "old");
+    }
+
+    @Test
+    public void charsetIsTakenFromTheMetaTag()
+    {
+        byte[] body = ("<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=ISO-8859-1\">"
+                + "<meta http-equiv=\"refresh\" content=\"5; URL='/moved'\"><title>Pr\u00fcfungen</title></head>"
+                + "<body>\u00d6ffnungszeiten</body></html>").getBytes(StandardCharsets.ISO_8859_1);
+        Page page = new Page("https://example.org/");
+
+        StreamingLinkExtractor.extract(page, body, Integer.MAX_VALUE, null, page.getUrl());
+
+        assertThat(page.getCharset()).isEqualTo("ISO-8859-1");
+        assertThat(page.getTitle()).isEqualTo("Pr\u00fcfungen");
+        assertThat(page.getText()).contains("\u00d6ffnungszeiten");
+        assertThat(page.getLinks()).containsExactly("https://example.org/moved");
+    }
+
+    @Test
+    public void onlyTheMaximumBodySizeIsScanned()
+    {
+        byte[] body = "<a href=\"/first\">first</a><a href=\"/second\">second</a>".getBytes(StandardCharsets.UTF_8);
+        Page page = new Page("https://example.org/");
+
+        StreamingLinkExtractor.extract(page, body, 30, "UTF-8", page.getUrl());
+
+        assertThat(page.getLinks()).containsExactly("https://example.org/first");
+    }
+}
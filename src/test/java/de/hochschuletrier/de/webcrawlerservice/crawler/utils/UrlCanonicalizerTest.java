@@ -0,0 +1,56 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.utils;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UrlCanonicalizerTest
+{
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer();
+
+    @Test
+    public void variantsOfAPageHaveTheSameCanonicalForm()
+    {
+        String canonical = "https://www.example.org/path/page?a=1&b=2";
+
+        assertThat(canonicalizer.canonicalize("HTTPS://WWW.Example.ORG:443/path/page?b=2&a=1#top"))
+                .isEqualTo(canonical);
+        assertThat(canonicalizer.canonicalize("https://www.example.org/path/./sub/../page?a=1&&b=2"))
+                .isEqualTo(canonical);
+        assertThat(canonicalizer.canonicalize("https://www.example.org/path/page?utm_source=x&a=1&b=2&fbclid=y"))
+                .isEqualTo(canonical);
+        assertThat(canonicalizer.canonicalize("http://example.org:80")).isEqualTo("http://example.org/");
+        assertThat(canonicalizer.canonicalize("http://example.org:8080/")).isEqualTo("http://example.org:8080/");
+    }
+
+    @Test
+    public void schemeAndWwwVariantsShareTheDedupKey()
+    {
+        assertThat(UrlCanonicalizer.dedupKey(canonicalizer.canonicalize("http://www.example.org/a")))
+                .isEqualTo(UrlCanonicalizer.dedupKey(canonicalizer.canonicalize("https://example.org/a")));
+    }
+
+    @Test
+    public void optionsCanBeDisabled()
+    {
+        UrlCanonicalizer keepQuery = new UrlCanonicalizer();
+        keepQuery.setSortQueryParameters(false);
+        keepQuery.setStripTrackingParameters(false);
+
+        assertThat(keepQuery.canonicalize("https://example.org/?b=2&utm_source=x&a=1"))
+                .isEqualTo("https://example.org/?b=2&utm_source=x&a=1");
+    }
+
+    @Test
+    public void relativeLinksAreResolvedAgainstTheBaseUrl()
+    {
+        String base = "https://www.example.org/docs/guide/index.html";
+
+        assertThat(canonicalizer.resolve(base, "../api/")).isEqualTo("https://www.example.org/docs/api/");
+        assertThat(canonicalizer.resolve(base, "/about")).isEqualTo("https://www.example.org/about");
+        assertThat(canonicalizer.resolve(base, "//cdn.example.org/x")).isEqualTo("https://cdn.example.org/x");
+        assertThat(canonicalizer.resolve(base, "?page=2"))
+                .isEqualTo("https://www.example.org/docs/guide/index.html?page=2");
+        assertThat(canonicalizer.resolve(base, "mailto:someone@example.org")).isNull();
+    }
+}
@@ -0,0 +1,199 @@
+package de.hochschuletrier.de.webcrawlerservice.crawler.warc;
+
+import de.hochschuletrier.de.webcrawlerservice.crawler.utils.FetchResponse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WarcWriterTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static FetchResponse html(String url, String body)
+    {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "text/html; charset=UTF-8");
+        headers.put("Content-Encoding", "gzip");
+        return new FetchResponse(url, 200, headers, body.getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    /**
+     * @return the decompressed gzip member at the offset
+     */
+    private static String memberAt(File file, long offset, int length) throws IOException
+    {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes, (int) offset, length)))
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0)
+            {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<String[]> index(File segment) throws IOException
+    {
+        File indexFile = new File(segment.getPath().replace(WarcWriter.EXTENSION, WarcWriter.INDEX_EXTENSION));
+        List<String> lines = Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8);
+        assertThat(lines.get(0)).isEqualTo(WarcSegment.CDX_HEADER);
+        List<String[]> fields = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size()))
+        {
+            fields.add(line.split(" "));
+        }
+        return fields;
+    }
+
+    @Test
+    public void responsesAreArchivedWithRequestAndIndexedByOffset() throws Exception
+    {
+        WarcWriter writer = WarcWriter.open(this.folder.getRoot(), "test-http://www.example.com/",
+                WarcWriter.DEFAULT_SEGMENT_SIZE, 64, 1);
+        writer.archive("http://www.example.com/", Collections.singletonMap("User-Agent", "test-agent"),
+                html("http://www.example.com/", "<html><body>home</body></html>"));
+        Map<String, String> pdfHeaders = Collections.singletonMap("Content-Type", "application/pdf");
+        writer.archive("http://www.example.com/file.pdf?v=1", Collections.emptyMap(),
+                new FetchResponse("http://www.example.com/file.pdf?v=1", 200, pdfHeaders, null, false));
+        writer.close();
+
+        assertThat(writer.getRecords()).isEqualTo(2);
+        assertThat(writer.getSegments()).hasSize(1);
+        File segment = writer.getSegments().get(0);
+        List<String[]> index = index(segment);
+        assertThat(index).hasSize(2);
+
+        String[] home = index.get(0);
+        assertThat(home[0]).isEqualTo("com,example)/");
+        assertThat(home[1]).hasSize(14);
+        assertThat(Arrays.copyOfRange(home, 2, 7)).containsExactly("http://www.example.com/", "text/html", "200",
+                WarcWriter.base32(MessageDigest.getInstance("SHA-1")
+                        .digest("<html><body>home</body></html>".getBytes(StandardCharsets.UTF_8))), "-");
+        assertThat(home[10]).isEqualTo(segment.getName());
+        String record = memberAt(segment, Long.parseLong(home[9]), Integer.parseInt(home[8]));
+        assertThat(record).startsWith("WARC/1.0\r\nWARC-Type: response\r\n")
+                .contains("WARC-Target-URI: http://www.example.com/\r\n")
+                .contains("Content-Type: application/http; msgtype=response\r\n")
+                .contains("HTTP/1.1 200 OK\r\n")
+                .contains("X-Archive-Orig-Content-Encoding: gzip\r\n")
+                .contains("Content-Length: 30\r\n\r\n<html><body>home</body></html>")
+                .endsWith("\r\n\r\n")
+                .doesNotContain("WARC-Truncated");
+
+        String[] pdf = index.get(1);
+        assertThat(pdf[0]).isEqualTo("com,example)/file.pdf?v=1");
+        record = memberAt(segment, Long.parseLong(pdf[9]), Integer.parseInt(pdf[8]));
+        assertThat(record).contains("WARC-Truncated: unspecified\r\n");
+
+        // the request record follows the response of the home page
+        long requestOffset = Long.parseLong(home[9]) + Integer.parseInt(home[8]);
+        String request = memberAt(segment, requestOffset, (int) (Long.parseLong(pdf[9]) - requestOffset));
+        assertThat(request).contains("WARC-Type: request\r\n")
+                .contains("GET / HTTP/1.1\r\nHost: www.example.com\r\nUser-Agent: test-agent\r\n\r\n");
+        assertThat(memberAt(segment, 0, (int) Long.parseLong(home[9])))
+                .contains("WARC-Type: warcinfo\r\n").contains("isPartOf: test-http://www.example.com/");
+    }
+
+    @Test
+    public void theNextSegmentIsStartedOnceASegmentIsFull() throws Exception
+    {
+        WarcWriter writer = WarcWriter.open(this.folder.getRoot(), "rolling", 1, WarcWriter.DEFAULT_BUFFER_SIZE,
+                WarcWriter.DEFAULT_CAPACITY);
+        for (int i = 0; i < 3; i++)
+        {
+            writer.archive("http://example.com/" + i, Collections.emptyMap(),
+                    html("http://example.com/" + i, "<html>" + i + "</html>"));
+        }
+        writer.close();
+
+        assertThat(writer.getSegments()).hasSize(3).allSatisfy(file -> assertThat(file).exists());
+        for (int i = 0; i < 3; i++)
+        {
+            File segment = writer.getSegments().get(i);
+            assertThat(segment.getName()).endsWith(String.format("-%05d", i) + WarcWriter.EXTENSION);
+            List<String[]> index = index(segment);
+            assertThat(index).hasSize(1);
+            assertThat(index.get(0)[2]).isEqualTo("http://example.com/" + i);
+            // the whole segment is one gzip stream of its members
+            String content = memberAt(segment, 0, (int) segment.length());
+            assertThat(content).contains("<html>" + i + "</html>");
+        }
+    }
+
+    @Test
+    public void repeatedHeadersAreArchivedAsReceived() throws Exception
+    {
+        List<Map.Entry<String, String>> headers = Arrays.asList(
+                new AbstractMap.SimpleImmutableEntry<>("Content-Type", "text/html"),
+                new AbstractMap.SimpleImmutableEntry<>("Set-Cookie", "a=1; Path=/"),
+                new AbstractMap.SimpleImmutableEntry<>("Set-Cookie", "b=2; Expires=Wed, 21 Oct 2026 07:28:00 GMT"));
+        WarcWriter writer = WarcWriter.open(this.folder.getRoot(), "cookies", WarcWriter.DEFAULT_SEGMENT_SIZE,
+                WarcWriter.DEFAULT_BUFFER_SIZE, WarcWriter.DEFAULT_CAPACITY);
+        writer.archive("http://example.com/", Collections.emptyMap(),
+                new FetchResponse("http://example.com/", 200, headers, "<html/>".getBytes(StandardCharsets.UTF_8),
+                        false));
+        writer.close();
+
+        File segment = writer.getSegments().get(0);
+        assertThat(memberAt(segment, 0, (int) segment.length()))
+                .contains("Set-Cookie: a=1; Path=/\r\nSet-Cookie: b=2; Expires=Wed, 21 Oct 2026 07:28:00 GMT\r\n");
+    }
+
+    @Test
+    public void aBrokenExchangeDoesNotStopTheWriter()
+    {
+        WarcWriter writer = WarcWriter.open(this.folder.getRoot(), "broken", WarcWriter.DEFAULT_SEGMENT_SIZE,
+                WarcWriter.DEFAULT_BUFFER_SIZE, 1);
+        FetchResponse broken = new FetchResponse("http://example.com/broken", 200, Collections.emptyMap(), null,
+                false)
+        {
+            @Override
+            public byte[] getBody()
+            {
+                throw new IllegalStateException("broken response");
+            }
+        };
+        writer.archive("http://example.com/broken", Collections.emptyMap(), broken);
+        for (int i = 0; i < 3; i++)
+        {
+            writer.archive("http://example.com/" + i, Collections.emptyMap(),
+                    html("http://example.com/" + i, "<html>" + i + "</html>"));
+        }
+        writer.close();
+
+        assertThat(writer.getFailed()).isEqualTo(1);
+        assertThat(writer.getRecords()).isEqualTo(3);
+    }
+
+    @Test
+    public void digestsAreBase32AndUrlKeysStartWithTheReversedHost()
+    {
+        assertThat(WarcWriter.base32("foobar".getBytes(StandardCharsets.US_ASCII))).isEqualTo("MZXW6YTBOI");
+        assertThat(WarcWriter.urlKey("https://WWW.Example.com:8443/A%20b?x=1"))
+                .isEqualTo("com,example:8443)/a%20b?x=1");
+    }
+}
@@ -0,0 +1,180 @@
+package de.hochschuletrier.de.webcrawlerservice.persistence.buffer;
+
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.FileLinkEntity;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.FileLinkRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class WriteBehindBufferTest
+{
+    private FileLinkRepository repository;
+    private List<Integer> batchSizes; // sizes of the saveAll calls
+    private CountDownLatch database; // saveAll waits for it
+
+    @Before
+    public void setUp()
+    {
+        this.repository = mock(FileLinkRepository.class);
+        this.batchSizes = new CopyOnWriteArrayList<>();
+        this.database = new CountDownLatch(0);
+        doAnswer(invocation ->
+        {
+            this.database.await();
+            this.batchSizes.add(((Collection<?>) invocation.getArgument(0)).size());
+            return null;
+        }).when(this.repository).saveAll(anyIterable());
+    }
+
+    @Test
+    public void fullBatchesAreWrittenAndTheRestOnClose()
+    {
+        WriteBehindBuffer<FileLinkEntity> buffer = new WriteBehindBuffer<>("test", this.repository, 10, 60000, 100);
+        for (int i = 0; i < 25; i++)
+        {
+            buffer.add(fileLink(i));
+        }
+        buffer.close();
+
+        assertThat(this.batchSizes).containsExactly(10, 10, 5);
+        assertThat(buffer.getStats().getWritten()).isEqualTo(25);
+        assertThat(buffer.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void partialBatchesAreWrittenAfterTheFlushInterval() throws InterruptedException
+    {
+        WriteBehindBuffer<FileLinkEntity> buffer = new WriteBehindBuffer<>("test", this.repository, 10, 50, 100);
+        buffer.add(fileLink(1));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (this.batchSizes.isEmpty() && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertThat(this.batchSizes).containsExactly(1);
+        assertThat(WriteBehindBuffer.openBufferStats()).extracting(WriteBehindBuffer.Stats::getName).contains("test");
+        buffer.close();
+        assertThat(WriteBehindBuffer.openBufferStats()).extracting(WriteBehindBuffer.Stats::getName)
+                .doesNotContain("test");
+    }
+
+    @Test
+    public void addBlocksWhileTheDatabaseFallsBehind() throws InterruptedException
+    {
+        this.database = new CountDownLatch(1);
+        WriteBehindBuffer<FileLinkEntity> buffer = new WriteBehindBuffer<>("test", this.repository, 1, 10, 1);
+        buffer.add(fileLink(1));
+        Thread.sleep(100); // the writer waits in saveAll
+        buffer.add(fileLink(2)); // fills the queue
+        Thread producer = new Thread(() -> buffer.add(fileLink(3)));
+        producer.start();
+
+        producer.join(300);
+        assertThat(producer.isAlive()).isTrue();
+        assertThat(buffer.getStats().getBlockedAdds()).isEqualTo(1);
+
+        this.database.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(5));
+        buffer.close();
+        assertThat(producer.isAlive()).isFalse();
+        assertThat(buffer.getStats().getWritten()).isEqualTo(3);
+    }
+
+    @Test
+    public void transientFailuresAreWrittenAgain()
+    {
+        List<Integer> attempts = new CopyOnWriteArrayList<>();
+        WriteBehindBuffer<FileLinkEntity> buffer = new WriteBehindBuffer<>("test", batch ->
+        {
+            attempts.add(batch.size());
+            if (attempts.size() < 3)
+            {
+                throw new DataAccessResourceFailureException("connection lost");
+            }
+        }, 10, 60000, 100);
+        buffer.setRetries(3, 1);
+        for (int i = 0; i < 5; i++)
+        {
+            buffer.add(fileLink(i));
+        }
+        buffer.close();
+
+        assertThat(attempts).containsExactly(5, 5, 5);
+        assertThat(buffer.getStats().getWritten()).isEqualTo(5);
+        assertThat(buffer.getStats().getFailed()).isZero();
+        assertThat(buffer.getStats().getRetries()).isEqualTo(2);
+    }
+
+    @Test
+    public void onlyTheFailedEntitiesOfAPartialBatchAreWrittenAgain()
+    {
+        List<List<FileLinkEntity>> attempts = new CopyOnWriteArrayList<>();
+        WriteBehindBuffer<FileLinkEntity> buffer = new WriteBehindBuffer<>("test", batch ->
+        {
+            attempts.add(new ArrayList<>(batch));
+            if (attempts.size() == 1)
+            {
+                throw new PartialBatchException("1 of 3 upserts failed", batch.subList(1, 2), null);
+            }
+        }, 10, 60000, 100);
+        buffer.setRetries(3, 1);
+        FileLinkEntity failedOnce = fileLink(1);
+        buffer.add(fileLink(0));
+        buffer.add(failedOnce);
+        buffer.add(fileLink(2));
+        buffer.close();
+
+        assertThat(attempts).hasSize(2);
+        assertThat(attempts.get(1)).containsExactly(failedOnce);
+        assertThat(buffer.getStats().getWritten()).isEqualTo(3);
+        assertThat(buffer.getStats().getFailed()).isZero();
+    }
+
+    @Test
+    public void entitiesAreCountedAsFailedAfterTheLastAttemptOrAPermanentError()
+    {
+        List<Integer> attempts = new CopyOnWriteArrayList<>();
+        WriteBehindBuffer<FileLinkEntity> timingOut = new WriteBehindBuffer<>("timing-out", batch ->
+        {
+            attempts.add(batch.size());
+            throw new QueryTimeoutException("timeout");
+        }, 10, 60000, 100);
+        timingOut.setRetries(2, 1);
+        timingOut.add(fileLink(1));
+        timingOut.add(fileLink(2));
+        timingOut.close();
+        WriteBehindBuffer<FileLinkEntity> invalid = new WriteBehindBuffer<>("invalid", batch ->
+        {
+            attempts.add(batch.size());
+            throw new DataIntegrityViolationException("invalid document");
+        }, 10, 60000, 100);
+        invalid.setRetries(2, 1);
+        invalid.add(fileLink(3));
+        invalid.close();
+
+        assertThat(attempts).containsExactly(2, 2, 1);
+        assertThat(timingOut.getStats().getFailed()).isEqualTo(2);
+        assertThat(invalid.getStats().getFailed()).isEqualTo(1);
+        assertThat(invalid.getStats().getRetries()).isZero();
+    }
+
+    private static FileLinkEntity fileLink(int number)
+    {
+        return new FileLinkEntity("https://example.org/file" + number + ".pdf", "pdf");
+    }
+}
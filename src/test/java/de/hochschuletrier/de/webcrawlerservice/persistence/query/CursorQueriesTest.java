@@ -0,0 +1,110 @@
+package de.hochschuletrier.de.webcrawlerservice.persistence.query;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.DeadLinkEntity;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CursorQueriesTest
+{
+    private final MongoOperations mongoOperations = mock(MongoOperations.class);
+    private final CursorQueries cursorQueries = new CursorQueries(mongoOperations, new ObjectMapper());
+
+    @Test
+    public void pagesStartBehindTheCursorAndReturnTheNextCursor()
+    {
+        List<DeadLinkEntity> deadLinks = deadLinks(3);
+        when(mongoOperations.find(any(Query.class), eq(DeadLinkEntity.class))).thenReturn(deadLinks);
+        String cursor = new ObjectId().toHexString();
+
+        CursorPage<DeadLinkEntity> page = cursorQueries.page(new Query(), DeadLinkEntity.class,
+                DeadLinkEntity::getId, cursor, 2);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoOperations).find(query.capture(), eq(DeadLinkEntity.class));
+        assertThat(query.getValue().getLimit()).isEqualTo(3);
+        assertThat(query.getValue().getSortObject()).isEqualTo(new Document("_id", 1));
+        assertThat(query.getValue().getQueryObject().get("_id", Document.class).get("$gt"))
+                .isEqualTo(new ObjectId(cursor));
+        assertThat(page.getItems()).containsExactly(deadLinks.get(0), deadLinks.get(1));
+        assertThat(page.getNextCursor()).isEqualTo(deadLinks.get(1).getId());
+    }
+
+    @Test
+    public void theLastPageHasNoNextCursor()
+    {
+        when(mongoOperations.find(any(Query.class), eq(DeadLinkEntity.class))).thenReturn(deadLinks(2));
+
+        CursorPage<DeadLinkEntity> page = cursorQueries.page(new Query(), DeadLinkEntity.class,
+                DeadLinkEntity::getId, null, 2);
+
+        assertThat(page.getItems()).hasSize(2);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void invalidCursorsAreRejected()
+    {
+        assertThat(CursorQueries.isValidCursor(null)).isTrue();
+        assertThat(CursorQueries.isValidCursor("")).isTrue();
+        assertThat(CursorQueries.isValidCursor("http://example.com")).isFalse();
+        assertThatThrownBy(() -> cursorQueries.page(new Query(), DeadLinkEntity.class, DeadLinkEntity::getId,
+                "42", 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void streamsOneJsonDocumentPerLine() throws Exception
+    {
+        Iterator<DeadLinkEntity> documents = deadLinks(3).iterator();
+        CloseableIterator<DeadLinkEntity> cursor = mock(DeadLinkCursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> documents.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> documents.next());
+        when(mongoOperations.stream(any(Query.class), eq(DeadLinkEntity.class))).thenReturn(cursor);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        cursorQueries.stream(new Query(), DeadLinkEntity.class, null, output);
+
+        String[] lines = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(new ObjectMapper().readTree(lines[2]).get("url").asText()).isEqualTo("http://example.com/2");
+        verify(cursor).close();
+    }
+
+    /**
+     * Typed cursor, so the mock needs no unchecked conversion
+     */
+    private interface DeadLinkCursor extends CloseableIterator<DeadLinkEntity>
+    {
+    }
+
+    private static List<DeadLinkEntity> deadLinks(int count)
+    {
+        List<DeadLinkEntity> deadLinks = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            DeadLinkEntity deadLink = new DeadLinkEntity("http://example.com/" + i);
+            deadLink.setId(new ObjectId().toHexString());
+            deadLinks.add(deadLink);
+        }
+        return deadLinks;
+    }
+}
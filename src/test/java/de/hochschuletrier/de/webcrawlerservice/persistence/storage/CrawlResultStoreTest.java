@@ -0,0 +1,123 @@
+package de.hochschuletrier.de.webcrawlerservice.persistence.storage;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import de.hochschuletrier.de.webcrawlerservice.persistence.buffer.PartialBatchException;
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.WebPageEntity;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.DbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CrawlResultStoreTest
+{
+    private final MongoOperations mongoOperations = mock(MongoOperations.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    private final PageBodyStore pageBodyStore = mock(PageBodyStore.class);
+
+    @Before
+    public void setUp()
+    {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.afterPropertiesSet();
+        when(mongoOperations.getConverter()).thenReturn(
+                new MappingMongoConverter(mock(DbRefResolver.class), mappingContext));
+        when(mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, WebPageEntity.class)).thenReturn(bulk);
+    }
+
+    @Test
+    public void pagesAreUpsertedByUrlWithABoundedVersionHistory()
+    {
+        WebPageEntity first = page("http://example.com/", null);
+        WebPageEntity revisit = page("http://example.com/", null);
+        revisit.setTitle("changed");
+        new CrawlResultStore(mongoOperations, pageBodyStore, 3).upsertPages(Arrays.asList(first, revisit));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        // only the newest version of a url in a batch is written
+        verify(bulk, times(1)).upsert(query.capture(), update.capture());
+        verify(bulk).execute();
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("url", "http://example.com/"));
+        Document updateObject = update.getValue().getUpdateObject();
+        assertThat(updateObject.get("$set", Document.class).get("title")).isEqualTo("changed");
+        // fields of the replaced version are removed
+        assertThat(updateObject.get("$unset", Document.class)).containsKeys("htmlDoc", "bodyFileId", "duplicateOf");
+        assertThat(updateObject.get("$setOnInsert", Document.class).get("firstCrawledAt"))
+                .isEqualTo(revisit.getCrawlingDateTime());
+        Update.Modifiers push = (Update.Modifiers) updateObject.get("$push", Document.class).get("versions");
+        assertThat(push.getModifiers()).anySatisfy(modifier ->
+        {
+            assertThat(modifier.getKey()).isEqualTo("$slice");
+            assertThat(modifier.getValue()).isEqualTo(-3);
+        });
+    }
+
+    @Test
+    public void replacedBodyFilesAreDeleted()
+    {
+        when(pageBodyStore.usesGridFs()).thenReturn(true);
+        when(mongoOperations.find(any(Query.class), eq(WebPageEntity.class))).thenReturn(Arrays.asList(
+                page("http://example.com/large", "old-file"), page("http://example.com/small", "small-file")));
+        CrawlResultStore store = new CrawlResultStore(mongoOperations, pageBodyStore, 3);
+
+        store.upsertPages(Arrays.asList(page("http://example.com/large", "new-file"),
+                page("http://example.com/small", "small-file")));
+
+        verify(pageBodyStore).deleteFile("old-file");
+        verify(pageBodyStore, never()).deleteFile("small-file");
+    }
+
+    @Test
+    public void failedUpsertsOfABulkAreReportedAndOnlyTheWrittenBodiesAreReplaced()
+    {
+        when(pageBodyStore.usesGridFs()).thenReturn(true);
+        when(mongoOperations.find(any(Query.class), eq(WebPageEntity.class))).thenReturn(Arrays.asList(
+                page("http://example.com/written", "old-written"), page("http://example.com/failed", "old-failed")));
+        BulkOperationException bulkFailure = mock(BulkOperationException.class);
+        when(bulkFailure.getErrors()).thenReturn(Collections.singletonList(
+                new BulkWriteError(11000, "duplicate key", new BasicDBObject(), 1)));
+        when(bulk.execute()).thenThrow(bulkFailure);
+        WebPageEntity written = page("http://example.com/written", "new-written");
+        WebPageEntity failed = page("http://example.com/failed", "new-failed");
+
+        assertThatThrownBy(() -> new CrawlResultStore(mongoOperations, pageBodyStore, 3)
+                .upsertPages(Arrays.asList(written, failed)))
+                .isInstanceOfSatisfying(PartialBatchException.class, e ->
+                {
+                    assertThat(e.getFailed()).hasSize(1);
+                    assertThat(e.getFailed().get(0)).isSameAs(failed);
+                });
+        verify(pageBodyStore).deleteFile("old-written");
+        verify(pageBodyStore, never()).deleteFile("old-failed");
+    }
+
+    private static WebPageEntity page(String url, String bodyFileId)
+    {
+        WebPageEntity page = new WebPageEntity(url, null, new Date(), "title", null, 200, "example.com");
+        page.setBodyFileId(bodyFileId);
+        return page;
+    }
+}
@@ -0,0 +1,103 @@
+package de.hochschuletrier.de.webcrawlerservice.persistence.storage;
+
+import de.hochschuletrier.de.webcrawlerservice.persistence.entity.WebPageEntity;
+import de.hochschuletrier.de.webcrawlerservice.persistence.repository.WebPageEntityRepository;
+import org.bson.Document;
+import org.junit.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PageBodyStoreTest
+{
+    private static final String HTML = "<html><head><title>Pr\u00fcfungsamt</title></head><body>"
+            + String.join("", Collections.nCopies(200, "<p>\u00d6ffnungszeiten des Pr\u00fcfungsamts</p>"))
+            + "</body></html>";
+
+    @Test
+    public void bodiesAreCompressedAndReadWithTheirCharset()
+    {
+        byte[] body = HTML.getBytes(StandardCharsets.ISO_8859_1);
+        for (PageCodec codec : PageCodec.values())
+        {
+            WebPageEntity entity = new WebPageEntity();
+            new PageBodyStore(codec).store(entity, body, "ISO-8859-1");
+
+            assertThat(entity.getCodec()).isEqualTo(codec.name());
+            assertThat(entity.getBodySize()).isEqualTo(body.length);
+            if (codec != PageCodec.NONE)
+            {
+                assertThat(entity.getBody().length).isLessThan(body.length / 10);
+            }
+            // bodies are read with their stored codec, not the configured one
+            assertThat(new PageBodyStore(PageCodec.ZSTD).readHtml(entity)).isEqualTo(HTML);
+        }
+    }
+
+    @Test
+    public void bodiesAboveTheThresholdAreStoredInGridFs() throws Exception
+    {
+        Map<String, byte[]> files = new HashMap<>();
+        GridFsOperations gridFs = mock(GridFsOperations.class);
+        doAnswer(invocation ->
+        {
+            files.put(invocation.getArgument(1), StreamUtils.copyToByteArray(invocation.getArgument(0)));
+            return null;
+        }).when(gridFs).store(any(InputStream.class), anyString(), anyString(), any(Document.class));
+        when(gridFs.getResource(anyString())).thenAnswer(invocation ->
+        {
+            GridFsResource resource = mock(GridFsResource.class);
+            when(resource.exists()).thenReturn(true);
+            when(resource.getInputStream()).thenReturn(new ByteArrayInputStream(files.get(invocation.getArgument(0))));
+            return resource;
+        });
+        PageBodyStore store = new PageBodyStore(PageCodec.DEFLATE, 100, gridFs);
+        WebPageEntity small = new WebPageEntity();
+        WebPageEntity large = new WebPageEntity();
+
+        store.store(small, "<html><body>small</body></html>".getBytes(StandardCharsets.UTF_8), "UTF-8");
+        store.store(large, HTML.getBytes(StandardCharsets.UTF_8), "UTF-8");
+
+        assertThat(small.getBody()).isNotNull();
+        assertThat(small.getBodyFileId()).isNull();
+        assertThat(large.getBody()).isNull();
+        assertThat(files).containsOnlyKeys(large.getBodyFileId());
+        assertThat(store.readHtml(large)).isEqualTo(HTML);
+    }
+
+    @Test
+    public void legacyPagesAreMigrated()
+    {
+        WebPageEntity legacy1 = new WebPageEntity("https://example.org/1", null, null, "1", HTML, 200, "example");
+        WebPageEntity legacy2 = new WebPageEntity("https://example.org/2", null, null, "2", HTML, 200, "example");
+        WebPageEntityRepository repository = mock(WebPageEntityRepository.class);
+        when(repository.findByHtmlDocNotNull(any(Pageable.class)))
+                .thenReturn(Arrays.asList(legacy1, legacy2))
+                .thenReturn(Collections.emptyList());
+        PageBodyStore store = new PageBodyStore(PageCodec.DEFLATE);
+
+        assertThat(store.migrate(repository, 2)).isEqualTo(2);
+
+        assertThat(legacy1.getHtmlDoc()).isNull();
+        assertThat(legacy1.getBody()).isNotNull();
+        assertThat(store.readHtml(legacy1)).isEqualTo(HTML);
+        assertThat(store.readHtml(legacy2)).isEqualTo(HTML);
+    }
+}